@@ -0,0 +1,88 @@
+package com.nedyalkova.crawler.impl;
+
+import com.nedyalkova.crawler.exception.UrlInvalidException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// fetch, parse and enqueue over a synthetic site served from memory, so only crawler cost is timed
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CrawlLoopBenchmark {
+
+  private static final int PAGES = 2_000;
+  private static final int FAN_OUT = 20;
+  private static final String HOST = "https://bench.webcrawler.com";
+
+  @Param({"1", "8"})
+  public int concurrency;
+
+  private byte[][] pages;
+  private WebCrawler crawler;
+
+  @Setup(Level.Trial)
+  public void buildSite() {
+    pages = new byte[PAGES][];
+    for (int i = 0; i < PAGES; i++) {
+      StringBuilder html = new StringBuilder(HtmlFixtures.page(0, 5, i));
+      for (int j = 1; j <= FAN_OUT; j++) {
+        html.append("<a href=\"/p/").append((i * 31L + j * 17L) % PAGES).append("\">x</a>");
+      }
+      pages[i] = html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void newCrawler() throws URISyntaxException, UrlInvalidException {
+    CrawlerConfig config =
+        new CrawlerConfig()
+            .maxConcurrency(concurrency)
+            .maxConcurrencyPerHost(concurrency)
+            .respectRobotsTxt(false)
+            .initialHostRate(1e9)
+            .maxHostRate(1e9)
+            .pageFetcher(this::serve);
+    crawler = new WebCrawler(HOST + "/p/0", config);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAGES)
+  public int crawlSite() {
+    crawler.crawl();
+    return crawler.counter.get();
+  }
+
+  private CompletableFuture<FetchResponse> serve(FetchRequest request) {
+    String path = request.getUri().getPath();
+    int page = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+    return CompletableFuture.completedFuture(
+        new FetchResponse(
+            request.getUri(),
+            200,
+            Map.of("Content-Type", List.of("text/html; charset=UTF-8")),
+            new ByteArrayInputStream(pages[page])));
+  }
+}
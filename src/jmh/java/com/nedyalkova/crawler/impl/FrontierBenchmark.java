@@ -0,0 +1,75 @@
+package com.nedyalkova.crawler.impl;
+
+import com.nedyalkova.crawler.exception.UrlInvalidException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrontierBenchmark {
+
+  @Param({"EXACT", "BLOOM"})
+  public SeenSetMode seenSetMode;
+
+  private SeenSet seen;
+  private long[] knownFingerprints;
+  private long[] unknownFingerprints;
+  private WebCrawler crawler;
+  private Set<URI> pageLinks;
+  private int next;
+
+  @Setup
+  public void setUp() throws URISyntaxException, UrlInvalidException {
+    CrawlerConfig config = new CrawlerConfig().seenSetMode(seenSetMode).expectedUrls(1_000_000);
+    seen = config.createSeenSet();
+    SplittableRandom random = new SplittableRandom(3);
+    knownFingerprints = new long[1 << 20];
+    unknownFingerprints = new long[1 << 20];
+    for (int i = 0; i < knownFingerprints.length; i++) {
+      knownFingerprints[i] = random.nextLong();
+      unknownFingerprints[i] = random.nextLong();
+      seen.add(knownFingerprints[i]);
+    }
+
+    // every link on the page is already known, the common case for nav and footer links
+    crawler = new WebCrawler(HtmlFixtures.BASE_URL, config);
+    pageLinks =
+        new LinkExtractor().extractLinks(HtmlFixtures.page("medium"), HtmlFixtures.BASE_URL);
+    crawler.addLinksToQueue(pageLinks);
+  }
+
+  @Benchmark
+  public boolean seenHit() {
+    return seen.contains(knownFingerprints[next++ & (knownFingerprints.length - 1)]);
+  }
+
+  @Benchmark
+  public boolean seenMiss() {
+    return seen.contains(unknownFingerprints[next++ & (unknownFingerprints.length - 1)]);
+  }
+
+  @Benchmark
+  public long addDuplicateLinksToQueue() {
+    crawler.addLinksToQueue(pageLinks);
+    return crawler.getQueue().size();
+  }
+}
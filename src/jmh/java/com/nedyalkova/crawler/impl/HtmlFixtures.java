@@ -0,0 +1,85 @@
+package com.nedyalkova.crawler.impl;
+
+import java.util.SplittableRandom;
+
+// deterministic pages shaped like real ones: nav and footer boilerplate, scripts, comments and a
+// mix of relative, absolute, external and non-http links
+final class HtmlFixtures {
+
+  static final String BASE_URL = "https://bench.webcrawler.com/section/page";
+
+  private HtmlFixtures() {}
+
+  static String page(String size) {
+    switch (size) {
+      case "small":
+        return page(20, 2, 1);
+      case "medium":
+        return page(300, 40, 2);
+      case "huge":
+        return page(5_000, 800, 3);
+      default:
+        throw new IllegalArgumentException("Unknown fixture size " + size);
+    }
+  }
+
+  static String page(int links, int paragraphs, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    StringBuilder html = new StringBuilder(links * 120 + paragraphs * 600);
+    html.append("<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\">")
+        .append("<title>Benchmark page</title>")
+        .append("<link rel=\"stylesheet\" href=\"/static/site.css\">")
+        .append("<script>window.dataLayer = [{\"a\": \"<a href='/not-a-link'>\"}];</script>")
+        .append("</head><body><nav>");
+    for (int i = 0; i < 12; i++) {
+      html.append("<a class=\"nav-item\" href=\"/nav/").append(i).append("\">Nav ").append(i);
+      html.append("</a>");
+    }
+    html.append("</nav><main>");
+    for (int i = 0; i < paragraphs; i++) {
+      html.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod ")
+          .append("tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, ")
+          .append("quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo.</p>");
+      if (i % 10 == 0) {
+        html.append("<!-- generated block ").append(i).append(" -->");
+      }
+    }
+    for (int i = 0; i < links; i++) {
+      html.append("<li><a href=\"").append(link(random, i)).append("\">Item ").append(i);
+      html.append("</a></li>");
+    }
+    html.append("</main><footer>");
+    for (int i = 0; i < 8; i++) {
+      html.append("<a href=\"https://bench.webcrawler.com/footer/").append(i).append("/\">F</a>");
+    }
+    return html.append("</footer></body></html>").toString();
+  }
+
+  static String[] rawUrls(int count, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    String[] urls = new String[count];
+    for (int i = 0; i < count; i++) {
+      urls[i] =
+          switch (random.nextInt(5)) {
+            case 0 -> "HTTPS://Bench.WebCrawler.com:443/products/" + i + "/";
+            case 1 -> "https://bench.webcrawler.com/a/b/../c/./item-" + i + "?sort=asc#reviews";
+            case 2 -> "http://bench.webcrawler.com:80/search?q=term" + i + "&page=2";
+            case 3 -> "https://bench.webcrawler.com/blog/2024/01/post-" + i;
+            default -> "https://cdn.elsewhere.net:8443/assets/" + i + ".js";
+          };
+    }
+    return urls;
+  }
+
+  private static String link(SplittableRandom random, int i) {
+    return switch (random.nextInt(10)) {
+      case 0 -> "https://bench.webcrawler.com/absolute/" + i;
+      case 1 -> "https://external.example.org/ref/" + i;
+      case 2 -> "mailto:team" + i + "@webcrawler.com";
+      case 3 -> "#section-" + i;
+      case 4 -> "../sibling/" + i + "/?ref=list&amp;pos=" + i;
+      case 5 -> "/products/" + (i % 50) + "?color=red&amp;size=" + (i % 7);
+      default -> "/items/" + i;
+    };
+  }
+}
@@ -0,0 +1,56 @@
+package com.nedyalkova.crawler.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractorBenchmark {
+
+  @Param({"small", "medium", "huge"})
+  public String size;
+
+  private final LinkExtractor linkExtractor = new LinkExtractor();
+  private String html;
+  private byte[] body;
+
+  @Setup
+  public void setUp() {
+    html = HtmlFixtures.page(size);
+    body = html.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Set<URI> extractFromString() {
+    return linkExtractor.extractLinks(html, HtmlFixtures.BASE_URL);
+  }
+
+  // the crawl path: decoding straight from the response bytes
+  @Benchmark
+  public Set<URI> extractFromStream() throws IOException {
+    return linkExtractor.extractLinks(
+        new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8),
+        HtmlFixtures.BASE_URL);
+  }
+}
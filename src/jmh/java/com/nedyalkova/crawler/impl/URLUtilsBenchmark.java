@@ -0,0 +1,56 @@
+package com.nedyalkova.crawler.impl;
+
+import com.nedyalkova.crawler.exception.UrlInvalidException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class URLUtilsBenchmark {
+
+  private final URLUtils urlUtils = new URLUtils();
+  private String[] rawUrls;
+  private final String[] schemes = {"https", "HTTP", "mailto", "javascript", "ftp"};
+  private int next;
+
+  @Setup
+  public void setUp() {
+    rawUrls = HtmlFixtures.rawUrls(1024, 42);
+  }
+
+  @Benchmark
+  public URI normalizeUrl() throws URISyntaxException {
+    return urlUtils.normalizeUrl(rawUrls[next++ & 1023]);
+  }
+
+  @Benchmark
+  public CanonicalUrl canonicalize() {
+    return urlUtils.canonicalize(rawUrls[next++ & 1023]);
+  }
+
+  @Benchmark
+  public boolean validateScheme() {
+    try {
+      urlUtils.validateScheme(schemes[next++ % schemes.length]);
+      return true;
+    } catch (UrlInvalidException e) {
+      return false;
+    }
+  }
+}
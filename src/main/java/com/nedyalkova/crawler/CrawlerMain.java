@@ -1,11 +1,26 @@
 package com.nedyalkova.crawler;
 
 import com.nedyalkova.crawler.exception.UrlInvalidException;
+import com.nedyalkova.crawler.impl.ClusterCoordinator;
+import com.nedyalkova.crawler.impl.CrawlerConfig;
+import com.nedyalkova.crawler.impl.OutputFormat;
+import com.nedyalkova.crawler.impl.QueryRules;
+import com.nedyalkova.crawler.impl.ScoringMode;
+import com.nedyalkova.crawler.impl.SeenSetMode;
+import com.nedyalkova.crawler.impl.SubdomainPolicy;
 import com.nedyalkova.crawler.impl.WebCrawler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 public class CrawlerMain {
   private static final Logger log = LoggerFactory.getLogger(CrawlerMain.class);
@@ -19,18 +34,176 @@ public class CrawlerMain {
       return;
     }
 
-    if (args.length != 1) {
-      log.warn(
-          "Expected 1 command argument, but got {}, will pick the first one : {}",
-          args.length,
-          args[0]);
+    if (args[0].equals("coordinator")) {
+      runCoordinator(args);
+      return;
     }
     String seedUrl = args[0];
+    CrawlerConfig config;
+    try {
+      config = parseOptions(args);
+    } catch (IllegalArgumentException e) {
+      log.error("Invalid option: {}", e.getMessage());
+      return;
+    }
     log.debug("Crawling with seed domain: {}", seedUrl);
       try {
-          new WebCrawler(seedUrl).crawl();
+          WebCrawler crawler = new WebCrawler(seedUrl, config);
+          if (config.getStateDir() != null) {
+              Runtime.getRuntime().addShutdownHook(new Thread(crawler::checkpoint));
+          }
+          crawler.crawl();
       } catch (URISyntaxException | UrlInvalidException e) {
           log.error("Invalid host: {}", seedUrl);
+      } catch (UncheckedIOException e) {
+          log.error("Unable to restore crawl state: {}", e.getMessage());
+      } catch (IllegalArgumentException e) {
+          log.error("Invalid options: {}", e.getMessage());
+      }
+  }
+
+  // options follow the seed url as --name=value
+  static CrawlerConfig parseOptions(String[] args) {
+    // crawled urls go to standard out unless told otherwise
+    CrawlerConfig config = new CrawlerConfig().outputFile(Path.of("-"));
+    for (int i = 1; i < args.length; i++) {
+      String arg = args[i];
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        log.warn("Ignoring unexpected argument {}", arg);
+        continue;
+      }
+      String name = arg.substring(2, separator);
+      String value = arg.substring(separator + 1);
+      switch (name) {
+        case "concurrency" -> config.maxConcurrency(Integer.parseInt(value));
+        case "per-host" -> config.maxConcurrencyPerHost(Integer.parseInt(value));
+        case "seen-set" -> config.seenSetMode(SeenSetMode.valueOf(value.toUpperCase()));
+        case "expected-urls" -> config.expectedUrls(Long.parseLong(value));
+        case "state-dir" -> config.stateDir(Path.of(value));
+        case "validator-cache" -> config.validatorCacheDir(Path.of(value));
+        case "robots" -> config.respectRobotsTxt(Boolean.parseBoolean(value));
+        case "max-host-rate" -> config.maxHostRate(Double.parseDouble(value));
+        case "checkpoint-seconds" ->
+            config.checkpointInterval(Duration.ofSeconds(Long.parseLong(value)));
+        case "stats-seconds" -> config.statsInterval(Duration.ofSeconds(Long.parseLong(value)));
+        case "jmx" -> config.exportJmx(Boolean.parseBoolean(value));
+        case "output" -> config.outputFile(Path.of(value));
+        case "output-format" -> config.outputFormat(OutputFormat.valueOf(value.toUpperCase()));
+        case "output-gzip" -> config.outputGzip(Boolean.parseBoolean(value));
+        case "coordinator" -> config.coordinator(parseAddress(value));
+        case "node-id" -> config.nodeId(value);
+        case "node-address" -> config.nodeAddress(parseAddress(value));
+        case "cluster-size" -> config.clusterSize(Integer.parseInt(value));
+        case "priority" ->
+            config.urlScorer(ScoringMode.valueOf(value.toUpperCase().replace('-', '_')));
+        case "max-depth" -> config.maxDepth(Integer.parseInt(value));
+        case "max-pages" -> config.maxPages(Long.parseLong(value));
+        case "near-duplicates" -> config.nearDuplicateDistance(Integer.parseInt(value));
+        case "drop-parameters" -> {
+          QueryRules rules = queryRulesOf(config);
+          for (String parameter : value.split(",")) {
+            rules.dropParameter(parameter.trim());
+          }
+        }
+        case "sort-parameters" -> queryRulesOf(config).sortParameters(Boolean.parseBoolean(value));
+        case "detect-traps" -> config.detectTraps(Boolean.parseBoolean(value));
+        case "max-segment-repeats" -> config.maxSegmentRepeats(Integer.parseInt(value));
+        case "max-urls-per-pattern" -> config.maxUrlsPerPattern(Integer.parseInt(value));
+        case "max-parameter-values" -> config.maxParameterValues(Integer.parseInt(value));
+        case "max-body-bytes" -> config.maxBodyBytes(Long.parseLong(value));
+        case "head-non-html" -> config.headNonHtml(Boolean.parseBoolean(value));
+        case "sitemaps" -> config.loadSitemaps(Boolean.parseBoolean(value));
+        case "warc-dir" -> config.warcDir(Path.of(value));
+        case "warc-max-mb" -> config.warcMaxFileBytes(Long.parseLong(value) << 20);
+        case "replay" -> config.replayWarc(Path.of(value));
+        case "adaptive-timeouts" -> config.adaptiveTimeouts(Boolean.parseBoolean(value));
+        case "timeout-factor" -> config.timeoutFactor(Double.parseDouble(value));
+        case "min-timeout-ms" -> config.minTimeout(Duration.ofMillis(Long.parseLong(value)));
+        case "max-timeout-ms" -> config.maxTimeout(Duration.ofMillis(Long.parseLong(value)));
+        case "hedge" -> config.hedgeRequests(Boolean.parseBoolean(value));
+        case "retries" -> config.maxRetries(Integer.parseInt(value));
+        case "retry-budget" -> config.retryBudgetRatio(Double.parseDouble(value));
+        case "graph-dir" -> config.graphDir(Path.of(value));
+        case "link-cache" -> config.linkCacheEntries(Integer.parseInt(value));
+        case "seeds" -> config.seeds(List.of(value.split(",")));
+        case "seed-file" -> config.seeds(readSeedFile(Path.of(value)));
+        case "subdomains" -> config.subdomainPolicy(SubdomainPolicy.valueOf(value.toUpperCase()));
+        case "allow-domains" -> {
+          for (String domain : value.split(",")) {
+            config.allowDomain(domain.trim());
+          }
+        }
+        case "host-weights" -> {
+          for (String weight : value.split(",")) {
+            int colon = weight.lastIndexOf(':');
+            if (colon < 0) {
+              throw new IllegalArgumentException("Expected host:weight, got " + weight);
+            }
+            config.hostWeight(
+                weight.substring(0, colon).trim(), Integer.parseInt(weight.substring(colon + 1)));
+          }
+        }
+        case "max-seconds" -> config.maxDuration(Duration.ofSeconds(Long.parseLong(value)));
+        default -> log.warn("Ignoring unknown option {}", name);
+      }
+    }
+    return config;
+  }
+
+  // one url per line, blank lines and lines starting with # are skipped
+  private static List<String> readSeedFile(Path file) {
+    try {
+      return Files.readAllLines(file).stream()
+          .map(String::trim)
+          .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+          .toList();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read the seed file " + file, e);
+    }
+  }
+
+  private static QueryRules queryRulesOf(CrawlerConfig config) {
+    if (config.getQueryRules() == null) {
+      config.queryRules(new QueryRules());
+    }
+    return config.getQueryRules();
+  }
+
+  // serves cluster membership on localhost until the process is stopped
+  private static void runCoordinator(String[] args) {
+    int port = 0;
+    Duration expiry = Duration.ofSeconds(5);
+    for (int i = 1; i < args.length; i++) {
+      String arg = args[i];
+      int separator = arg.indexOf('=');
+      String name = separator < 0 ? arg : arg.substring(0, separator);
+      String value = arg.substring(separator + 1);
+      switch (name) {
+        case "--port" -> port = Integer.parseInt(value);
+        case "--expiry-seconds" -> expiry = Duration.ofSeconds(Long.parseLong(value));
+        default -> log.warn("Ignoring unexpected argument {}", arg);
       }
+    }
+    try (ClusterCoordinator coordinator =
+        new ClusterCoordinator(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), expiry)) {
+      log.info("Coordinator running on port {}", coordinator.getAddress().getPort());
+      Thread.currentThread().join();
+    } catch (IOException e) {
+      log.error("Unable to start the coordinator: {}", e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // host:port
+  static InetSocketAddress parseAddress(String value) {
+    int separator = value.lastIndexOf(':');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Expected host:port but got " + value);
+    }
+    return new InetSocketAddress(
+        value.substring(0, separator), Integer.parseInt(value.substring(separator + 1)));
   }
 }
@@ -0,0 +1,385 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// trims the long tail of fetches: each request's timeout comes from how fast its host and path
+// have answered lately, a GET still waiting after the usual p95 can be sent a second time with
+// the first answer used, and failures are retried after a jittered, growing delay, or after the
+// Retry-After of a 429 or 503. Hedges and retries draw on a RetryBudget per host, so one
+// struggling host neither gets a flood of extra requests nor uses up the others' budget. With a
+// PolitenessScheduler they also take the host's next slot, and a hedge one of its permits
+public class AdaptiveFetcher implements PageFetcher {
+  private static final Logger log = LoggerFactory.getLogger(AdaptiveFetcher.class);
+
+  private static final long BACKOFF_BASE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long BACKOFF_MAX_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final double HEDGE_PERCENTILE = 95;
+  private static final int MAX_BUDGETS = 10_000;
+
+  private final PageFetcher delegate;
+  private final LatencyTracker latencies;
+  private final double retryBudgetRatio;
+  private final boolean adaptiveTimeouts;
+  private final boolean hedge;
+  private final int maxRetries;
+  // null to send extra attempts without pacing
+  private final PolitenessScheduler politeness;
+  private final Map<String, RetryBudget> budgets =
+      new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RetryBudget> eldest) {
+          return size() > MAX_BUDGETS;
+        }
+      };
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgesWon = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final LongAdder budgetRefusals = new LongAdder();
+
+  public AdaptiveFetcher(
+      PageFetcher delegate,
+      LatencyTracker latencies,
+      double retryBudgetRatio,
+      boolean adaptiveTimeouts,
+      boolean hedge,
+      int maxRetries,
+      PolitenessScheduler politeness) {
+    this.delegate = delegate;
+    this.latencies = latencies;
+    this.retryBudgetRatio = retryBudgetRatio;
+    this.adaptiveTimeouts = adaptiveTimeouts;
+    this.hedge = hedge;
+    this.maxRetries = maxRetries;
+    this.politeness = politeness;
+  }
+
+  @Override
+  public CompletableFuture<FetchResponse> fetch(FetchRequest request) {
+    if (adaptiveTimeouts) {
+      request.timeout(latencies.timeoutFor(request.getUri()));
+    }
+    budgetFor(request.getUri()).onRequest();
+    return attempt(request, 0);
+  }
+
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  public long getHedges() {
+    return hedges.sum();
+  }
+
+  // hedged requests that answered before the original
+  public long getHedgesWon() {
+    return hedgesWon.sum();
+  }
+
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  // hedges and retries not made because the budget was spent
+  public long getBudgetRefusals() {
+    return budgetRefusals.sum();
+  }
+
+  // a host evicted from the budgets starts over with a fresh one
+  synchronized RetryBudget budgetFor(URI uri) {
+    return budgets.computeIfAbsent(uri.getHost(), host -> new RetryBudget(retryBudgetRatio));
+  }
+
+  @Override
+  public void close() {
+    log.info(
+        "Fetch tail control: {} timeouts, {} hedged requests ({} answered first), {} retries, "
+            + "{} refused by the retry budget",
+        getTimeouts(),
+        getHedges(),
+        getHedgesWon(),
+        getRetries(),
+        getBudgetRefusals());
+    delegate.close();
+  }
+
+  private CompletableFuture<FetchResponse> attempt(FetchRequest request, int attempt) {
+    long start = System.nanoTime();
+    CompletableFuture<FetchResponse> response =
+        hedge && request.getMethod().equals("GET") ? hedged(request) : timed(request);
+    if (attempt >= maxRetries) {
+      return response;
+    }
+    return response
+        .handle(
+            (fetched, failure) -> {
+              if (!isRetryable(fetched, failure)) {
+                return response;
+              }
+              Duration retryAfter = fetched == null ? null : HTMLFetcher.retryAfter(fetched);
+              if (retryAfter != null && retryAfter.toNanos() > BACKOFF_MAX_NANOS) {
+                // too long to hold a worker for; the answer makes the host's controller wait
+                return response;
+              }
+              if (!budgetFor(request.getUri()).tryAcquire()) {
+                budgetRefusals.increment();
+                return response;
+              }
+              // the caller only sees the last attempt, so the host's controller hears of this one
+              // here
+              if (politeness != null) {
+                politeness.onResult(
+                    request.getUri(),
+                    new PageResult(
+                        request.getUri().toString(),
+                        fetched == null ? PageResult.FAILED : fetched.getStatusCode(),
+                        Set.of(),
+                        System.nanoTime() - start,
+                        false,
+                        retryAfter));
+              }
+              if (fetched != null) {
+                closeQuietly(fetched);
+              }
+              retries.increment();
+              log.debug("Retrying {} after attempt {}", request.getUri(), attempt + 1);
+              long delay =
+                  Math.max(
+                      backoffNanos(attempt, ThreadLocalRandom.current().nextDouble()),
+                      retryAfter == null ? 0 : retryAfter.toNanos());
+              return pause(request.getUri(), delay)
+                  .thenCompose(ignored -> attempt(request, attempt + 1));
+            })
+        .thenCompose(Function.identity());
+  }
+
+  // waits delayNanos and then for the host's next slot, so a retry is paced like any request
+  private CompletableFuture<Void> pause(URI uri, long delayNanos) {
+    CompletableFuture<Void> paused = sleep(delayNanos);
+    if (politeness == null) {
+      return paused;
+    }
+    return paused.thenCompose(ignored -> sleep(politeness.reserve(uri)));
+  }
+
+  private static CompletableFuture<Void> sleep(long nanos) {
+    if (nanos <= 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.runAsync(
+        () -> {}, CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS));
+  }
+
+  // sends the request again once it has taken longer than p95, unless the host is not known yet.
+  // A hedge is only sent when the host has a free permit and slot right then, it is never waited
+  // for
+  private CompletableFuture<FetchResponse> hedged(FetchRequest request) {
+    URI uri = request.getUri();
+    long delay = latencies.percentile(uri, HEDGE_PERCENTILE);
+    CompletableFuture<FetchResponse> first = timed(request);
+    if (delay == 0) {
+      return first;
+    }
+    CompletableFuture<FetchResponse> result = new CompletableFuture<>();
+    AtomicInteger running = new AtomicInteger(1);
+    first.whenComplete((fetched, failure) -> settle(result, running, fetched, failure, false));
+    CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS)
+        .execute(
+            () -> {
+              if (result.isDone()) {
+                return;
+              }
+              Semaphore permit = politeness == null ? null : politeness.permitFor(uri.getHost());
+              if (permit != null && !permit.tryAcquire()) {
+                return;
+              }
+              if (permit != null && !politeness.tryReserve(uri)) {
+                permit.release();
+                return;
+              }
+              if (!budgetFor(uri).tryAcquire()) {
+                budgetRefusals.increment();
+                release(permit);
+                return;
+              }
+              running.incrementAndGet();
+              hedges.increment();
+              timed(request)
+                  .whenComplete(
+                      (fetched, failure) -> {
+                        release(permit);
+                        settle(result, running, fetched, failure, true);
+                      });
+            });
+    return result;
+  }
+
+  // the first response wins and a later one is closed unread; a failure only counts once every
+  // attempt has failed
+  private void settle(
+      CompletableFuture<FetchResponse> result,
+      AtomicInteger running,
+      FetchResponse fetched,
+      Throwable failure,
+      boolean hedged) {
+    int left = running.decrementAndGet();
+    synchronized (result) {
+      if (fetched != null && !result.isDone()) {
+        // counted before completing, so whoever waits on the result sees it
+        if (hedged) {
+          hedgesWon.increment();
+        }
+        result.complete(fetched);
+        return;
+      }
+    }
+    if (fetched != null) {
+      closeQuietly(fetched);
+    } else if (left == 0) {
+      result.completeExceptionally(unwrap(failure));
+    }
+  }
+
+  private CompletableFuture<FetchResponse> timed(FetchRequest request) {
+    long start = System.nanoTime();
+    return delegate
+        .fetch(request)
+        .handle(
+            (fetched, failure) -> {
+              if (fetched != null) {
+                // the sample is taken once the body is in, see TimedBody
+                return new FetchResponse(
+                    fetched.getUri(),
+                    fetched.getStatusCode(),
+                    fetched.getHeaders(),
+                    new TimedBody(fetched.getBody(), request.getUri(), start));
+              }
+              if (unwrap(failure) instanceof HttpTimeoutException) {
+                // a timeout is a sample too, or timeouts would never grow back
+                timeouts.increment();
+                latencies.record(request.getUri(), System.nanoTime() - start);
+              }
+              throw failure instanceof CompletionException
+                  ? (CompletionException) failure
+                  : new CompletionException(failure);
+            });
+  }
+
+  // connection failures, timeouts, gateway errors and being told to slow down may well go away
+  // on a second try
+  static boolean isRetryable(FetchResponse fetched, Throwable failure) {
+    if (fetched == null) {
+      return unwrap(failure) instanceof IOException;
+    }
+    int status = fetched.getStatusCode();
+    return status == 429 || status == 502 || status == 503 || status == 504;
+  }
+
+  // full jitter: anywhere between 0 and a cap that doubles with each attempt
+  static long backoffNanos(int attempt, double random) {
+    long cap = Math.min(BACKOFF_MAX_NANOS, BACKOFF_BASE_NANOS << Math.min(attempt, 20));
+    return (long) (cap * random);
+  }
+
+  private static void release(Semaphore permit) {
+    if (permit != null) {
+      permit.release();
+    }
+  }
+
+  private static void closeQuietly(FetchResponse response) {
+    try {
+      response.close();
+    } catch (IOException e) {
+      log.debug("Unable to discard the response from {}", response.getUri(), e);
+    }
+  }
+
+  // records how long the request took up to the end of its body, or up to its headers when the
+  // body is closed without being read through, as for a hedge that lost or a 404
+  private final class TimedBody extends FilterInputStream {
+    private final URI uri;
+    private final long start;
+    private final long headerNanos;
+    private boolean recorded;
+
+    TimedBody(InputStream in, URI uri, long start) {
+      super(in);
+      this.uri = uri;
+      this.start = start;
+      this.headerNanos = System.nanoTime() - start;
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return ended(super.read());
+      } catch (HttpTimeoutException e) {
+        timedOut();
+        throw e;
+      }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      try {
+        return ended(super.read(buffer, offset, length));
+      } catch (HttpTimeoutException e) {
+        timedOut();
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      record(headerNanos);
+      super.close();
+    }
+
+    private int ended(int read) {
+      if (read < 0) {
+        record(System.nanoTime() - start);
+      }
+      return read;
+    }
+
+    private void timedOut() {
+      if (!recorded) {
+        timeouts.increment();
+      }
+      record(System.nanoTime() - start);
+    }
+
+    private void record(long nanos) {
+      if (!recorded) {
+        recorded = true;
+        latencies.record(uri, nanos);
+      }
+    }
+  }
+
+  private static Throwable unwrap(Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause()
+        : failure;
+  }
+}
@@ -0,0 +1,148 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+// hands records to a single writer thread through a bounded buffer; when the buffer is full the
+// crawl threads wait for the writer instead of queueing without limit
+public class AsyncCrawlSink implements CrawlSink {
+  private static final Logger log = LoggerFactory.getLogger(AsyncCrawlSink.class);
+
+  static final int DEFAULT_CAPACITY = 4096;
+  private static final int MAX_BATCH = 256;
+  private static final CrawlRecord END = new CrawlRecord(null, 0, 0, 0, 0, 0, 0, List.of());
+
+  private final RecordWriter writer;
+  private final BlockingQueue<CrawlRecord> buffer;
+  private final Thread writerThread;
+  private final LongAdder backpressureWaits = new LongAdder();
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  public AsyncCrawlSink(RecordWriter writer, int capacity) {
+    this.writer = writer;
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    this.writerThread = new Thread(this::drain, "crawler-output");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  public static AsyncCrawlSink toFile(Path file, OutputFormat format, boolean gzip, int capacity)
+      throws IOException {
+    OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+    if (gzip) {
+      out = new GZIPOutputStream(out, 64 * 1024);
+    }
+    return new AsyncCrawlSink(format.newWriter(out), capacity);
+  }
+
+  // closing the sink flushes standard out but leaves it open
+  public static AsyncCrawlSink toStdout(OutputFormat format, int capacity) {
+    OutputStream out =
+        new FilterOutputStream(System.out) {
+          @Override
+          public void write(byte[] bytes, int offset, int length) throws IOException {
+            this.out.write(bytes, offset, length);
+          }
+
+          @Override
+          public void close() throws IOException {
+            flush();
+          }
+        };
+    return new AsyncCrawlSink(format.newWriter(out), capacity);
+  }
+
+  @Override
+  public void accept(CrawlRecord record) throws InterruptedException {
+    if (closed) {
+      log.debug("Output already closed, dropping {}", record.getUrl());
+      return;
+    }
+    if (!buffer.offer(record)) {
+      backpressureWaits.increment();
+      buffer.put(record);
+    }
+  }
+
+  // how often a crawl thread had to wait for the writer
+  public long getBackpressureWaits() {
+    return backpressureWaits.sum();
+  }
+
+  // writes out everything accepted so far; rethrows the first write failure
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      buffer.put(END);
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      writerThread.interrupt();
+    }
+    try {
+      writer.close();
+    } catch (IOException e) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+    log.debug("Output closed, crawl threads waited for it {} times", getBackpressureWaits());
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void drain() {
+    List<CrawlRecord> batch = new ArrayList<>(MAX_BATCH);
+    try {
+      while (true) {
+        batch.add(buffer.take());
+        buffer.drainTo(batch, MAX_BATCH - 1);
+        boolean end = write(batch);
+        batch.clear();
+        if (end) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      log.warn("Output writer interrupted with {} records unwritten", buffer.size());
+    }
+  }
+
+  // after a failure records are still taken off the buffer, so the crawl never blocks on it
+  private boolean write(List<CrawlRecord> batch) {
+    boolean end = batch.contains(END);
+    try {
+      for (CrawlRecord record : batch) {
+        if (record != END && failure == null) {
+          writer.write(record);
+        }
+      }
+      if (failure == null) {
+        writer.flush();
+      }
+    } catch (IOException e) {
+      log.error("Unable to write crawl output, further records are dropped", e);
+      failure = e;
+    }
+    return end;
+  }
+}
@@ -0,0 +1,104 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// bloom filter over url fingerprints, sized up front from the expected url count
+public class BloomSeenSet implements SeenSet {
+
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashCount;
+  private final AtomicLong size = new AtomicLong();
+
+  private BloomSeenSet(int words, int hashCount) {
+    this.bits = new AtomicLongArray(words);
+    this.bitCount = (long) words * 64;
+    this.hashCount = hashCount;
+  }
+
+  public BloomSeenSet(long expectedSize, double falsePositiveRate) {
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+    }
+    long expected = Math.max(1, expectedSize);
+    double ln2 = Math.log(2);
+    long optimalBits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (ln2 * ln2));
+    int words = (int) Math.min(Integer.MAX_VALUE - 8, (Math.max(64, optimalBits) + 63) / 64);
+    this.bits = new AtomicLongArray(words);
+    this.bitCount = (long) words * 64;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * ln2));
+  }
+
+  @Override
+  public boolean add(long fingerprint) {
+    boolean changed = false;
+    long second = secondHash(fingerprint);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(fingerprint + i * second, bitCount);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current = bits.get(word);
+      while ((current & mask) == 0) {
+        if (bits.compareAndSet(word, current, current | mask)) {
+          changed = true;
+          break;
+        }
+        current = bits.get(word);
+      }
+    }
+    if (changed) {
+      size.incrementAndGet();
+    }
+    return changed;
+  }
+
+  @Override
+  public boolean contains(long fingerprint) {
+    long second = secondHash(fingerprint);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(fingerprint + i * second, bitCount);
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // number of urls that were reported as new, not an exact count of distinct urls
+  @Override
+  public long size() {
+    return size.get();
+  }
+
+  @Override
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(bits.length());
+    out.writeInt(hashCount);
+    out.writeLong(size.get());
+    for (int i = 0; i < bits.length(); i++) {
+      out.writeLong(bits.get(i));
+    }
+  }
+
+  public static BloomSeenSet readFrom(DataInput in) throws IOException {
+    BloomSeenSet seen = new BloomSeenSet(in.readInt(), in.readInt());
+    seen.size.set(in.readLong());
+    for (int i = 0; i < seen.bits.length(); i++) {
+      seen.bits.set(i, in.readLong());
+    }
+    return seen;
+  }
+
+  private static long secondHash(long fingerprint) {
+    long h = fingerprint ^ (fingerprint >>> 33);
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 29;
+    // odd so the probe sequence never collapses onto a single bit
+    return h | 1;
+  }
+}
@@ -0,0 +1,73 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// ends the stream after a number of bytes and remembers whether there was more to read
+class BoundedInputStream extends FilterInputStream {
+
+  private long remaining;
+  private boolean truncated;
+
+  BoundedInputStream(InputStream in, long maxBytes) {
+    super(in);
+    this.remaining = maxBytes;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (remaining == 0) {
+      return endOfLimit();
+    }
+    int b = super.read();
+    if (b >= 0) {
+      remaining--;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (remaining == 0) {
+      return endOfLimit();
+    }
+    int count = super.read(buffer, offset, (int) Math.min(length, remaining));
+    if (count > 0) {
+      remaining -= count;
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(Math.min(n, remaining));
+    remaining -= skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(super.available(), remaining);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  boolean isTruncated() {
+    return truncated;
+  }
+
+  // one byte past the limit tells a body of exactly the limit from a longer one
+  private int endOfLimit() throws IOException {
+    if (!truncated && super.read() >= 0) {
+      truncated = true;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,60 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+
+// canonical form of an absolute url together with its fingerprint, so neither is recomputed
+public final class CanonicalUrl {
+  private final String key;
+  private final long hash;
+  private final int schemeLength;
+
+  CanonicalUrl(String key, long hash, int schemeLength) {
+    this.key = key;
+    this.hash = hash;
+    this.schemeLength = schemeLength;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  // same value as URLUtils.fingerprint(toUri())
+  public long getHash() {
+    return hash;
+  }
+
+  public String getScheme() {
+    return key.substring(0, schemeLength);
+  }
+
+  public boolean isHttp() {
+    return (schemeLength == 4 && key.startsWith("http"))
+        || (schemeLength == 5 && key.startsWith("https"));
+  }
+
+  public URI toUri() {
+    return URI.create(key);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CanonicalUrl)) {
+      return false;
+    }
+    CanonicalUrl other = (CanonicalUrl) o;
+    return hash == other.hash && key.equals(other.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(hash);
+  }
+
+  @Override
+  public String toString() {
+    return key;
+  }
+}
@@ -0,0 +1,173 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// keeps cluster membership from node heartbeats and decides when the whole crawl is done; nodes
+// that stop sending heartbeats are dropped so their shard moves to the remaining ones
+public class ClusterCoordinator implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+  static final byte HEARTBEAT = 1;
+  static final byte LEAVE = 2;
+  private static final int SOCKET_TIMEOUT_MS = 5000;
+
+  private final ServerSocket server;
+  private final long expiryNanos;
+  private final Thread acceptor;
+
+  private final Map<String, Member> members = new LinkedHashMap<>();
+  private long epoch;
+  // termination is only reported once every member has confirmed the same quiet state
+  private long candidateEpoch = -1;
+  private long candidateDelivered = -1;
+  private final Set<String> confirmedBy = new HashSet<>();
+
+  public ClusterCoordinator(InetSocketAddress bindAddress, Duration expiry) throws IOException {
+    this.server = new ServerSocket();
+    server.bind(bindAddress);
+    this.expiryNanos = expiry.toNanos();
+    this.acceptor = new Thread(this::serve, "cluster-coordinator");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Cluster coordinator listening on {}", getAddress());
+  }
+
+  public InetSocketAddress getAddress() {
+    return (InetSocketAddress) server.getLocalSocketAddress();
+  }
+
+  public synchronized ClusterView currentView() {
+    return view(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+  }
+
+  private void serve() {
+    while (!server.isClosed()) {
+      try (Socket socket = server.accept()) {
+        socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+        handle(socket);
+      } catch (SocketException e) {
+        if (!server.isClosed()) {
+          log.warn("Coordinator connection failed", e);
+        }
+      } catch (IOException e) {
+        log.warn("Coordinator request failed", e);
+      }
+    }
+  }
+
+  // requests are a few hundred bytes, so one at a time is plenty
+  private void handle(Socket socket) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    byte type = in.readByte();
+    if (type == HEARTBEAT) {
+      onHeartbeat(Heartbeat.readFrom(in), System.nanoTime()).writeTo(out);
+    } else if (type == LEAVE) {
+      onLeave(in.readUTF());
+    } else {
+      throw new IOException("Unknown coordinator request " + type);
+    }
+    out.flush();
+  }
+
+  synchronized ClusterView onHeartbeat(Heartbeat heartbeat, long now) {
+    expireMembers(now);
+    Member previous = members.put(heartbeat.getNodeId(), new Member(heartbeat, now));
+    if (previous == null || !previous.heartbeat.getAddress().equals(heartbeat.getAddress())) {
+      epoch++;
+      log.info("Node {} joined at {}", heartbeat.getNodeId(), heartbeat.getAddress());
+    }
+    return view(checkFinished(heartbeat.getNodeId()));
+  }
+
+  synchronized void onLeave(String nodeId) {
+    if (members.remove(nodeId) != null) {
+      epoch++;
+      log.info("Node {} left", nodeId);
+    }
+  }
+
+  private void expireMembers(long now) {
+    if (members.values().removeIf(member -> now - member.lastSeen > expiryNanos)) {
+      epoch++;
+      log.warn("Dropped unresponsive nodes, {} remain", members.size());
+    }
+  }
+
+  private boolean checkFinished(String reportingNode) {
+    long delivered = quietDelivered();
+    if (delivered < 0) {
+      candidateEpoch = -1;
+      confirmedBy.clear();
+      return false;
+    }
+    if (candidateEpoch != epoch || candidateDelivered != delivered) {
+      candidateEpoch = epoch;
+      candidateDelivered = delivered;
+      confirmedBy.clear();
+    }
+    confirmedBy.add(reportingNode);
+    return confirmedBy.containsAll(members.keySet());
+  }
+
+  // sum of the batch numbers exchanged between live nodes when all are idle and every batch one
+  // reports as acknowledged the other reports as taken in, otherwise -1; the numbers only grow, so
+  // an unchanged sum means no links moved in between
+  private long quietDelivered() {
+    long delivered = 0;
+    for (Member sender : members.values()) {
+      if (!sender.heartbeat.isIdle()) {
+        return -1;
+      }
+      for (Member receiver : members.values()) {
+        String senderId = sender.heartbeat.getNodeId();
+        String receiverId = receiver.heartbeat.getNodeId();
+        long sent = sender.heartbeat.sentTo(receiverId);
+        if (sent != receiver.heartbeat.receivedFrom(senderId)) {
+          return -1;
+        }
+        delivered += sent;
+      }
+    }
+    return delivered;
+  }
+
+  private ClusterView view(boolean finished) {
+    Map<String, InetSocketAddress> addresses = new LinkedHashMap<>();
+    members.forEach((nodeId, member) -> addresses.put(nodeId, member.heartbeat.getAddress()));
+    return new ClusterView(epoch, finished, addresses);
+  }
+
+  private static final class Member {
+    private final Heartbeat heartbeat;
+    private final long lastSeen;
+
+    Member(Heartbeat heartbeat, long lastSeen) {
+      this.heartbeat = heartbeat;
+      this.lastSeen = lastSeen;
+    }
+  }
+}
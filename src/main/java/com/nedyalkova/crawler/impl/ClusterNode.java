@@ -0,0 +1,422 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// one crawler's part in a cluster: heartbeats to the coordinator, owns its share of the hash ring
+// and trades links that belong to other shards with their owners in acknowledged batches
+class ClusterNode implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(ClusterNode.class);
+
+  static final byte HELLO = 1;
+  static final byte BATCH = 2;
+  private static final int MAX_BATCH = 1024;
+  private static final long FLUSH_INTERVAL_MS = 20;
+  private static final int SOCKET_TIMEOUT_MS = 10_000;
+
+  private final String nodeId;
+  private final InetSocketAddress coordinator;
+  private final long heartbeatIntervalMs;
+  private final ServerSocket linkServer;
+  private final Consumer<List<FrontierEntry>> onLinks;
+  private final BooleanSupplier locallyIdle;
+
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService receivers;
+  private volatile ClusterView view;
+  private volatile HashRing ring;
+
+  // links waiting to be sent, by owner; guarded by this
+  private Map<String, List<FrontierEntry>> pending = new HashMap<>();
+  private int sending;
+
+  // batches are numbered per receiver; the coordinator compares the last number each sender had
+  // acknowledged with the last one each receiver took in, so resends never skew the comparison
+  private final long session = new SecureRandom().nextLong();
+  private final Map<String, Peer> peers = new HashMap<>();
+  private final Map<String, Long> lastSequenceTo = new HashMap<>();
+  private final Map<String, AtomicLong> sentTo = new ConcurrentHashMap<>();
+  private final Map<String, Received> receivedFrom = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  ClusterNode(
+      CrawlerConfig config, Consumer<List<FrontierEntry>> onLinks, BooleanSupplier locallyIdle)
+      throws IOException {
+    this.nodeId = config.getNodeId();
+    this.coordinator = config.getCoordinator();
+    this.heartbeatIntervalMs = config.getHeartbeatInterval().toMillis();
+    this.onLinks = onLinks;
+    this.locallyIdle = locallyIdle;
+    this.linkServer = new ServerSocket();
+    linkServer.bind(config.getNodeAddress());
+    this.scheduler =
+        Executors.newScheduledThreadPool(
+            2,
+            runnable -> {
+              Thread thread = new Thread(runnable, "cluster-" + nodeId);
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.receivers =
+        Executors.newCachedThreadPool(
+            runnable -> {
+              Thread thread = new Thread(runnable, "cluster-receiver-" + nodeId);
+              thread.setDaemon(true);
+              return thread;
+            });
+    receivers.execute(this::acceptPeers);
+    // the first view has to be there before any url can be routed
+    updateView(heartbeat());
+    scheduler.scheduleWithFixedDelay(
+        this::safeHeartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    scheduler.scheduleWithFixedDelay(
+        this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    log.info("Node {} joined the cluster with {} members", nodeId, view.getMembers().size());
+  }
+
+  String getNodeId() {
+    return nodeId;
+  }
+
+  ClusterView getView() {
+    return view;
+  }
+
+  void awaitMembers(int count) throws InterruptedException {
+    while (view.getMembers().size() < count) {
+      Thread.sleep(heartbeatIntervalMs);
+    }
+  }
+
+  boolean owns(long fingerprint) {
+    return nodeId.equals(ring.ownerOf(fingerprint));
+  }
+
+  void route(long fingerprint, FrontierEntry link) {
+    String owner = ring.ownerOf(fingerprint);
+    synchronized (this) {
+      pending.computeIfAbsent(owner, id -> new ArrayList<>()).add(link);
+    }
+  }
+
+  // the local crawl is checked first: it only becomes idle after routing everything it found
+  boolean isIdle() {
+    if (!locallyIdle.getAsBoolean()) {
+      return false;
+    }
+    synchronized (this) {
+      return pending.isEmpty() && sending == 0;
+    }
+  }
+
+  boolean isFinished() {
+    return view.isFinished();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    scheduler.shutdownNow();
+    try {
+      sendToCoordinator(ClusterCoordinator.LEAVE, out -> out.writeUTF(nodeId));
+    } catch (IOException e) {
+      log.warn("Unable to tell the coordinator that {} is leaving", nodeId, e);
+    }
+    try {
+      linkServer.close();
+    } catch (IOException e) {
+      log.warn("Unable to close the link server of {}", nodeId, e);
+    }
+    receivers.shutdownNow();
+    synchronized (peers) {
+      peers.values().forEach(Peer::close);
+      peers.clear();
+    }
+  }
+
+  // sends every pending batch; a batch whose delivery fails is routed again on the next flush,
+  // by which time a dead owner will have been replaced on the ring
+  void flush() {
+    Map<String, List<FrontierEntry>> batches;
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      batches = pending;
+      pending = new HashMap<>();
+      sending++;
+    }
+    try {
+      for (Map.Entry<String, List<FrontierEntry>> batch : batches.entrySet()) {
+        deliver(batch.getKey(), batch.getValue());
+      }
+    } finally {
+      synchronized (this) {
+        sending--;
+      }
+    }
+  }
+
+  private void deliver(String owner, List<FrontierEntry> links) {
+    if (!view.getMembers().containsKey(owner)) {
+      reroute(links);
+      return;
+    }
+    if (owner.equals(nodeId)) {
+      onLinks.accept(links);
+      return;
+    }
+    try {
+      synchronized (peers) {
+        Peer peer = peers.get(owner);
+        if (peer == null) {
+          peer = new Peer(view.getMembers().get(owner));
+          peers.put(owner, peer);
+        }
+        for (int from = 0; from < links.size(); from += MAX_BATCH) {
+          long sequence = lastSequenceTo.merge(owner, 1L, Long::sum);
+          peer.send(sequence, links.subList(from, Math.min(links.size(), from + MAX_BATCH)));
+          sentTo.computeIfAbsent(owner, id -> new AtomicLong()).set(sequence);
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Unable to send {} links to {}, will retry", links.size(), owner, e);
+      synchronized (peers) {
+        Peer failed = peers.remove(owner);
+        if (failed != null) {
+          failed.close();
+        }
+      }
+      // partly delivered batches are sent again; the owner's seen set drops the repeats
+      reroute(links);
+    }
+  }
+
+  private void reroute(List<FrontierEntry> links) {
+    for (FrontierEntry link : links) {
+      route(link.getFingerprint(), link);
+    }
+  }
+
+  private void acceptPeers() {
+    while (!linkServer.isClosed()) {
+      try {
+        Socket socket = linkServer.accept();
+        receivers.execute(() -> receive(socket));
+      } catch (SocketException e) {
+        if (!linkServer.isClosed()) {
+          log.warn("Link server of {} failed", nodeId, e);
+        }
+      } catch (IOException e) {
+        log.warn("Unable to accept a peer connection", e);
+      }
+    }
+  }
+
+  private void receive(Socket socket) {
+    try (socket) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      if (in.readByte() != HELLO) {
+        throw new IOException("Expected a hello from the peer");
+      }
+      String sender = in.readUTF();
+      long senderSession = in.readLong();
+      Received received =
+          receivedFrom.compute(
+              sender,
+              (id, known) ->
+                  known == null || known.session != senderSession
+                      ? new Received(senderSession)
+                      : known);
+      while (true) {
+        byte type;
+        try {
+          type = in.readByte();
+        } catch (EOFException e) {
+          return;
+        }
+        if (type != BATCH) {
+          throw new IOException("Unexpected message " + type + " from " + sender);
+        }
+        long sequence = in.readLong();
+        int count = in.readInt();
+        List<FrontierEntry> links = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          URI uri = URI.create(DataStrings.read(in));
+          links.add(new FrontierEntry(uri, in.readInt(), in.readDouble()));
+        }
+        // a batch is resent when its ack is lost, it must only be taken in once
+        if (sequence > received.lastSequence) {
+          onLinks.accept(links);
+          received.lastSequence = sequence;
+        }
+        out.writeLong(sequence);
+        out.flush();
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      if (!closed) {
+        log.warn("Link connection to {} failed", nodeId, e);
+      }
+    }
+  }
+
+  private void safeHeartbeat() {
+    try {
+      updateView(heartbeat());
+    } catch (IOException e) {
+      log.warn("Unable to reach the coordinator at {}", coordinator, e);
+    }
+  }
+
+  private ClusterView heartbeat() throws IOException {
+    // counts are taken before idleness: links that move in between make the node busy or the
+    // counts disagree, either way the coordinator does not call the crawl finished
+    Map<String, Long> sent = sentSnapshot();
+    Map<String, Long> received = receivedSnapshot();
+    Heartbeat heartbeat =
+        new Heartbeat(
+            nodeId,
+            (InetSocketAddress) linkServer.getLocalSocketAddress(),
+            isIdle(),
+            sent,
+            received);
+    ClusterView[] reply = new ClusterView[1];
+    sendToCoordinator(
+        ClusterCoordinator.HEARTBEAT,
+        heartbeat::writeTo,
+        in -> reply[0] = ClusterView.readFrom(in));
+    return reply[0];
+  }
+
+  private void updateView(ClusterView latest) {
+    ClusterView current = view;
+    if (current == null || current.getEpoch() != latest.getEpoch()) {
+      ring = new HashRing(latest.getNodeIds());
+      if (current != null) {
+        log.info("Cluster changed, members are now {}", latest.getNodeIds());
+      }
+    }
+    view = latest;
+  }
+
+  private void sendToCoordinator(byte type, RequestWriter request) throws IOException {
+    sendToCoordinator(type, request, in -> {});
+  }
+
+  private void sendToCoordinator(byte type, RequestWriter request, ReplyReader reply)
+      throws IOException {
+    try (Socket socket = new Socket()) {
+      socket.connect(coordinator, SOCKET_TIMEOUT_MS);
+      socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeByte(type);
+      request.write(out);
+      out.flush();
+      reply.read(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+    }
+  }
+
+  private Map<String, Long> sentSnapshot() {
+    Map<String, Long> snapshot = new HashMap<>();
+    sentTo.forEach((peer, sequence) -> snapshot.put(peer, sequence.get()));
+    return snapshot;
+  }
+
+  private Map<String, Long> receivedSnapshot() {
+    Map<String, Long> snapshot = new HashMap<>();
+    receivedFrom.forEach((peer, received) -> snapshot.put(peer, received.lastSequence));
+    return snapshot;
+  }
+
+  private interface RequestWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private interface ReplyReader {
+    void read(DataInputStream in) throws IOException;
+  }
+
+  private static final class Received {
+    private final long session;
+    private volatile long lastSequence;
+
+    Received(long session) {
+      this.session = session;
+    }
+  }
+
+  // one connection per peer, batches are sent one at a time and each waits for its ack
+  private final class Peer {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    Peer(InetSocketAddress address) throws IOException {
+      this.socket = new Socket();
+      socket.connect(
+          new InetSocketAddress(address.getHostString(), address.getPort()), SOCKET_TIMEOUT_MS);
+      socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeByte(HELLO);
+      out.writeUTF(nodeId);
+      out.writeLong(session);
+    }
+
+    void send(long sequence, List<FrontierEntry> links) throws IOException {
+      out.writeByte(BATCH);
+      out.writeLong(sequence);
+      out.writeInt(links.size());
+      for (FrontierEntry link : links) {
+        DataStrings.write(out, link.getUri().toString());
+        out.writeInt(link.getDepth());
+        out.writeDouble(link.getImportance());
+      }
+      out.flush();
+      long acked = in.readLong();
+      if (acked != sequence) {
+        throw new IOException("Expected ack " + sequence + " but got " + acked);
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        log.debug("Unable to close a peer connection", e);
+      }
+    }
+  }
+}
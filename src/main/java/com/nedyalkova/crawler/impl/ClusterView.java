@@ -0,0 +1,65 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// membership as the coordinator last reported it; epoch changes whenever a node joins or leaves
+public class ClusterView {
+
+  private final long epoch;
+  private final boolean finished;
+  private final Map<String, InetSocketAddress> members;
+
+  ClusterView(long epoch, boolean finished, Map<String, InetSocketAddress> members) {
+    this.epoch = epoch;
+    this.finished = finished;
+    this.members = Collections.unmodifiableMap(new LinkedHashMap<>(members));
+  }
+
+  public long getEpoch() {
+    return epoch;
+  }
+
+  // every node is idle and every batch of links sent has been received
+  public boolean isFinished() {
+    return finished;
+  }
+
+  public Map<String, InetSocketAddress> getMembers() {
+    return members;
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeLong(epoch);
+    out.writeBoolean(finished);
+    out.writeInt(members.size());
+    for (Map.Entry<String, InetSocketAddress> member : members.entrySet()) {
+      out.writeUTF(member.getKey());
+      out.writeUTF(member.getValue().getHostString());
+      out.writeInt(member.getValue().getPort());
+    }
+  }
+
+  static ClusterView readFrom(DataInput in) throws IOException {
+    long epoch = in.readLong();
+    boolean finished = in.readBoolean();
+    int count = in.readInt();
+    Map<String, InetSocketAddress> members = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      String nodeId = in.readUTF();
+      members.put(nodeId, InetSocketAddress.createUnresolved(in.readUTF(), in.readInt()));
+    }
+    return new ClusterView(epoch, finished, members);
+  }
+
+  List<String> getNodeIds() {
+    return new ArrayList<>(members.keySet());
+  }
+}
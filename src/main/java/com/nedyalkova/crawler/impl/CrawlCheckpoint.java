@@ -0,0 +1,95 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// seen set, frontier position and in-flight entries, written together so they always agree
+public class CrawlCheckpoint {
+
+  static final String FILE_NAME = "checkpoint.bin";
+  private static final int MAGIC = 0x57434B50;
+  private static final int VERSION = 3;
+
+  private final DiskBackedFrontier.Position frontierPosition;
+  private final List<FrontierEntry> inFlight;
+  private final SeenSet seen;
+
+  public CrawlCheckpoint(
+      DiskBackedFrontier.Position frontierPosition,
+      Collection<FrontierEntry> inFlight,
+      SeenSet seen) {
+    this.frontierPosition = frontierPosition;
+    this.inFlight = new ArrayList<>(inFlight);
+    this.seen = seen;
+  }
+
+  public DiskBackedFrontier.Position getFrontierPosition() {
+    return frontierPosition;
+  }
+
+  public List<FrontierEntry> getInFlight() {
+    return inFlight;
+  }
+
+  public SeenSet getSeen() {
+    return seen;
+  }
+
+  public void save(Path directory) throws IOException {
+    Path target = directory.resolve(FILE_NAME);
+    Path temp = directory.resolve(FILE_NAME + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      frontierPosition.writeTo(out);
+      out.writeInt(inFlight.size());
+      for (FrontierEntry entry : inFlight) {
+        DataStrings.write(out, entry.getUri().toString());
+        out.writeInt(entry.getDepth());
+        out.writeDouble(entry.getImportance());
+        out.writeLong(entry.getLastModified());
+      }
+      out.writeByte(seen instanceof BloomSeenSet ? 'B' : 'E');
+      seen.writeTo(out);
+    }
+    Files.move(
+        temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // returns null when the directory holds no checkpoint yet
+  public static CrawlCheckpoint load(Path directory, long expectedUrls) throws IOException {
+    Path source = directory.resolve(FILE_NAME);
+    if (!Files.exists(source)) {
+      return null;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unrecognised checkpoint file " + source);
+      }
+      DiskBackedFrontier.Position position = DiskBackedFrontier.Position.readFrom(in);
+      int inFlightCount = in.readInt();
+      List<FrontierEntry> inFlight = new ArrayList<>(inFlightCount);
+      for (int i = 0; i < inFlightCount; i++) {
+        URI uri = URI.create(DataStrings.read(in));
+        inFlight.add(new FrontierEntry(uri, in.readInt(), in.readDouble(), in.readLong()));
+      }
+      SeenSet seen =
+          in.readByte() == 'B'
+              ? BloomSeenSet.readFrom(in)
+              : LongHashSeenSet.readFrom(in, expectedUrls);
+      return new CrawlCheckpoint(position, inFlight, seen);
+    }
+  }
+}
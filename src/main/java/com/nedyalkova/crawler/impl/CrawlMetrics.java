@@ -0,0 +1,301 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// counters per outcome, latency histograms per stage and gauges over the crawl state
+public class CrawlMetrics implements CrawlMetricsMBean {
+  private static final Logger log = LoggerFactory.getLogger(CrawlMetrics.class);
+
+  private static final AtomicInteger instances = new AtomicInteger();
+
+  public enum Outcome {
+    FETCHED,
+    NOT_MODIFIED,
+    NON_200,
+    IO_ERROR,
+    INVALID,
+    DUPLICATE,
+    DISALLOWED,
+    // links beyond the maximum depth, not followed
+    TOO_DEEP,
+    // pages whose text nearly matched an earlier page, their links were not extracted
+    NEAR_DUPLICATE,
+    // links that looked like a crawler trap, not queued
+    TRAP,
+    // responses that were not html, their bodies were not downloaded
+    NOT_HTML,
+    // pages larger than the body limit, only their start was read
+    TRUNCATED
+  }
+
+  public enum Stage {
+    // request sent until the response headers arrive
+    FETCH,
+    // reading and tokenizing the body, without the time spent on the links found in it
+    PARSE,
+    // resolving and canonicalising the hrefs of one page
+    EXTRACT,
+    // validating, deduplicating and queueing the links of one page
+    ENQUEUE
+  }
+
+  private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+  private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+  private final LongAdder bytesDownloaded = new LongAdder();
+  private final LongSupplier frontierDepth;
+  private final LongSupplier seenUrls;
+  private ObjectName objectName;
+  // null unless links are cached
+  private volatile LinkCache linkCache;
+
+  public CrawlMetrics(LongSupplier frontierDepth, LongSupplier seenUrls) {
+    this.frontierDepth = frontierDepth;
+    this.seenUrls = seenUrls;
+    for (Outcome outcome : Outcome.values()) {
+      outcomes.put(outcome, new LongAdder());
+    }
+    for (Stage stage : Stage.values()) {
+      latencies.put(stage, new LatencyHistogram());
+    }
+  }
+
+  public void record(Outcome outcome) {
+    outcomes.get(outcome).increment();
+  }
+
+  public void recordLatency(Stage stage, long nanos) {
+    latencies.get(stage).record(nanos);
+  }
+
+  // reports the cache's hit rate and size alongside the other metrics; null for none
+  public void trackLinkCache(LinkCache linkCache) {
+    this.linkCache = linkCache;
+  }
+
+  public void addBytesDownloaded(long bytes) {
+    bytesDownloaded.add(bytes);
+  }
+
+  public long count(Outcome outcome) {
+    return outcomes.get(outcome).sum();
+  }
+
+  public LatencyHistogram latency(Stage stage) {
+    return latencies.get(stage);
+  }
+
+  // registration failures are logged, the crawl does not depend on JMX
+  public synchronized void registerMBean(String name) {
+    if (objectName != null) {
+      return;
+    }
+    try {
+      ObjectName candidate =
+          new ObjectName(
+              "com.nedyalkova.crawler:type=CrawlMetrics,name="
+                  + ObjectName.quote(name)
+                  + ",id="
+                  + instances.incrementAndGet());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+      objectName = candidate;
+      log.debug("Registered crawl metrics as {}", objectName);
+    } catch (JMException e) {
+      log.warn("Unable to register crawl metrics over JMX", e);
+    }
+  }
+
+  public synchronized void unregisterMBean() {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.unregisterMBean(objectName);
+    } catch (JMException e) {
+      log.warn("Unable to unregister {}", objectName, e);
+    }
+    objectName = null;
+  }
+
+  synchronized ObjectName getObjectName() {
+    return objectName;
+  }
+
+  @Override
+  public long getPagesFetched() {
+    return count(Outcome.FETCHED);
+  }
+
+  @Override
+  public long getPagesNotModified() {
+    return count(Outcome.NOT_MODIFIED);
+  }
+
+  @Override
+  public long getNon200Responses() {
+    return count(Outcome.NON_200);
+  }
+
+  @Override
+  public long getIoErrors() {
+    return count(Outcome.IO_ERROR);
+  }
+
+  @Override
+  public long getInvalidLinks() {
+    return count(Outcome.INVALID);
+  }
+
+  @Override
+  public long getDuplicateLinks() {
+    return count(Outcome.DUPLICATE);
+  }
+
+  @Override
+  public long getDisallowedByRobots() {
+    return count(Outcome.DISALLOWED);
+  }
+
+  @Override
+  public long getLinksTooDeep() {
+    return count(Outcome.TOO_DEEP);
+  }
+
+  @Override
+  public long getNearDuplicatePages() {
+    return count(Outcome.NEAR_DUPLICATE);
+  }
+
+  @Override
+  public long getLinksInTraps() {
+    return count(Outcome.TRAP);
+  }
+
+  @Override
+  public long getNonHtmlResponses() {
+    return count(Outcome.NOT_HTML);
+  }
+
+  @Override
+  public long getTruncatedPages() {
+    return count(Outcome.TRUNCATED);
+  }
+
+  @Override
+  public long getBytesDownloaded() {
+    return bytesDownloaded.sum();
+  }
+
+  @Override
+  public long getFrontierDepth() {
+    return frontierDepth.getAsLong();
+  }
+
+  @Override
+  public long getSeenUrls() {
+    return seenUrls.getAsLong();
+  }
+
+  @Override
+  public double getFetchP50Millis() {
+    return millisAt(Stage.FETCH, 50);
+  }
+
+  @Override
+  public double getFetchP99Millis() {
+    return millisAt(Stage.FETCH, 99);
+  }
+
+  @Override
+  public double getParseP50Millis() {
+    return millisAt(Stage.PARSE, 50);
+  }
+
+  @Override
+  public double getParseP99Millis() {
+    return millisAt(Stage.PARSE, 99);
+  }
+
+  @Override
+  public double getExtractP50Millis() {
+    return millisAt(Stage.EXTRACT, 50);
+  }
+
+  @Override
+  public double getExtractP99Millis() {
+    return millisAt(Stage.EXTRACT, 99);
+  }
+
+  @Override
+  public double getEnqueueP50Millis() {
+    return millisAt(Stage.ENQUEUE, 50);
+  }
+
+  @Override
+  public double getEnqueueP99Millis() {
+    return millisAt(Stage.ENQUEUE, 99);
+  }
+
+  // 0 without a link cache
+  @Override
+  public double getLinkCacheHitRate() {
+    LinkCache cache = linkCache;
+    return cache == null ? 0 : cache.getHitRate();
+  }
+
+  @Override
+  public long getLinkCacheEntries() {
+    LinkCache cache = linkCache;
+    return cache == null ? 0 : cache.size();
+  }
+
+  // one line for the periodic stats log
+  @Override
+  public String getSnapshot() {
+    StringBuilder snapshot =
+        new StringBuilder()
+            .append("fetched=").append(getPagesFetched())
+            .append(" notModified=").append(getPagesNotModified())
+            .append(" non200=").append(getNon200Responses())
+            .append(" ioErrors=").append(getIoErrors())
+            .append(" invalid=").append(getInvalidLinks())
+            .append(" duplicates=").append(getDuplicateLinks())
+            .append(" disallowed=").append(getDisallowedByRobots())
+            .append(" tooDeep=").append(getLinksTooDeep())
+            .append(" nearDuplicates=").append(getNearDuplicatePages())
+            .append(" traps=").append(getLinksInTraps())
+            .append(" notHtml=").append(getNonHtmlResponses())
+            .append(" truncated=").append(getTruncatedPages())
+            .append(" frontier=").append(getFrontierDepth())
+            .append(" seen=").append(getSeenUrls())
+            .append(" bytes=").append(getBytesDownloaded());
+    if (linkCache != null) {
+      snapshot.append(String.format(" linkCacheHitRate=%.3f", getLinkCacheHitRate()));
+    }
+    for (Stage stage : Stage.values()) {
+      snapshot.append(
+          String.format(
+              " %s p50/p99/max=%.2f/%.2f/%.2fms",
+              stage.name().toLowerCase(),
+              millisAt(stage, 50),
+              millisAt(stage, 99),
+              latencies.get(stage).getMax() / 1e6));
+    }
+    return snapshot.toString();
+  }
+
+  private double millisAt(Stage stage, double percentile) {
+    return latencies.get(stage).valueAtPercentile(percentile) / 1e6;
+  }
+}
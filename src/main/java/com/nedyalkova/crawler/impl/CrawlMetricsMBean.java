@@ -0,0 +1,57 @@
+package com.nedyalkova.crawler.impl;
+
+// what a running crawl exposes over JMX; latencies are in milliseconds
+public interface CrawlMetricsMBean {
+
+  long getPagesFetched();
+
+  long getPagesNotModified();
+
+  long getNon200Responses();
+
+  long getIoErrors();
+
+  long getInvalidLinks();
+
+  long getDuplicateLinks();
+
+  long getDisallowedByRobots();
+
+  long getLinksTooDeep();
+
+  long getNearDuplicatePages();
+
+  long getLinksInTraps();
+
+  long getNonHtmlResponses();
+
+  long getTruncatedPages();
+
+  long getBytesDownloaded();
+
+  long getFrontierDepth();
+
+  long getSeenUrls();
+
+  double getFetchP50Millis();
+
+  double getFetchP99Millis();
+
+  double getParseP50Millis();
+
+  double getParseP99Millis();
+
+  double getExtractP50Millis();
+
+  double getExtractP99Millis();
+
+  double getEnqueueP50Millis();
+
+  double getEnqueueP99Millis();
+
+  double getLinkCacheHitRate();
+
+  long getLinkCacheEntries();
+
+  String getSnapshot();
+}
@@ -0,0 +1,103 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.util.List;
+
+// what the crawl produced for one page, handed to the output sink
+public class CrawlRecord {
+
+  private final String url;
+  private final int statusCode;
+  private final long timestampMillis;
+  private final long fetchNanos;
+  private final long parseNanos;
+  private final long extractNanos;
+  private final long bodyBytes;
+  private final List<URI> links;
+  private final String duplicateOf;
+
+  public CrawlRecord(
+      String url,
+      int statusCode,
+      long timestampMillis,
+      long fetchNanos,
+      long parseNanos,
+      long extractNanos,
+      long bodyBytes,
+      List<URI> links) {
+    this(
+        url, statusCode, timestampMillis, fetchNanos, parseNanos, extractNanos, bodyBytes, links,
+        null);
+  }
+
+  public CrawlRecord(
+      String url,
+      int statusCode,
+      long timestampMillis,
+      long fetchNanos,
+      long parseNanos,
+      long extractNanos,
+      long bodyBytes,
+      List<URI> links,
+      String duplicateOf) {
+    this.url = url;
+    this.statusCode = statusCode;
+    this.timestampMillis = timestampMillis;
+    this.fetchNanos = fetchNanos;
+    this.parseNanos = parseNanos;
+    this.extractNanos = extractNanos;
+    this.bodyBytes = bodyBytes;
+    this.links = links;
+    this.duplicateOf = duplicateOf;
+  }
+
+  static CrawlRecord of(PageResult result, long timestampMillis) {
+    return new CrawlRecord(
+        result.getUrl(),
+        result.getStatusCode(),
+        timestampMillis,
+        result.getLatencyNanos(),
+        result.getParseNanos(),
+        result.getExtractNanos(),
+        result.getBodyBytes(),
+        List.copyOf(result.getLinks()),
+        result.getDuplicateOf());
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  public long getFetchNanos() {
+    return fetchNanos;
+  }
+
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  public long getExtractNanos() {
+    return extractNanos;
+  }
+
+  public long getBodyBytes() {
+    return bodyBytes;
+  }
+
+  public List<URI> getLinks() {
+    return links;
+  }
+
+  // null unless the page was a near-duplicate of this one
+  public String getDuplicateOf() {
+    return duplicateOf;
+  }
+}
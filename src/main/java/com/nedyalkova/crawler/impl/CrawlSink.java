@@ -0,0 +1,10 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.Closeable;
+
+// receives one record per crawled page; called from the crawl worker threads
+public interface CrawlSink extends Closeable {
+
+  // may block to push back on the crawl when the sink cannot keep up
+  void accept(CrawlRecord record) throws InterruptedException;
+}
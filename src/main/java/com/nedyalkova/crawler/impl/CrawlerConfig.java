@@ -0,0 +1,694 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class CrawlerConfig {
+
+  private int maxConcurrency = 8;
+  private int maxConcurrencyPerHost = 4;
+  private SeenSetMode seenSetMode = SeenSetMode.EXACT;
+  private long expectedUrls = 100_000;
+  private double bloomFalsePositiveRate = 0.001;
+  private Path stateDir;
+  private Duration checkpointInterval = Duration.ofMinutes(1);
+  private long frontierSegmentBytes = 64L * 1024 * 1024;
+  private PageFetcher pageFetcher;
+  private Path validatorCacheDir;
+  private boolean respectRobotsTxt = true;
+  private double initialHostRate = 2;
+  private double minHostRate = 0.1;
+  private double maxHostRate = 20;
+  private Duration statsInterval;
+  private boolean exportJmx;
+  private CrawlSink outputSink;
+  private Path outputFile;
+  private OutputFormat outputFormat = OutputFormat.URLS;
+  private boolean outputGzip;
+  private int outputBufferRecords = AsyncCrawlSink.DEFAULT_CAPACITY;
+  private InetSocketAddress coordinator;
+  private String nodeId = UUID.randomUUID().toString();
+  private InetSocketAddress nodeAddress =
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+  private Duration heartbeatInterval = Duration.ofMillis(200);
+  private int clusterSize = 1;
+  private UrlScorer urlScorer;
+  private int maxDepth = Integer.MAX_VALUE;
+  private long maxPages = Long.MAX_VALUE;
+  private Duration maxDuration;
+  private int nearDuplicateDistance = -1;
+  private QueryRules queryRules;
+  private boolean detectTraps;
+  private int maxSegmentRepeats = 2;
+  private int maxUrlsPerPattern = 1000;
+  private int maxParameterValues = 100;
+  private long maxBodyBytes = HTMLFetcher.DEFAULT_MAX_BODY_BYTES;
+  private boolean headNonHtml;
+  private boolean loadSitemaps;
+  private Path warcDir;
+  private long warcMaxFileBytes = 1L << 30;
+  private Path replayWarc;
+  private final List<String> seeds = new ArrayList<>();
+  private SubdomainPolicy subdomainPolicy = SubdomainPolicy.WWW;
+  private final List<String> allowedDomains = new ArrayList<>();
+  private final Map<String, Integer> hostWeights = new HashMap<>();
+  private Path graphDir;
+  private boolean adaptiveTimeouts = true;
+  private double timeoutFactor = 3;
+  private Duration minTimeout = Duration.ofMillis(500);
+  private Duration maxTimeout = FetchRequest.DEFAULT_TIMEOUT;
+  private boolean hedgeRequests;
+  private int maxRetries;
+  private double retryBudgetRatio = 0.1;
+  private int linkCacheEntries = 100_000;
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public CrawlerConfig maxConcurrency(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be at least 1");
+    }
+    this.maxConcurrency = maxConcurrency;
+    return this;
+  }
+
+  public int getMaxConcurrencyPerHost() {
+    return maxConcurrencyPerHost;
+  }
+
+  public CrawlerConfig maxConcurrencyPerHost(int maxConcurrencyPerHost) {
+    if (maxConcurrencyPerHost < 1) {
+      throw new IllegalArgumentException("maxConcurrencyPerHost must be at least 1");
+    }
+    this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+    return this;
+  }
+
+  public SeenSetMode getSeenSetMode() {
+    return seenSetMode;
+  }
+
+  public CrawlerConfig seenSetMode(SeenSetMode seenSetMode) {
+    this.seenSetMode = seenSetMode;
+    return this;
+  }
+
+  public long getExpectedUrls() {
+    return expectedUrls;
+  }
+
+  public CrawlerConfig expectedUrls(long expectedUrls) {
+    if (expectedUrls < 1) {
+      throw new IllegalArgumentException("expectedUrls must be at least 1");
+    }
+    this.expectedUrls = expectedUrls;
+    return this;
+  }
+
+  public double getBloomFalsePositiveRate() {
+    return bloomFalsePositiveRate;
+  }
+
+  public CrawlerConfig bloomFalsePositiveRate(double bloomFalsePositiveRate) {
+    this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+    return this;
+  }
+
+  public Path getStateDir() {
+    return stateDir;
+  }
+
+  // keeps the frontier on disk under this directory and checkpoints the crawl there
+  public CrawlerConfig stateDir(Path stateDir) {
+    this.stateDir = stateDir;
+    return this;
+  }
+
+  public Duration getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  public CrawlerConfig checkpointInterval(Duration checkpointInterval) {
+    if (checkpointInterval.isNegative() || checkpointInterval.isZero()) {
+      throw new IllegalArgumentException("checkpointInterval must be positive");
+    }
+    this.checkpointInterval = checkpointInterval;
+    return this;
+  }
+
+  public long getFrontierSegmentBytes() {
+    return frontierSegmentBytes;
+  }
+
+  public CrawlerConfig frontierSegmentBytes(long frontierSegmentBytes) {
+    this.frontierSegmentBytes = frontierSegmentBytes;
+    return this;
+  }
+
+  // falls back to a pooled HttpClientFetcher when nothing is set
+  public PageFetcher getPageFetcher() {
+    return pageFetcher;
+  }
+
+  public CrawlerConfig pageFetcher(PageFetcher pageFetcher) {
+    this.pageFetcher = pageFetcher;
+    return this;
+  }
+
+  public Path getValidatorCacheDir() {
+    return validatorCacheDir;
+  }
+
+  // remembers validators and links between runs so re-crawls can use conditional requests
+  public CrawlerConfig validatorCacheDir(Path validatorCacheDir) {
+    this.validatorCacheDir = validatorCacheDir;
+    return this;
+  }
+
+  public boolean isRespectRobotsTxt() {
+    return respectRobotsTxt;
+  }
+
+  public CrawlerConfig respectRobotsTxt(boolean respectRobotsTxt) {
+    this.respectRobotsTxt = respectRobotsTxt;
+    return this;
+  }
+
+  public double getInitialHostRate() {
+    return initialHostRate;
+  }
+
+  // requests per second against a host before any feedback has come back from it
+  public CrawlerConfig initialHostRate(double initialHostRate) {
+    this.initialHostRate = initialHostRate;
+    return this;
+  }
+
+  public double getMinHostRate() {
+    return minHostRate;
+  }
+
+  public CrawlerConfig minHostRate(double minHostRate) {
+    this.minHostRate = minHostRate;
+    return this;
+  }
+
+  public double getMaxHostRate() {
+    return maxHostRate;
+  }
+
+  public CrawlerConfig maxHostRate(double maxHostRate) {
+    this.maxHostRate = maxHostRate;
+    return this;
+  }
+
+  public Duration getStatsInterval() {
+    return statsInterval;
+  }
+
+  // logs a metrics snapshot this often while crawling; null turns it off
+  public CrawlerConfig statsInterval(Duration statsInterval) {
+    if (statsInterval != null && (statsInterval.isNegative() || statsInterval.isZero())) {
+      throw new IllegalArgumentException("statsInterval must be positive");
+    }
+    this.statsInterval = statsInterval;
+    return this;
+  }
+
+  public boolean isExportJmx() {
+    return exportJmx;
+  }
+
+  // registers the crawl metrics as an MBean for the duration of crawl()
+  public CrawlerConfig exportJmx(boolean exportJmx) {
+    this.exportJmx = exportJmx;
+    return this;
+  }
+
+  // takes precedence over outputFile; closed when the crawl finishes
+  public CrawlSink getOutputSink() {
+    return outputSink;
+  }
+
+  public CrawlerConfig outputSink(CrawlSink outputSink) {
+    this.outputSink = outputSink;
+    return this;
+  }
+
+  public Path getOutputFile() {
+    return outputFile;
+  }
+
+  // where a record per crawled page is written; "-" is standard out, null writes nothing
+  public CrawlerConfig outputFile(Path outputFile) {
+    this.outputFile = outputFile;
+    return this;
+  }
+
+  public OutputFormat getOutputFormat() {
+    return outputFormat;
+  }
+
+  public CrawlerConfig outputFormat(OutputFormat outputFormat) {
+    this.outputFormat = outputFormat;
+    return this;
+  }
+
+  public boolean isOutputGzip() {
+    return outputGzip;
+  }
+
+  public CrawlerConfig outputGzip(boolean outputGzip) {
+    this.outputGzip = outputGzip;
+    return this;
+  }
+
+  public int getOutputBufferRecords() {
+    return outputBufferRecords;
+  }
+
+  // records waiting for the writer before crawl threads are made to wait
+  public CrawlerConfig outputBufferRecords(int outputBufferRecords) {
+    if (outputBufferRecords < 1) {
+      throw new IllegalArgumentException("outputBufferRecords must be at least 1");
+    }
+    this.outputBufferRecords = outputBufferRecords;
+    return this;
+  }
+
+  public InetSocketAddress getCoordinator() {
+    return coordinator;
+  }
+
+  // joins the cluster run by this coordinator and only crawls this node's shard of the urls
+  public CrawlerConfig coordinator(InetSocketAddress coordinator) {
+    this.coordinator = coordinator;
+    return this;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  // keep it stable across restarts so the node gets its own shard back
+  public CrawlerConfig nodeId(String nodeId) {
+    this.nodeId = nodeId;
+    return this;
+  }
+
+  public InetSocketAddress getNodeAddress() {
+    return nodeAddress;
+  }
+
+  // where other nodes connect to hand over links; port 0 picks a free one
+  public CrawlerConfig nodeAddress(InetSocketAddress nodeAddress) {
+    this.nodeAddress = nodeAddress;
+    return this;
+  }
+
+  public Duration getHeartbeatInterval() {
+    return heartbeatInterval;
+  }
+
+  public CrawlerConfig heartbeatInterval(Duration heartbeatInterval) {
+    if (heartbeatInterval.isNegative() || heartbeatInterval.isZero()) {
+      throw new IllegalArgumentException("heartbeatInterval must be positive");
+    }
+    this.heartbeatInterval = heartbeatInterval;
+    return this;
+  }
+
+  public int getClusterSize() {
+    return clusterSize;
+  }
+
+  // nodes to wait for before crawling, so the first pages are not all fetched by whoever starts
+  public CrawlerConfig clusterSize(int clusterSize) {
+    if (clusterSize < 1) {
+      throw new IllegalArgumentException("clusterSize must be at least 1");
+    }
+    this.clusterSize = clusterSize;
+    return this;
+  }
+
+  public UrlScorer getUrlScorer() {
+    return urlScorer;
+  }
+
+  // crawls the highest scoring queued url next instead of the oldest; keeps the frontier in
+  // memory, so it cannot be combined with stateDir
+  public CrawlerConfig urlScorer(UrlScorer urlScorer) {
+    this.urlScorer = urlScorer;
+    return this;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  // links further than this from the seed are not followed; the seed is at depth 0
+  public CrawlerConfig maxDepth(int maxDepth) {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must not be negative");
+    }
+    this.maxDepth = maxDepth;
+    return this;
+  }
+
+  public long getMaxPages() {
+    return maxPages;
+  }
+
+  // stops handing out urls once this many have been crawled
+  public CrawlerConfig maxPages(long maxPages) {
+    if (maxPages < 1) {
+      throw new IllegalArgumentException("maxPages must be at least 1");
+    }
+    this.maxPages = maxPages;
+    return this;
+  }
+
+  public Duration getMaxDuration() {
+    return maxDuration;
+  }
+
+  // stops handing out urls this long after crawl() starts and lets the ones in flight finish;
+  // null crawls until the frontier runs out
+  public CrawlerConfig maxDuration(Duration maxDuration) {
+    if (maxDuration != null && (maxDuration.isNegative() || maxDuration.isZero())) {
+      throw new IllegalArgumentException("maxDuration must be positive");
+    }
+    this.maxDuration = maxDuration;
+    return this;
+  }
+
+  public int getNearDuplicateDistance() {
+    return nearDuplicateDistance;
+  }
+
+  // pages whose text simhash is at most this many bits from an earlier page's are treated as its
+  // near-duplicates and their links are not followed; -1 turns detection off
+  public CrawlerConfig nearDuplicateDistance(int nearDuplicateDistance) {
+    if (nearDuplicateDistance < -1 || nearDuplicateDistance > NearDuplicateIndex.MAX_DISTANCE) {
+      throw new IllegalArgumentException(
+          "nearDuplicateDistance must be between -1 and " + NearDuplicateIndex.MAX_DISTANCE);
+    }
+    this.nearDuplicateDistance = nearDuplicateDistance;
+    return this;
+  }
+
+  public QueryRules getQueryRules() {
+    return queryRules;
+  }
+
+  // applied to every link when it is canonicalised; null keeps query strings as they are
+  public CrawlerConfig queryRules(QueryRules queryRules) {
+    this.queryRules = queryRules;
+    return this;
+  }
+
+  public boolean isDetectTraps() {
+    return detectTraps;
+  }
+
+  // turns away new links that look like a crawler trap before they are queued
+  public CrawlerConfig detectTraps(boolean detectTraps) {
+    this.detectTraps = detectTraps;
+    return this;
+  }
+
+  public int getMaxSegmentRepeats() {
+    return maxSegmentRepeats;
+  }
+
+  // times one path segment may appear in a url, as in /a/b/a/b/a
+  public CrawlerConfig maxSegmentRepeats(int maxSegmentRepeats) {
+    if (maxSegmentRepeats < 1) {
+      throw new IllegalArgumentException("maxSegmentRepeats must be at least 1");
+    }
+    this.maxSegmentRepeats = maxSegmentRepeats;
+    return this;
+  }
+
+  public int getMaxUrlsPerPattern() {
+    return maxUrlsPerPattern;
+  }
+
+  // urls queued per host, path shape and set of parameter names; numbered segments share a shape
+  public CrawlerConfig maxUrlsPerPattern(int maxUrlsPerPattern) {
+    if (maxUrlsPerPattern < 1) {
+      throw new IllegalArgumentException("maxUrlsPerPattern must be at least 1");
+    }
+    this.maxUrlsPerPattern = maxUrlsPerPattern;
+    return this;
+  }
+
+  public int getMaxParameterValues() {
+    return maxParameterValues;
+  }
+
+  // distinct values one query parameter may take within a pattern before new ones are refused
+  public CrawlerConfig maxParameterValues(int maxParameterValues) {
+    if (maxParameterValues < 1) {
+      throw new IllegalArgumentException("maxParameterValues must be at least 1");
+    }
+    this.maxParameterValues = maxParameterValues;
+    return this;
+  }
+
+  public long getMaxBodyBytes() {
+    return maxBodyBytes;
+  }
+
+  // bytes of a page read after decoding; links further down a larger page are not found
+  public CrawlerConfig maxBodyBytes(long maxBodyBytes) {
+    if (maxBodyBytes < 1) {
+      throw new IllegalArgumentException("maxBodyBytes must be at least 1");
+    }
+    this.maxBodyBytes = maxBodyBytes;
+    return this;
+  }
+
+  public boolean isHeadNonHtml() {
+    return headNonHtml;
+  }
+
+  // sends a HEAD request first for urls ending in .pdf, .jpg and the like
+  public CrawlerConfig headNonHtml(boolean headNonHtml) {
+    this.headNonHtml = headNonHtml;
+    return this;
+  }
+
+  public boolean isLoadSitemaps() {
+    return loadSitemaps;
+  }
+
+  // queues the urls of the seed's sitemaps, found at /sitemap.xml and through robots.txt, before
+  // crawling starts
+  public CrawlerConfig loadSitemaps(boolean loadSitemaps) {
+    this.loadSitemaps = loadSitemaps;
+    return this;
+  }
+
+  public Path getWarcDir() {
+    return warcDir;
+  }
+
+  // records every fetched response to .warc.gz files in this directory
+  public CrawlerConfig warcDir(Path warcDir) {
+    this.warcDir = warcDir;
+    return this;
+  }
+
+  public long getWarcMaxFileBytes() {
+    return warcMaxFileBytes;
+  }
+
+  // compressed size after which the next record goes to a new WARC file
+  public CrawlerConfig warcMaxFileBytes(long warcMaxFileBytes) {
+    if (warcMaxFileBytes < 1) {
+      throw new IllegalArgumentException("warcMaxFileBytes must be at least 1");
+    }
+    this.warcMaxFileBytes = warcMaxFileBytes;
+    return this;
+  }
+
+  public Path getReplayWarc() {
+    return replayWarc;
+  }
+
+  // answers every request from this WARC file or directory of them instead of the network
+  public CrawlerConfig replayWarc(Path replayWarc) {
+    this.replayWarc = replayWarc;
+    return this;
+  }
+
+  public List<String> getSeeds() {
+    return seeds;
+  }
+
+  // more seed urls, crawled alongside the one the crawler is created with; their hosts are in
+  // scope as if each were the seed
+  public CrawlerConfig seeds(List<String> seeds) {
+    this.seeds.addAll(seeds);
+    return this;
+  }
+
+  public SubdomainPolicy getSubdomainPolicy() {
+    return subdomainPolicy;
+  }
+
+  // which subdomains of a seed's host are crawled too
+  public CrawlerConfig subdomainPolicy(SubdomainPolicy subdomainPolicy) {
+    this.subdomainPolicy = subdomainPolicy;
+    return this;
+  }
+
+  public List<String> getAllowedDomains() {
+    return allowedDomains;
+  }
+
+  // a host to crawl besides the seeds' hosts, or *.domain for a domain and all its subdomains
+  public CrawlerConfig allowDomain(String domain) {
+    if (domain.isBlank() || domain.equals("*.")) {
+      throw new IllegalArgumentException("A domain to allow is required");
+    }
+    allowedDomains.add(domain);
+    return this;
+  }
+
+  public int getHostWeight(String host) {
+    return hostWeights.getOrDefault(host, 1);
+  }
+
+  // how many urls of the host are handed out in a row before the next host's turn
+  public CrawlerConfig hostWeight(String host, int weight) {
+    if (weight < 1) {
+      throw new IllegalArgumentException("A host weight must be at least 1");
+    }
+    hostWeights.put(host, weight);
+    return this;
+  }
+
+  public Path getGraphDir() {
+    return graphDir;
+  }
+
+  // keeps the link graph of the crawl and writes it here when the crawl finishes
+  public CrawlerConfig graphDir(Path graphDir) {
+    this.graphDir = graphDir;
+    return this;
+  }
+
+  public boolean isAdaptiveTimeouts() {
+    return adaptiveTimeouts;
+  }
+
+  // times requests out after timeoutFactor times the p99 recently seen for the host and path
+  // prefix, within minTimeout and maxTimeout; off, every request gets maxTimeout
+  public CrawlerConfig adaptiveTimeouts(boolean adaptiveTimeouts) {
+    this.adaptiveTimeouts = adaptiveTimeouts;
+    return this;
+  }
+
+  public double getTimeoutFactor() {
+    return timeoutFactor;
+  }
+
+  public CrawlerConfig timeoutFactor(double timeoutFactor) {
+    if (timeoutFactor < 1) {
+      throw new IllegalArgumentException("timeoutFactor must be at least 1");
+    }
+    this.timeoutFactor = timeoutFactor;
+    return this;
+  }
+
+  public Duration getMinTimeout() {
+    return minTimeout;
+  }
+
+  public CrawlerConfig minTimeout(Duration minTimeout) {
+    if (minTimeout.isNegative()) {
+      throw new IllegalArgumentException("minTimeout must not be negative");
+    }
+    this.minTimeout = minTimeout;
+    return this;
+  }
+
+  public Duration getMaxTimeout() {
+    return maxTimeout;
+  }
+
+  public CrawlerConfig maxTimeout(Duration maxTimeout) {
+    if (maxTimeout.isZero() || maxTimeout.isNegative()) {
+      throw new IllegalArgumentException("maxTimeout must be positive");
+    }
+    this.maxTimeout = maxTimeout;
+    return this;
+  }
+
+  public boolean isHedgeRequests() {
+    return hedgeRequests;
+  }
+
+  // sends a second GET when the first has taken longer than the host's recent p95
+  public CrawlerConfig hedgeRequests(boolean hedgeRequests) {
+    this.hedgeRequests = hedgeRequests;
+    return this;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  // extra attempts after a failure, timeout or 502/503/504, with a jittered exponential backoff
+  public CrawlerConfig maxRetries(int maxRetries) {
+    if (maxRetries < 0) {
+      throw new IllegalArgumentException("maxRetries must not be negative");
+    }
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  public double getRetryBudgetRatio() {
+    return retryBudgetRatio;
+  }
+
+  // hedged and retried requests allowed per request, across the whole crawl
+  public CrawlerConfig retryBudgetRatio(double retryBudgetRatio) {
+    if (retryBudgetRatio < 0 || retryBudgetRatio > 1) {
+      throw new IllegalArgumentException("retryBudgetRatio must be between 0 and 1");
+    }
+    this.retryBudgetRatio = retryBudgetRatio;
+    return this;
+  }
+
+  public int getLinkCacheEntries() {
+    return linkCacheEntries;
+  }
+
+  // hrefs remembered with what they canonicalised to, 0 to resolve every href on every page
+  public CrawlerConfig linkCacheEntries(int linkCacheEntries) {
+    if (linkCacheEntries != 0 && linkCacheEntries < 16) {
+      throw new IllegalArgumentException("linkCacheEntries must be 0 or at least 16");
+    }
+    this.linkCacheEntries = linkCacheEntries;
+    return this;
+  }
+
+  SeenSet createSeenSet() {
+    if (seenSetMode == SeenSetMode.BLOOM) {
+      return new BloomSeenSet(expectedUrls, bloomFalsePositiveRate);
+    }
+    return new LongHashSeenSet(expectedUrls);
+  }
+}
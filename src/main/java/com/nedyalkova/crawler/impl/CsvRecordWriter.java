@@ -0,0 +1,94 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+// RFC 4180 quoting, only applied to fields that need it
+class CsvRecordWriter implements RecordWriter {
+
+  static final String HEADER =
+      "url,status,time,fetch_micros,parse_micros,extract_micros,bytes,duplicate_of,link_count,"
+          + "links";
+
+  private final Writer out;
+  private final StringBuilder links = new StringBuilder();
+  private boolean headerWritten;
+
+  CsvRecordWriter(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+  }
+
+  @Override
+  public void write(CrawlRecord record) throws IOException {
+    if (!headerWritten) {
+      out.write(HEADER);
+      out.write('\n');
+      headerWritten = true;
+    }
+    writeField(record.getUrl());
+    out.write(',');
+    out.write(Integer.toString(record.getStatusCode()));
+    out.write(',');
+    out.write(Long.toString(record.getTimestampMillis()));
+    out.write(',');
+    out.write(Long.toString(record.getFetchNanos() / 1000));
+    out.write(',');
+    out.write(Long.toString(record.getParseNanos() / 1000));
+    out.write(',');
+    out.write(Long.toString(record.getExtractNanos() / 1000));
+    out.write(',');
+    out.write(Long.toString(record.getBodyBytes()));
+    out.write(',');
+    if (record.getDuplicateOf() != null) {
+      writeField(record.getDuplicateOf());
+    }
+    out.write(',');
+    out.write(Integer.toString(record.getLinks().size()));
+    out.write(',');
+    links.setLength(0);
+    for (URI link : record.getLinks()) {
+      if (links.length() > 0) {
+        links.append(' ');
+      }
+      links.append(link);
+    }
+    writeField(links);
+    out.write('\n');
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeField(CharSequence value) throws IOException {
+    boolean quote = false;
+    for (int i = 0; i < value.length() && !quote; i++) {
+      char c = value.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      out.append(value);
+      return;
+    }
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        out.write('"');
+      }
+      out.write(c);
+    }
+    out.write('"');
+  }
+}
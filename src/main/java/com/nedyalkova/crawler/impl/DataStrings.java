@@ -0,0 +1,29 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// urls in files and on the wire as an int length and their UTF-8 bytes. writeUTF would be shorter
+// but cannot write more than 65535 bytes, and nothing stops a page linking to a longer url
+final class DataStrings {
+
+  private DataStrings() {}
+
+  static void write(DataOutput out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String read(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Unexpected string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,108 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// a response body that has to be read by a deadline. A read blocked on a server trickling bytes
+// cannot be timed out from its own thread, so the stream is closed from a timer thread instead,
+// which wakes the read, and that read and every later one fail with an HttpTimeoutException
+class DeadlineInputStream extends FilterInputStream {
+
+  private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+  private final URI uri;
+  private final ScheduledFuture<?> timer;
+  private volatile boolean expired;
+
+  DeadlineInputStream(InputStream in, URI uri, long delayNanos) {
+    super(in);
+    this.uri = uri;
+    this.timer = TIMER.schedule(this::expire, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkExpired();
+    try {
+      return ended(super.read());
+    } catch (IOException e) {
+      throw expired ? timeout() : e;
+    }
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    checkExpired();
+    try {
+      return ended(super.read(buffer, offset, length));
+    } catch (IOException e) {
+      throw expired ? timeout() : e;
+    }
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    checkExpired();
+    try {
+      return super.skip(n);
+    } catch (IOException e) {
+      throw expired ? timeout() : e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    timer.cancel(false);
+    super.close();
+  }
+
+  // the end of a closed stream is not the end of the body
+  private int ended(int read) throws IOException {
+    if (read < 0) {
+      if (expired) {
+        throw timeout();
+      }
+      timer.cancel(false);
+    }
+    return read;
+  }
+
+  private void checkExpired() throws IOException {
+    if (expired) {
+      throw timeout();
+    }
+  }
+
+  private HttpTimeoutException timeout() {
+    return new HttpTimeoutException("The body of " + uri + " was not read in time");
+  }
+
+  private void expire() {
+    expired = true;
+    try {
+      in.close();
+    } catch (IOException ignored) {
+      // the reader sees the timeout either way
+    }
+  }
+
+  private static ScheduledThreadPoolExecutor createTimer() {
+    ScheduledThreadPoolExecutor timer =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "fetch-deadline");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // most bodies are read in time, so cancelled deadlines must not pile up in the queue
+    timer.setRemoveOnCancelPolicy(true);
+    return timer;
+  }
+}
@@ -0,0 +1,309 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+// append-only queue of urls in numbered segment files; only a small head and tail stay in memory
+public class DiskBackedFrontier implements Frontier {
+  private static final Logger log = LoggerFactory.getLogger(DiskBackedFrontier.class);
+
+  static final int MAX_RECORD_BYTES = 16 * 1024;
+  // record lengths fit in the low 16 bits of their header, the depth goes above them; segments
+  // written before depths were kept read back as depth 0
+  private static final int DEPTH_SHIFT = 16;
+  private static final int LENGTH_MASK = (1 << DEPTH_SHIFT) - 1;
+  private static final int MAX_DEPTH = Short.MAX_VALUE;
+  private static final String SEGMENT_PREFIX = "frontier-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final Path directory;
+  private final long segmentBytes;
+  private final int headCapacity;
+
+  private final ArrayDeque<HeadEntry> head = new ArrayDeque<>();
+  private final ByteBuffer writeBuffer = ByteBuffer.allocate(64 * 1024);
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+
+  private FileChannel writeChannel;
+  private int writeSegment;
+  private long writeOffset;
+
+  private FileChannel readChannel;
+  private int readSegment;
+  private long readOffset;
+
+  // position just after the last url handed out by poll(), which is what a checkpoint records
+  private int polledSegment;
+  private long polledOffset;
+  private long size;
+
+  public DiskBackedFrontier(Path directory, long segmentBytes, int headCapacity)
+      throws IOException {
+    this(directory, segmentBytes, headCapacity, null);
+  }
+
+  // reopens the frontier at a checkpointed position, dropping anything written after it
+  public DiskBackedFrontier(
+      Path directory, long segmentBytes, int headCapacity, Position resumeFrom)
+      throws IOException {
+    if (segmentBytes <= MAX_RECORD_BYTES) {
+      throw new IllegalArgumentException("segmentBytes must be larger than " + MAX_RECORD_BYTES);
+    }
+    this.directory = Files.createDirectories(directory);
+    this.segmentBytes = segmentBytes;
+    this.headCapacity = Math.max(1, headCapacity);
+    Position start = resumeFrom == null ? new Position(0, 0, 0, 0, 0) : resumeFrom;
+    deleteSegmentsOutside(start.readSegment, start.writeSegment);
+    this.writeSegment = start.writeSegment;
+    this.writeOffset = start.writeOffset;
+    this.writeChannel = openSegment(writeSegment);
+    writeChannel.truncate(writeOffset);
+    this.readSegment = start.readSegment;
+    this.readOffset = start.readOffset;
+    this.readChannel = openReadSegment(readSegment);
+    this.polledSegment = start.readSegment;
+    this.polledOffset = start.readOffset;
+    this.size = start.size;
+    log.debug("Opened frontier in {} with {} queued urls", directory, size);
+  }
+
+  @Override
+  public void add(URI uri) {
+    add(new FrontierEntry(uri, 0, 0));
+  }
+
+  // importance is not kept, this frontier is first in first out
+  @Override
+  public synchronized void add(FrontierEntry entry) {
+    URI uri = entry.getUri();
+    byte[] bytes = uri.toString().getBytes(StandardCharsets.UTF_8);
+    if (bytes.length + Integer.BYTES > MAX_RECORD_BYTES) {
+      log.warn("Not queueing {} bytes long url {}", bytes.length, uri);
+      return;
+    }
+    try {
+      int recordLength = Integer.BYTES + bytes.length;
+      if (writeOffset + writeBuffer.position() + recordLength > segmentBytes) {
+        flushWrites();
+        rollWriteSegment();
+      } else if (writeBuffer.remaining() < recordLength) {
+        flushWrites();
+      }
+      int depth = Math.min(Math.max(entry.getDepth(), 0), MAX_DEPTH);
+      writeBuffer.putInt(depth << DEPTH_SHIFT | bytes.length).put(bytes);
+      size++;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to append to the frontier in " + directory, e);
+    }
+  }
+
+  @Override
+  public URI poll() {
+    FrontierEntry next = pollEntry();
+    return next == null ? null : next.getUri();
+  }
+
+  @Override
+  public synchronized FrontierEntry pollEntry() {
+    if (!fillHead()) {
+      return null;
+    }
+    HeadEntry next = head.poll();
+    polledSegment = next.segment;
+    polledOffset = next.endOffset;
+    size--;
+    return new FrontierEntry(next.uri, next.depth, 0);
+  }
+
+  @Override
+  public synchronized URI peek() {
+    return fillHead() ? head.peek().uri : null;
+  }
+
+  @Override
+  public synchronized long size() {
+    return size;
+  }
+
+  // makes everything queued so far durable and returns the position to resume from
+  public synchronized Position sync() throws IOException {
+    flushWrites();
+    writeChannel.force(false);
+    return new Position(polledSegment, polledOffset, writeSegment, writeOffset, size);
+  }
+
+  // segments before a checkpointed position are never read again
+  public synchronized void release(Position checkpointed) throws IOException {
+    deleteSegmentsOutside(Math.min(checkpointed.readSegment, readSegment), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      flushWrites();
+      writeChannel.close();
+      readChannel.close();
+    } catch (IOException e) {
+      log.warn("Unable to close the frontier in {}", directory, e);
+    }
+  }
+
+  private boolean fillHead() {
+    try {
+      while (head.size() < headCapacity) {
+        if (readSegment == writeSegment && readOffset >= writeOffset) {
+          if (writeBuffer.position() == 0) {
+            break;
+          }
+          flushWrites();
+        } else if (readSegment < writeSegment && readOffset >= readChannel.size()) {
+          readChannel.close();
+          readSegment++;
+          readOffset = 0;
+          readChannel = openReadSegment(readSegment);
+        } else {
+          readRecords();
+        }
+      }
+      return !head.isEmpty();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read the frontier in " + directory, e);
+    }
+  }
+
+  private void readRecords() throws IOException {
+    long segmentEnd = readSegment == writeSegment ? writeOffset : readChannel.size();
+    readBuffer.clear();
+    readBuffer.limit((int) Math.min(readBuffer.capacity(), segmentEnd - readOffset));
+    while (readBuffer.hasRemaining()) {
+      if (readChannel.read(readBuffer, readOffset + readBuffer.position()) < 0) {
+        throw new IOException("Segment " + readSegment + " ends before offset " + segmentEnd);
+      }
+    }
+    readBuffer.flip();
+    while (head.size() < headCapacity && readBuffer.remaining() >= Integer.BYTES) {
+      int header = readBuffer.getInt(readBuffer.position());
+      int length = header & LENGTH_MASK;
+      if (readBuffer.remaining() < Integer.BYTES + length) {
+        break;
+      }
+      readBuffer.getInt();
+      byte[] bytes = new byte[length];
+      readBuffer.get(bytes);
+      readOffset += Integer.BYTES + length;
+      URI uri = URI.create(new String(bytes, StandardCharsets.UTF_8));
+      head.add(new HeadEntry(uri, header >>> DEPTH_SHIFT, readSegment, readOffset));
+    }
+  }
+
+  private void flushWrites() throws IOException {
+    writeBuffer.flip();
+    while (writeBuffer.hasRemaining()) {
+      writeOffset += writeChannel.write(writeBuffer, writeOffset);
+    }
+    writeBuffer.clear();
+  }
+
+  private void rollWriteSegment() throws IOException {
+    writeChannel.force(false);
+    if (writeSegment != readSegment) {
+      writeChannel.close();
+    }
+    writeSegment++;
+    writeOffset = 0;
+    writeChannel = openSegment(writeSegment);
+    writeChannel.truncate(0);
+  }
+
+  // the reader shares the writer's channel while both are on the same segment
+  private FileChannel openReadSegment(int segment) throws IOException {
+    return segment == writeSegment ? writeChannel : openSegment(segment);
+  }
+
+  private FileChannel openSegment(int segment) throws IOException {
+    return FileChannel.open(
+        segmentPath(segment),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  private Path segmentPath(int segment) {
+    return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+  }
+
+  private void deleteSegmentsOutside(int first, int last) throws IOException {
+    try (DirectoryStream<Path> segments =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path segment : segments) {
+        String name = segment.getFileName().toString();
+        int number =
+            Integer.parseInt(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        if (number < first || number > last) {
+          Files.delete(segment);
+        }
+      }
+    }
+  }
+
+  private static final class HeadEntry {
+    private final URI uri;
+    private final int depth;
+    private final int segment;
+    private final long endOffset;
+
+    HeadEntry(URI uri, int depth, int segment, long endOffset) {
+      this.uri = uri;
+      this.depth = depth;
+      this.segment = segment;
+      this.endOffset = endOffset;
+    }
+  }
+
+  public static final class Position {
+    private final int readSegment;
+    private final long readOffset;
+    private final int writeSegment;
+    private final long writeOffset;
+    private final long size;
+
+    Position(int readSegment, long readOffset, int writeSegment, long writeOffset, long size) {
+      this.readSegment = readSegment;
+      this.readOffset = readOffset;
+      this.writeSegment = writeSegment;
+      this.writeOffset = writeOffset;
+      this.size = size;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+      out.writeInt(readSegment);
+      out.writeLong(readOffset);
+      out.writeInt(writeSegment);
+      out.writeLong(writeOffset);
+      out.writeLong(size);
+    }
+
+    static Position readFrom(DataInput in) throws IOException {
+      return new Position(in.readInt(), in.readLong(), in.readInt(), in.readLong(), in.readLong());
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.nedyalkova.crawler.impl;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// the hosts a crawl stays on: every allowed domain with how far its subdomains are followed. A
+// lookup is a hash probe per label of the host, however many domains there are
+public class DomainScope {
+
+  private final SubdomainPolicy defaultPolicy;
+  private final Map<String, SubdomainPolicy> domains = new HashMap<>();
+
+  public DomainScope(SubdomainPolicy defaultPolicy) {
+    this.defaultPolicy = defaultPolicy;
+  }
+
+  // *.example.com allows example.com and all of its subdomains, a plain host gets the default
+  // policy
+  public DomainScope allow(String rule) {
+    if (rule.startsWith("*.")) {
+      return allow(rule.substring(2), SubdomainPolicy.ALL);
+    }
+    return allow(rule, defaultPolicy);
+  }
+
+  // a domain allowed twice keeps the wider of its policies
+  public DomainScope allow(String host, SubdomainPolicy policy) {
+    if (StringUtils.isBlank(host)) {
+      throw new IllegalArgumentException("A domain to allow is required");
+    }
+    String domain = host.toLowerCase(Locale.ROOT);
+    if (policy == SubdomainPolicy.WWW && domain.startsWith("www.")) {
+      domain = domain.substring(4);
+    }
+    domains.merge(domain, policy, (a, b) -> a.ordinal() >= b.ordinal() ? a : b);
+    return this;
+  }
+
+  public boolean allows(String host) {
+    if (StringUtils.isBlank(host)) {
+      return false;
+    }
+    String lowerCase = host.toLowerCase(Locale.ROOT);
+    if (domains.containsKey(lowerCase)) {
+      return true;
+    }
+    if (lowerCase.startsWith("www.")
+        && domains.get(lowerCase.substring(4)) == SubdomainPolicy.WWW) {
+      return true;
+    }
+    for (int dot = lowerCase.indexOf('.'); dot >= 0; dot = lowerCase.indexOf('.', dot + 1)) {
+      if (domains.get(lowerCase.substring(dot + 1)) == SubdomainPolicy.ALL) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return domains.size();
+  }
+}
@@ -0,0 +1,85 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+// compact link graph: each url is written once and given the next id, pages refer to ids.
+//   header: int MAGIC, byte VERSION
+//   url:    byte URL, int length, utf-8 url       (ids are implicit, counting from 0)
+//   page:   byte PAGE, varint id, varint status+1, varint link count, varint link id...
+// every url a page record refers to has been defined by an earlier url record
+class EdgeListRecordWriter implements RecordWriter {
+
+  static final int MAGIC = 0x43524745; // "CRGE"
+  static final byte VERSION = 2;
+  static final byte URL = 0;
+  static final byte PAGE = 1;
+
+  private final DataOutputStream out;
+  private final Map<String, Integer> ids = new HashMap<>();
+  private int[] linkIds = new int[64];
+  private boolean headerWritten;
+
+  EdgeListRecordWriter(OutputStream out) {
+    this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+  }
+
+  @Override
+  public void write(CrawlRecord record) throws IOException {
+    if (!headerWritten) {
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      headerWritten = true;
+    }
+    int pageId = idOf(record.getUrl());
+    if (linkIds.length < record.getLinks().size()) {
+      linkIds = new int[Math.max(record.getLinks().size(), linkIds.length * 2)];
+    }
+    int linkCount = 0;
+    for (URI link : record.getLinks()) {
+      linkIds[linkCount++] = idOf(link.toString());
+    }
+    out.writeByte(PAGE);
+    writeVarint(pageId);
+    writeVarint(record.getStatusCode() + 1);
+    writeVarint(linkCount);
+    for (int i = 0; i < linkCount; i++) {
+      writeVarint(linkIds[i]);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private int idOf(String url) throws IOException {
+    Integer id = ids.get(url);
+    if (id != null) {
+      return id;
+    }
+    int next = ids.size();
+    ids.put(url, next);
+    out.writeByte(URL);
+    DataStrings.write(out, url);
+    return next;
+  }
+
+  private void writeVarint(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+}
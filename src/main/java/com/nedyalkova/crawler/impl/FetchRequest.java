@@ -0,0 +1,52 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class FetchRequest {
+
+  static final Duration DEFAULT_TIMEOUT = Duration.ofMillis(5000);
+
+  private final URI uri;
+  private String method = "GET";
+  private final Map<String, String> headers = new LinkedHashMap<>();
+  private Duration timeout = DEFAULT_TIMEOUT;
+
+  public FetchRequest(URI uri) {
+    this.uri = uri;
+  }
+
+  public URI getUri() {
+    return uri;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  // GET or HEAD
+  public FetchRequest method(String method) {
+    this.method = method;
+    return this;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  public FetchRequest header(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  public FetchRequest timeout(Duration timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+}
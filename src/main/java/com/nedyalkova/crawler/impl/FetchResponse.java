@@ -0,0 +1,77 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class FetchResponse implements Closeable {
+
+  private final URI uri;
+  private final int statusCode;
+  private final Map<String, List<String>> headers;
+  private final InputStream body;
+
+  public FetchResponse(
+      URI uri, int statusCode, Map<String, List<String>> headers, InputStream body) {
+    this.uri = uri;
+    this.statusCode = statusCode;
+    this.headers = headers;
+    this.body = body;
+  }
+
+  // the url that was finally served, after any redirects
+  public URI getUri() {
+    return uri;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public Map<String, List<String>> getHeaders() {
+    return headers;
+  }
+
+  public String header(String name) {
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+        return header.getValue().get(0);
+      }
+    }
+    return null;
+  }
+
+  // already decompressed
+  public InputStream getBody() {
+    return body;
+  }
+
+  public Charset charset() {
+    String contentType = header("Content-Type");
+    if (contentType != null) {
+      for (String parameter : contentType.split(";")) {
+        String trimmed = parameter.trim();
+        if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+          String name = trimmed.substring("charset=".length()).replace("\"", "").trim();
+          try {
+            return Charset.forName(name);
+          } catch (IllegalArgumentException e) {
+            break;
+          }
+        }
+      }
+    }
+    return StandardCharsets.UTF_8;
+  }
+
+  @Override
+  public void close() throws IOException {
+    body.close();
+  }
+}
@@ -0,0 +1,52 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.Closeable;
+import java.net.URI;
+
+// urls waiting to be crawled; implementations are safe to use from several threads
+public interface Frontier extends Closeable {
+
+  void add(URI uri);
+
+  // frontiers that do not keep the depth or importance just queue the url
+  default void add(FrontierEntry entry) {
+    add(entry.getUri());
+  }
+
+  // another link to a url that is already known; a prioritising frontier rescores it if it is
+  // still queued
+  default void addInLink(URI uri, double importance) {}
+
+  // false when addInLink() does nothing, so known urls need not be looked up again
+  default boolean countsInLinks() {
+    return false;
+  }
+
+  URI poll();
+
+  // poll() with what the url was queued with, depth and importance are 0 where they are not kept
+  default FrontierEntry pollEntry() {
+    URI uri = poll();
+    return uri == null ? null : new FrontierEntry(uri, 0, 0);
+  }
+
+  // a url handed out by poll() has been crawled
+  default void done(URI uri) {}
+
+  // how long until a url held back for its host may be handed out, Long.MAX_VALUE when only
+  // done() can change what poll() returns
+  default long nanosUntilReady() {
+    return Long.MAX_VALUE;
+  }
+
+  URI peek();
+
+  long size();
+
+  default boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  default void close() {}
+}
@@ -0,0 +1,64 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+
+// a queued url with how many links away from the seed it was found, for OPIC scoring the
+// importance it has been handed by the pages linking to it, and when a sitemap says it last changed
+public final class FrontierEntry {
+  private final URI uri;
+  private final int depth;
+  private final double importance;
+  private final long lastModified;
+  private final long fingerprint;
+  private final boolean fingerprinted;
+
+  public FrontierEntry(URI uri, int depth, double importance) {
+    this(uri, depth, importance, 0);
+  }
+
+  public FrontierEntry(URI uri, int depth, double importance, long lastModified) {
+    this(uri, 0, false, depth, importance, lastModified);
+  }
+
+  // fingerprint is URLUtils.fingerprint(uri), passed on when canonicalising has worked it out
+  public FrontierEntry(URI uri, long fingerprint, int depth, double importance, long lastModified) {
+    this(uri, fingerprint, true, depth, importance, lastModified);
+  }
+
+  private FrontierEntry(
+      URI uri,
+      long fingerprint,
+      boolean fingerprinted,
+      int depth,
+      double importance,
+      long lastModified) {
+    this.uri = uri;
+    this.fingerprint = fingerprint;
+    this.fingerprinted = fingerprinted;
+    this.depth = depth;
+    this.importance = importance;
+    this.lastModified = lastModified;
+  }
+
+  public URI getUri() {
+    return uri;
+  }
+
+  // hashed from the uri each time when the entry was not given it
+  public long getFingerprint() {
+    return fingerprinted ? fingerprint : URLUtils.fingerprint(uri.toString());
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public double getImportance() {
+    return importance;
+  }
+
+  // epoch milliseconds, 0 when not known
+  public long getLastModified() {
+    return lastModified;
+  }
+}
@@ -6,13 +6,66 @@ import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
-public class HTMLFetcher {
+public class HTMLFetcher implements Closeable {
 
   private static final Logger log = LoggerFactory.getLogger(HTMLFetcher.class);
 
   private static final int TIMEOUT_MS = 5000;
+  static final long DEFAULT_MAX_BODY_BYTES = 10L * 1024 * 1024;
+  private static final Set<String> NON_HTML_EXTENSIONS =
+      Set.of(
+          "pdf", "jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp", "tif", "tiff", "zip",
+          "gz", "tgz", "tar", "rar", "7z", "mp3", "mp4", "m4a", "avi", "mov", "mkv", "webm", "wav",
+          "ogg", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "exe", "dmg", "iso", "css", "js",
+          "json", "xml", "woff", "woff2", "ttf", "csv", "txt");
+
+  private final PageFetcher pageFetcher;
+  private final ValidatorCache validatorCache;
+  private final long maxBodyBytes;
+  private final boolean headNonHtml;
+
+  public HTMLFetcher() {
+    this(new HttpClientFetcher());
+  }
+
+  public HTMLFetcher(PageFetcher pageFetcher) {
+    this(pageFetcher, null);
+  }
+
+  // with a validator cache, pages are fetched conditionally and unchanged ones are not parsed
+  public HTMLFetcher(PageFetcher pageFetcher, ValidatorCache validatorCache) {
+    this(pageFetcher, validatorCache, DEFAULT_MAX_BODY_BYTES, false);
+  }
+
+  // bodies are cut off after maxBodyBytes; with headNonHtml, urls whose extension suggests they
+  // are not html get a HEAD request first and are only downloaded if it says they are
+  public HTMLFetcher(
+      PageFetcher pageFetcher,
+      ValidatorCache validatorCache,
+      long maxBodyBytes,
+      boolean headNonHtml) {
+    this.pageFetcher = pageFetcher;
+    this.validatorCache = validatorCache;
+    this.maxBodyBytes = maxBodyBytes;
+    this.headNonHtml = headNonHtml;
+  }
+
+  PageFetcher getPageFetcher() {
+    return pageFetcher;
+  }
 
   public String fetchHTML(String url) throws IOException {
     if (StringUtils.isBlank(url)) {
@@ -32,4 +85,180 @@ public class HTMLFetcher {
       return null;
     }
   }
+
+  public Set<URI> fetchLinks(String url, LinkExtractor linkExtractor) {
+    return fetchPage(url, linkExtractor).getLinks();
+  }
+
+  // streams the body straight into the extractor, so the page is never built into a DOM or String
+  public PageResult fetchPage(String url, LinkExtractor linkExtractor) {
+    if (StringUtils.isBlank(url)) {
+      return PageResult.failed(url, 0);
+    }
+    url = url.trim();
+    ValidatorCache.Entry cached = validatorCache == null ? null : validatorCache.get(url);
+    long start = System.nanoTime();
+    if (headNonHtml && hasNonHtmlExtension(url)) {
+      PageResult skipped = checkHead(url, start);
+      if (skipped != null) {
+        return skipped;
+      }
+    }
+    try (FetchResponse response = fetch(conditionalRequest(URI.create(url), cached))) {
+      long latencyNanos = System.nanoTime() - start;
+      int statusCode = response.getStatusCode();
+      if (statusCode == 304 && cached != null) {
+        log.debug("{} not modified, replaying {} cached links", url, cached.getLinks().size());
+        return new PageResult(
+            url, statusCode, new HashSet<>(cached.getLinks()), latencyNanos, true, null);
+      }
+      if (statusCode != 200) {
+        log.debug("{} returned status HTTP {}", url, statusCode);
+        return new PageResult(
+            url, statusCode, new HashSet<>(), latencyNanos, false, retryAfter(response));
+      }
+      String contentType = response.header("Content-Type");
+      if (!isHtml(contentType)) {
+        // closing the response without reading it drops the rest of the download
+        log.debug("{} is {}, not reading it", url, contentType);
+        return PageResult.notHtml(url, statusCode, latencyNanos, contentType);
+      }
+      BoundedInputStream boundedBody = new BoundedInputStream(response.getBody(), maxBodyBytes);
+      HashingInputStream hashedBody = new HashingInputStream(boundedBody);
+      long parseStart = System.nanoTime();
+      LinkExtractor.Extraction extraction;
+      try (Reader body = new InputStreamReader(hashedBody, response.charset())) {
+        extraction = linkExtractor.extract(body, response.getUri().toString());
+      }
+      long extractNanos = extraction.getExtractNanos();
+      // a page is only fetched once its body is in, however fast the headers came
+      latencyNanos = System.nanoTime() - start - extractNanos;
+      long parseNanos = System.nanoTime() - parseStart - extractNanos;
+      Set<URI> links = extraction.getLinks();
+      if (boundedBody.isTruncated()) {
+        log.debug("{} is larger than {} bytes, only the start was read", url, maxBodyBytes);
+      }
+      remember(url, response, hashedBody.getHash(), links, cached);
+      return new PageResult(
+          url,
+          statusCode,
+          links,
+          latencyNanos,
+          false,
+          null,
+          hashedBody.getCount(),
+          parseNanos,
+          extractNanos,
+          extraction.getDuplicateOf(),
+          boundedBody.isTruncated(),
+          null);
+    } catch (IOException | IllegalArgumentException e) {
+      log.error("Failed to fetch {}", url, e);
+      return PageResult.failed(url, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    pageFetcher.close();
+    if (validatorCache != null) {
+      validatorCache.close();
+    }
+  }
+
+  // the result when a HEAD request shows the url is not html, otherwise null to go on with a GET;
+  // servers that refuse HEAD simply get the GET
+  private PageResult checkHead(String url, long start) {
+    try (FetchResponse response = fetch(new FetchRequest(URI.create(url)).method("HEAD"))) {
+      String contentType = response.header("Content-Type");
+      if (response.getStatusCode() == 200 && !isHtml(contentType)) {
+        log.debug("HEAD says {} is {}, not downloading it", url, contentType);
+        return PageResult.notHtml(url, 200, System.nanoTime() - start, contentType);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      log.debug("HEAD request for {} failed, trying GET", url, e);
+    }
+    return null;
+  }
+
+  // a missing content type gets the benefit of the doubt
+  static boolean isHtml(String contentType) {
+    if (contentType == null) {
+      return true;
+    }
+    int end = contentType.indexOf(';');
+    String mediaType =
+        (end < 0 ? contentType : contentType.substring(0, end)).trim().toLowerCase(Locale.ROOT);
+    return mediaType.isEmpty()
+        || mediaType.equals("text/html")
+        || mediaType.equals("application/xhtml+xml");
+  }
+
+  static boolean hasNonHtmlExtension(String url) {
+    String path = URI.create(url).getRawPath();
+    if (path == null) {
+      return false;
+    }
+    int dot = path.lastIndexOf('.');
+    if (dot < 0 || dot < path.lastIndexOf('/')) {
+      return false;
+    }
+    return NON_HTML_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  // only the delay-seconds form; an HTTP date is treated as no hint
+  static Duration retryAfter(FetchResponse response) {
+    String value = response.header("Retry-After");
+    if (value == null || !StringUtils.isNumeric(value.trim()) || value.trim().length() > 9) {
+      return null;
+    }
+    return Duration.ofSeconds(Long.parseLong(value.trim()));
+  }
+
+  private FetchRequest conditionalRequest(URI uri, ValidatorCache.Entry cached) {
+    FetchRequest request = new FetchRequest(uri);
+    if (cached != null && cached.getEtag() != null) {
+      request.header("If-None-Match", cached.getEtag());
+    }
+    if (cached != null && cached.getLastModified() != null) {
+      request.header("If-Modified-Since", cached.getLastModified());
+    }
+    return request;
+  }
+
+  private void remember(
+      String url,
+      FetchResponse response,
+      long contentHash,
+      Set<URI> links,
+      ValidatorCache.Entry cached) {
+    if (validatorCache == null) {
+      return;
+    }
+    if (cached != null && cached.getContentHash() == contentHash) {
+      log.debug("{} was downloaded again but has not changed", url);
+    }
+    try {
+      validatorCache.put(
+          url,
+          new ValidatorCache.Entry(
+              response.header("ETag"), response.header("Last-Modified"), contentHash, links));
+    } catch (UncheckedIOException e) {
+      // the page is only fetched again in full next time, its links must not be lost over it
+      log.warn("Unable to cache the validators of {}", url, e);
+    }
+  }
+
+  private FetchResponse fetch(FetchRequest request) throws IOException {
+    URI uri = request.getUri();
+    try {
+      return pageFetcher.fetch(request).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching " + uri);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+  }
 }
@@ -0,0 +1,31 @@
+package com.nedyalkova.crawler.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// consistent hashing of url fingerprints onto node ids; every node sits on the ring many times so
+// shards come out even and losing a node only moves that node's share to its neighbours
+public class HashRing {
+
+  static final int VIRTUAL_NODES = 128;
+
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+
+  public HashRing(Collection<String> nodeIds) {
+    for (String nodeId : nodeIds) {
+      for (int i = 0; i < VIRTUAL_NODES; i++) {
+        ring.put(URLUtils.fingerprint(nodeId + "#" + i), nodeId);
+      }
+    }
+  }
+
+  // null when there are no nodes
+  public String ownerOf(long fingerprint) {
+    if (ring.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Long, String> owner = ring.ceilingEntry(fingerprint);
+    return owner == null ? ring.firstEntry().getValue() : owner.getValue();
+  }
+}
@@ -0,0 +1,61 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// 64-bit FNV-1a and a count over every byte read through it
+class HashingInputStream extends FilterInputStream {
+
+  private long hash = 0xCBF29CE484222325L;
+  private long count;
+
+  HashingInputStream(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      update(b);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int count = super.read(buffer, offset, length);
+    for (int i = 0; i < count; i++) {
+      update(buffer[offset + i] & 0xFF);
+    }
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    // skipped bytes would be missing from the hash
+    byte[] discard = new byte[(int) Math.min(n, 8192)];
+    int count = read(discard, 0, discard.length);
+    return Math.max(count, 0);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  long getHash() {
+    return hash;
+  }
+
+  long getCount() {
+    return count;
+  }
+
+  private void update(int b) {
+    count++;
+    hash ^= b;
+    hash *= 0x100000001B3L;
+  }
+}
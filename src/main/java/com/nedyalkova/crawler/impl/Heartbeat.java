@@ -0,0 +1,85 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+// what a node tells the coordinator: where to reach it, whether it has work, and the number of the
+// last link batch it has had acknowledged by, and taken in from, every other node
+class Heartbeat {
+
+  private final String nodeId;
+  private final InetSocketAddress address;
+  private final boolean idle;
+  private final Map<String, Long> sentTo;
+  private final Map<String, Long> receivedFrom;
+
+  Heartbeat(
+      String nodeId,
+      InetSocketAddress address,
+      boolean idle,
+      Map<String, Long> sentTo,
+      Map<String, Long> receivedFrom) {
+    this.nodeId = nodeId;
+    this.address = address;
+    this.idle = idle;
+    this.sentTo = sentTo;
+    this.receivedFrom = receivedFrom;
+  }
+
+  String getNodeId() {
+    return nodeId;
+  }
+
+  InetSocketAddress getAddress() {
+    return address;
+  }
+
+  boolean isIdle() {
+    return idle;
+  }
+
+  long sentTo(String nodeId) {
+    return sentTo.getOrDefault(nodeId, 0L);
+  }
+
+  long receivedFrom(String nodeId) {
+    return receivedFrom.getOrDefault(nodeId, 0L);
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(nodeId);
+    out.writeUTF(address.getHostString());
+    out.writeInt(address.getPort());
+    out.writeBoolean(idle);
+    writeCounts(out, sentTo);
+    writeCounts(out, receivedFrom);
+  }
+
+  static Heartbeat readFrom(DataInput in) throws IOException {
+    String nodeId = in.readUTF();
+    InetSocketAddress address = InetSocketAddress.createUnresolved(in.readUTF(), in.readInt());
+    boolean idle = in.readBoolean();
+    return new Heartbeat(nodeId, address, idle, readCounts(in), readCounts(in));
+  }
+
+  private static void writeCounts(DataOutput out, Map<String, Long> counts) throws IOException {
+    out.writeInt(counts.size());
+    for (Map.Entry<String, Long> count : counts.entrySet()) {
+      out.writeUTF(count.getKey());
+      out.writeLong(count.getValue());
+    }
+  }
+
+  private static Map<String, Long> readCounts(DataInput in) throws IOException {
+    int size = in.readInt();
+    Map<String, Long> counts = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      counts.put(in.readUTF(), in.readLong());
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,237 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+// in-memory frontier with a queue per host, handed out round robin over the hosts that can take a
+// request right now. A host is skipped while it has maxActivePerHost urls in flight or its rate
+// says to wait, so a slow or throttled host leaves the workers to the others. A host's weight is
+// how many urls it gets in a row before the next host's turn. Given a backing frontier, urls are
+// queued there and only a window of them is pulled into the host queues, so a disk or priority
+// frontier decides what comes next and this one decides which host it goes to
+public class HostQueueFrontier implements Frontier {
+
+  // null when every url is kept in the host queues
+  private final Frontier backing;
+  private final int window;
+  private final int maxActivePerHost;
+  private final ToLongFunction<String> nanosUntilReady;
+  private final ToIntFunction<String> weights;
+  private final Map<String, HostQueue> hosts = new HashMap<>();
+  // hosts with queued urls that may be ready, in turn order
+  private final ArrayDeque<HostQueue> ready = new ArrayDeque<>();
+  // hosts with queued urls that have to wait, soonest first
+  private final PriorityQueue<HostQueue> waiting =
+      new PriorityQueue<>(Comparator.comparingLong(host -> host.readyAtNanos));
+  private long size;
+
+  // nanosUntilReady tells how long a host wants to be left alone, 0 when it can be sent a request
+  public HostQueueFrontier(
+      int maxActivePerHost,
+      ToLongFunction<String> nanosUntilReady,
+      ToIntFunction<String> weights) {
+    this(null, Integer.MAX_VALUE, maxActivePerHost, nanosUntilReady, weights);
+  }
+
+  // window is how many urls are held in the host queues at most, the rest wait in backing
+  public HostQueueFrontier(
+      Frontier backing,
+      int window,
+      int maxActivePerHost,
+      ToLongFunction<String> nanosUntilReady,
+      ToIntFunction<String> weights) {
+    if (maxActivePerHost < 1 || window < 1) {
+      throw new IllegalArgumentException("maxActivePerHost and window must be at least 1");
+    }
+    this.backing = backing;
+    this.window = window;
+    this.maxActivePerHost = maxActivePerHost;
+    this.nanosUntilReady = nanosUntilReady;
+    this.weights = weights;
+  }
+
+  @Override
+  public void add(URI uri) {
+    add(new FrontierEntry(uri, 0, 0));
+  }
+
+  @Override
+  public void add(FrontierEntry entry) {
+    if (backing != null) {
+      backing.add(entry);
+      return;
+    }
+    synchronized (this) {
+      queue(entry);
+    }
+  }
+
+  @Override
+  public void addInLink(URI uri, double importance) {
+    if (backing != null) {
+      backing.addInLink(uri, importance);
+    }
+  }
+
+  @Override
+  public boolean countsInLinks() {
+    return backing != null && backing.countsInLinks();
+  }
+
+  private void queue(FrontierEntry entry) {
+    HostQueue host = hosts.computeIfAbsent(hostOf(entry.getUri()), HostQueue::new);
+    host.entries.add(entry);
+    size++;
+    schedule(host);
+  }
+
+  @Override
+  public URI poll() {
+    FrontierEntry next = pollEntry();
+    return next == null ? null : next.getUri();
+  }
+
+  // null when no host can be sent a request now, which is not the same as empty
+  @Override
+  public synchronized FrontierEntry pollEntry() {
+    FrontierEntry pulled;
+    while (backing != null && size < window && (pulled = backing.pollEntry()) != null) {
+      queue(pulled);
+    }
+    long now = System.nanoTime();
+    while (!waiting.isEmpty() && waiting.peek().readyAtNanos - now <= 0) {
+      ready.addLast(waiting.poll());
+    }
+    HostQueue host;
+    while ((host = ready.peekFirst()) != null) {
+      long wait = nanosUntilReady.applyAsLong(host.name);
+      if (wait <= 0) {
+        break;
+      }
+      ready.pollFirst();
+      host.readyAtNanos = now + wait;
+      host.turn = 0;
+      waiting.add(host);
+    }
+    if (host == null) {
+      return null;
+    }
+    FrontierEntry next = host.entries.poll();
+    size--;
+    host.active++;
+    host.turn++;
+    if (host.entries.isEmpty() || host.active >= maxActivePerHost) {
+      ready.pollFirst();
+      host.scheduled = false;
+      host.turn = 0;
+    } else if (host.turn >= Math.max(1, weights.applyAsInt(host.name))) {
+      ready.addLast(ready.pollFirst());
+      host.turn = 0;
+    }
+    return next;
+  }
+
+  // a url handed out by pollEntry() has been crawled, so its host may take another
+  @Override
+  public synchronized void done(URI uri) {
+    String name = hostOf(uri);
+    HostQueue host = hosts.get(name);
+    if (host == null || host.active == 0) {
+      return;
+    }
+    host.active--;
+    if (host.entries.isEmpty() && host.active == 0) {
+      hosts.remove(name);
+    } else {
+      schedule(host);
+    }
+  }
+
+  @Override
+  public synchronized long nanosUntilReady() {
+    if (!ready.isEmpty() || (backing != null && size < window && !backing.isEmpty())) {
+      return 0;
+    }
+    if (waiting.isEmpty()) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, waiting.peek().readyAtNanos - System.nanoTime());
+  }
+
+  @Override
+  public synchronized URI peek() {
+    HostQueue host = ready.isEmpty() ? waiting.peek() : ready.peekFirst();
+    if (host == null) {
+      host = hosts.values().stream().filter(h -> !h.entries.isEmpty()).findFirst().orElse(null);
+    }
+    if (host == null) {
+      return backing == null ? null : backing.peek();
+    }
+    return host.entries.peek().getUri();
+  }
+
+  @Override
+  public synchronized long size() {
+    return backing == null ? size : size + backing.size();
+  }
+
+  @Override
+  public void close() {
+    if (backing != null) {
+      backing.close();
+    }
+  }
+
+  // null without one
+  public Frontier getBacking() {
+    return backing;
+  }
+
+  // the urls pulled out of the backing frontier that have not been handed out yet
+  public synchronized List<FrontierEntry> buffered() {
+    List<FrontierEntry> buffered = new ArrayList<>();
+    for (HostQueue host : hosts.values()) {
+      buffered.addAll(host.entries);
+    }
+    return buffered;
+  }
+
+  // hosts with urls queued or in flight
+  public synchronized int hostCount() {
+    return hosts.size();
+  }
+
+  private void schedule(HostQueue host) {
+    if (!host.scheduled && !host.entries.isEmpty() && host.active < maxActivePerHost) {
+      host.scheduled = true;
+      ready.addLast(host);
+    }
+  }
+
+  private static String hostOf(URI uri) {
+    return uri.getHost() == null ? "" : uri.getHost();
+  }
+
+  private static final class HostQueue {
+    private final String name;
+    private final ArrayDeque<FrontierEntry> entries = new ArrayDeque<>();
+    private int active;
+    // urls handed out in the current turn
+    private int turn;
+    // in ready or waiting
+    private boolean scheduled;
+    private long readyAtNanos;
+
+    HostQueue(String name) {
+      this.name = name;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.nedyalkova.crawler.impl;
+
+import java.time.Duration;
+
+// AIMD request rate for one host: ramps up while responses stay fast, halves on 429/503 or spikes
+public class HostRateController {
+
+  private static final double DECREASE_FACTOR = 0.5;
+  private static final double LATENCY_SPIKE_FACTOR = 3.0;
+  private static final double LATENCY_SMOOTHING = 0.2;
+  private static final int WARMUP_SAMPLES = 5;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private final double minRate;
+  private final double increaseStep;
+  private double maxRate;
+  private double rate;
+
+  private long nextSlotNanos = Long.MIN_VALUE;
+  private long lastDecreaseNanos = Long.MIN_VALUE;
+  private double latencyEwmaNanos;
+  private int samples;
+
+  // rates are in requests per second; increaseStep is roughly how much the rate grows per second
+  public HostRateController(
+      double initialRate, double minRate, double maxRate, double increaseStep) {
+    if (minRate <= 0 || maxRate < minRate) {
+      throw new IllegalArgumentException("Expected 0 < minRate <= maxRate");
+    }
+    this.minRate = minRate;
+    this.maxRate = maxRate;
+    this.increaseStep = increaseStep;
+    this.rate = clamp(initialRate);
+  }
+
+  // books the next request slot and returns how long the caller has to wait for it
+  public synchronized long reserve(long nowNanos) {
+    long slot = nextSlotNanos == Long.MIN_VALUE ? nowNanos : Math.max(nowNanos, nextSlotNanos);
+    nextSlotNanos = slot + (long) (NANOS_PER_SECOND / rate);
+    return slot - nowNanos;
+  }
+
+  // books the next slot only if it has come, for a request that is not worth waiting for
+  public synchronized boolean tryReserve(long nowNanos) {
+    if (nextSlotNanos != Long.MIN_VALUE && nextSlotNanos > nowNanos) {
+      return false;
+    }
+    reserve(nowNanos);
+    return true;
+  }
+
+  // how long until the next slot, without booking it
+  public synchronized long waitNanos(long nowNanos) {
+    return nextSlotNanos == Long.MIN_VALUE ? 0 : Math.max(0, nextSlotNanos - nowNanos);
+  }
+
+  public synchronized void onResponse(
+      int statusCode, long latencyNanos, Duration retryAfter, long nowNanos) {
+    if (retryAfter != null) {
+      nextSlotNanos = Math.max(nextSlotNanos, nowNanos + retryAfter.toNanos());
+    }
+    boolean overloaded = statusCode == 429 || statusCode == 503;
+    boolean spike =
+        samples >= WARMUP_SAMPLES && latencyNanos > LATENCY_SPIKE_FACTOR * latencyEwmaNanos;
+    if (overloaded || spike) {
+      decrease(nowNanos);
+      return;
+    }
+    if (statusCode == PageResult.FAILED) {
+      return;
+    }
+    latencyEwmaNanos =
+        samples == 0
+            ? latencyNanos
+            : (1 - LATENCY_SMOOTHING) * latencyEwmaNanos + LATENCY_SMOOTHING * latencyNanos;
+    samples++;
+    // dividing by the rate makes the increase per second, not per response
+    rate = clamp(rate + increaseStep / rate);
+  }
+
+  // robots.txt Crawl-delay is a hard upper bound on the rate
+  public synchronized void limitTo(Duration crawlDelay) {
+    double delayRate = (double) NANOS_PER_SECOND / crawlDelay.toNanos();
+    maxRate = Math.max(minRate, Math.min(maxRate, delayRate));
+    rate = clamp(rate);
+  }
+
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  private void decrease(long nowNanos) {
+    // responses to requests sent before the last decrease should not cut the rate again
+    long cooldown = (long) Math.max(NANOS_PER_SECOND / rate, latencyEwmaNanos);
+    if (lastDecreaseNanos != Long.MIN_VALUE && nowNanos - lastDecreaseNanos < cooldown) {
+      return;
+    }
+    lastDecreaseNanos = nowNanos;
+    rate = clamp(rate * DECREASE_FACTOR);
+  }
+
+  private double clamp(double value) {
+    return Math.max(minRate, Math.min(maxRate, value));
+  }
+}
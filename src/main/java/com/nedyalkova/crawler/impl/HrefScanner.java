@@ -0,0 +1,216 @@
+package com.nedyalkova.crawler.impl;
+
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Set;
+
+// reports anchor hrefs straight from the character stream, without building a DOM
+class HrefScanner {
+
+  interface Listener {
+    void onBaseHref(String href);
+
+    void onAnchorHref(String href);
+
+    // characters outside tags, comments and script or style blocks
+    default void onText(char c) {}
+  }
+
+  private static final Set<String> RAW_TEXT_TAGS =
+      Set.of("script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes");
+
+  private final Reader reader;
+  private final Listener listener;
+  private final char[] buffer = new char[8192];
+  private final StringBuilder token = new StringBuilder();
+  private int position;
+  private int limit;
+
+  HrefScanner(Reader reader, Listener listener) {
+    this.reader = reader;
+    this.listener = listener;
+  }
+
+  void scan() throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c != '<') {
+        listener.onText((char) c);
+        continue;
+      }
+      int next = peek();
+      if (next == '!') {
+        read();
+        skipCommentOrDeclaration();
+      } else if (next == '/' || next == '?') {
+        skipPast('>');
+      } else if (isLetter(next)) {
+        scanStartTag();
+      }
+    }
+  }
+
+  private void scanStartTag() throws IOException {
+    String tagName = readTagName();
+    boolean anchor = tagName.equals("a");
+    boolean base = tagName.equals("base");
+    boolean hrefSeen = false;
+    while (true) {
+      skipWhitespaceAndSlashes();
+      int c = peek();
+      if (c == -1) {
+        return;
+      }
+      if (c == '>') {
+        read();
+        break;
+      }
+      String attributeName = readAttributeName();
+      skipWhitespace();
+      String value = null;
+      if (peek() == '=') {
+        read();
+        skipWhitespace();
+        value = readAttributeValue();
+      }
+      if (!hrefSeen && value != null && attributeName.equals("href")) {
+        hrefSeen = true;
+        if (anchor) {
+          listener.onAnchorHref(value);
+        } else if (base) {
+          listener.onBaseHref(value);
+        }
+      }
+    }
+    if (RAW_TEXT_TAGS.contains(tagName)) {
+      skipRawText(tagName);
+    }
+  }
+
+  private String readTagName() throws IOException {
+    token.setLength(0);
+    int c;
+    while ((c = peek()) != -1 && !isWhitespace(c) && c != '/' && c != '>') {
+      token.append((char) Character.toLowerCase(read()));
+    }
+    return token.toString();
+  }
+
+  private String readAttributeName() throws IOException {
+    token.setLength(0);
+    // the first character is consumed unconditionally so a stray '=' cannot stall the loop
+    token.append((char) Character.toLowerCase(read()));
+    int c;
+    while ((c = peek()) != -1 && !isWhitespace(c) && c != '=' && c != '>' && c != '/') {
+      token.append((char) Character.toLowerCase(read()));
+    }
+    return token.toString();
+  }
+
+  private String readAttributeValue() throws IOException {
+    token.setLength(0);
+    int quote = peek();
+    int c;
+    if (quote == '"' || quote == '\'') {
+      read();
+      while ((c = read()) != -1 && c != quote) {
+        token.append((char) c);
+      }
+    } else {
+      while ((c = peek()) != -1 && !isWhitespace(c) && c != '>') {
+        token.append((char) read());
+      }
+    }
+    String value = token.toString();
+    return value.indexOf('&') >= 0 ? Parser.unescapeEntities(value, true) : value;
+  }
+
+  private void skipCommentOrDeclaration() throws IOException {
+    if (peek() != '-') {
+      skipPast('>');
+      return;
+    }
+    read();
+    if (peek() != '-') {
+      skipPast('>');
+      return;
+    }
+    read();
+    int dashes = 0;
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '>' && dashes >= 2) {
+        return;
+      }
+      dashes = c == '-' ? dashes + 1 : 0;
+    }
+  }
+
+  private void skipRawText(String tagName) throws IOException {
+    int c;
+    while ((c = read()) != -1) {
+      if (c == '<' && peek() == '/') {
+        read();
+        String closing = readTagName();
+        if (closing.equals(tagName)) {
+          skipPast('>');
+          return;
+        }
+      }
+    }
+  }
+
+  private void skipPast(char target) throws IOException {
+    int c;
+    while ((c = read()) != -1 && c != target) {
+      // consume
+    }
+  }
+
+  private void skipWhitespace() throws IOException {
+    while (isWhitespace(peek())) {
+      read();
+    }
+  }
+
+  private void skipWhitespaceAndSlashes() throws IOException {
+    int c;
+    while ((c = peek()) == '/' || isWhitespace(c)) {
+      read();
+    }
+  }
+
+  private int read() throws IOException {
+    if (position == limit && !fill()) {
+      return -1;
+    }
+    return buffer[position++];
+  }
+
+  private int peek() throws IOException {
+    if (position == limit && !fill()) {
+      return -1;
+    }
+    return buffer[position];
+  }
+
+  private boolean fill() throws IOException {
+    int count = reader.read(buffer, 0, buffer.length);
+    if (count <= 0) {
+      return false;
+    }
+    position = 0;
+    limit = count;
+    return true;
+  }
+
+  private static boolean isLetter(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+  }
+}
@@ -0,0 +1,99 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+// one shared client, so connections are pooled and HTTP/2 streams multiplexed across requests.
+// The client's timeout only covers the wait for the headers, so the body is given whatever is
+// left of the request's timeout after them
+public class HttpClientFetcher implements PageFetcher {
+
+  static final String USER_AGENT = "SimpleWebCrawler/1.0";
+  private static final String ACCEPT = "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1";
+  private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  private final HttpClient client;
+
+  public HttpClientFetcher() {
+    this(
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build());
+  }
+
+  HttpClientFetcher(HttpClient client) {
+    this.client = client;
+  }
+
+  @Override
+  public CompletableFuture<FetchResponse> fetch(FetchRequest request) {
+    HttpRequest.Builder builder =
+        HttpRequest.newBuilder(request.getUri())
+            .timeout(request.getTimeout())
+            .header("User-Agent", USER_AGENT)
+            .header("Accept", ACCEPT)
+            .header("Accept-Encoding", ACCEPT_ENCODING);
+    request.getHeaders().forEach(builder::setHeader);
+    builder.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+    long deadline = System.nanoTime() + request.getTimeout().toNanos();
+    return client
+        .sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream())
+        .thenApply(response -> toFetchResponse(response, deadline));
+  }
+
+  private FetchResponse toFetchResponse(HttpResponse<InputStream> response, long deadline) {
+    // bodiless responses may still name an encoding, but there is nothing to decode
+    boolean hasBody =
+        response.statusCode() != 204
+            && response.statusCode() != 304
+            && !response.request().method().equals("HEAD");
+    String encoding =
+        hasBody ? response.headers().firstValue("Content-Encoding").orElse("identity") : "identity";
+    try {
+      return new FetchResponse(
+          response.uri(),
+          response.statusCode(),
+          response.headers().map(),
+          decode(
+              hasBody
+                  ? new DeadlineInputStream(
+                      response.body(), response.uri(), deadline - System.nanoTime())
+                  : response.body(),
+              encoding));
+    } catch (IOException e) {
+      closeQuietly(response.body());
+      throw new UncheckedIOException("Unable to decode " + encoding + " body", e);
+    }
+  }
+
+  private static InputStream decode(InputStream body, String encoding) throws IOException {
+    switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+      case "gzip":
+      case "x-gzip":
+        return new GZIPInputStream(body, 8192);
+      case "deflate":
+        return new InflaterInputStream(body);
+      default:
+        return body;
+    }
+  }
+
+  private static void closeQuietly(InputStream body) {
+    try {
+      body.close();
+    } catch (IOException ignored) {
+      // the response is being discarded anyway
+    }
+  }
+}
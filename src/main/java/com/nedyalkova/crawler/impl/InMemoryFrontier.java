@@ -0,0 +1,50 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InMemoryFrontier implements Frontier {
+
+  private final Queue<FrontierEntry> queue = new ConcurrentLinkedQueue<>();
+  // ConcurrentLinkedQueue.size() walks the whole queue
+  private final AtomicLong size = new AtomicLong();
+
+  @Override
+  public void add(URI uri) {
+    add(new FrontierEntry(uri, 0, 0));
+  }
+
+  @Override
+  public void add(FrontierEntry entry) {
+    queue.add(entry);
+    size.incrementAndGet();
+  }
+
+  @Override
+  public URI poll() {
+    FrontierEntry next = pollEntry();
+    return next == null ? null : next.getUri();
+  }
+
+  @Override
+  public FrontierEntry pollEntry() {
+    FrontierEntry next = queue.poll();
+    if (next != null) {
+      size.decrementAndGet();
+    }
+    return next;
+  }
+
+  @Override
+  public URI peek() {
+    FrontierEntry next = queue.peek();
+    return next == null ? null : next.getUri();
+  }
+
+  @Override
+  public long size() {
+    return size.get();
+  }
+}
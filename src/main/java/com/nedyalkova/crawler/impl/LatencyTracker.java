@@ -0,0 +1,96 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// recent response times per host and per first path segment of a host, from which request
+// timeouts and hedging delays are taken. Each keeps its last WINDOW samples, so the percentiles
+// follow a host that speeds up or slows down, and only the most recently used keys are kept
+public class LatencyTracker {
+
+  static final int WINDOW = 64;
+  // fewer samples than this and a percentile is not trusted
+  static final int MIN_SAMPLES = 16;
+  private static final int MAX_KEYS = 10_000;
+
+  private final double timeoutFactor;
+  private final long minTimeoutNanos;
+  private final long maxTimeoutNanos;
+  private final Map<String, Window> windows =
+      new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+          return size() > MAX_KEYS;
+        }
+      };
+
+  // a timeout is p99 times timeoutFactor, kept between minTimeout and maxTimeout
+  public LatencyTracker(double timeoutFactor, Duration minTimeout, Duration maxTimeout) {
+    if (timeoutFactor < 1) {
+      throw new IllegalArgumentException("timeoutFactor must be at least 1");
+    }
+    if (minTimeout.isNegative() || minTimeout.compareTo(maxTimeout) > 0) {
+      throw new IllegalArgumentException("Expected 0 <= minTimeout <= maxTimeout");
+    }
+    this.timeoutFactor = timeoutFactor;
+    this.minTimeoutNanos = minTimeout.toNanos();
+    this.maxTimeoutNanos = maxTimeout.toNanos();
+  }
+
+  public synchronized void record(URI uri, long nanos) {
+    windows.computeIfAbsent(hostKey(uri), key -> new Window()).add(nanos);
+    windows.computeIfAbsent(prefixKey(uri), key -> new Window()).add(nanos);
+  }
+
+  // maxTimeout until the host has answered often enough to know better
+  public Duration timeoutFor(URI uri) {
+    long p99 = percentile(uri, 99);
+    if (p99 == 0) {
+      return Duration.ofNanos(maxTimeoutNanos);
+    }
+    long timeout = (long) Math.min(p99 * timeoutFactor, Long.MAX_VALUE);
+    return Duration.ofNanos(Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, timeout)));
+  }
+
+  // of the url's path prefix when it has enough samples, else of its host; 0 when neither has
+  public synchronized long percentile(URI uri, double percentile) {
+    Window window = windows.get(prefixKey(uri));
+    if (window == null || window.count < MIN_SAMPLES) {
+      window = windows.get(hostKey(uri));
+    }
+    return window == null || window.count < MIN_SAMPLES ? 0 : window.percentile(percentile);
+  }
+
+  private static String hostKey(URI uri) {
+    return uri.getHost() == null ? "" : uri.getHost();
+  }
+
+  // host/first-segment, so /search and /static of one host are timed apart
+  static String prefixKey(URI uri) {
+    String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+    int end = path.indexOf('/', 1);
+    return hostKey(uri) + (end < 0 ? path : path.substring(0, end));
+  }
+
+  private static final class Window {
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+
+    void add(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % WINDOW;
+      count = Math.min(count + 1, WINDOW);
+    }
+
+    long percentile(double percentile) {
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(Math.min(percentile, 100) / 100 * count);
+      return sorted[Math.max(0, rank - 1)];
+    }
+  }
+}
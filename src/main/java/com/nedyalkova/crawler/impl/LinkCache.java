@@ -0,0 +1,279 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// remembers what raw hrefs canonicalised to, so the header, footer and nav links every page of a
+// site repeats are resolved once. An href is keyed with just the part of the page url it depends
+// on: nothing for an absolute url with a host, the origin for /path, the directory for a relative
+// path (https:foo on an https page is one too) and the whole url for ?query or #fragment, so the
+// same link on sibling pages is one entry. Hrefs that are not valid links are kept too. The
+// entries are split over segments, each an LRU map with its own lock, so extraction threads
+// rarely wait on each other
+public class LinkCache {
+
+  private static final int SEGMENTS = 16;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public LinkCache(int maxEntries) {
+    if (maxEntries < SEGMENTS) {
+      throw new IllegalArgumentException("maxEntries must be at least " + SEGMENTS);
+    }
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(maxEntries / SEGMENTS, evictions);
+    }
+  }
+
+  // null when the href has not been resolved against this context yet
+  public Entry get(String context, String href) {
+    Key key = new Key(context, href);
+    Segment segment = segmentOf(key);
+    Entry entry;
+    synchronized (segment) {
+      entry = segment.get(key);
+    }
+    if (entry == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return entry;
+  }
+
+  // resolved is null when the href is not a link the crawl can follow
+  public Entry put(String context, String href, Entry resolved) {
+    Key key = new Key(context, href);
+    Entry entry = resolved == null ? new Entry(null, 0) : resolved;
+    Segment segment = segmentOf(key);
+    synchronized (segment) {
+      segment.put(key, entry);
+    }
+    return entry;
+  }
+
+  // the part of the base url that resolving href depends on
+  public static String contextOf(Base base, String href) {
+    if (href.isEmpty()) {
+      return base.full;
+    }
+    char first = href.charAt(0);
+    if (first == '/') {
+      return href.length() > 1 && href.charAt(1) == '/' ? base.scheme : base.origin;
+    }
+    if (first == '?' || first == '#' || first == '\\' || Character.isWhitespace(first)) {
+      return base.full;
+    }
+    int colon = schemeEnd(href);
+    if (colon < 0) {
+      return base.directory;
+    }
+    if (href.startsWith("//", colon + 1)) {
+      return "";
+    }
+    // https:foo on an https page is relative to it, as if the scheme were not there; another
+    // scheme makes it absolute
+    if (base.scheme.length() == colon + 1 && base.scheme.regionMatches(true, 0, href, 0, colon)) {
+      return contextOf(base, href.substring(colon + 1));
+    }
+    return "";
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  // 0 before the first lookup
+  public double getHitRate() {
+    long hit = hits.sum();
+    long total = hit + misses.sum();
+    return total == 0 ? 0 : (double) hit / total;
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private Segment segmentOf(Key key) {
+    int hash = key.hashCode();
+    return segments[(hash ^ hash >>> 16) & (SEGMENTS - 1)];
+  }
+
+  // where the href's scheme ends at its ':', -1 when it has none
+  private static int schemeEnd(String href) {
+    if (!Character.isLetter(href.charAt(0))) {
+      return -1;
+    }
+    for (int i = 1; i < href.length(); i++) {
+      char c = href.charAt(i);
+      if (c == ':') {
+        return i;
+      }
+      if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  // a page url split into the contexts of contextOf(), worked out once per page
+  public static final class Base {
+    private final String full;
+    private final String scheme;
+    private final String origin;
+    private final String directory;
+
+    public Base(String url) {
+      int hash = url.indexOf('#');
+      full = hash < 0 ? url : url.substring(0, hash);
+      int schemeEnd = full.indexOf("://");
+      if (schemeEnd <= 0) {
+        // nothing is shared with any other page
+        scheme = full;
+        origin = full;
+        directory = full;
+        return;
+      }
+      scheme = full.substring(0, schemeEnd + 1);
+      int pathEnd = full.indexOf('?');
+      pathEnd = pathEnd < 0 ? full.length() : pathEnd;
+      int authorityEnd = full.indexOf('/', schemeEnd + 3);
+      if (authorityEnd < 0 || authorityEnd > pathEnd) {
+        origin = full.substring(0, pathEnd);
+        directory = origin + "/";
+      } else {
+        origin = full.substring(0, authorityEnd);
+        directory = full.substring(0, full.lastIndexOf('/', pathEnd - 1) + 1);
+      }
+    }
+  }
+
+  // what an href resolved to with its fingerprint, and what the crawl made of that url the first
+  // time it saw it
+  public static final class Entry {
+    private static final byte UNDECIDED = 0;
+    private static final byte OUT_OF_SCOPE = 1;
+    private static final byte SEEN = 2;
+
+    private final URI uri;
+    private final long fingerprint;
+    private volatile byte decision;
+
+    Entry(URI uri, long fingerprint) {
+      this.uri = uri;
+      this.fingerprint = fingerprint;
+    }
+
+    // null for an href that is not a followable link
+    public URI getUri() {
+      return uri;
+    }
+
+    // URLUtils.fingerprint of the uri, worked out when it was canonicalised
+    public long getFingerprint() {
+      return fingerprint;
+    }
+
+    // the url failed validation, which it will do again
+    public boolean isOutOfScope() {
+      return decision == OUT_OF_SCOPE;
+    }
+
+    // the url is in the seen set already
+    public boolean isSeen() {
+      return decision == SEEN;
+    }
+
+    void markOutOfScope() {
+      decision = OUT_OF_SCOPE;
+    }
+
+    void markSeen() {
+      decision = SEEN;
+    }
+  }
+
+  // the links found on one page, each with the entry it resolved to, which is only shared with
+  // other pages through a cache
+  public static final class Links extends AbstractSet<URI> {
+    private final Map<URI, Entry> entries = new HashMap<>();
+
+    void add(URI uri, Entry entry) {
+      entries.putIfAbsent(uri, entry);
+    }
+
+    @Override
+    public boolean add(URI uri) {
+      if (entries.containsKey(uri)) {
+        return false;
+      }
+      entries.put(uri, null);
+      return true;
+    }
+
+    public Entry entryOf(URI uri) {
+      return entries.get(uri);
+    }
+
+    @Override
+    public boolean contains(Object uri) {
+      return entries.containsKey(uri);
+    }
+
+    @Override
+    public Iterator<URI> iterator() {
+      return entries.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+      return entries.size();
+    }
+  }
+
+  private record Key(String context, String href) {}
+
+  private static final class Segment extends LinkedHashMap<Key, Entry> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final transient LongAdder evictions;
+
+    Segment(int capacity, LongAdder evictions) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+      this.evictions = evictions;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+}
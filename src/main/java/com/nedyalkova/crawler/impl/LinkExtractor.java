@@ -1,53 +1,243 @@
 package com.nedyalkova.crawler.impl;
 
-import com.nedyalkova.crawler.exception.UrlInvalidException;
-import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class LinkExtractor {
   Logger log = LoggerFactory.getLogger(LinkExtractor.class);
 
   private final URLUtils urlUtils = new URLUtils();
+  private final NearDuplicateIndex nearDuplicates;
+  private final QueryRules queryRules;
+  private final LinkCache cache;
+
+  public LinkExtractor() {
+    this(null, null, null);
+  }
+
+  // with an index, hrefs are only resolved once the page turns out not to be a near-duplicate
+  public LinkExtractor(NearDuplicateIndex nearDuplicates) {
+    this(nearDuplicates, null, null);
+  }
+
+  public LinkExtractor(NearDuplicateIndex nearDuplicates, QueryRules queryRules) {
+    this(nearDuplicates, queryRules, null);
+  }
+
+  // any of them may be null; with a cache, an href seen before costs a lookup instead of being
+  // resolved and canonicalised again, so a page costs about as much as the links new on it
+  public LinkExtractor(NearDuplicateIndex nearDuplicates, QueryRules queryRules, LinkCache cache) {
+    this.nearDuplicates = nearDuplicates;
+    this.queryRules = queryRules;
+    this.cache = cache;
+  }
+
+  // null when there is none
+  public LinkCache getCache() {
+    return cache;
+  }
 
   public Set<URI> extractLinks(String html, String baseUrl) {
     if (StringUtils.isBlank(html)) {
       return new HashSet<>();
     }
-    Document doc = Jsoup.parse(html, baseUrl);
-    Elements hRefs = doc.select("a[href]");
-    if (CollectionUtils.isEmpty(hRefs)) {
-      return new HashSet<>();
+    try {
+      return extractLinks(new StringReader(html), baseUrl);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public Set<URI> extractLinks(Reader html, String baseUrl) throws IOException {
+    return extract(html, baseUrl).getLinks();
+  }
+
+  // also reports the time spent resolving and canonicalising hrefs, apart from tokenizing
+  Extraction extract(Reader html, String baseUrl) throws IOException {
+    if (nearDuplicates == null) {
+      PageLinks pageLinks = new PageLinks(baseUrl);
+      new HrefScanner(html, pageLinks).scan();
+      return new Extraction(pageLinks.linksOnThisPage, pageLinks.extractNanos, null);
+    }
+    DeferredLinks pageLinks = new DeferredLinks(baseUrl);
+    new HrefScanner(html, pageLinks).scan();
+    SimHash simHash = pageLinks.simHash;
+    if (simHash.hasEnoughFeatures()) {
+      String duplicateOf = nearDuplicates.findOrAdd(simHash.value(), baseUrl);
+      if (duplicateOf != null) {
+        log.debug("{} is a near-duplicate of {}, not extracting its links", baseUrl, duplicateOf);
+        return new Extraction(new HashSet<>(), 0, duplicateOf);
+      }
+    }
+    long start = System.nanoTime();
+    LinkCache.Links links = new LinkCache.Links();
+    String hrefBase = null;
+    LinkCache.Base base = null;
+    for (int i = 0; i < pageLinks.hrefs.size(); i++) {
+      // the same string until a <base href> changes it
+      if (pageLinks.bases.get(i) != hrefBase) {
+        hrefBase = pageLinks.bases.get(i);
+        base = cache == null ? null : new LinkCache.Base(hrefBase);
+      }
+      addLink(pageLinks.hrefs.get(i), hrefBase, base, links);
+    }
+    return new Extraction(links, System.nanoTime() - start, null);
+  }
+
+  private void addLink(
+      String href, String baseUrl, LinkCache.Base base, LinkCache.Links linksOnThisPage) {
+    if (cache == null) {
+      LinkCache.Entry link = resolve(href, baseUrl);
+      if (link != null) {
+        linksOnThisPage.add(link.getUri(), link);
+      }
+      return;
+    }
+    String context = LinkCache.contextOf(base, href);
+    LinkCache.Entry entry = cache.get(context, href);
+    if (entry == null) {
+      entry = cache.put(context, href, resolve(href, baseUrl));
+    }
+    if (entry.getUri() != null) {
+      linksOnThisPage.add(entry.getUri(), entry);
+    }
+  }
+
+  // null when the href is not a link to crawl; the entry keeps the fingerprint canonicalising
+  // worked out, so the crawler does not hash the url again
+  private LinkCache.Entry resolve(String href, String baseUrl) {
+    String hrefAbsoluteUrl = URLUtils.resolve(baseUrl, href.trim());
+    if (StringUtils.isBlank(hrefAbsoluteUrl)) {
+      return null;
+    }
+    hrefAbsoluteUrl = hrefAbsoluteUrl.trim();
+    CanonicalUrl canonical = urlUtils.canonicalize(hrefAbsoluteUrl);
+    if (canonical == null) {
+      log.warn("Skipping {} since it could not be normalized", hrefAbsoluteUrl);
+      return null;
+    }
+    if (!canonical.isHttp()) {
+      log.warn("Skipping {} since it is invalid", href);
+      return null;
+    }
+    if (queryRules != null) {
+      canonical = queryRules.apply(canonical);
+    }
+    try {
+      URI normalized = canonical.toUri();
+      log.debug("Adding to list of results: {}", normalized);
+      return new LinkCache.Entry(normalized, canonical.getHash());
+    } catch (IllegalArgumentException e) {
+      log.warn("Skipping {} since it is invalid", href);
+      return null;
+    }
+  }
+
+  private class PageLinks implements HrefScanner.Listener {
+    private final LinkCache.Links linksOnThisPage = new LinkCache.Links();
+    private String baseUrl;
+    private LinkCache.Base base;
+    private boolean baseSeen;
+    private long extractNanos;
+
+    PageLinks(String baseUrl) {
+      this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void onBaseHref(String href) {
+      // like browsers, only the first <base href> counts
+      if (baseSeen || StringUtils.isBlank(href)) {
+        return;
+      }
+      baseSeen = true;
+      String resolved = URLUtils.resolve(baseUrl, href.trim());
+      if (StringUtils.isNotBlank(resolved)) {
+        baseUrl = resolved;
+        base = null;
+      }
+    }
+
+    @Override
+    public void onAnchorHref(String href) {
+      long start = System.nanoTime();
+      if (base == null && cache != null) {
+        base = new LinkCache.Base(baseUrl);
+      }
+      addLink(href, baseUrl, base, linksOnThisPage);
+      extractNanos += System.nanoTime() - start;
+    }
+  }
+
+  // keeps the hrefs with the base each resolves against and hashes the text on the way
+  private static class DeferredLinks implements HrefScanner.Listener {
+    private final List<String> hrefs = new ArrayList<>();
+    private final List<String> bases = new ArrayList<>();
+    private final SimHash simHash = new SimHash();
+    private String baseUrl;
+    private boolean baseSeen;
+
+    DeferredLinks(String baseUrl) {
+      this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void onBaseHref(String href) {
+      if (baseSeen || StringUtils.isBlank(href)) {
+        return;
+      }
+      baseSeen = true;
+      String resolved = URLUtils.resolve(baseUrl, href.trim());
+      if (StringUtils.isNotBlank(resolved)) {
+        baseUrl = resolved;
+      }
+    }
+
+    @Override
+    public void onAnchorHref(String href) {
+      hrefs.add(href);
+      bases.add(baseUrl);
+    }
+
+    @Override
+    public void onText(char c) {
+      simHash.accept(c);
+    }
+  }
+
+  static final class Extraction {
+    private final Set<URI> links;
+    private final long extractNanos;
+    private final String duplicateOf;
+
+    Extraction(Set<URI> links, long extractNanos, String duplicateOf) {
+      this.links = links;
+      this.extractNanos = extractNanos;
+      this.duplicateOf = duplicateOf;
+    }
+
+    // the page this one is a near-duplicate of, its links were not extracted
+    String getDuplicateOf() {
+      return duplicateOf;
+    }
+
+    Set<URI> getLinks() {
+      return links;
+    }
+
+    long getExtractNanos() {
+      return extractNanos;
     }
-    Set<URI> linksOnThisPage = new HashSet<>();
-    for (Element hRef : hRefs) {
-      try {
-        String hrefAbsoluteUrl = hRef.absUrl("href").trim();
-        if (StringUtils.isBlank(hrefAbsoluteUrl)) {
-          continue;
-        }
-        URI normalized = urlUtils.normalizeUrl(hrefAbsoluteUrl);
-        if (normalized == null) {
-          log.warn("Skipping {} since it could not be normalized", hrefAbsoluteUrl);
-          continue;
-        }
-        urlUtils.validateScheme(normalized.getScheme());
-        log.debug("Adding to list of results: {}", normalized);
-        linksOnThisPage.add(normalized);
-      } catch (UrlInvalidException | URISyntaxException e) {
-        log.warn("Skipping {} since it is invalid", hRef);
-      }
-    }
-    return linksOnThisPage;
   }
 }
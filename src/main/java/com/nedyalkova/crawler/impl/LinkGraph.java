@@ -0,0 +1,227 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+// the links between crawled pages. Urls are interned to int ids; new edges are appended to a pair
+// of int arrays and folded into compressed sparse rows (an offset per page into one array of
+// targets) once there are as many of them as are compacted already. A compacted edge costs 4
+// bytes and a pending one 8.
+//   csr: int MAGIC, byte VERSION, int nodes, int edges, nodes * (int length, utf-8 url),
+//        nodes * int status, (nodes + 1) * int offset, edges * int target
+public class LinkGraph {
+
+  static final int MAGIC = 0x43524743; // "CRGC"
+  static final byte VERSION = 2;
+  // pending edges are never folded in before there are this many
+  private static final int MIN_COMPACT_EDGES = 1 << 16;
+
+  private final UrlDictionary urls;
+  // by id, 0 for a url that was linked to but not crawled
+  private int[] statuses = new int[1024];
+  // compacted edges: the targets of node i are targets[offsets[i]] to targets[offsets[i + 1]]
+  private int[] offsets = new int[1];
+  private int[] targets = new int[0];
+  private int[] pendingFrom = new int[1024];
+  private int[] pendingTo = new int[1024];
+  private int pending;
+
+  public LinkGraph() {
+    this(new UrlDictionary());
+  }
+
+  LinkGraph(UrlDictionary urls) {
+    this.urls = urls;
+  }
+
+  // a crawled page with its status and the links found on it; each page is added once
+  public synchronized void addPage(String url, int statusCode, Collection<URI> links) {
+    int from = urls.intern(url);
+    ensureNodes(urls.size());
+    statuses[from] = statusCode;
+    for (URI link : links) {
+      if (pending == pendingFrom.length) {
+        pendingFrom = Arrays.copyOf(pendingFrom, pending * 2);
+        pendingTo = Arrays.copyOf(pendingTo, pending * 2);
+      }
+      pendingFrom[pending] = from;
+      pendingTo[pending] = urls.intern(link.toString());
+      pending++;
+    }
+    ensureNodes(urls.size());
+    if (pending >= Math.max(MIN_COMPACT_EDGES, targets.length)) {
+      compact();
+    }
+  }
+
+  public synchronized int nodeCount() {
+    return urls.size();
+  }
+
+  public synchronized long edgeCount() {
+    return (long) targets.length + pending;
+  }
+
+  public UrlDictionary getUrls() {
+    return urls;
+  }
+
+  // 0 when the url was only linked to
+  public synchronized int statusOf(int id) {
+    return statuses[id];
+  }
+
+  public synchronized int[] outLinks(int id) {
+    compact();
+    return id + 1 < offsets.length
+        ? Arrays.copyOfRange(targets, offsets[id], offsets[id + 1])
+        : new int[0];
+  }
+
+  // links to each url from crawled pages, by id
+  public synchronized int[] inLinkCounts() {
+    compact();
+    int[] counts = new int[urls.size()];
+    for (int target : targets) {
+      counts[target]++;
+    }
+    return counts;
+  }
+
+  // folds the pending edges into the rows with a counting sort, keeping each page's link order
+  public synchronized void compact() {
+    int nodes = urls.size();
+    if (pending == 0 && offsets.length == nodes + 1) {
+      return;
+    }
+    int[] rowSizes = new int[nodes];
+    for (int i = 0; i + 1 < offsets.length; i++) {
+      rowSizes[i] = offsets[i + 1] - offsets[i];
+    }
+    for (int i = 0; i < pending; i++) {
+      rowSizes[pendingFrom[i]]++;
+    }
+    int[] newOffsets = new int[nodes + 1];
+    for (int i = 0; i < nodes; i++) {
+      newOffsets[i + 1] = newOffsets[i] + rowSizes[i];
+    }
+    int[] newTargets = new int[newOffsets[nodes]];
+    int[] next = Arrays.copyOf(newOffsets, nodes);
+    for (int i = 0; i + 1 < offsets.length; i++) {
+      int count = offsets[i + 1] - offsets[i];
+      System.arraycopy(targets, offsets[i], newTargets, next[i], count);
+      next[i] += count;
+    }
+    for (int i = 0; i < pending; i++) {
+      newTargets[next[pendingFrom[i]]++] = pendingTo[i];
+    }
+    offsets = newOffsets;
+    targets = newTargets;
+    pending = 0;
+    pendingFrom = new int[1024];
+    pendingTo = new int[1024];
+  }
+
+  // from url, a tab and to url per line
+  public synchronized void writeEdgeList(OutputStream out) throws IOException {
+    compact();
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    for (int from = 0; from + 1 < offsets.length; from++) {
+      if (offsets[from] == offsets[from + 1]) {
+        continue;
+      }
+      String fromUrl = urls.urlOf(from);
+      for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+        writer.write(fromUrl);
+        writer.write('\t');
+        writer.write(urls.urlOf(targets[i]));
+        writer.write('\n');
+      }
+    }
+    writer.flush();
+  }
+
+  // url, status and in-link count per line, most linked first; a status of 0 means the url was
+  // not crawled, so a url with in-links and a 404 is a broken link
+  public synchronized void writeInLinkCounts(OutputStream out) throws IOException {
+    int[] counts = inLinkCounts();
+    // most links first and then by id, packed into longs so the sort needs no boxing
+    long[] order = new long[counts.length];
+    for (int id = 0; id < order.length; id++) {
+      order[id] = (long) (Integer.MAX_VALUE - counts[id]) << 32 | id;
+    }
+    Arrays.sort(order);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    for (long packed : order) {
+      int id = (int) packed;
+      writer.write(urls.urlOf(id) + '\t' + statuses[id] + '\t' + counts[id] + '\n');
+    }
+    writer.flush();
+  }
+
+  public synchronized void writeCsr(OutputStream out) throws IOException {
+    compact();
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+    int nodes = urls.size();
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    data.writeInt(nodes);
+    data.writeInt(targets.length);
+    for (int id = 0; id < nodes; id++) {
+      DataStrings.write(data, urls.urlOf(id));
+    }
+    for (int id = 0; id < nodes; id++) {
+      data.writeInt(statuses[id]);
+    }
+    for (int offset : offsets) {
+      data.writeInt(offset);
+    }
+    for (int target : targets) {
+      data.writeInt(target);
+    }
+    data.flush();
+  }
+
+  public static LinkGraph readCsr(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+      throw new IOException("Not a link graph");
+    }
+    int nodes = in.readInt();
+    int edges = in.readInt();
+    LinkGraph graph = new LinkGraph();
+    for (int id = 0; id < nodes; id++) {
+      if (graph.urls.intern(DataStrings.read(in)) != id) {
+        throw new IOException("Link graph has the url of node " + id + " twice");
+      }
+    }
+    graph.statuses = new int[Math.max(nodes, 1)];
+    for (int id = 0; id < nodes; id++) {
+      graph.statuses[id] = in.readInt();
+    }
+    graph.offsets = new int[nodes + 1];
+    for (int i = 0; i <= nodes; i++) {
+      graph.offsets[i] = in.readInt();
+    }
+    graph.targets = new int[edges];
+    for (int i = 0; i < edges; i++) {
+      graph.targets[i] = in.readInt();
+    }
+    return graph;
+  }
+
+  private void ensureNodes(int nodes) {
+    if (statuses.length < nodes) {
+      statuses = Arrays.copyOf(statuses, Math.max(nodes, statuses.length * 2));
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// open-addressing set of longs split into independently locked segments
+public class LongHashSeenSet implements SeenSet {
+
+  private static final int SEGMENT_BITS = 6;
+  private static final float MAX_LOAD = 0.7f;
+  // 0 marks an empty slot, so a zero fingerprint is stored under a fixed substitute
+  private static final long ZERO_SUBSTITUTE = 0x9E3779B97F4A7C15L;
+
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  public LongHashSeenSet(long expectedSize) {
+    long perSegment = Math.max(16, (long) (expectedSize / segments.length / MAX_LOAD) + 1);
+    int capacity = Integer.highestOneBit((int) Math.min(perSegment, 1 << 30) - 1) << 1;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(capacity);
+    }
+  }
+
+  @Override
+  public boolean add(long fingerprint) {
+    long key = fingerprint == 0 ? ZERO_SUBSTITUTE : fingerprint;
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.add(key);
+    }
+  }
+
+  @Override
+  public boolean contains(long fingerprint) {
+    long key = fingerprint == 0 ? ZERO_SUBSTITUTE : fingerprint;
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.contains(key);
+    }
+  }
+
+  @Override
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  @Override
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeLong(size());
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        for (long key : segment.table) {
+          if (key != 0) {
+            out.writeLong(key);
+          }
+        }
+      }
+    }
+  }
+
+  public static LongHashSeenSet readFrom(DataInput in, long expectedSize) throws IOException {
+    long count = in.readLong();
+    LongHashSeenSet seen = new LongHashSeenSet(Math.max(expectedSize, count));
+    for (long i = 0; i < count; i++) {
+      seen.add(in.readLong());
+    }
+    return seen;
+  }
+
+  private Segment segmentFor(long key) {
+    return segments[(int) (key >>> (Long.SIZE - SEGMENT_BITS))];
+  }
+
+  private static final class Segment {
+    private long[] table;
+    private volatile int size;
+
+    Segment(int capacity) {
+      this.table = new long[capacity];
+    }
+
+    boolean add(long key) {
+      if (size + 1 > table.length * MAX_LOAD) {
+        resize();
+      }
+      if (!insert(table, key)) {
+        return false;
+      }
+      size++;
+      return true;
+    }
+
+    boolean contains(long key) {
+      int mask = table.length - 1;
+      for (int i = (int) key & mask; table[i] != 0; i = (i + 1) & mask) {
+        if (table[i] == key) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void resize() {
+      long[] larger = new long[table.length << 1];
+      for (long key : table) {
+        if (key != 0) {
+          insert(larger, key);
+        }
+      }
+      table = larger;
+    }
+
+    private static boolean insert(long[] table, long key) {
+      int mask = table.length - 1;
+      int i = (int) key & mask;
+      while (table[i] != 0) {
+        if (table[i] == key) {
+          return false;
+        }
+        i = (i + 1) & mask;
+      }
+      table[i] = key;
+      return true;
+    }
+  }
+}
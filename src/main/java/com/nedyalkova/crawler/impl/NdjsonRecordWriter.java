@@ -0,0 +1,81 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+// timings are written as whole microseconds so no floating point formatting is needed
+class NdjsonRecordWriter implements RecordWriter {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Writer out;
+
+  NdjsonRecordWriter(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+  }
+
+  @Override
+  public void write(CrawlRecord record) throws IOException {
+    out.write("{\"url\":");
+    writeString(record.getUrl());
+    out.write(",\"status\":");
+    out.write(Integer.toString(record.getStatusCode()));
+    out.write(",\"time\":");
+    out.write(Long.toString(record.getTimestampMillis()));
+    out.write(",\"fetchMicros\":");
+    out.write(Long.toString(record.getFetchNanos() / 1000));
+    out.write(",\"parseMicros\":");
+    out.write(Long.toString(record.getParseNanos() / 1000));
+    out.write(",\"extractMicros\":");
+    out.write(Long.toString(record.getExtractNanos() / 1000));
+    out.write(",\"bytes\":");
+    out.write(Long.toString(record.getBodyBytes()));
+    if (record.getDuplicateOf() != null) {
+      out.write(",\"duplicateOf\":");
+      writeString(record.getDuplicateOf());
+    }
+    out.write(",\"links\":[");
+    boolean first = true;
+    for (URI link : record.getLinks()) {
+      if (!first) {
+        out.write(',');
+      }
+      writeString(link.toString());
+      first = false;
+    }
+    out.write("]}\n");
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private void writeString(String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write("\\u00");
+        out.write(HEX[c >> 4]);
+        out.write(HEX[c & 0xF]);
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+}
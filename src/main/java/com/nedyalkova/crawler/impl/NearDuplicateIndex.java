@@ -0,0 +1,74 @@
+package com.nedyalkova.crawler.impl;
+
+import java.util.Arrays;
+
+// simhashes of the distinct pages crawled so far, searchable for one within a few bits of a new
+// page. Hashes within 3 bits of each other agree on at least one of their four 16 bit blocks, so
+// each block value chains the pages having it and a lookup only compares against those chains
+public class NearDuplicateIndex {
+
+  static final int MAX_DISTANCE = 3;
+  private static final int BLOCKS = 4;
+  private static final int BLOCK_BITS = 16;
+  private static final int BLOCK_MASK = (1 << BLOCK_BITS) - 1;
+
+  private final int maxDistance;
+  private final int[][] heads = new int[BLOCKS][1 << BLOCK_BITS];
+  private final int[][] next = new int[BLOCKS][];
+  private long[] hashes;
+  private String[] urls;
+  private int size;
+
+  public NearDuplicateIndex(int maxDistance) {
+    if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+      throw new IllegalArgumentException("maxDistance must be between 0 and " + MAX_DISTANCE);
+    }
+    this.maxDistance = maxDistance;
+    for (int block = 0; block < BLOCKS; block++) {
+      Arrays.fill(heads[block], -1);
+      next[block] = new int[1024];
+    }
+    this.hashes = new long[1024];
+    this.urls = new String[1024];
+  }
+
+  // the first page the hash is a near-duplicate of, or null after adding it as a new page
+  public synchronized String findOrAdd(long hash, String url) {
+    for (int block = 0; block < BLOCKS; block++) {
+      for (int i = heads[block][blockOf(hash, block)]; i >= 0; i = next[block][i]) {
+        if (SimHash.distance(hashes[i], hash) <= maxDistance) {
+          return urls[i];
+        }
+      }
+    }
+    if (size == hashes.length) {
+      grow();
+    }
+    hashes[size] = hash;
+    urls[size] = url;
+    for (int block = 0; block < BLOCKS; block++) {
+      int key = blockOf(hash, block);
+      next[block][size] = heads[block][key];
+      heads[block][key] = size;
+    }
+    size++;
+    return null;
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private void grow() {
+    int capacity = hashes.length * 2;
+    hashes = Arrays.copyOf(hashes, capacity);
+    urls = Arrays.copyOf(urls, capacity);
+    for (int block = 0; block < BLOCKS; block++) {
+      next[block] = Arrays.copyOf(next[block], capacity);
+    }
+  }
+
+  private static int blockOf(long hash, int block) {
+    return (int) (hash >>> (block * BLOCK_BITS)) & BLOCK_MASK;
+  }
+}
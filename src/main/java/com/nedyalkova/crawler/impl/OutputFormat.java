@@ -0,0 +1,27 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.OutputStream;
+
+public enum OutputFormat {
+  // one crawled url per line
+  URLS,
+  // one JSON object per page, including its outgoing links
+  NDJSON,
+  // one row per page with a header, links space separated in the last column
+  CSV,
+  // binary url table plus per-page edges by id, see EdgeListRecordWriter
+  EDGES;
+
+  public RecordWriter newWriter(OutputStream out) {
+    switch (this) {
+      case NDJSON:
+        return new NdjsonRecordWriter(out);
+      case CSV:
+        return new CsvRecordWriter(out);
+      case EDGES:
+        return new EdgeListRecordWriter(out);
+      default:
+        return new UrlListRecordWriter(out);
+    }
+  }
+}
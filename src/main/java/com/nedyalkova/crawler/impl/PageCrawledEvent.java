@@ -0,0 +1,47 @@
+package com.nedyalkova.crawler.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// one per crawled page, its duration covers fetch, parse and enqueue
+@Name("com.nedyalkova.crawler.PageCrawled")
+@Label("Page Crawled")
+@Category({"Web Crawler"})
+@Description("A page fetched by the crawler and the links it contributed")
+@StackTrace(false)
+class PageCrawledEvent extends Event {
+
+  @Label("URL")
+  String url;
+
+  @Label("Status Code")
+  int statusCode;
+
+  @Label("Body Size")
+  @DataAmount
+  long bodyBytes;
+
+  @Label("Links Found")
+  int linksFound;
+
+  @Label("Links Queued")
+  int linksQueued;
+
+  @Label("Fetch Time")
+  @Timespan
+  long fetchNanos;
+
+  @Label("Parse Time")
+  @Timespan
+  long parseNanos;
+
+  @Label("Extract Time")
+  @Timespan
+  long extractNanos;
+}
@@ -0,0 +1,13 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+
+public interface PageFetcher extends Closeable {
+
+  // completes with the response once its headers are in; the caller must close it
+  CompletableFuture<FetchResponse> fetch(FetchRequest request);
+
+  @Override
+  default void close() {}
+}
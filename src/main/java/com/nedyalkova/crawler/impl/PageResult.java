@@ -0,0 +1,164 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+// what a single page fetch produced; status is FAILED when no response arrived at all
+public class PageResult {
+
+  public static final int FAILED = -1;
+
+  private final String url;
+  private final int statusCode;
+  private final Set<URI> links;
+  private final long latencyNanos;
+  private final boolean notModified;
+  private final Duration retryAfter;
+  private final long bodyBytes;
+  private final long parseNanos;
+  private final long extractNanos;
+  private final String duplicateOf;
+  private final boolean truncated;
+  private final String skippedContentType;
+
+  public PageResult(
+      String url,
+      int statusCode,
+      Set<URI> links,
+      long latencyNanos,
+      boolean notModified,
+      Duration retryAfter) {
+    this(url, statusCode, links, latencyNanos, notModified, retryAfter, 0, 0, 0, null);
+  }
+
+  PageResult(
+      String url,
+      int statusCode,
+      Set<URI> links,
+      long latencyNanos,
+      boolean notModified,
+      Duration retryAfter,
+      long bodyBytes,
+      long parseNanos,
+      long extractNanos,
+      String duplicateOf) {
+    this(
+        url,
+        statusCode,
+        links,
+        latencyNanos,
+        notModified,
+        retryAfter,
+        bodyBytes,
+        parseNanos,
+        extractNanos,
+        duplicateOf,
+        false,
+        null);
+  }
+
+  PageResult(
+      String url,
+      int statusCode,
+      Set<URI> links,
+      long latencyNanos,
+      boolean notModified,
+      Duration retryAfter,
+      long bodyBytes,
+      long parseNanos,
+      long extractNanos,
+      String duplicateOf,
+      boolean truncated,
+      String skippedContentType) {
+    this.url = url;
+    this.statusCode = statusCode;
+    this.links = links;
+    this.latencyNanos = latencyNanos;
+    this.notModified = notModified;
+    this.retryAfter = retryAfter;
+    this.bodyBytes = bodyBytes;
+    this.parseNanos = parseNanos;
+    this.extractNanos = extractNanos;
+    this.duplicateOf = duplicateOf;
+    this.truncated = truncated;
+    this.skippedContentType = skippedContentType;
+  }
+
+  static PageResult failed(String url, long latencyNanos) {
+    return new PageResult(url, FAILED, new HashSet<>(), latencyNanos, false, null);
+  }
+
+  // a successful response whose body was not read because it is not html
+  static PageResult notHtml(String url, int statusCode, long latencyNanos, String contentType) {
+    return new PageResult(
+        url,
+        statusCode,
+        new HashSet<>(),
+        latencyNanos,
+        false,
+        null,
+        0,
+        0,
+        0,
+        null,
+        false,
+        contentType);
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  public Set<URI> getLinks() {
+    return links;
+  }
+
+  // time until the response headers arrived
+  public long getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  public boolean isNotModified() {
+    return notModified;
+  }
+
+  // null unless the server asked us to back off
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+  // compressed size is not known here, this is what was read after decoding
+  public long getBodyBytes() {
+    return bodyBytes;
+  }
+
+  // reading and tokenizing the body, excluding extract time
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  public long getExtractNanos() {
+    return extractNanos;
+  }
+
+  // the page this one is a near-duplicate of, null when it is not one; its links are empty
+  public String getDuplicateOf() {
+    return duplicateOf;
+  }
+
+  // the body went on past the size limit, links after it were not seen
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  // the content type that kept the body from being read, null when it was read
+  public String getSkippedContentType() {
+    return skippedContentType;
+  }
+}
@@ -0,0 +1,130 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// sits between the frontier and the fetcher: applies robots.txt, paces requests per host and
+// bounds how many are in flight to each host at once. A replayed crawl reads from WARC files, not
+// the hosts, so it is not paced and no Crawl-delay applies
+public class PolitenessScheduler {
+  private static final Logger log = LoggerFactory.getLogger(PolitenessScheduler.class);
+
+  private final CrawlerConfig config;
+  private final boolean paced;
+  private volatile RobotsCache robotsCache;
+  private final Map<String, HostRateController> controllers = new ConcurrentHashMap<>();
+  private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+  // robotsCache may be null to skip robots.txt entirely
+  public PolitenessScheduler(CrawlerConfig config, RobotsCache robotsCache) {
+    this.config = config;
+    this.paced = config.getReplayWarc() == null;
+    this.robotsCache = robotsCache;
+  }
+
+  // for a robots.txt cache that fetches through a fetcher paced by this scheduler, which cannot
+  // exist before it
+  void setRobotsCache(RobotsCache robotsCache) {
+    this.robotsCache = robotsCache;
+  }
+
+  // the robots.txt of the url's origin, ALLOW_ALL when robots.txt is not consulted
+  RobotsTxt robotsFor(URI uri) {
+    RobotsCache cache = robotsCache;
+    return cache == null ? RobotsTxt.ALLOW_ALL : cache.get(uri);
+  }
+
+  // false when robots.txt disallows the url, otherwise blocks until the host's next slot
+  public boolean acquire(URI uri) throws InterruptedException {
+    RobotsTxt robots = robotsFor(uri);
+    if (!robots.isAllowed(pathAndQuery(uri))) {
+      return false;
+    }
+    if (!paced) {
+      return true;
+    }
+    long waitNanos = controllerFor(uri.getHost(), robots).reserve(System.nanoTime());
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+    return true;
+  }
+
+  // held by whoever has a request to the host in flight
+  public Semaphore permitFor(String host) {
+    return permits.computeIfAbsent(host, key -> new Semaphore(config.getMaxConcurrencyPerHost()));
+  }
+
+  // books the host's next slot for another attempt at a url robots.txt already allowed, and
+  // returns how long to wait for it. robots.txt is not looked at here, as the attempt may be
+  // for robots.txt itself, so a host not paced yet is not held back
+  public long reserve(URI uri) {
+    HostRateController controller = controllers.get(uri.getHost());
+    return controller == null ? 0 : controller.reserve(System.nanoTime());
+  }
+
+  // the same, but only when the slot has come; for a request not worth waiting for
+  public boolean tryReserve(URI uri) {
+    HostRateController controller = controllers.get(uri.getHost());
+    return controller == null || controller.tryReserve(System.nanoTime());
+  }
+
+  // 0 when a request to the host would go out without waiting
+  public long nanosUntilReady(String host) {
+    HostRateController controller = controllers.get(host);
+    return controller == null ? 0 : controller.waitNanos(System.nanoTime());
+  }
+
+  public void onResult(URI uri, PageResult result) {
+    HostRateController controller = controllers.get(uri.getHost());
+    if (controller != null) {
+      controller.onResponse(
+          result.getStatusCode(),
+          result.getLatencyNanos(),
+          result.getRetryAfter(),
+          System.nanoTime());
+    }
+  }
+
+  // requests per second currently allowed for the host, 0 if it has not been contacted yet
+  public double currentRate(String host) {
+    HostRateController controller = controllers.get(host);
+    return controller == null ? 0 : controller.getRate();
+  }
+
+  public Map<String, Double> currentRates() {
+    Map<String, Double> rates = new TreeMap<>();
+    controllers.forEach((host, controller) -> rates.put(host, controller.getRate()));
+    return rates;
+  }
+
+  private HostRateController controllerFor(String host, RobotsTxt robots) {
+    return controllers.computeIfAbsent(
+        host,
+        key -> {
+          HostRateController controller =
+              new HostRateController(
+                  config.getInitialHostRate(),
+                  config.getMinHostRate(),
+                  config.getMaxHostRate(),
+                  config.getInitialHostRate());
+          if (robots.getCrawlDelay() != null) {
+            log.debug("Honouring a crawl delay of {} for {}", robots.getCrawlDelay(), host);
+            controller.limitTo(robots.getCrawlDelay());
+          }
+          return controller;
+        });
+  }
+
+  private static String pathAndQuery(URI uri) {
+    String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+    return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+  }
+}
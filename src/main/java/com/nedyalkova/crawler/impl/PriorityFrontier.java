@@ -0,0 +1,148 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// in-memory frontier that hands out the highest scoring url first, ties in the order they came
+// in; a rescored url gets a new heap entry and the old one is skipped when it comes up
+public class PriorityFrontier implements Frontier {
+
+  private static final Comparator<Ranked> HIGHEST_FIRST =
+      Comparator.comparingDouble((Ranked ranked) -> -ranked.score)
+          .thenComparingLong(ranked -> ranked.queued.order);
+  // stale heap entries are dropped once they outnumber the live ones by this much
+  private static final int MAX_STALE = 1024;
+
+  private final UrlScorer scorer;
+  private final Map<URI, Queued> queued = new HashMap<>();
+  private final PriorityQueue<Ranked> heap = new PriorityQueue<>(HIGHEST_FIRST);
+  private long nextOrder;
+
+  public PriorityFrontier(UrlScorer scorer) {
+    this.scorer = scorer;
+  }
+
+  @Override
+  public void add(URI uri) {
+    add(new FrontierEntry(uri, 0, 0));
+  }
+
+  @Override
+  public synchronized void add(FrontierEntry entry) {
+    Queued existing = queued.get(entry.getUri());
+    if (existing != null) {
+      addInLink(entry.getUri(), entry.getImportance());
+      return;
+    }
+    Queued added = new Queued(entry, nextOrder++);
+    queued.put(entry.getUri(), added);
+    rank(added);
+  }
+
+  @Override
+  public boolean countsInLinks() {
+    return true;
+  }
+
+  @Override
+  public synchronized void addInLink(URI uri, double importance) {
+    Queued existing = queued.get(uri);
+    if (existing == null) {
+      return;
+    }
+    existing.inLinks++;
+    existing.importance += importance;
+    double score = score(existing);
+    if (score != existing.score) {
+      rank(existing);
+    }
+  }
+
+  @Override
+  public URI poll() {
+    FrontierEntry next = pollEntry();
+    return next == null ? null : next.getUri();
+  }
+
+  @Override
+  public synchronized FrontierEntry pollEntry() {
+    Ranked top = liveTop();
+    if (top == null) {
+      return null;
+    }
+    heap.poll();
+    Queued next = top.queued;
+    queued.remove(next.uri);
+    return new FrontierEntry(
+        next.uri, next.fingerprint, next.depth, next.importance, next.lastModified);
+  }
+
+  @Override
+  public synchronized URI peek() {
+    Ranked top = liveTop();
+    return top == null ? null : top.queued.uri;
+  }
+
+  @Override
+  public synchronized long size() {
+    return queued.size();
+  }
+
+  private Ranked liveTop() {
+    Ranked top;
+    while ((top = heap.peek()) != null && top.version != top.queued.version) {
+      heap.poll();
+    }
+    return top;
+  }
+
+  private void rank(Queued entry) {
+    entry.score = score(entry);
+    entry.version++;
+    heap.add(new Ranked(entry, entry.score, entry.version));
+    if (heap.size() > 2 * queued.size() + MAX_STALE) {
+      heap.removeIf(ranked -> ranked.version != ranked.queued.version);
+    }
+  }
+
+  private double score(Queued entry) {
+    return scorer.score(
+        entry.uri, entry.depth, entry.inLinks, entry.importance, entry.lastModified);
+  }
+
+  private static final class Queued {
+    private final URI uri;
+    private final long fingerprint;
+    private final int depth;
+    private final long lastModified;
+    private final long order;
+    private int inLinks = 1;
+    private double importance;
+    private double score;
+    private int version;
+
+    Queued(FrontierEntry entry, long order) {
+      this.uri = entry.getUri();
+      this.fingerprint = entry.getFingerprint();
+      this.depth = entry.getDepth();
+      this.importance = entry.getImportance();
+      this.lastModified = entry.getLastModified();
+      this.order = order;
+    }
+  }
+
+  private static final class Ranked {
+    private final Queued queued;
+    private final double score;
+    private final int version;
+
+    Ranked(Queued queued, double score, int version) {
+      this.queued = queued;
+      this.score = score;
+      this.version = version;
+    }
+  }
+}
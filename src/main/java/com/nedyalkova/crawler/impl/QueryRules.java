@@ -0,0 +1,139 @@
+package com.nedyalkova.crawler.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// rewrites the query of a canonical url: drops parameters that do not change the page, such as
+// session ids and tracking tags, and optionally sorts the rest so permutations share one url
+public class QueryRules {
+
+  private final Set<String> dropped = new LinkedHashSet<>();
+  private final List<String> droppedPrefixes = new ArrayList<>();
+  private boolean sortParameters;
+
+  // session ids and campaign tags, with the parameters sorted
+  public static QueryRules defaults() {
+    return new QueryRules()
+        .dropParameter("jsessionid")
+        .dropParameter("phpsessid")
+        .dropParameter("aspsessionid")
+        .dropParameter("sessionid")
+        .dropParameter("sid")
+        .dropParameter("utm_*")
+        .dropParameter("gclid")
+        .dropParameter("fbclid")
+        .sortParameters(true);
+  }
+
+  // names are matched ignoring case; a trailing * matches every name with that prefix
+  public QueryRules dropParameter(String name) {
+    if (name.isEmpty() || name.equals("*")) {
+      throw new IllegalArgumentException("A parameter name to drop is required");
+    }
+    String lowerCase = name.toLowerCase(Locale.ROOT);
+    if (lowerCase.endsWith("*")) {
+      droppedPrefixes.add(lowerCase.substring(0, lowerCase.length() - 1));
+    } else {
+      dropped.add(lowerCase);
+    }
+    return this;
+  }
+
+  public QueryRules sortParameters(boolean sortParameters) {
+    this.sortParameters = sortParameters;
+    return this;
+  }
+
+  public boolean isSortParameters() {
+    return sortParameters;
+  }
+
+  boolean isDropped(CharSequence name) {
+    String lowerCase = name.toString().toLowerCase(Locale.ROOT);
+    if (dropped.contains(lowerCase)) {
+      return true;
+    }
+    for (String prefix : droppedPrefixes) {
+      if (lowerCase.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // the same instance when nothing changes, so the fingerprint is only recomputed when needed.
+  // An empty path comes out as '/', so https://a.com?sid=1 and https://a.com/ are one url
+  public CanonicalUrl apply(CanonicalUrl url) {
+    String key = url.getKey();
+    int authorityEnd = nextOf(key, url.getScheme().length() + 3, key.length(), "/?#");
+    int end = nextOf(key, authorityEnd, key.length(), "#");
+    int queryStart = nextOf(key, authorityEnd, end, "?");
+    StringBuilder out = new StringBuilder(key.length() + 1);
+    out.append(key, 0, authorityEnd);
+    if (queryStart == authorityEnd) {
+      out.append('/');
+    } else {
+      appendPath(out, key, authorityEnd, queryStart);
+    }
+    if (queryStart < end) {
+      appendQuery(out, key, queryStart + 1, end);
+    }
+    out.append(key, end, key.length());
+    String rewritten = out.toString();
+    if (rewritten.equals(key)) {
+      return url;
+    }
+    return new CanonicalUrl(rewritten, URLUtils.fingerprint(rewritten), url.getScheme().length());
+  }
+
+  // matrix parameters such as ;jsessionid=... inside path segments
+  private void appendPath(StringBuilder out, String key, int from, int to) {
+    int i = from;
+    while (i < to) {
+      int parameterEnd = nextOf(key, i + 1, to, ";/");
+      if (key.charAt(i) == ';' && isDropped(nameOf(key, i + 1, parameterEnd))) {
+        i = parameterEnd;
+        continue;
+      }
+      out.append(key, i, parameterEnd);
+      i = parameterEnd;
+    }
+  }
+
+  private void appendQuery(StringBuilder out, String key, int from, int to) {
+    List<String> kept = new ArrayList<>();
+    int i = from;
+    while (i <= to) {
+      int parameterEnd = nextOf(key, i, to, "&");
+      if (parameterEnd > i && !isDropped(nameOf(key, i, parameterEnd))) {
+        kept.add(key.substring(i, parameterEnd));
+      }
+      i = parameterEnd + 1;
+    }
+    if (kept.isEmpty()) {
+      return;
+    }
+    if (sortParameters) {
+      // stable, so repeated names keep their order
+      kept.sort((a, b) -> nameOf(a, 0, a.length()).compareTo(nameOf(b, 0, b.length())));
+    }
+    out.append('?').append(String.join("&", kept));
+  }
+
+  private static String nameOf(String parameter, int from, int to) {
+    int equals = nextOf(parameter, from, to, "=");
+    return parameter.substring(from, equals);
+  }
+
+  private static int nextOf(String key, int from, int to, String separators) {
+    for (int i = from; i < to; i++) {
+      if (separators.indexOf(key.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+    return to;
+  }
+}
@@ -0,0 +1,11 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+// serialises records in one output format; only ever used from a single thread
+public interface RecordWriter extends Closeable, Flushable {
+
+  void write(CrawlRecord record) throws IOException;
+}
@@ -0,0 +1,290 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+// serves responses out of WARC files instead of the network. Opening it walks every gzip member
+// once to note where each response record starts; a fetch then reads just that one member. Urls
+// that were never recorded answer 404, so a replayed crawl stays inside what was recorded
+public class ReplayFetcher implements PageFetcher {
+  private static final Logger log = LoggerFactory.getLogger(ReplayFetcher.class);
+
+  private static final int HEADER_LIMIT = 64 * 1024;
+
+  private final List<FileChannel> files = new ArrayList<>();
+  // url to file number in the high 16 bits and offset in the rest
+  private final Map<String, Long> index = new HashMap<>();
+
+  // a single .warc.gz file, or a directory whose .warc.gz files are read in name order
+  public ReplayFetcher(Path archive) throws IOException {
+    List<Path> paths;
+    if (Files.isDirectory(archive)) {
+      try (Stream<Path> listing = Files.list(archive)) {
+        paths =
+            listing
+                .filter(path -> path.getFileName().toString().endsWith(WarcWriter.EXTENSION))
+                .sorted()
+                .toList();
+      }
+    } else {
+      paths = List.of(archive);
+    }
+    try {
+      for (Path path : paths) {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        files.add(channel);
+        indexFile(files.size() - 1, channel);
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+    log.info("Replaying {} responses from {} WARC files", index.size(), files.size());
+  }
+
+  @Override
+  public CompletableFuture<FetchResponse> fetch(FetchRequest request) {
+    URI uri = request.getUri();
+    Long location = index.get(uri.toString());
+    if (location == null) {
+      return CompletableFuture.completedFuture(
+          new FetchResponse(uri, 404, Map.of(), InputStream.nullInputStream()));
+    }
+    try {
+      FetchResponse response = read((int) (location >>> 48), location & 0xFFFF_FFFF_FFFFL);
+      if (request.getMethod().equals("HEAD")) {
+        response.close();
+        return CompletableFuture.completedFuture(
+            new FetchResponse(
+                response.getUri(),
+                response.getStatusCode(),
+                response.getHeaders(),
+                InputStream.nullInputStream()));
+      }
+      return CompletableFuture.completedFuture(response);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  @Override
+  public void close() {
+    for (FileChannel file : files) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        log.debug("Unable to close a WARC file", e);
+      }
+    }
+  }
+
+  private void indexFile(int fileNumber, FileChannel channel) throws IOException {
+    long offset = 0;
+    long size = channel.size();
+    while (offset < size) {
+      ByteArrayOutputStream head = new ByteArrayOutputStream();
+      long next = inflateMember(channel, offset, head);
+      Map<String, String> warcHeaders = parseHeaders(head.toByteArray());
+      if ("response".equals(warcHeaders.get("warc-type"))) {
+        long location = (long) fileNumber << 48 | offset;
+        String target = warcHeaders.get("warc-target-uri");
+        if (target != null) {
+          index.put(target, location);
+        }
+        String requested = warcHeaders.get(WarcWriter.REQUESTED_URI.toLowerCase(Locale.ROOT));
+        if (requested != null) {
+          index.put(requested, location);
+        }
+      }
+      offset = next;
+    }
+  }
+
+  private FetchResponse read(int fileNumber, long offset) throws IOException {
+    InputStream in =
+        new GZIPInputStream(
+            new BufferedInputStream(new ChannelInputStream(files.get(fileNumber), offset)));
+    try {
+      Map<String, String> warcHeaders = parseHeaders(readHead(in));
+      URI target = URI.create(warcHeaders.get("warc-target-uri"));
+      byte[] httpHead = readHead(in);
+      String[] lines = new String(httpHead, StandardCharsets.ISO_8859_1).split("\r\n");
+      int statusCode = Integer.parseInt(lines[0].split(" ")[1]);
+      Map<String, List<String>> headers = new LinkedHashMap<>();
+      for (int i = 1; i < lines.length; i++) {
+        int colon = lines[i].indexOf(':');
+        if (colon > 0) {
+          headers
+              .computeIfAbsent(lines[i].substring(0, colon).trim(), name -> new ArrayList<>())
+              .add(lines[i].substring(colon + 1).trim());
+        }
+      }
+      long blockLength = Long.parseLong(warcHeaders.get("content-length"));
+      long bodyLength = blockLength - httpHead.length - 4;
+      byte[] body = in.readNBytes((int) bodyLength);
+      return new FetchResponse(target, statusCode, headers, new ByteArrayInputStream(body));
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed WARC record at offset " + offset, e);
+    } finally {
+      in.close();
+    }
+  }
+
+  // the bytes up to the blank line that ends a header block, without it
+  private static byte[] readHead(InputStream in) throws IOException {
+    ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+    int matched = 0;
+    while (matched < 4) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException("WARC record ended inside its headers");
+      }
+      if (head.size() >= HEADER_LIMIT) {
+        throw new IOException("WARC record headers are too long");
+      }
+      head.write(b);
+      matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+    }
+    byte[] bytes = head.toByteArray();
+    return Arrays.copyOf(bytes, bytes.length - 4);
+  }
+
+  private static Map<String, String> parseHeaders(byte[] head) {
+    Map<String, String> headers = new HashMap<>();
+    String text = new String(head, StandardCharsets.UTF_8);
+    int end = text.indexOf("\r\n\r\n");
+    for (String line : (end < 0 ? text : text.substring(0, end)).split("\r\n")) {
+      int colon = line.indexOf(':');
+      if (colon > 0) {
+        headers.put(
+            line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+            line.substring(colon + 1).trim());
+      }
+    }
+    return headers;
+  }
+
+  // inflates the gzip member starting at offset, keeping the start of its content in head, and
+  // returns where the next member starts
+  static long inflateMember(FileChannel channel, long offset, ByteArrayOutputStream head)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    long position = offset;
+    position += readFully(channel, position, buffer, 10);
+    if ((buffer.get(0) & 0xFF) != 0x1F || (buffer.get(1) & 0xFF) != 0x8B || buffer.get(2) != 8) {
+      throw new IOException("No gzip member at offset " + offset);
+    }
+    int flags = buffer.get(3) & 0xFF;
+    if ((flags & 4) != 0) {
+      position += readFully(channel, position, buffer, 2);
+      position += (buffer.get(0) & 0xFF) | (buffer.get(1) & 0xFF) << 8;
+    }
+    for (int flag : new int[] {8, 16}) {
+      if ((flags & flag) != 0) {
+        // zero terminated file name or comment
+        do {
+          readFully(channel, position++, buffer, 1);
+        } while (buffer.get(0) != 0);
+      }
+    }
+    if ((flags & 2) != 0) {
+      position += 2;
+    }
+    Inflater inflater = new Inflater(true);
+    try {
+      byte[] output = new byte[64 * 1024];
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          buffer.clear();
+          int read = channel.read(buffer, position);
+          if (read <= 0) {
+            throw new EOFException("Gzip member at offset " + offset + " is cut short");
+          }
+          position += read;
+          inflater.setInput(buffer.array(), 0, read);
+        }
+        int inflated = inflater.inflate(output);
+        if (head.size() < HEADER_LIMIT) {
+          head.write(output, 0, Math.min(inflated, HEADER_LIMIT - head.size()));
+        }
+      }
+      // the crc and size trailer follows the deflate data
+      return position - inflater.getRemaining() + 8;
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt gzip member at offset " + offset, e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static int readFully(FileChannel channel, long position, ByteBuffer buffer, int length)
+      throws IOException {
+    buffer.clear().limit(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of WARC file");
+      }
+    }
+    return length;
+  }
+
+  // reads a shared channel from a position of its own, so fetches can run concurrently; closing
+  // it leaves the channel open
+  private static final class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+
+    ChannelInputStream(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      int read = channel.read(ByteBuffer.wrap(bytes, offset, length), position);
+      if (read > 0) {
+        position += read;
+      }
+      return read;
+    }
+  }
+}
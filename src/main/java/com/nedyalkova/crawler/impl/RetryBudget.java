@@ -0,0 +1,37 @@
+package com.nedyalkova.crawler.impl;
+
+// caps retries and hedged requests at a fraction of all requests: each request adds ratio tokens
+// and each extra attempt takes one. The few tokens it starts with let a crawl retry early on, and
+// the cap keeps a long healthy stretch from saving up a burst
+public class RetryBudget {
+
+  private static final double INITIAL_TOKENS = 10;
+  private static final double MAX_TOKENS = 100;
+
+  private final double ratio;
+  private double tokens = INITIAL_TOKENS;
+
+  public RetryBudget(double ratio) {
+    if (ratio < 0 || ratio > 1) {
+      throw new IllegalArgumentException("A retry budget ratio must be between 0 and 1");
+    }
+    this.ratio = ratio;
+  }
+
+  public synchronized void onRequest() {
+    tokens = Math.min(MAX_TOKENS, tokens + ratio);
+  }
+
+  // false when the budget is spent, in which case no extra attempt should be made
+  public synchronized boolean tryAcquire() {
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+
+  public synchronized double getTokens() {
+    return tokens;
+  }
+}
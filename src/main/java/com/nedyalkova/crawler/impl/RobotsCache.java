@@ -0,0 +1,95 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// robots.txt per scheme and authority, fetched once and reused until it expires
+public class RobotsCache {
+  private static final Logger log = LoggerFactory.getLogger(RobotsCache.class);
+
+  static final String USER_AGENT_TOKEN = "SimpleWebCrawler";
+  // the same cap Google applies, anything beyond it is ignored
+  private static final int MAX_ROBOTS_BYTES = 500 * 1024;
+  private static final Duration TIME_TO_LIVE = Duration.ofHours(24);
+  // a robots.txt that failed with a 5xx or did not arrive is asked for again this soon
+  private static final Duration RETRY_AFTER_ERROR = Duration.ofMinutes(1);
+
+  private final PageFetcher pageFetcher;
+  private final Duration timeToLive;
+  private final Duration retryAfterError;
+  private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+  public RobotsCache(PageFetcher pageFetcher) {
+    this(pageFetcher, TIME_TO_LIVE, RETRY_AFTER_ERROR);
+  }
+
+  RobotsCache(PageFetcher pageFetcher, Duration timeToLive, Duration retryAfterError) {
+    this.pageFetcher = pageFetcher;
+    this.timeToLive = timeToLive;
+    this.retryAfterError = retryAfterError;
+  }
+
+  public RobotsTxt get(URI uri) {
+    String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+    long now = System.nanoTime();
+    Cached cached =
+        cache.compute(
+            origin,
+            (key, existing) ->
+                existing == null || existing.expiresAtNanos - now < 0
+                    ? new Cached(now + timeToLive.toNanos())
+                    : existing);
+    if (cached.claimed.compareAndSet(false, true)) {
+      // this thread won the race to fetch it, everyone else waits on the same future
+      cached.robots.complete(fetch(origin, cached));
+    }
+    return cached.robots.join();
+  }
+
+  // only a 4xx means there are no rules; while the host errors or cannot be reached nothing is
+  // allowed, and that is remembered for a short while only
+  private RobotsTxt fetch(String origin, Cached cached) {
+    URI robotsUri = URI.create(origin + "/robots.txt");
+    try (FetchResponse response = pageFetcher.fetch(new FetchRequest(robotsUri)).get()) {
+      int status = response.getStatusCode();
+      if (status == 200) {
+        InputStream body = response.getBody();
+        String content = new String(body.readNBytes(MAX_ROBOTS_BYTES), response.charset());
+        return RobotsTxt.parse(content, USER_AGENT_TOKEN);
+      }
+      if (status >= 400 && status < 500) {
+        log.debug("{} returned status HTTP {}, assuming everything is allowed", robotsUri, status);
+        return RobotsTxt.ALLOW_ALL;
+      }
+      log.warn("{} returned status HTTP {}, crawling nothing there for now", robotsUri, status);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      // not an answer from the host, so the next caller asks again
+      cache.remove(origin, cached);
+      return RobotsTxt.DISALLOW_ALL;
+    } catch (Exception e) {
+      log.warn("Unable to fetch {}, crawling nothing there for now", robotsUri, e);
+    }
+    cached.expiresAtNanos = System.nanoTime() + retryAfterError.toNanos();
+    return RobotsTxt.DISALLOW_ALL;
+  }
+
+  private static final class Cached {
+    private volatile long expiresAtNanos;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CompletableFuture<RobotsTxt> robots = new CompletableFuture<>();
+
+    Cached(long expiresAtNanos) {
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package com.nedyalkova.crawler.impl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// the rules of one robots.txt that apply to our user agent, matched the way Google documents it
+public class RobotsTxt {
+
+  public static final RobotsTxt ALLOW_ALL = new RobotsTxt(List.of(), null, List.of());
+  // what a host gets while its robots.txt cannot be read
+  public static final RobotsTxt DISALLOW_ALL =
+      new RobotsTxt(List.of(new Rule("/", false)), null, List.of());
+
+  private final List<Rule> rules;
+  private final Duration crawlDelay;
+  private final List<String> sitemaps;
+
+  private RobotsTxt(List<Rule> rules, Duration crawlDelay, List<String> sitemaps) {
+    this.rules = rules;
+    this.crawlDelay = crawlDelay;
+    this.sitemaps = sitemaps;
+  }
+
+  // userAgent is the product token, e.g. SimpleWebCrawler
+  public static RobotsTxt parse(String content, String userAgent) {
+    String agent = userAgent.toLowerCase(Locale.ROOT);
+    List<Rule> ownRules = new ArrayList<>();
+    List<Rule> wildcardRules = new ArrayList<>();
+    Duration ownDelay = null;
+    Duration wildcardDelay = null;
+    boolean ownGroupFound = false;
+    List<String> sitemaps = new ArrayList<>();
+
+    boolean inOwnGroup = false;
+    boolean inWildcardGroup = false;
+    boolean groupHasRules = true;
+    for (String rawLine : content.split("\r\n|\r|\n")) {
+      int comment = rawLine.indexOf('#');
+      String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+      int colon = line.indexOf(':');
+      if (colon < 0) {
+        continue;
+      }
+      String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+      String value = line.substring(colon + 1).trim();
+      switch (key) {
+        case "user-agent" -> {
+          if (groupHasRules) {
+            // a user-agent line after rules starts a new group
+            inOwnGroup = false;
+            inWildcardGroup = false;
+            groupHasRules = false;
+          }
+          String groupAgent = value.toLowerCase(Locale.ROOT);
+          if (groupAgent.equals("*")) {
+            inWildcardGroup = true;
+          } else if (groupAgent.equals(agent)) {
+            inOwnGroup = true;
+            ownGroupFound = true;
+          }
+        }
+        case "allow", "disallow" -> {
+          groupHasRules = true;
+          // an empty disallow allows everything, which is the default anyway
+          if (value.isEmpty()) {
+            continue;
+          }
+          Rule rule = new Rule(value, key.equals("allow"));
+          if (inOwnGroup) {
+            ownRules.add(rule);
+          }
+          if (inWildcardGroup) {
+            wildcardRules.add(rule);
+          }
+        }
+        case "crawl-delay" -> {
+          groupHasRules = true;
+          Duration delay = parseDelay(value);
+          if (inOwnGroup && delay != null) {
+            ownDelay = delay;
+          }
+          if (inWildcardGroup && delay != null) {
+            wildcardDelay = delay;
+          }
+        }
+        case "sitemap" -> {
+          if (!value.isEmpty()) {
+            sitemaps.add(value);
+          }
+        }
+        default -> {
+          // unknown directives are ignored
+        }
+      }
+    }
+    return ownGroupFound
+        ? new RobotsTxt(ownRules, ownDelay, sitemaps)
+        : new RobotsTxt(wildcardRules, wildcardDelay, sitemaps);
+  }
+
+  // pathAndQuery as it appears in the request line, e.g. /search?q=1
+  public boolean isAllowed(String pathAndQuery) {
+    String path = pathAndQuery == null || pathAndQuery.isEmpty() ? "/" : pathAndQuery;
+    if (path.equals("/robots.txt")) {
+      return true;
+    }
+    Rule best = null;
+    for (Rule rule : rules) {
+      if (rule.matches(path)
+          && (best == null
+              || rule.pattern.length() > best.pattern.length()
+              || (rule.pattern.length() == best.pattern.length() && rule.allow))) {
+        best = rule;
+      }
+    }
+    return best == null || best.allow;
+  }
+
+  // null when robots.txt does not ask for one
+  public Duration getCrawlDelay() {
+    return crawlDelay;
+  }
+
+  public List<String> getSitemaps() {
+    return sitemaps;
+  }
+
+  private static Duration parseDelay(String value) {
+    try {
+      double seconds = Double.parseDouble(value);
+      return seconds > 0 ? Duration.ofMillis((long) (seconds * 1000)) : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static final class Rule {
+    private final String pattern;
+    private final boolean allow;
+
+    Rule(String pattern, boolean allow) {
+      this.pattern = pattern;
+      this.allow = allow;
+    }
+
+    boolean matches(String path) {
+      // without a trailing '$' the pattern only has to match a prefix of the path
+      String body =
+          pattern.endsWith("$") ? pattern.substring(0, pattern.length() - 1) : pattern + "*";
+      return matches(body, path);
+    }
+
+    // '*' matches any run of characters. Greedy with a return to the last star on a mismatch, so
+    // a pattern full of stars costs at most pattern length times path length, never exponential
+    private static boolean matches(String pattern, String path) {
+      int patternIndex = 0;
+      int pathIndex = 0;
+      int star = -1;
+      int starMatchEnd = 0;
+      while (pathIndex < path.length()) {
+        if (patternIndex < pattern.length() && pattern.charAt(patternIndex) == '*') {
+          star = patternIndex++;
+          starMatchEnd = pathIndex;
+        } else if (patternIndex < pattern.length()
+            && pattern.charAt(patternIndex) == path.charAt(pathIndex)) {
+          patternIndex++;
+          pathIndex++;
+        } else if (star >= 0) {
+          // let the last star take one more character and try again after it
+          patternIndex = star + 1;
+          pathIndex = ++starMatchEnd;
+        } else {
+          return false;
+        }
+      }
+      while (patternIndex < pattern.length() && pattern.charAt(patternIndex) == '*') {
+        patternIndex++;
+      }
+      return patternIndex == pattern.length();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+
+public enum ScoringMode implements UrlScorer {
+  // fewest links away from the seed first, so a breadth first crawl
+  DEPTH {
+    @Override
+    public double score(URI uri, int depth, int inLinks, double importance) {
+      return -depth;
+    }
+  },
+  // most linked to so far first
+  IN_LINKS {
+    @Override
+    public double score(URI uri, int depth, int inLinks, double importance) {
+      return inLinks;
+    }
+  },
+  // short paths without query strings or numbered segments first, which puts pagination, archives
+  // and faceted search behind the pages they lead to
+  PATH {
+    @Override
+    public double score(URI uri, int depth, int inLinks, double importance) {
+      double score = -depth;
+      String path = uri.getRawPath();
+      if (path != null) {
+        for (String segment : path.split("/")) {
+          if (!segment.isEmpty()) {
+            score -= isNumeric(segment) ? 2 : 0.5;
+          }
+        }
+      }
+      String query = uri.getRawQuery();
+      if (query != null && !query.isEmpty()) {
+        score -= 2 * query.split("&").length;
+      }
+      return score;
+    }
+  },
+  // OPIC: every crawled page splits its importance between its links and a page's score is what
+  // it has been handed so far, which approximates PageRank while crawling
+  OPIC {
+    @Override
+    public double score(URI uri, int depth, int inLinks, double importance) {
+      return importance;
+    }
+  },
+  // most recently changed first by sitemap lastmod, urls without one after all that have it
+  RECENT {
+    @Override
+    public double score(URI uri, int depth, int inLinks, double importance) {
+      return 0;
+    }
+
+    @Override
+    public double score(
+        URI uri, int depth, int inLinks, double importance, long lastModified) {
+      return lastModified;
+    }
+  };
+
+  private static boolean isNumeric(String segment) {
+    for (int i = 0; i < segment.length(); i++) {
+      if (!Character.isDigit(segment.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,16 @@
+package com.nedyalkova.crawler.impl;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+// remembers 64-bit url fingerprints; add() returns false when the fingerprint was already known
+public interface SeenSet {
+
+  boolean add(long fingerprint);
+
+  boolean contains(long fingerprint);
+
+  long size();
+
+  void writeTo(DataOutput out) throws IOException;
+}
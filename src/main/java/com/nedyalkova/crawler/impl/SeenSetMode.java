@@ -0,0 +1,8 @@
+package com.nedyalkova.crawler.impl;
+
+public enum SeenSetMode {
+  // every fingerprint is stored, about 12 bytes per url
+  EXACT,
+  // fixed size bit array, a small share of new urls is wrongly reported as seen
+  BLOOM
+}
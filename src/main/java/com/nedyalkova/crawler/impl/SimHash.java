@@ -0,0 +1,78 @@
+package com.nedyalkova.crawler.impl;
+
+// 64 bit simhash of a page's visible text, fed one character at a time: every pair of adjacent
+// words is a feature, and each bit of the result is the majority vote of that bit over the
+// feature hashes, so pages sharing most of their text end up a few bits apart; pairs rather
+// than longer shingles keep a one word edit from moving short pages too far
+final class SimHash {
+
+  // fewer features than this and every short page would look like every other
+  static final int MIN_FEATURES = 16;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int[] votes = new int[Long.SIZE];
+  private long word = FNV_OFFSET;
+  private int wordLength;
+  private long previousWord;
+  private int words;
+  private int features;
+
+  void accept(char c) {
+    if (Character.isLetterOrDigit(c)) {
+      word = (word ^ Character.toLowerCase(c)) * FNV_PRIME;
+      wordLength++;
+    } else if (wordLength > 0) {
+      endWord();
+    }
+  }
+
+  boolean hasEnoughFeatures() {
+    finish();
+    return features >= MIN_FEATURES;
+  }
+
+  long value() {
+    finish();
+    long value = 0;
+    for (int bit = 0; bit < Long.SIZE; bit++) {
+      if (votes[bit] > 0) {
+        value |= 1L << bit;
+      }
+    }
+    return value;
+  }
+
+  static int distance(long first, long second) {
+    return Long.bitCount(first ^ second);
+  }
+
+  private void finish() {
+    if (wordLength > 0) {
+      endWord();
+    }
+  }
+
+  private void endWord() {
+    words++;
+    if (words >= 2) {
+      long feature = mix(previousWord * 31 + word);
+      for (int bit = 0; bit < Long.SIZE; bit++) {
+        votes[bit] += (feature >>> bit & 1) == 1 ? 1 : -1;
+      }
+      features++;
+    }
+    previousWord = word;
+    word = FNV_OFFSET;
+    wordLength = 0;
+  }
+
+  // murmur3 finalizer, so features differing in one word differ in about half their bits
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    return h ^ h >>> 33;
+  }
+}
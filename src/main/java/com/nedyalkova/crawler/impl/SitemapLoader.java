@@ -0,0 +1,119 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+// walks sitemaps and sitemap indexes breadth first and hands every listed url to the listener
+// while it is being parsed; an index that lists itself or loops back is only read once. Each
+// sitemap is a request like any other, so robots.txt and the host's pacing apply to it
+public class SitemapLoader {
+  private static final Logger log = LoggerFactory.getLogger(SitemapLoader.class);
+
+  // well above what real sites split their sitemaps into, but keeps a runaway index finite
+  static final int MAX_SITEMAPS = 1000;
+
+  private final PageFetcher pageFetcher;
+  private final PolitenessScheduler politeness;
+  private final int maxSitemaps;
+
+  public SitemapLoader(PageFetcher pageFetcher, PolitenessScheduler politeness) {
+    this(pageFetcher, politeness, MAX_SITEMAPS);
+  }
+
+  SitemapLoader(PageFetcher pageFetcher, PolitenessScheduler politeness, int maxSitemaps) {
+    this.pageFetcher = pageFetcher;
+    this.politeness = politeness;
+    this.maxSitemaps = maxSitemaps;
+  }
+
+  // the sitemaps robots.txt lists plus /sitemap.xml at the origin
+  public static Collection<URI> locationsFor(URI origin, RobotsTxt robots) {
+    Set<URI> locations = new HashSet<>();
+    for (String sitemap : robots.getSitemaps()) {
+      try {
+        locations.add(origin.resolve(sitemap));
+      } catch (IllegalArgumentException e) {
+        log.debug("Ignoring sitemap {} listed in robots.txt", sitemap);
+      }
+    }
+    locations.add(origin.resolve("/sitemap.xml"));
+    return locations;
+  }
+
+  // returns how many urls were reported; sitemaps that cannot be fetched or parsed are skipped
+  public long load(Collection<URI> sitemaps, SitemapReader.Listener urls)
+      throws InterruptedException {
+    Deque<URI> pending = new ArrayDeque<>(sitemaps);
+    Set<URI> visited = new HashSet<>();
+    long[] count = new long[1];
+    SitemapReader.Listener listener =
+        new SitemapReader.Listener() {
+          @Override
+          public void onUrl(String loc, long lastModified) {
+            count[0]++;
+            urls.onUrl(loc, lastModified);
+          }
+
+          @Override
+          public void onSitemap(String loc) {
+            try {
+              pending.add(URI.create(loc));
+            } catch (IllegalArgumentException e) {
+              log.debug("Ignoring malformed sitemap location {}", loc);
+            }
+          }
+        };
+    while (!pending.isEmpty() && visited.size() < maxSitemaps) {
+      URI sitemap = pending.poll();
+      if (visited.add(sitemap)) {
+        read(sitemap, listener);
+      }
+    }
+    if (!pending.isEmpty()) {
+      log.warn("Stopped after {} sitemaps, {} more were listed", visited.size(), pending.size());
+    }
+    log.info("Loaded {} urls from {} sitemaps", count[0], visited.size());
+    return count[0];
+  }
+
+  private void read(URI sitemap, SitemapReader.Listener listener) throws InterruptedException {
+    if (!politeness.acquire(sitemap)) {
+      log.debug("robots.txt disallows sitemap {}", sitemap);
+      return;
+    }
+    long start = System.nanoTime();
+    int statusCode = PageResult.FAILED;
+    Duration retryAfter = null;
+    try (FetchResponse response = pageFetcher.fetch(new FetchRequest(sitemap)).get()) {
+      statusCode = response.getStatusCode();
+      retryAfter = HTMLFetcher.retryAfter(response);
+      if (statusCode != 200) {
+        log.debug("{} returned status HTTP {}", sitemap, statusCode);
+        return;
+      }
+      new SitemapReader(response.getBody(), listener).read();
+    } catch (ExecutionException | IOException e) {
+      log.warn("Unable to read sitemap {}", sitemap, e);
+    } finally {
+      politeness.onResult(
+          sitemap,
+          new PageResult(
+              sitemap.toString(),
+              statusCode,
+              Set.of(),
+              System.nanoTime() - start,
+              false,
+              retryAfter));
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.nedyalkova.crawler.impl;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.zip.GZIPInputStream;
+
+// reports the entries of a sitemap or sitemap index as the parser reaches them, so a sitemap of
+// millions of urls is never held in memory; gzipped files are recognised by their magic bytes
+public class SitemapReader {
+
+  public interface Listener {
+    // lastModified is in epoch milliseconds, 0 when the entry has no usable lastmod
+    void onUrl(String loc, long lastModified);
+
+    // a child sitemap listed by a sitemap index
+    default void onSitemap(String loc) {}
+  }
+
+  static final String NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+
+  // the limits of the sitemap protocol; they hold after decompression, so a small gzip cannot
+  // unpack into gigabytes
+  static final long MAX_BYTES = 50L * 1024 * 1024;
+  static final int MAX_ENTRIES = 50_000;
+
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private final InputStream in;
+  private final Listener listener;
+  private final long maxBytes;
+  private final int maxEntries;
+
+  public SitemapReader(InputStream in, Listener listener) {
+    this(in, listener, MAX_BYTES, MAX_ENTRIES);
+  }
+
+  SitemapReader(InputStream in, Listener listener, long maxBytes, int maxEntries) {
+    this.in = in;
+    this.listener = listener;
+    this.maxBytes = maxBytes;
+    this.maxEntries = maxEntries;
+  }
+
+  // the entries up to a limit are reported before the IOException about it
+  public void read() throws IOException {
+    XMLStreamReader reader = null;
+    BoundedInputStream bounded = new BoundedInputStream(maybeGunzip(in), maxBytes);
+    try {
+      reader = FACTORY.createXMLStreamReader(bounded);
+      int entries = 0;
+      String loc = null;
+      long lastModified = 0;
+      int depth = 0;
+      // the depth of the url or sitemap being read, -1 outside of one
+      int entryDepth = -1;
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (!isSitemapElement(reader)) {
+            // priority, changefreq and extensions such as image:loc are not used
+            continue;
+          }
+          switch (reader.getLocalName()) {
+            case "url", "sitemap" -> {
+              entryDepth = depth;
+              loc = null;
+              lastModified = 0;
+            }
+            case "loc" -> {
+              if (depth == entryDepth + 1) {
+                loc = reader.getElementText().trim();
+                depth--;
+              }
+            }
+            case "lastmod" -> {
+              if (depth == entryDepth + 1) {
+                lastModified = parseLastModified(reader.getElementText().trim());
+                depth--;
+              }
+            }
+            default -> {
+              // urlset and sitemapindex only hold the entries
+            }
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          if (depth == entryDepth && isSitemapElement(reader)) {
+            entryDepth = -1;
+            if (loc != null && !loc.isEmpty()) {
+              if (++entries > maxEntries) {
+                throw new IOException("Sitemap lists more than " + maxEntries + " entries");
+              }
+              if (reader.getLocalName().equals("url")) {
+                listener.onUrl(loc, lastModified);
+              } else {
+                listener.onSitemap(loc);
+              }
+            }
+          }
+          depth--;
+        }
+      }
+    } catch (XMLStreamException e) {
+      if (bounded.isTruncated()) {
+        throw new IOException("Sitemap is larger than " + maxBytes + " bytes", e);
+      }
+      throw new IOException("Malformed sitemap", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException ignored) {
+          // the stream is closed by the caller
+        }
+      }
+    }
+  }
+
+  // the W3C datetime forms the sitemap protocol allows, from a bare year down to fractions of a
+  // second; anything else counts as unknown
+  static long parseLastModified(String value) {
+    try {
+      if (value.indexOf('T') >= 0) {
+        return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+      }
+      LocalDate date =
+          switch (value.length()) {
+            case 4 -> Year.parse(value).atDay(1);
+            case 7 -> YearMonth.parse(value).atDay(1);
+            default -> LocalDate.parse(value);
+          };
+      return date.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return 0;
+    }
+  }
+
+  // an element of the sitemap protocol; sitemaps that leave out the namespace are read too
+  private static boolean isSitemapElement(XMLStreamReader reader) {
+    String namespace = reader.getNamespaceURI();
+    return namespace == null || namespace.isEmpty() || namespace.equals(NAMESPACE);
+  }
+
+  private static InputStream maybeGunzip(InputStream in) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(in, 8192);
+    buffered.mark(2);
+    int first = buffered.read();
+    int second = buffered.read();
+    buffered.reset();
+    if (first == 0x1F && second == 0x8B) {
+      return new GZIPInputStream(buffered, 8192);
+    }
+    return buffered;
+  }
+
+  // sitemaps come from the sites being crawled, so no DTDs or external entities
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    return factory;
+  }
+}
@@ -0,0 +1,11 @@
+package com.nedyalkova.crawler.impl;
+
+// how far a crawl follows the subdomains of an allowed domain
+public enum SubdomainPolicy {
+  // the host itself only
+  EXACT,
+  // the host and its www. variant
+  WWW,
+  // the host and every subdomain of it
+  ALL
+}
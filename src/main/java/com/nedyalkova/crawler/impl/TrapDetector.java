@@ -0,0 +1,126 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// learns url patterns while the crawl runs and turns away new urls that look like a crawler trap:
+// paths that keep repeating a segment, patterns such as /calendar/*/* that go on without end, and
+// parameters like session ids that take a new value on almost every link
+public class TrapDetector {
+
+  public enum Trap {
+    REPEATED_SEGMENT,
+    PATTERN_LIMIT,
+    PARAMETER_VALUES
+  }
+
+  private final int maxSegmentRepeats;
+  private final int maxUrlsPerPattern;
+  private final int maxParameterValues;
+  // keyed by the pattern's fingerprint
+  private final Map<Long, Pattern> patterns = new HashMap<>();
+
+  public TrapDetector(int maxSegmentRepeats, int maxUrlsPerPattern, int maxParameterValues) {
+    this.maxSegmentRepeats = maxSegmentRepeats;
+    this.maxUrlsPerPattern = maxUrlsPerPattern;
+    this.maxParameterValues = maxParameterValues;
+  }
+
+  // null when the url is let through, in which case it counts towards its pattern; only call it
+  // once per url, with urls already known to the crawl left out
+  public synchronized Trap check(URI uri) {
+    String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+    if (hasRepeatedSegment(path)) {
+      return Trap.REPEATED_SEGMENT;
+    }
+    String query = uri.getRawQuery();
+    Pattern pattern =
+        patterns.computeIfAbsent(
+            URLUtils.fingerprint(patternOf(uri.getHost(), path, query)), key -> new Pattern());
+    if (pattern.urls >= maxUrlsPerPattern) {
+      return Trap.PATTERN_LIMIT;
+    }
+    if (query != null && !pattern.acceptValues(query, maxParameterValues)) {
+      return Trap.PARAMETER_VALUES;
+    }
+    pattern.urls++;
+    return null;
+  }
+
+  public synchronized int patternCount() {
+    return patterns.size();
+  }
+
+  private boolean hasRepeatedSegment(String path) {
+    Map<String, Integer> counts = new HashMap<>();
+    for (String segment : path.split("/")) {
+      if (!segment.isEmpty() && counts.merge(segment, 1, Integer::sum) > maxSegmentRepeats) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // the host and path with every segment holding a digit replaced by *, followed by the query's
+  // sorted parameter names, without their values
+  static String patternOf(String host, String path, String query) {
+    StringBuilder pattern = new StringBuilder(host);
+    for (String segment : path.split("/")) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+      pattern.append('/');
+      if (segment.chars().anyMatch(Character::isDigit)) {
+        pattern.append('*');
+      } else {
+        pattern.append(segment);
+      }
+    }
+    if (query != null) {
+      pattern.append('?');
+      String[] names = query.split("&");
+      for (int i = 0; i < names.length; i++) {
+        int equals = names[i].indexOf('=');
+        names[i] = equals < 0 ? names[i] : names[i].substring(0, equals);
+      }
+      Arrays.sort(names);
+      for (String name : names) {
+        pattern.append(name).append('&');
+      }
+    }
+    return pattern.toString();
+  }
+
+  private static final class Pattern {
+    private int urls;
+    // value fingerprints per parameter name, until the parameter has had too many of them
+    private final Map<String, Set<Long>> values = new HashMap<>();
+    private final Set<String> exploded = new HashSet<>();
+
+    // a value already seen is fine even for an exploded parameter, only new ones are refused
+    boolean acceptValues(String query, int maxValues) {
+      String[] parameters = query.split("&");
+      for (String parameter : parameters) {
+        int equals = parameter.indexOf('=');
+        String name = equals < 0 ? parameter : parameter.substring(0, equals);
+        Set<Long> known = values.computeIfAbsent(name, key -> new HashSet<>());
+        if (exploded.contains(name) && !known.contains(URLUtils.fingerprint(parameter))) {
+          return false;
+        }
+      }
+      for (String parameter : parameters) {
+        int equals = parameter.indexOf('=');
+        String name = equals < 0 ? parameter : parameter.substring(0, equals);
+        Set<Long> known = values.get(name);
+        if (known.add(URLUtils.fingerprint(parameter)) && known.size() >= maxValues) {
+          exploded.add(name);
+        }
+      }
+      return true;
+    }
+  }
+}
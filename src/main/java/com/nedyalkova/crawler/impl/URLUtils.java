@@ -5,47 +5,96 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Set;
+import java.net.URL;
+import java.util.regex.Pattern;
 
 public class URLUtils {
   Logger log = LoggerFactory.getLogger(URLUtils.class);
 
+  private static final Pattern LEADING_DOT_SEGMENTS = Pattern.compile("^/(\\.{1,2}/)+");
+
   public URI normalizeUrl(String rawUrl) throws URISyntaxException {
+    CanonicalUrl canonical = canonicalize(rawUrl);
+    return canonical == null ? null : new URI(canonical.getKey());
+  }
+
+  public CanonicalUrl canonicalize(String rawUrl) {
     if (StringUtils.isBlank(rawUrl)) {
       return null;
     }
-    URI uri = new URI(rawUrl.trim()).normalize();
-    String scheme = uri.getScheme();
-    String host = uri.getHost();
-    if (scheme == null || host == null) {
-      return null;
-    }
-    int port = getPort(scheme, uri.getPort());
-    String normalisedPath = getPath(uri.getPath());
-
-    return new URI(scheme.toLowerCase(), uri.getUserInfo(), host.toLowerCase(), port, normalisedPath, uri.getQuery(), null);
+    return UrlCanonicalizer.canonicalize(rawUrl);
   }
 
-  private String getPath(String path) {
-    if (path != null && path.endsWith("/") && path.length() > 1) {
-      return path.substring(0, path.length() - 1);
+  // href made absolute against baseUrl the way browsers do, null when that gives no url. Control
+  // characters are dropped, "?q" keeps the base path and "/../" above the root goes, as in jsoup
+  static String resolve(String baseUrl, String href) {
+    String relative = stripControlChars(href);
+    try {
+      URL base;
+      try {
+        base = new URL(stripControlChars(baseUrl));
+      } catch (MalformedURLException e) {
+        // the href may be absolute on its own
+        return new URL(relative).toExternalForm();
+      }
+      if (relative.startsWith("?")) {
+        relative = base.getPath() + relative;
+      }
+      URL resolved = new URL(base, relative);
+      String file = resolved.getFile();
+      if (file.startsWith("/.")) {
+        file = LEADING_DOT_SEGMENTS.matcher(file).replaceFirst("/");
+      }
+      if (resolved.getRef() != null) {
+        file += "#" + resolved.getRef();
+      }
+      return new URL(resolved.getProtocol(), resolved.getHost(), resolved.getPort(), file)
+          .toExternalForm();
+    } catch (MalformedURLException e) {
+      return null;
     }
-    return path;
   }
 
-  private int getPort(String scheme, int port) {
-    // remove default ones only
-    if ((scheme.equals("http") && port == 80) || (scheme.equals("https") && port == 443)) {
-      return -1;
+  private static String stripControlChars(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) < 0x20) {
+        StringBuilder stripped = new StringBuilder(value.length());
+        for (int j = 0; j < value.length(); j++) {
+          if (value.charAt(j) >= 0x20) {
+            stripped.append(value.charAt(j));
+          }
+        }
+        return stripped.toString();
+      }
     }
-    return port;
+    return value;
   }
 
   public void validateScheme(String scheme) throws UrlInvalidException {
-    if (!(scheme != null && Set.of("http", "https").contains(scheme.toLowerCase()))) {
+    if (!("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
       throw new UrlInvalidException("Unexpected protocol");
     }
   }
+
+  // 64-bit FNV-1a over the url with a murmur3 finaliser to spread the bits
+  public long fingerprint(URI uri) {
+    return fingerprint(uri.toString());
+  }
+
+  static long fingerprint(CharSequence url) {
+    long hash = 0xCBF29CE484222325L;
+    for (int i = 0; i < url.length(); i++) {
+      hash ^= url.charAt(i);
+      hash *= 0x100000001B3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
 }
@@ -0,0 +1,317 @@
+package com.nedyalkova.crawler.impl;
+
+// one pass over an absolute url: lowercases the scheme and host, drops default ports, dot segments,
+// a trailing slash and the fragment, and percent-encodes anything java.net.URI would reject
+final class UrlCanonicalizer {
+
+  private static final boolean[] USER_INFO = allowed("-._~!$&'()*+,;=:");
+  private static final boolean[] PATH = allowed("-._~!$&'()*+,;=:@/");
+  private static final boolean[] QUERY = allowed("-._~!$&'()*+,;=:@/?");
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+  private static final int MAX_PORT_DIGITS = 5;
+
+  private UrlCanonicalizer() {}
+
+  // null when the url is not absolute or has no usable host
+  static CanonicalUrl canonicalize(CharSequence raw) {
+    int start = 0;
+    int end = raw.length();
+    while (start < end && raw.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && raw.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int schemeEnd = schemeEnd(raw, start, end);
+    if (schemeEnd < 0
+        || schemeEnd + 2 >= end
+        || raw.charAt(schemeEnd + 1) != '/'
+        || raw.charAt(schemeEnd + 2) != '/') {
+      return null;
+    }
+    int authorityStart = schemeEnd + 3;
+    int authorityEnd = authorityStart;
+    while (authorityEnd < end && "/?#".indexOf(raw.charAt(authorityEnd)) < 0) {
+      authorityEnd++;
+    }
+    int pathEnd = authorityEnd;
+    while (pathEnd < end && raw.charAt(pathEnd) != '?' && raw.charAt(pathEnd) != '#') {
+      pathEnd++;
+    }
+    int fragmentStart = pathEnd;
+    while (fragmentStart < end && raw.charAt(fragmentStart) != '#') {
+      fragmentStart++;
+    }
+
+    StringBuilder out = new StringBuilder(end - start + 8);
+    for (int i = start; i < schemeEnd; i++) {
+      out.append(toLowerCase(raw.charAt(i)));
+    }
+    int schemeLength = out.length();
+    out.append("://");
+
+    int hostStart = authorityStart;
+    for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+      if (raw.charAt(i) == '@') {
+        appendEncoded(out, raw, authorityStart, i, USER_INFO);
+        out.append('@');
+        hostStart = i + 1;
+        break;
+      }
+    }
+    int hostEnd;
+    if (hostStart < authorityEnd && raw.charAt(hostStart) == '[') {
+      hostEnd = indexOf(raw, hostStart, authorityEnd, ']') + 1;
+      if (hostEnd == 0 || !appendIpv6(out, raw, hostStart, hostEnd)) {
+        return null;
+      }
+      if (hostEnd < authorityEnd && raw.charAt(hostEnd) != ':') {
+        return null;
+      }
+    } else {
+      hostEnd = indexOf(raw, hostStart, authorityEnd, ':');
+      if (hostEnd < 0) {
+        hostEnd = authorityEnd;
+      }
+      if (!appendHostname(out, raw, hostStart, hostEnd)) {
+        return null;
+      }
+    }
+    if (hostEnd < authorityEnd) {
+      int port = parsePort(raw, hostEnd + 1, authorityEnd);
+      if (port < -1) {
+        return null;
+      }
+      if (port >= 0 && !isDefaultPort(out, schemeLength, port)) {
+        out.append(':').append(port);
+      }
+    }
+
+    int pathStart = out.length();
+    appendPath(out, raw, authorityEnd, pathEnd);
+    if (out.length() - pathStart > 1 && out.charAt(out.length() - 1) == '/') {
+      out.setLength(out.length() - 1);
+    }
+    if (pathEnd < end && raw.charAt(pathEnd) == '?') {
+      out.append('?');
+      appendEncoded(out, raw, pathEnd + 1, fragmentStart, QUERY);
+    }
+    String key = out.toString();
+    return new CanonicalUrl(key, URLUtils.fingerprint(key), schemeLength);
+  }
+
+  private static int schemeEnd(CharSequence raw, int start, int end) {
+    if (start == end || !isLetter(raw.charAt(start))) {
+      return -1;
+    }
+    for (int i = start + 1; i < end; i++) {
+      char c = raw.charAt(i);
+      if (c == ':') {
+        return i;
+      }
+      if (!isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  // labels of letters, digits and inner hyphens; the last one must start with a letter unless the
+  // whole host is a dotted ip address
+  private static boolean appendHostname(StringBuilder out, CharSequence raw, int from, int to) {
+    if (from == to) {
+      return false;
+    }
+    int labelStart = from;
+    int lastLabelStart = from;
+    boolean numeric = true;
+    for (int i = from; i <= to; i++) {
+      char c = i < to ? raw.charAt(i) : '.';
+      if (c == '.') {
+        if (i == labelStart) {
+          if (i == to && i > from) {
+            break;
+          }
+          return false;
+        }
+        if (raw.charAt(labelStart) == '-' || raw.charAt(i - 1) == '-') {
+          return false;
+        }
+        lastLabelStart = labelStart;
+        labelStart = i + 1;
+      } else if (isLetterOrDigit(c) || c == '-') {
+        numeric &= isDigit(c);
+      } else {
+        return false;
+      }
+    }
+    if (!numeric && !isLetter(raw.charAt(lastLabelStart))) {
+      return false;
+    }
+    for (int i = from; i < to; i++) {
+      out.append(toLowerCase(raw.charAt(i)));
+    }
+    return true;
+  }
+
+  private static boolean appendIpv6(StringBuilder out, CharSequence raw, int from, int to) {
+    if (to - from < 4) {
+      return false;
+    }
+    out.append('[');
+    for (int i = from + 1; i < to - 1; i++) {
+      char c = raw.charAt(i);
+      if (!isHex(c) && c != ':' && c != '.') {
+        return false;
+      }
+      out.append(toLowerCase(c));
+    }
+    out.append(']');
+    return true;
+  }
+
+  // -1 for an empty port, -2 when it is not a number
+  private static int parsePort(CharSequence raw, int from, int to) {
+    if (to - from > MAX_PORT_DIGITS) {
+      return -2;
+    }
+    int port = -1;
+    for (int i = from; i < to; i++) {
+      char c = raw.charAt(i);
+      if (!isDigit(c)) {
+        return -2;
+      }
+      port = Math.max(port, 0) * 10 + (c - '0');
+    }
+    return port;
+  }
+
+  private static boolean isDefaultPort(StringBuilder out, int schemeLength, int port) {
+    if (schemeLength == 4 && out.indexOf("http") == 0) {
+      return port == 80;
+    }
+    return schemeLength == 5 && out.indexOf("https") == 0 && port == 443;
+  }
+
+  // removes "." and ".." segments while copying, as in RFC 3986 section 5.2.4
+  private static void appendPath(StringBuilder out, CharSequence raw, int from, int to) {
+    int base = out.length();
+    int i = from;
+    while (i < to) {
+      int segmentStart = i + 1;
+      int segmentEnd = indexOf(raw, segmentStart, to, '/');
+      if (segmentEnd < 0) {
+        segmentEnd = to;
+      }
+      int length = segmentEnd - segmentStart;
+      boolean dot = length == 1 && raw.charAt(segmentStart) == '.';
+      boolean dotDot =
+          length == 2 && raw.charAt(segmentStart) == '.' && raw.charAt(segmentStart + 1) == '.';
+      if (dot || dotDot) {
+        if (dotDot) {
+          int previous = out.length() - 1;
+          while (previous >= base && out.charAt(previous) != '/') {
+            previous--;
+          }
+          out.setLength(Math.max(previous, base));
+        }
+        if (segmentEnd == to) {
+          out.append('/');
+        }
+      } else {
+        out.append('/');
+        appendEncoded(out, raw, segmentStart, segmentEnd, PATH);
+      }
+      i = segmentEnd;
+    }
+  }
+
+  // valid escapes keep their meaning with upper-case hex, except letters, digits, '-', '_' and '~'
+  // which are decoded; everything outside the allowed set is percent-encoded as UTF-8
+  private static void appendEncoded(
+      StringBuilder out, CharSequence raw, int from, int to, boolean[] allowed) {
+    for (int i = from; i < to; i++) {
+      char c = raw.charAt(i);
+      if (c == '%' && i + 2 < to && isHex(raw.charAt(i + 1)) && isHex(raw.charAt(i + 2))) {
+        char decoded = (char) (hexValue(raw.charAt(i + 1)) << 4 | hexValue(raw.charAt(i + 2)));
+        if (isLetterOrDigit(decoded) || decoded == '-' || decoded == '_' || decoded == '~') {
+          out.append(decoded);
+        } else {
+          out.append('%').append(HEX[decoded >> 4]).append(HEX[decoded & 0xF]);
+        }
+        i += 2;
+      } else if (c < allowed.length && allowed[c]) {
+        out.append(c);
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < to
+          && Character.isLowSurrogate(raw.charAt(i + 1))) {
+        appendUtf8(out, Character.toCodePoint(c, raw.charAt(++i)));
+      } else {
+        appendUtf8(out, Character.isSurrogate(c) ? 0xFFFD : c);
+      }
+    }
+  }
+
+  private static void appendUtf8(StringBuilder out, int codePoint) {
+    if (codePoint < 0x80) {
+      appendByte(out, codePoint);
+    } else if (codePoint < 0x800) {
+      appendByte(out, 0xC0 | codePoint >> 6);
+      appendByte(out, 0x80 | codePoint & 0x3F);
+    } else if (codePoint < 0x10000) {
+      appendByte(out, 0xE0 | codePoint >> 12);
+      appendByte(out, 0x80 | codePoint >> 6 & 0x3F);
+      appendByte(out, 0x80 | codePoint & 0x3F);
+    } else {
+      appendByte(out, 0xF0 | codePoint >> 18);
+      appendByte(out, 0x80 | codePoint >> 12 & 0x3F);
+      appendByte(out, 0x80 | codePoint >> 6 & 0x3F);
+      appendByte(out, 0x80 | codePoint & 0x3F);
+    }
+  }
+
+  private static void appendByte(StringBuilder out, int b) {
+    out.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+  }
+
+  private static int indexOf(CharSequence raw, int from, int to, char target) {
+    for (int i = from; i < to; i++) {
+      if (raw.charAt(i) == target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean[] allowed(String punctuation) {
+    boolean[] allowed = new boolean[128];
+    for (char c = 0; c < allowed.length; c++) {
+      allowed[c] = isLetterOrDigit(c) || punctuation.indexOf(c) >= 0;
+    }
+    return allowed;
+  }
+
+  private static char toLowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetterOrDigit(char c) {
+    return isLetter(c) || isDigit(c);
+  }
+
+  private static boolean isHex(char c) {
+    return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  private static int hexValue(char c) {
+    return isDigit(c) ? c - '0' : toLowerCase(c) - 'a' + 10;
+  }
+}
@@ -0,0 +1,115 @@
+package com.nedyalkova.crawler.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// interns urls to dense int ids counting from 0. The urls' utf-8 bytes are packed into large
+// chunks and found through an open-addressing table of ids, so a url costs its bytes plus about
+// 30 bytes rather than a String, a map entry and a boxed Integer
+public class UrlDictionary {
+
+  private static final int CHUNK_BYTES = 1 << 20;
+  private static final float MAX_LOAD = 0.6f;
+
+  private byte[][] chunks = new byte[1][];
+  private int chunkCount;
+  private int chunkUsed = CHUNK_BYTES;
+  // per id
+  private long[] fingerprints = new long[1024];
+  private int[] chunkOf = new int[1024];
+  private int[] offsetOf = new int[1024];
+  private int[] lengthOf = new int[1024];
+  // id + 1 per slot, 0 for an empty slot
+  private int[] table = new int[2048];
+  private int size;
+
+  // the url's id, given the next one if the url is new
+  public synchronized int intern(String url) {
+    byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+    long fingerprint = URLUtils.fingerprint(url);
+    int mask = table.length - 1;
+    int slot = (int) fingerprint & mask;
+    for (; table[slot] != 0; slot = (slot + 1) & mask) {
+      int id = table[slot] - 1;
+      if (fingerprints[id] == fingerprint && matches(id, bytes)) {
+        return id;
+      }
+    }
+    int id = append(bytes, fingerprint);
+    table[slot] = id + 1;
+    if (size > table.length * MAX_LOAD) {
+      rehash();
+    }
+    return id;
+  }
+
+  // -1 when the url has not been interned
+  public synchronized int find(String url) {
+    byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+    long fingerprint = URLUtils.fingerprint(url);
+    int mask = table.length - 1;
+    for (int slot = (int) fingerprint & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int id = table[slot] - 1;
+      if (fingerprints[id] == fingerprint && matches(id, bytes)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  public synchronized String urlOf(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("No url with id " + id);
+    }
+    return new String(chunks[chunkOf[id]], offsetOf[id], lengthOf[id], StandardCharsets.UTF_8);
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private boolean matches(int id, byte[] bytes) {
+    int offset = offsetOf[id];
+    return lengthOf[id] == bytes.length
+        && Arrays.equals(
+            chunks[chunkOf[id]], offset, offset + bytes.length, bytes, 0, bytes.length);
+  }
+
+  private int append(byte[] bytes, long fingerprint) {
+    if (chunkUsed + bytes.length > CHUNK_BYTES || bytes.length > CHUNK_BYTES) {
+      if (chunkCount == chunks.length) {
+        chunks = Arrays.copyOf(chunks, chunks.length * 2);
+      }
+      // a url longer than a chunk gets one of its own
+      chunks[chunkCount++] = new byte[Math.max(CHUNK_BYTES, bytes.length)];
+      chunkUsed = 0;
+    }
+    System.arraycopy(bytes, 0, chunks[chunkCount - 1], chunkUsed, bytes.length);
+    if (size == fingerprints.length) {
+      int capacity = size * 2;
+      fingerprints = Arrays.copyOf(fingerprints, capacity);
+      chunkOf = Arrays.copyOf(chunkOf, capacity);
+      offsetOf = Arrays.copyOf(offsetOf, capacity);
+      lengthOf = Arrays.copyOf(lengthOf, capacity);
+    }
+    fingerprints[size] = fingerprint;
+    chunkOf[size] = chunkCount - 1;
+    offsetOf[size] = chunkUsed;
+    lengthOf[size] = bytes.length;
+    chunkUsed += bytes.length;
+    return size++;
+  }
+
+  private void rehash() {
+    int[] larger = new int[table.length << 1];
+    int mask = larger.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = (int) fingerprints[id] & mask;
+      while (larger[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      larger[slot] = id + 1;
+    }
+    table = larger;
+  }
+}
@@ -0,0 +1,16 @@
+package com.nedyalkova.crawler.impl;
+
+import java.net.URI;
+
+// orders a priority frontier, higher scores are crawled first; a queued url is scored again each
+// time another link to it is found, so scores can grow with in-links or importance
+@FunctionalInterface
+public interface UrlScorer {
+
+  double score(URI uri, int depth, int inLinks, double importance);
+
+  // lastModified is in epoch milliseconds and 0 unless a sitemap gave it
+  default double score(URI uri, int depth, int inLinks, double importance, long lastModified) {
+    return score(uri, depth, inLinks, importance);
+  }
+}
@@ -0,0 +1,223 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// validators and outgoing links per url, kept in an append-only file with only offsets on the heap
+public class ValidatorCache implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(ValidatorCache.class);
+
+  // the name changed when urls stopped being written with writeUTF, so an older file is not misread
+  static final String FILE_NAME = "validators-2.log";
+
+  private final Path file;
+  private final FileChannel channel;
+  private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+  private long end;
+  private long staleRecords;
+
+  public ValidatorCache(Path directory) throws IOException {
+    this.file = Files.createDirectories(directory).resolve(FILE_NAME);
+    this.channel =
+        FileChannel.open(
+            file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    loadIndex();
+    log.debug("Opened validator cache {} with {} urls", file, offsets.size());
+  }
+
+  public Entry get(String url) {
+    Long offset = offsets.get(url);
+    if (offset == null) {
+      return null;
+    }
+    try {
+      return readRecord(offset).entry;
+    } catch (IOException e) {
+      log.warn("Unable to read cached validators for {}", url, e);
+      return null;
+    }
+  }
+
+  public void put(String url, Entry entry) {
+    try {
+      ByteBuffer record = encode(url, entry);
+      synchronized (this) {
+        long offset = end;
+        while (record.hasRemaining()) {
+          end += channel.write(record, end);
+        }
+        if (offsets.put(url, offset) != null) {
+          staleRecords++;
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to write to the validator cache " + file, e);
+    }
+  }
+
+  public int size() {
+    return offsets.size();
+  }
+
+  // rewrites the file without superseded records once they outnumber the live ones
+  @Override
+  public synchronized void close() throws IOException {
+    if (staleRecords > offsets.size()) {
+      compact();
+    }
+    channel.close();
+  }
+
+  private void compact() throws IOException {
+    Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+    try (FileChannel out =
+        FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Map.Entry<String, Long> live : offsets.entrySet()) {
+        ByteBuffer record = encode(live.getKey(), readRecord(live.getValue()).entry);
+        while (record.hasRemaining()) {
+          out.write(record);
+        }
+      }
+      out.force(false);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    log.debug("Compacted validator cache {} down to {} urls", file, offsets.size());
+  }
+
+  private void loadIndex() throws IOException {
+    long size = channel.size();
+    long offset = 0;
+    ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+    while (offset + Integer.BYTES <= size) {
+      length.clear();
+      readFully(length, offset);
+      long next = offset + Integer.BYTES + length.getInt(0);
+      if (next > size) {
+        break;
+      }
+      if (offsets.put(readRecord(offset).url, offset) != null) {
+        staleRecords++;
+      }
+      offset = next;
+    }
+    if (offset < size) {
+      log.warn("Dropping a torn record at the end of {}", file);
+      channel.truncate(offset);
+    }
+    end = offset;
+  }
+
+  private Record readRecord(long offset) throws IOException {
+    ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+    readFully(length, offset);
+    ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+    readFully(bytes, offset + Integer.BYTES);
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()))) {
+      String url = DataStrings.read(in);
+      String etag = emptyToNull(DataStrings.read(in));
+      String lastModified = emptyToNull(DataStrings.read(in));
+      long contentHash = in.readLong();
+      int linkCount = in.readInt();
+      List<URI> links = new ArrayList<>(linkCount);
+      for (int i = 0; i < linkCount; i++) {
+        links.add(URI.create(DataStrings.read(in)));
+      }
+      return new Record(url, new Entry(etag, lastModified, contentHash, links));
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException("Unexpected end of " + file);
+      }
+    }
+  }
+
+  private static ByteBuffer encode(String url, Entry entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(0);
+      DataStrings.write(out, url);
+      DataStrings.write(out, entry.etag == null ? "" : entry.etag);
+      DataStrings.write(out, entry.lastModified == null ? "" : entry.lastModified);
+      out.writeLong(entry.contentHash);
+      out.writeInt(entry.links.size());
+      for (URI link : entry.links) {
+        DataStrings.write(out, link.toString());
+      }
+    }
+    ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+    record.putInt(0, record.capacity() - Integer.BYTES);
+    return record;
+  }
+
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
+
+  public static final class Entry {
+    private final String etag;
+    private final String lastModified;
+    private final long contentHash;
+    private final List<URI> links;
+
+    public Entry(String etag, String lastModified, long contentHash, Collection<URI> links) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.contentHash = contentHash;
+      this.links = List.copyOf(links);
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public String getLastModified() {
+      return lastModified;
+    }
+
+    public long getContentHash() {
+      return contentHash;
+    }
+
+    public List<URI> getLinks() {
+      return links;
+    }
+  }
+
+  private static final class Record {
+    private final String url;
+    private final Entry entry;
+
+    Record(String url, Entry entry) {
+      this.url = url;
+      this.entry = entry;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+// records what another fetcher returns: the bytes the crawl reads from a body are copied on the
+// way through and, once the response is closed, handed to a writer thread that appends them to
+// WARC files. A crawl thread only waits when that thread is a whole buffer behind
+public class WarcRecordingFetcher implements PageFetcher {
+  private static final Logger log = LoggerFactory.getLogger(WarcRecordingFetcher.class);
+
+  static final int DEFAULT_CAPACITY = 256;
+  private static final Captured END = new Captured(null, null, null, new byte[0], 0, false);
+
+  private final PageFetcher delegate;
+  private final WarcWriter writer;
+  private final BlockingQueue<Captured> buffer;
+  private final Thread writerThread;
+  private final LongAdder recorded = new LongAdder();
+  private final LongAdder backpressureWaits = new LongAdder();
+  private volatile boolean closed;
+
+  public WarcRecordingFetcher(PageFetcher delegate, WarcWriter writer, int capacity) {
+    this.delegate = delegate;
+    this.writer = writer;
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    this.writerThread = new Thread(this::drain, "crawler-warc");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  // HEAD responses have no body worth keeping, and would hide the GET of the same url on replay
+  @Override
+  public CompletableFuture<FetchResponse> fetch(FetchRequest request) {
+    CompletableFuture<FetchResponse> response = delegate.fetch(request);
+    if (request.getMethod().equals("HEAD")) {
+      return response;
+    }
+    return response.thenApply(fetched -> recording(request.getUri(), fetched));
+  }
+
+  public long getRecorded() {
+    return recorded.sum();
+  }
+
+  // how often a crawl thread had to wait for the writer
+  public long getBackpressureWaits() {
+    return backpressureWaits.sum();
+  }
+
+  // writes out everything captured so far, then closes the wrapped fetcher
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      buffer.put(END);
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      writerThread.interrupt();
+    }
+    try {
+      writer.close();
+    } catch (IOException e) {
+      log.error("Unable to finish the WARC file {}", writer.getCurrentFile(), e);
+    }
+    log.info("Recorded {} responses", getRecorded());
+    delegate.close();
+  }
+
+  private FetchResponse recording(URI requestUri, FetchResponse response) {
+    return new FetchResponse(
+        response.getUri(),
+        response.getStatusCode(),
+        response.getHeaders(),
+        new CapturingInputStream(response.getBody(), requestUri, response));
+  }
+
+  private void enqueue(Captured captured) {
+    if (closed) {
+      log.debug("WARC output already closed, not recording {}", captured.targetUri);
+      return;
+    }
+    try {
+      if (!buffer.offer(captured)) {
+        backpressureWaits.increment();
+        buffer.put(captured);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drain() {
+    try {
+      Captured next;
+      while ((next = buffer.take()) != END) {
+        write(next);
+      }
+    } catch (InterruptedException e) {
+      log.warn("WARC writer interrupted with {} responses unwritten", buffer.size());
+    }
+  }
+
+  private void write(Captured captured) {
+    try {
+      writer.writeResponse(
+          captured.requestUri,
+          captured.targetUri,
+          captured.response.getStatusCode(),
+          captured.response.getHeaders(),
+          captured.body,
+          captured.length,
+          captured.truncated,
+          Instant.now());
+      recorded.increment();
+    } catch (IOException e) {
+      log.error("Unable to record {}", captured.targetUri, e);
+    }
+  }
+
+  private final class CapturingInputStream extends FilterInputStream {
+    private final URI requestUri;
+    private final FetchResponse response;
+    private byte[] copy = new byte[8192];
+    private int length;
+    private boolean ended;
+    private boolean done;
+
+    CapturingInputStream(InputStream in, URI requestUri, FetchResponse response) {
+      super(in);
+      this.requestUri = requestUri;
+      this.response = response;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b < 0) {
+        ended = true;
+      } else {
+        append(new byte[] {(byte) b}, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int count) throws IOException {
+      int read = super.read(bytes, offset, count);
+      if (read < 0) {
+        ended = true;
+      } else {
+        append(bytes, offset, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // skipped bytes would be missing from the record
+      byte[] discard = new byte[(int) Math.min(n, 8192)];
+      return Math.max(read(discard, 0, discard.length), 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    // a body closed before its end, like one that is not html, is recorded as truncated
+    @Override
+    public void close() throws IOException {
+      if (!done) {
+        done = true;
+        int status = response.getStatusCode();
+        boolean truncated = !ended && status != 204 && status != 304;
+        enqueue(new Captured(requestUri, response.getUri(), response, copy, length, truncated));
+      }
+      super.close();
+    }
+
+    private void append(byte[] bytes, int offset, int count) {
+      if (length + count > copy.length) {
+        copy = Arrays.copyOf(copy, Math.max(copy.length * 2, length + count));
+      }
+      System.arraycopy(bytes, offset, copy, length, count);
+      length += count;
+    }
+  }
+
+  private static final class Captured {
+    private final URI requestUri;
+    private final URI targetUri;
+    private final FetchResponse response;
+    private final byte[] body;
+    private final int length;
+    private final boolean truncated;
+
+    Captured(
+        URI requestUri,
+        URI targetUri,
+        FetchResponse response,
+        byte[] body,
+        int length,
+        boolean truncated) {
+      this.requestUri = requestUri;
+      this.targetUri = targetUri;
+      this.response = response;
+      this.body = body;
+      this.length = length;
+      this.truncated = truncated;
+    }
+  }
+}
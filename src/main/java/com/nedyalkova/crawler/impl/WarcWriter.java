@@ -0,0 +1,148 @@
+package com.nedyalkova.crawler.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+// appends WARC 1.1 response records to prefix-timestamp-serial.warc.gz files, each record its own
+// gzip member so a reader can start at any record's offset; a new file is started once the current
+// one reaches maxFileBytes. Not thread safe, WarcRecordingFetcher calls it from one thread
+public class WarcWriter implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(WarcWriter.class);
+
+  static final String EXTENSION = ".warc.gz";
+  static final String REQUESTED_URI = "X-Requested-URI";
+  private static final DateTimeFormatter FILE_TIMESTAMP =
+      DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+  private static final byte[] CRLF = {'\r', '\n'};
+  // bodies are stored decoded, so headers describing the transfer no longer apply to them
+  private static final Set<String> TRANSFER_HEADERS =
+      Set.of("content-encoding", "content-length", "transfer-encoding", ":status");
+
+  private final Path directory;
+  private final String prefix;
+  private final long maxFileBytes;
+  private OutputStream out;
+  private Path currentFile;
+  private long fileBytes;
+  private int serial;
+
+  public WarcWriter(Path directory, String prefix, long maxFileBytes) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.prefix = prefix;
+    this.maxFileBytes = maxFileBytes;
+  }
+
+  // a response record; requestUri is kept as well when a redirect led somewhere else
+  public void writeResponse(
+      URI requestUri,
+      URI targetUri,
+      int statusCode,
+      Map<String, List<String>> headers,
+      byte[] body,
+      int bodyLength,
+      boolean truncated,
+      Instant date)
+      throws IOException {
+    ByteArrayOutputStream http = new ByteArrayOutputStream(bodyLength + 512);
+    http.write(("HTTP/1.1 " + statusCode + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if (TRANSFER_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+        continue;
+      }
+      for (String value : header.getValue()) {
+        http.write(
+            (header.getKey() + ": " + value + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+      }
+    }
+    http.write(("Content-Length: " + bodyLength + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+    http.write(body, 0, bodyLength);
+
+    StringBuilder warc =
+        new StringBuilder()
+            .append("WARC-Type: response\r\n")
+            .append("WARC-Target-URI: ").append(targetUri).append("\r\n");
+    if (!requestUri.equals(targetUri)) {
+      warc.append(REQUESTED_URI).append(": ").append(requestUri).append("\r\n");
+    }
+    if (truncated) {
+      warc.append("WARC-Truncated: unspecified\r\n");
+    }
+    warc.append("Content-Type: application/http;msgtype=response\r\n");
+    writeRecord(warc, http.toByteArray(), date);
+  }
+
+  public Path getCurrentFile() {
+    return currentFile;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (out != null) {
+      out.close();
+      out = null;
+    }
+  }
+
+  private void writeRecord(StringBuilder headers, byte[] block, Instant date) throws IOException {
+    if (out == null || fileBytes >= maxFileBytes) {
+      rotate(date);
+    }
+    ByteArrayOutputStream member = new ByteArrayOutputStream(block.length / 2 + 256);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+      String head =
+          "WARC/1.1\r\n"
+              + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n"
+              + "WARC-Date: " + date.truncatedTo(ChronoUnit.SECONDS) + "\r\n"
+              + headers
+              + "Content-Length: " + block.length + "\r\n\r\n";
+      gzip.write(head.getBytes(StandardCharsets.UTF_8));
+      gzip.write(block);
+      gzip.write(CRLF);
+      gzip.write(CRLF);
+    }
+    member.writeTo(out);
+    fileBytes += member.size();
+  }
+
+  private void rotate(Instant date) throws IOException {
+    close();
+    String name =
+        String.format("%s-%s-%05d%s", prefix, FILE_TIMESTAMP.format(date), serial++, EXTENSION);
+    currentFile = directory.resolve(name);
+    out =
+        Files.newOutputStream(
+            currentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    fileBytes = 0;
+    log.info("Writing WARC records to {}", currentFile);
+    byte[] info =
+        ("software: SimpleWebCrawler/1.0\r\nformat: WARC File Format 1.1\r\n")
+            .getBytes(StandardCharsets.UTF_8);
+    writeRecord(
+        new StringBuilder()
+            .append("WARC-Type: warcinfo\r\n")
+            .append("WARC-Filename: ").append(currentFile.getFileName()).append("\r\n")
+            .append("Content-Type: application/warc-fields\r\n"),
+        info,
+        date);
+  }
+}
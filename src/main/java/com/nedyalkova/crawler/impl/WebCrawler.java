@@ -6,102 +6,964 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class WebCrawler {
   private static final Logger log = LoggerFactory.getLogger(WebCrawler.class);
 
+  private static final int FRONTIER_HEAD_SIZE = 1024;
+  // urls pulled out of a disk or priority frontier into the host queues at most
+  private static final int HOST_QUEUE_WINDOW = 8 * FRONTIER_HEAD_SIZE;
+  // how often an idle node looks whether the rest of the cluster is done
+  private static final long CLUSTER_POLL_MS = 100;
+  // how long the end of a crawl waits for its workers before flushing its state
+  private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
   public WebCrawler(String seedUrl) throws URISyntaxException, UrlInvalidException {
-    log.debug("Creating a WebCrawler with seedUrl: {}", seedUrl);
-    URI seedUri = urlUtils.normalizeUrl(seedUrl);
-    if (seedUri == null || StringUtils.isBlank(seedUri.getHost())) {
-      throw new URISyntaxException(seedUrl, "Unable to determine host", 0);
+    this(seedUrl, new CrawlerConfig());
+  }
+
+  public WebCrawler(String seedUrl, CrawlerConfig config)
+      throws URISyntaxException, UrlInvalidException {
+    this(seedUrl, config, new PolitenessScheduler(config, null));
+  }
+
+  // the fetcher paces its retries with the scheduler, which then reads robots.txt through it
+  private WebCrawler(String seedUrl, CrawlerConfig config, PolitenessScheduler politeness)
+      throws URISyntaxException, UrlInvalidException {
+    this(seedUrl, config, pageFetcherOf(config, politeness), politeness);
+  }
+
+  private WebCrawler(
+      String seedUrl, CrawlerConfig config, PageFetcher pageFetcher, PolitenessScheduler politeness)
+      throws URISyntaxException, UrlInvalidException {
+    this(
+        seedUrl,
+        config,
+        createHtmlFetcher(config, pageFetcher),
+        withRobots(config, politeness, pageFetcher));
+  }
+
+  // robots.txt is not consulted, since it would have to come through the same fetcher
+  WebCrawler(String seedUrl, CrawlerConfig config, HTMLFetcher htmlFetcher)
+      throws URISyntaxException, UrlInvalidException {
+    this(seedUrl, config, htmlFetcher, new PolitenessScheduler(config, null));
+  }
+
+  WebCrawler(
+      String seedUrl, CrawlerConfig config, HTMLFetcher htmlFetcher, PolitenessScheduler politeness)
+      throws URISyntaxException, UrlInvalidException {
+    this(seedsOf(seedUrl, config), config, htmlFetcher, politeness);
+  }
+
+  private WebCrawler(
+      List<String> seedUrls,
+      CrawlerConfig config,
+      HTMLFetcher htmlFetcher,
+      PolitenessScheduler politeness)
+      throws URISyntaxException, UrlInvalidException {
+    log.debug("Creating a WebCrawler with seedUrls: {}", seedUrls);
+    this.config = config;
+    this.htmlFetcher = htmlFetcher;
+    this.politeness = politeness;
+    this.linkExtractor =
+        new LinkExtractor(
+            config.getNearDuplicateDistance() < 0
+                ? null
+                : new NearDuplicateIndex(config.getNearDuplicateDistance()),
+            config.getQueryRules(),
+            config.getLinkCacheEntries() == 0 ? null : new LinkCache(config.getLinkCacheEntries()));
+    this.traps =
+        config.isDetectTraps()
+            ? new TrapDetector(
+                config.getMaxSegmentRepeats(),
+                config.getMaxUrlsPerPattern(),
+                config.getMaxParameterValues())
+            : null;
+    this.globalPermits = new Semaphore(config.getMaxConcurrency());
+    this.seedUris = new ArrayList<>();
+    this.scope = new DomainScope(config.getSubdomainPolicy());
+    // one bad seed in a long list is skipped, the crawl only fails when none of them is usable
+    URISyntaxException invalidSeed = null;
+    UrlInvalidException unsupportedSeed = null;
+    for (String seedUrl : seedUrls) {
+      URI seedUri;
+      try {
+        seedUri = normalizeSeed(seedUrl);
+        if (seedUri == null || StringUtils.isBlank(seedUri.getHost())) {
+          throw new URISyntaxException(seedUrl, "Unable to determine host", 0);
+        }
+        urlUtils.validateScheme(seedUri.getScheme());
+      } catch (URISyntaxException e) {
+        log.warn("Skipping seed {}: {}", seedUrl, e.toString());
+        invalidSeed = invalidSeed == null ? e : invalidSeed;
+        continue;
+      } catch (UrlInvalidException e) {
+        log.warn("Skipping seed {}: {}", seedUrl, e.toString());
+        unsupportedSeed = unsupportedSeed == null ? e : unsupportedSeed;
+        continue;
+      }
+      seedUris.add(seedUri);
+      scope.allow(seedUri.getHost(), config.getSubdomainPolicy());
+    }
+    if (seedUris.isEmpty()) {
+      // there is always at least one seed, so one of these is set
+      if (invalidSeed != null) {
+        throw invalidSeed;
+      }
+      throw unsupportedSeed;
+    }
+    config.getAllowedDomains().forEach(scope::allow);
+    log.debug("Crawling {} seeds within {} domains", seedUris.size(), scope.size());
+    CrawlCheckpoint checkpoint = loadCheckpoint(config);
+    this.seen = checkpoint == null ? config.createSeenSet() : checkpoint.getSeen();
+    this.queue = openFrontier(config, checkpoint, politeness);
+    this.metrics = new CrawlMetrics(queue::size, seen::size);
+    metrics.trackLinkCache(linkExtractor.getCache());
+    this.graph = config.getGraphDir() == null ? null : new LinkGraph();
+    this.sink = createSink(config);
+    this.cluster = joinCluster(config);
+    for (URI seedUri : seedUris) {
+      validateUrl(seedUri);
+      // the seeds share all the importance there is to begin with
+      admit(new FrontierEntry(seedUri, 0, 1.0 / seedUris.size()));
+    }
+    log.debug("Added the seedUrls to the queue");
+    if (checkpoint != null) {
+      // these were being fetched or waiting in a host queue when the checkpoint was taken; they go
+      // back with the depth, importance and lastmod they were queued with
+      checkpoint.getInFlight().forEach(queue::add);
+      log.info("Resuming crawl with {} queued and {} seen urls", queue.size(), seen.size());
     }
-    this.seedHost = seedUri.getHost();
-    log.debug("Setting host to {}", this.seedHost);
-    validateUrl(seedUri);
-    queue.add(seedUri);
-    log.debug("Added the seedUrl to the queue");
   }
 
-  private final String seedHost;
+  private final List<URI> seedUris;
+  private final DomainScope scope;
+  private final CrawlerConfig config;
 
-  private final Set<URI> visited = new HashSet<>();
-  private final Queue<URI> queue = new LinkedList<>();
+  // urls are marked as seen when they are queued, so each one is queued at most once
+  private final SeenSet seen;
+  private final Frontier queue;
 
-  private final HTMLFetcher htmlFetcher = new HTMLFetcher();
-  private final LinkExtractor linkExtractor = new LinkExtractor();
+  private final HTMLFetcher htmlFetcher;
+  private final PolitenessScheduler politeness;
+  private final LinkExtractor linkExtractor;
+  // null unless trap detection is on
+  private final TrapDetector traps;
   private final URLUtils urlUtils = new URLUtils();
-  int counter = 0;
+  private final CrawlMetrics metrics;
+  private final CrawlSink sink;
+  // null unless the crawl is sharded over several nodes
+  private final ClusterNode cluster;
+  // null unless the link graph is kept
+  private final LinkGraph graph;
+  final AtomicInteger counter = new AtomicInteger();
+
+  // global limit is enforced before dispatch so the frontier is not drained into the executor;
+  // the per host limit is the PolitenessScheduler's
+  private final Semaphore globalPermits;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Object progress = new Object();
+  // urls handed out so far, only touched by the thread running crawl()
+  private long dispatched;
+
+  // workers share the lock while they change crawl state, a checkpoint takes it exclusively
+  private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+  private final Map<URI, FrontierEntry> inFlightUrls = new ConcurrentHashMap<>();
+  private volatile boolean finished;
+  // links can still arrive from sitemaps while this is set, so an empty frontier is not the end
+  private volatile boolean loadingSitemaps;
 
   public void crawl() {
-    while (!queue.isEmpty()) {
-      log.debug("QUEUE LENGTH: {}, DONE {}", queue.size(), counter);
-      URI nextUrl = queue.poll();
-      counter++;
-      crawlUrl(nextUrl);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(config.getMaxConcurrency(), workerThreadFactory());
+    ScheduledExecutorService background = scheduleBackgroundTasks();
+    if (config.isExportJmx()) {
+      metrics.registerMBean(seedUris.get(0).getHost());
+    }
+    long deadline =
+        config.getMaxDuration() == null ? 0 : System.nanoTime() + config.getMaxDuration().toNanos();
+    Thread sitemaps = null;
+    boolean interrupted = false;
+    try {
+      if (cluster != null) {
+        cluster.awaitMembers(config.getClusterSize());
+      }
+      if (config.isLoadSitemaps()) {
+        sitemaps = loadSitemapsInBackground();
+      }
+      FrontierEntry next;
+      while ((next = takeNext(deadline)) != null) {
+        dispatch(executor, next);
+      }
+    } catch (InterruptedException e) {
+      log.warn("Crawl interrupted with {} urls still queued", queue.size());
+      interrupted = true;
+    } finally {
+      interrupted |= tearDown(executor, background, sitemaps, interrupted);
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    } else {
+      log.info("Crawl finished: {}", metrics.getSnapshot());
+    }
+  }
+
+  // the same steps however the crawl ends, so an interrupted crawl still flushes its frontier,
+  // validator cache, WARC files, link graph and output; the last checkpoint is what a resume
+  // starts from. True when interrupted while waiting for the workers
+  private boolean tearDown(
+      ExecutorService executor,
+      ScheduledExecutorService background,
+      Thread sitemaps,
+      boolean interrupted) {
+    if (background != null) {
+      background.shutdownNow();
+    }
+    if (sitemaps != null) {
+      sitemaps.interrupt();
+    }
+    if (interrupted) {
+      executor.shutdownNow();
+    } else {
+      executor.shutdown();
     }
+    // the interrupt is only passed on once everything is written, as it would close the files
+    boolean interruptedWaiting = awaitShutdown(executor, sitemaps);
+    checkpoint();
+    finished = true;
+    leaveCluster();
+    queue.close();
+    closeFetcher();
+    exportGraph();
+    closeSink();
+    metrics.unregisterMBean();
+    return interruptedWaiting;
   }
 
-  private void crawlUrl(URI nextUrl) {
+  // workers and the sitemap loader are interrupted when the crawl is, and end soon after
+  private boolean awaitShutdown(ExecutorService executor, Thread sitemaps) {
     try {
-      log.info("CRAWL {}", nextUrl);
-      validateUrl(nextUrl);
-      String html = htmlFetcher.fetchHTML(nextUrl.toString());
-      Set<URI> linksFromPage = linkExtractor.extractLinks(html, nextUrl.toString());
-      log.debug("Extracted links: {}", linksFromPage);
-      addLinksToQueue(linksFromPage);
-      visited.add(nextUrl);
-    } catch (UrlInvalidException e) {
-      log.error("URL {} is invalid, skipping", nextUrl);
+      if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Workers still running after {}s, flushing anyway", SHUTDOWN_WAIT_SECONDS);
+      }
+      if (sitemaps != null) {
+        sitemaps.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_WAIT_SECONDS));
+      }
+      return false;
+    } catch (InterruptedException e) {
+      log.warn("Interrupted while waiting for the workers, flushing anyway");
+      return true;
+    }
+  }
+
+  private void closeFetcher() {
+    try {
+      htmlFetcher.close();
+    } catch (IOException e) {
+      log.warn("Unable to close the fetcher cleanly", e);
+    }
+  }
+
+  private void exportGraph() {
+    if (graph == null) {
+      return;
+    }
+    Path dir = config.getGraphDir();
+    try {
+      Files.createDirectories(dir);
+      try (OutputStream out = Files.newOutputStream(dir.resolve("edges.tsv"))) {
+        graph.writeEdgeList(out);
+      }
+      try (OutputStream out = Files.newOutputStream(dir.resolve("graph.csr"))) {
+        graph.writeCsr(out);
+      }
+      try (OutputStream out = Files.newOutputStream(dir.resolve("inlinks.tsv"))) {
+        graph.writeInLinkCounts(out);
+      }
+      log.info(
+          "Wrote a link graph of {} urls and {} links to {}",
+          graph.nodeCount(),
+          graph.edgeCount(),
+          dir);
+    } catch (IOException e) {
+      log.error("Unable to write the link graph to {}", dir, e);
+    }
+  }
+
+  private void leaveCluster() {
+    if (cluster != null) {
+      cluster.close();
+    }
+  }
+
+  private void closeSink() {
+    if (sink == null) {
+      return;
+    }
+    try {
+      sink.close();
+    } catch (IOException e) {
+      log.error("Crawl output is incomplete", e);
+    }
+  }
+
+  // a no-op unless the crawl keeps its state on disk
+  public void checkpoint() {
+    if (finished
+        || !(queue instanceof HostQueueFrontier hostQueues)
+        || !(hostQueues.getBacking() instanceof DiskBackedFrontier diskFrontier)) {
+      return;
+    }
+    stateLock.writeLock().lock();
+    try {
+      DiskBackedFrontier.Position position = diskFrontier.sync();
+      // urls already pulled into the host queues are behind the position, so they are saved with
+      // the ones in flight and queued again on resume
+      List<FrontierEntry> unfinished = new ArrayList<>(inFlightUrls.values());
+      unfinished.addAll(hostQueues.buffered());
+      new CrawlCheckpoint(position, unfinished, seen).save(config.getStateDir());
+      diskFrontier.release(position);
+      log.info("Checkpointed crawl with {} queued and {} seen urls", queue.size(), seen.size());
     } catch (IOException e) {
-      log.debug("Unable to connect to the url {}, {}", nextUrl, e.getMessage(), e);
+      log.error("Unable to checkpoint the crawl to {}", config.getStateDir(), e);
+    } finally {
+      stateLock.writeLock().unlock();
+    }
+  }
+
+  // periodic checkpoints and stats logging, both optional
+  private ScheduledExecutorService scheduleBackgroundTasks() {
+    if (config.getStateDir() == null && config.getStatsInterval() == null) {
+      return null;
+    }
+    ScheduledExecutorService background =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "crawler-background");
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (config.getStateDir() != null) {
+      long intervalMs = config.getCheckpointInterval().toMillis();
+      background.scheduleAtFixedRate(
+          this::checkpoint, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    if (config.getStatsInterval() != null) {
+      long intervalMs = config.getStatsInterval().toMillis();
+      background.scheduleAtFixedRate(
+          () -> log.info("Crawl stats: {}", metrics.getSnapshot()),
+          intervalMs,
+          intervalMs,
+          TimeUnit.MILLISECONDS);
+    }
+    return background;
+  }
+
+  private FrontierEntry takeNext(long deadline) throws InterruptedException {
+    synchronized (progress) {
+      while (true) {
+        if (isBudgetSpent(deadline)) {
+          log.info("Crawl budget spent with {} urls still queued", queue.size());
+          // nothing more is handed out, the urls in flight are left to finish
+          while (inFlight.get() > 0) {
+            progress.wait();
+          }
+          return null;
+        }
+        FrontierEntry next = pollAndTrack();
+        if (next != null) {
+          return next;
+        }
+        // links are queued before a worker finishes, so empty with nothing in flight is final;
+        // in a cluster other nodes can still send links until the coordinator says otherwise
+        if (inFlight.get() == 0 && queue.isEmpty() && !loadingSitemaps) {
+          if (cluster == null || cluster.isFinished()) {
+            return null;
+          }
+          progress.wait(CLUSTER_POLL_MS);
+        } else {
+          // a url finishing, a host becoming ready or the deadline, whichever comes first
+          long waitNanos = queue.nanosUntilReady();
+          if (config.getMaxDuration() != null) {
+            waitNanos = Math.min(waitNanos, deadline - System.nanoTime());
+          }
+          if (waitNanos == Long.MAX_VALUE) {
+            progress.wait();
+          } else {
+            progress.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+          }
+        }
+      }
+    }
+  }
+
+  private boolean isBudgetSpent(long deadline) {
+    return dispatched >= config.getMaxPages()
+        || (config.getMaxDuration() != null && System.nanoTime() - deadline >= 0);
+  }
+
+  private FrontierEntry pollAndTrack() {
+    stateLock.readLock().lock();
+    try {
+      FrontierEntry next;
+      while ((next = queue.pollEntry()) != null) {
+        // the cluster may have changed since the url was queued
+        long fingerprint = cluster == null ? 0 : next.getFingerprint();
+        if (cluster == null || cluster.owns(fingerprint)) {
+          inFlightUrls.put(next.getUri(), next);
+          return next;
+        }
+        queue.done(next.getUri());
+        cluster.route(fingerprint, next);
+      }
+      return null;
+    } finally {
+      stateLock.readLock().unlock();
     }
   }
 
-  private void addLinksToQueue(Set<URI> linksFromPage) {
-    linksFromPage.forEach(
-        uri -> {
+  private void dispatch(ExecutorService executor, FrontierEntry next) throws InterruptedException {
+    URI nextUrl = next.getUri();
+    globalPermits.acquire();
+    dispatched++;
+    inFlight.incrementAndGet();
+    log.debug("QUEUE LENGTH: {}, IN FLIGHT {}, DONE {}", queue.size(), inFlight.get(), counter);
+    executor.execute(
+        () -> {
           try {
-            validateUrl(uri);
-            queue.add(uri);
-          } catch (UrlInvalidException e) {
-            log.debug("Not adding {} to the queue", uri);
+            crawlWithHostPermit(next);
+          } finally {
+            inFlightUrls.remove(nextUrl);
+            queue.done(nextUrl);
+            globalPermits.release();
+            synchronized (progress) {
+              inFlight.decrementAndGet();
+              progress.notifyAll();
+            }
           }
         });
   }
 
-  private void validateUrl(URI uri) throws UrlInvalidException {
+  private void crawlWithHostPermit(FrontierEntry next) {
+    URI nextUrl = next.getUri();
+    Semaphore hostPermit = politeness.permitFor(nextUrl.getHost());
+    try {
+      hostPermit.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
     try {
-      urlUtils.validateScheme(uri.getScheme());
-      if (!isSameDomainAsSeed(uri)) {
-        throw new UrlInvalidException("Different domain");
+      if (!politeness.acquire(nextUrl)) {
+        log.debug("robots.txt disallows {}", nextUrl);
+        metrics.record(CrawlMetrics.Outcome.DISALLOWED);
+        return;
       }
-      if (!hasNotBeenVisitedBefore(uri)) {
-        throw new UrlInvalidException("Visited before");
+      counter.incrementAndGet();
+      crawlUrl(next);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      hostPermit.release();
+    }
+  }
+
+  private void crawlUrl(FrontierEntry next) throws InterruptedException {
+    URI nextUrl = next.getUri();
+    log.debug("CRAWL {}", nextUrl);
+    PageCrawledEvent event = new PageCrawledEvent();
+    event.begin();
+    PageResult result = htmlFetcher.fetchPage(nextUrl.toString(), linkExtractor);
+    politeness.onResult(nextUrl, result);
+    recordResult(result);
+    if (result.getDuplicateOf() != null) {
+      log.debug("{} is a near-duplicate of {}", nextUrl, result.getDuplicateOf());
+      metrics.record(CrawlMetrics.Outcome.NEAR_DUPLICATE);
+    }
+    Set<URI> linksFromPage = result.getLinks();
+    log.debug("Extracted links: {}", linksFromPage);
+    if (graph != null) {
+      graph.addPage(nextUrl.toString(), result.getStatusCode(), linksFromPage);
+    }
+    long enqueueStart = System.nanoTime();
+    int queued;
+    stateLock.readLock().lock();
+    try {
+      // the page's importance is split evenly between its links
+      double importance = linksFromPage.isEmpty() ? 0 : next.getImportance() / linksFromPage.size();
+      queued = addLinksToQueue(linksFromPage, next.getDepth() + 1, importance);
+      inFlightUrls.remove(nextUrl);
+    } finally {
+      stateLock.readLock().unlock();
+    }
+    metrics.recordLatency(CrawlMetrics.Stage.ENQUEUE, System.nanoTime() - enqueueStart);
+    if (sink != null) {
+      sink.accept(CrawlRecord.of(result, System.currentTimeMillis()));
+    }
+    if (event.shouldCommit()) {
+      event.url = nextUrl.toString();
+      event.statusCode = result.getStatusCode();
+      event.bodyBytes = result.getBodyBytes();
+      event.linksFound = linksFromPage.size();
+      event.linksQueued = queued;
+      event.fetchNanos = result.getLatencyNanos();
+      event.parseNanos = result.getParseNanos();
+      event.extractNanos = result.getExtractNanos();
+      event.commit();
+    }
+  }
+
+  private void recordResult(PageResult result) {
+    int statusCode = result.getStatusCode();
+    if (statusCode == PageResult.FAILED) {
+      metrics.record(CrawlMetrics.Outcome.IO_ERROR);
+      return;
+    }
+    metrics.recordLatency(CrawlMetrics.Stage.FETCH, result.getLatencyNanos());
+    if (result.isNotModified()) {
+      metrics.record(CrawlMetrics.Outcome.NOT_MODIFIED);
+    } else if (result.getSkippedContentType() != null) {
+      metrics.record(CrawlMetrics.Outcome.NOT_HTML);
+    } else if (statusCode == 200) {
+      metrics.record(CrawlMetrics.Outcome.FETCHED);
+      metrics.recordLatency(CrawlMetrics.Stage.PARSE, result.getParseNanos());
+      metrics.recordLatency(CrawlMetrics.Stage.EXTRACT, result.getExtractNanos());
+      metrics.addBytesDownloaded(result.getBodyBytes());
+      if (result.isTruncated()) {
+        metrics.record(CrawlMetrics.Outcome.TRUNCATED);
       }
-    } catch (URISyntaxException e) {
-      throw new UrlInvalidException("Invalid URL");
+    } else {
+      metrics.record(CrawlMetrics.Outcome.NON_200);
     }
   }
 
-  boolean isSameDomainAsSeed(URI uri) {
-    String host = uri.getHost();
-    return StringUtils.isNotBlank(host)
-        && (host.equalsIgnoreCase(this.seedHost) || host.equals("www." + this.seedHost));
+  int addLinksToQueue(Set<URI> linksFromPage) {
+    return addLinksToQueue(linksFromPage, 1, 0);
   }
 
-  private boolean hasNotBeenVisitedBefore(URI uri) throws URISyntaxException {
-    return !visited.contains(uri.normalize());
-    // normalize() removed ./ and ../ segments
+  // returns how many of the links were new and queued
+  private int addLinksToQueue(Set<URI> linksFromPage, int depth, double importance) {
+    LinkCache.Links cached = linksFromPage instanceof LinkCache.Links links ? links : null;
+    int queued = 0;
+    for (URI uri : linksFromPage) {
+      LinkCache.Entry entry = cached == null ? null : cached.entryOf(uri);
+      FrontierEntry link =
+          entry == null
+              ? new FrontierEntry(uri, depth, importance)
+              : new FrontierEntry(uri, entry.getFingerprint(), depth, importance, 0);
+      if (addLink(link, entry)) {
+        queued++;
+      }
+    }
+    return queued;
   }
 
-  public Queue<URI> getQueue() {
+  // entry, when the link came through the link cache, remembers what was decided about the url
+  // on an earlier page, so a known out of scope or seen url skips the checks
+  private boolean addLink(FrontierEntry link, LinkCache.Entry entry) {
+    URI uri = link.getUri();
+    if (entry != null && entry.isOutOfScope()) {
+      metrics.record(CrawlMetrics.Outcome.INVALID);
+      return false;
+    }
+    boolean seenBefore = entry != null && entry.isSeen();
+    if (seenBefore && !queue.countsInLinks()) {
+      // the seen set would only say the same again
+      metrics.record(CrawlMetrics.Outcome.DUPLICATE);
+      return false;
+    }
+    try {
+      if (!seenBefore) {
+        validateUrl(uri);
+      }
+      if (!seenBefore && link.getDepth() > config.getMaxDepth()) {
+        metrics.record(CrawlMetrics.Outcome.TOO_DEEP);
+      } else if (!seenBefore && isTrap(link)) {
+        metrics.record(CrawlMetrics.Outcome.TRAP);
+      } else if (admit(link)) {
+        markSeen(entry);
+        return true;
+      } else {
+        log.debug("Already seen {}", uri);
+        markSeen(entry);
+        metrics.record(CrawlMetrics.Outcome.DUPLICATE);
+      }
+    } catch (UrlInvalidException e) {
+      log.debug("Not adding {} to the queue", uri);
+      if (entry != null) {
+        entry.markOutOfScope();
+      }
+      metrics.record(CrawlMetrics.Outcome.INVALID);
+    }
+    return false;
+  }
+
+  private static void markSeen(LinkCache.Entry entry) {
+    if (entry != null) {
+      entry.markSeen();
+    }
+  }
+
+  // sitemap urls count as one link away from the seed; every node of a cluster reads the same
+  // sitemaps, so each only takes the urls of its own shard
+  // the crawl starts on the seeds while the sitemaps are read, their urls join as they come
+  private Thread loadSitemapsInBackground() {
+    PageFetcher pageFetcher = htmlFetcher.getPageFetcher();
+    if (pageFetcher == null) {
+      log.warn("No fetcher to load sitemaps with");
+      return null;
+    }
+    loadingSitemaps = true;
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                loadSitemaps(pageFetcher);
+              } catch (InterruptedException e) {
+                log.debug("Stopped loading sitemaps");
+              } finally {
+                synchronized (progress) {
+                  loadingSitemaps = false;
+                  progress.notifyAll();
+                }
+              }
+            },
+            "crawler-sitemaps");
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private void loadSitemaps(PageFetcher pageFetcher) throws InterruptedException {
+    Set<URI> origins = new LinkedHashSet<>();
+    for (URI seedUri : seedUris) {
+      origins.add(URI.create(seedUri.getScheme() + "://" + seedUri.getRawAuthority()));
+    }
+    SitemapLoader loader = new SitemapLoader(pageFetcher, politeness);
+    for (URI origin : origins) {
+      loader.load(
+          SitemapLoader.locationsFor(origin, politeness.robotsFor(origin)), this::addSitemapUrl);
+    }
+  }
+
+  // the same query rules as links get, or a link back to the seed would be a new url
+  private URI normalizeSeed(String seedUrl) throws URISyntaxException {
+    CanonicalUrl canonical = urlUtils.canonicalize(seedUrl);
+    if (canonical != null && config.getQueryRules() != null) {
+      canonical = config.getQueryRules().apply(canonical);
+    }
+    return canonical == null ? null : new URI(canonical.getKey());
+  }
+
+  private void addSitemapUrl(String loc, long lastModified) {
+    if (Thread.currentThread().isInterrupted()) {
+      // the rest of the sitemap is still parsed, but the crawl is over
+      return;
+    }
+    CanonicalUrl canonical = urlUtils.canonicalize(loc);
+    if (canonical == null || !canonical.isHttp()) {
+      metrics.record(CrawlMetrics.Outcome.INVALID);
+      return;
+    }
+    if (config.getQueryRules() != null) {
+      canonical = config.getQueryRules().apply(canonical);
+    }
+    if (cluster != null && !cluster.owns(canonical.getHash())) {
+      return;
+    }
+    URI uri;
+    try {
+      uri = canonical.toUri();
+    } catch (IllegalArgumentException e) {
+      metrics.record(CrawlMetrics.Outcome.INVALID);
+      return;
+    }
+    boolean added;
+    stateLock.readLock().lock();
+    try {
+      added = addLink(new FrontierEntry(uri, canonical.getHash(), 1, 0, lastModified), null);
+    } finally {
+      stateLock.readLock().unlock();
+    }
+    if (added) {
+      synchronized (progress) {
+        progress.notifyAll();
+      }
+    }
+  }
+
+  // known urls are left to admit(), so each new url counts once towards its pattern
+  private boolean isTrap(FrontierEntry link) {
+    if (traps == null || seen.contains(link.getFingerprint())) {
+      return false;
+    }
+    URI uri = link.getUri();
+    TrapDetector.Trap trap = traps.check(uri);
+    if (trap != null) {
+      log.debug("Not queueing {}, it looks like a trap: {}", uri, trap);
+      return true;
+    }
+    return false;
+  }
+
+  // urls of another node's shard are marked as seen here too, so each is sent to its owner once
+  private boolean admit(FrontierEntry entry) {
+    long fingerprint = entry.getFingerprint();
+    boolean local = cluster == null || cluster.owns(fingerprint);
+    if (!seen.add(fingerprint)) {
+      if (local) {
+        queue.addInLink(entry.getUri(), entry.getImportance());
+      }
+      return false;
+    }
+    if (local) {
+      queue.add(entry);
+    } else {
+      cluster.route(fingerprint, entry);
+    }
+    return true;
+  }
+
+  // links other nodes found in this node's shard
+  private void admitRemote(List<FrontierEntry> links) {
+    stateLock.readLock().lock();
+    try {
+      for (FrontierEntry link : links) {
+        if (seen.add(link.getFingerprint())) {
+          queue.add(link);
+        } else {
+          queue.addInLink(link.getUri(), link.getImportance());
+        }
+      }
+    } finally {
+      stateLock.readLock().unlock();
+    }
+    synchronized (progress) {
+      progress.notifyAll();
+    }
+  }
+
+  // workers queue their links and stop tracking a url under the shared lock, so holding it
+  // exclusively sees either the url or the links it produced
+  private boolean isLocallyIdle() {
+    stateLock.writeLock().lock();
+    try {
+      return queue.isEmpty() && inFlightUrls.isEmpty();
+    } finally {
+      stateLock.writeLock().unlock();
+    }
+  }
+
+  private void validateUrl(URI uri) throws UrlInvalidException {
+    urlUtils.validateScheme(uri.getScheme());
+    if (!isInScope(uri)) {
+      throw new UrlInvalidException("Different domain");
+    }
+  }
+
+  boolean isInScope(URI uri) {
+    return scope.allows(uri.getHost());
+  }
+
+  // a replayed crawl reads from WARC files, and can itself be recorded again
+  private static PageFetcher pageFetcherOf(CrawlerConfig config, PolitenessScheduler politeness) {
+    PageFetcher fetcher;
+    if (config.getReplayWarc() != null) {
+      try {
+        fetcher = new ReplayFetcher(config.getReplayWarc());
+      } catch (IOException e) {
+        throw new UncheckedIOException(
+            "Unable to read WARC files from " + config.getReplayWarc(), e);
+      }
+    } else {
+      fetcher = config.getPageFetcher() == null ? new HttpClientFetcher() : config.getPageFetcher();
+      fetcher = adaptiveFetcherOf(config, fetcher, politeness);
+    }
+    if (config.getWarcDir() == null) {
+      return fetcher;
+    }
+    try {
+      WarcWriter writer =
+          new WarcWriter(config.getWarcDir(), "crawl", config.getWarcMaxFileBytes());
+      return new WarcRecordingFetcher(fetcher, writer, WarcRecordingFetcher.DEFAULT_CAPACITY);
+    } catch (IOException e) {
+      fetcher.close();
+      throw new UncheckedIOException("Unable to write WARC files to " + config.getWarcDir(), e);
+    }
+  }
+
+  private static PageFetcher adaptiveFetcherOf(
+      CrawlerConfig config, PageFetcher fetcher, PolitenessScheduler politeness) {
+    if (!config.isAdaptiveTimeouts() && !config.isHedgeRequests() && config.getMaxRetries() == 0) {
+      return fetcher;
+    }
+    return new AdaptiveFetcher(
+        fetcher,
+        new LatencyTracker(
+            config.getTimeoutFactor(), config.getMinTimeout(), config.getMaxTimeout()),
+        config.getRetryBudgetRatio(),
+        config.isAdaptiveTimeouts(),
+        config.isHedgeRequests(),
+        config.getMaxRetries(),
+        politeness);
+  }
+
+  private static PolitenessScheduler withRobots(
+      CrawlerConfig config, PolitenessScheduler politeness, PageFetcher pageFetcher) {
+    if (config.isRespectRobotsTxt()) {
+      politeness.setRobotsCache(new RobotsCache(pageFetcher));
+    }
+    return politeness;
+  }
+
+  private static HTMLFetcher createHtmlFetcher(CrawlerConfig config, PageFetcher pageFetcher) {
+    try {
+      ValidatorCache validatorCache =
+          config.getValidatorCacheDir() == null
+              ? null
+              : new ValidatorCache(config.getValidatorCacheDir());
+      return new HTMLFetcher(
+          pageFetcher, validatorCache, config.getMaxBodyBytes(), config.isHeadNonHtml());
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Unable to open the validator cache in " + config.getValidatorCacheDir(), e);
+    }
+  }
+
+  private static CrawlSink createSink(CrawlerConfig config) {
+    if (config.getOutputSink() != null) {
+      return config.getOutputSink();
+    }
+    Path file = config.getOutputFile();
+    if (file == null) {
+      return null;
+    }
+    if (file.toString().equals("-")) {
+      return AsyncCrawlSink.toStdout(config.getOutputFormat(), config.getOutputBufferRecords());
+    }
+    try {
+      return AsyncCrawlSink.toFile(
+          file, config.getOutputFormat(), config.isOutputGzip(), config.getOutputBufferRecords());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open the crawl output " + file, e);
+    }
+  }
+
+  private ClusterNode joinCluster(CrawlerConfig config) {
+    if (config.getCoordinator() == null) {
+      return null;
+    }
+    try {
+      return new ClusterNode(config, this::admitRemote, this::isLocallyIdle);
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Unable to join the cluster at " + config.getCoordinator(), e);
+    }
+  }
+
+  private static CrawlCheckpoint loadCheckpoint(CrawlerConfig config) {
+    if (config.getStateDir() == null) {
+      return null;
+    }
+    try {
+      return CrawlCheckpoint.load(config.getStateDir(), config.getExpectedUrls());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read the checkpoint in " + config.getStateDir(), e);
+    }
+  }
+
+  private static List<String> seedsOf(String seedUrl, CrawlerConfig config) {
+    List<String> seedUrls = new ArrayList<>();
+    seedUrls.add(seedUrl);
+    seedUrls.addAll(config.getSeeds());
+    return seedUrls;
+  }
+
+  private static Frontier openFrontier(
+      CrawlerConfig config, CrawlCheckpoint checkpoint, PolitenessScheduler politeness) {
+    Frontier backing;
+    if (config.getUrlScorer() != null) {
+      if (config.getStateDir() != null) {
+        throw new IllegalArgumentException("A url scorer cannot be combined with a state dir");
+      }
+      backing = new PriorityFrontier(config.getUrlScorer());
+    } else if (config.getStateDir() == null) {
+      return new HostQueueFrontier(
+          config.getMaxConcurrencyPerHost(),
+          politeness::nanosUntilReady,
+          config::getHostWeight);
+    } else {
+      Path frontierDir = config.getStateDir().resolve("frontier");
+      try {
+        backing =
+            new DiskBackedFrontier(
+                frontierDir,
+                config.getFrontierSegmentBytes(),
+                FRONTIER_HEAD_SIZE,
+                checkpoint == null ? null : checkpoint.getFrontierPosition());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to open the frontier in " + frontierDir, e);
+      }
+    }
+    // the scored or durable order decides what is next, the host queues keep a slow host from
+    // holding up the workers
+    return new HostQueueFrontier(
+        backing,
+        HOST_QUEUE_WINDOW,
+        config.getMaxConcurrencyPerHost(),
+        politeness::nanosUntilReady,
+        config::getHostWeight);
+  }
+
+  private static ThreadFactory workerThreadFactory() {
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "crawler-worker-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  public Frontier getQueue() {
     return this.queue;
   }
+
+  // null unless a graph dir is configured
+  public LinkGraph getLinkGraph() {
+    return graph;
+  }
+
+  public CrawlMetrics getMetrics() {
+    return metrics;
+  }
+
+  public long getSeenCount() {
+    return seen.size();
+  }
+
+  // requests per second the politeness scheduler currently allows, per host
+  public Map<String, Double> getHostRates() {
+    return politeness.currentRates();
+  }
 }
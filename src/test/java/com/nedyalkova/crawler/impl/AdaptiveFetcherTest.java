@@ -0,0 +1,300 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveFetcherTest {
+
+  private static final URI PAGE = URI.create("https://webcrawler.com/page");
+
+  @Test
+  void fetch_setsTheTimeoutFromRecentLatencies() throws Exception {
+    List<Duration> timeouts = new CopyOnWriteArrayList<>();
+    LatencyTracker tracker = new LatencyTracker(3, Duration.ofMillis(10), Duration.ofSeconds(5));
+    AdaptiveFetcher fetcher =
+        new AdaptiveFetcher(
+            request -> {
+              timeouts.add(request.getTimeout());
+              return CompletableFuture.completedFuture(response(request.getUri(), 200));
+            },
+            tracker,
+            0.1,
+            true,
+            false,
+            0,
+            null);
+    for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+      tracker.record(PAGE, TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    fetcher.fetch(new FetchRequest(PAGE)).get().close();
+    fetcher.fetch(new FetchRequest(URI.create("https://other.com"))).get().close();
+
+    assertEquals(List.of(Duration.ofMillis(60), Duration.ofSeconds(5)), timeouts);
+  }
+
+  @Test
+  void fetch_whenAttemptsFail_retriesUntilOneSucceeds() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    AdaptiveFetcher fetcher =
+        fetcher(
+            request ->
+                switch (attempts.incrementAndGet()) {
+                  case 1 -> CompletableFuture.failedFuture(new HttpTimeoutException("slow"));
+                  case 2 -> CompletableFuture.completedFuture(response(request.getUri(), 503));
+                  default -> CompletableFuture.completedFuture(response(request.getUri(), 200));
+                },
+            0.1,
+            false,
+            3);
+
+    FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get(5, TimeUnit.SECONDS);
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals(3, attempts.get());
+    assertEquals(2, fetcher.getRetries());
+    assertEquals(1, fetcher.getTimeouts());
+  }
+
+  @Test
+  void fetch_whenTheHostsBudgetIsSpent_theLastAnswerIsReturnedAndOtherHostsStillRetry()
+      throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    AdaptiveFetcher fetcher =
+        fetcher(
+            request -> {
+              attempts.incrementAndGet();
+              return CompletableFuture.completedFuture(response(request.getUri(), 502));
+            },
+            0,
+            false,
+            1);
+    RetryBudget budget = fetcher.budgetFor(PAGE);
+    while (budget.tryAcquire()) {
+      // spend the tokens the budget starts with
+    }
+
+    FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get(5, TimeUnit.SECONDS);
+    assertEquals(502, response.getStatusCode());
+    assertEquals(1, attempts.get());
+    assertEquals(1, fetcher.getBudgetRefusals());
+
+    fetcher.fetch(new FetchRequest(URI.create("https://other.com/page"))).get(5, TimeUnit.SECONDS);
+    assertEquals(3, attempts.get());
+    assertEquals(1, fetcher.getRetries());
+  }
+
+  @Test
+  void fetch_whenTold503WithRetryAfter_doesNotRetrySooner() throws Exception {
+    List<Long> sent = new CopyOnWriteArrayList<>();
+    AdaptiveFetcher fetcher =
+        fetcher(
+            request -> {
+              sent.add(System.nanoTime());
+              return CompletableFuture.completedFuture(
+                  sent.size() == 1
+                      ? new FetchResponse(
+                          request.getUri(),
+                          503,
+                          Map.of("Retry-After", List.of("1")),
+                          InputStream.nullInputStream())
+                      : response(request.getUri(), 200));
+            },
+            0.1,
+            false,
+            1);
+
+    FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get(5, TimeUnit.SECONDS);
+
+    assertEquals(200, response.getStatusCode());
+    assertTrue(sent.get(1) - sent.get(0) >= TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Test
+  void fetch_whenRetryAfterIsLong_theAnswerIsReturnedWithoutRetrying() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    AdaptiveFetcher fetcher =
+        fetcher(
+            request -> {
+              attempts.incrementAndGet();
+              return CompletableFuture.completedFuture(
+                  new FetchResponse(
+                      request.getUri(),
+                      429,
+                      Map.of("Retry-After", List.of("120")),
+                      InputStream.nullInputStream()));
+            },
+            0.1,
+            false,
+            3);
+
+    FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get(5, TimeUnit.SECONDS);
+
+    assertEquals(429, response.getStatusCode());
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  void fetch_whenPaced_aRetryWaitsForTheHostsSlotAndItsControllerSeesTheFailure()
+      throws Exception {
+    PolitenessScheduler politeness =
+        new PolitenessScheduler(
+            new CrawlerConfig().initialHostRate(2).minHostRate(0.5).maxHostRate(2), null);
+    List<Long> sent = new CopyOnWriteArrayList<>();
+    AdaptiveFetcher fetcher =
+        new AdaptiveFetcher(
+            request -> {
+              sent.add(System.nanoTime());
+              return CompletableFuture.completedFuture(
+                  response(request.getUri(), sent.size() == 1 ? 503 : 200));
+            },
+            new LatencyTracker(3, Duration.ofMillis(10), Duration.ofSeconds(5)),
+            0.1,
+            false,
+            false,
+            1,
+            politeness);
+
+    // the crawl takes the first slot before it fetches
+    assertTrue(politeness.acquire(PAGE));
+    FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get(5, TimeUnit.SECONDS);
+
+    assertEquals(200, response.getStatusCode());
+    assertTrue(sent.get(1) - sent.get(0) >= TimeUnit.MILLISECONDS.toNanos(400));
+    assertTrue(politeness.currentRate(PAGE.getHost()) < 2);
+  }
+
+  @Test
+  void fetch_whenTheFirstRequestHangs_theHedgedOneAnswers() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    CompletableFuture<FetchResponse> hanging = new CompletableFuture<>();
+    AtomicBoolean lateBodyClosed = new AtomicBoolean();
+    LatencyTracker tracker = new LatencyTracker(3, Duration.ofMillis(10), Duration.ofSeconds(5));
+    for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+      tracker.record(PAGE, TimeUnit.MILLISECONDS.toNanos(20));
+    }
+    AdaptiveFetcher fetcher =
+        new AdaptiveFetcher(
+            request ->
+                attempts.incrementAndGet() == 1
+                    ? hanging
+                    : CompletableFuture.completedFuture(response(request.getUri(), 200)),
+            tracker,
+            0.1,
+            false,
+            true,
+            0,
+            null);
+
+    FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get(5, TimeUnit.SECONDS);
+    hanging.complete(
+        new FetchResponse(
+            PAGE,
+            200,
+            Map.of(),
+            new ByteArrayInputStream(new byte[0]) {
+              @Override
+              public void close() {
+                lateBodyClosed.set(true);
+              }
+            }));
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals(2, attempts.get());
+    assertEquals(1, fetcher.getHedges());
+    assertEquals(1, fetcher.getHedgesWon());
+    assertTrue(lateBodyClosed.get());
+  }
+
+  @Test
+  void fetch_latencyIsTakenAtTheEndOfTheBody() throws Exception {
+    LatencyTracker tracker = new LatencyTracker(3, Duration.ofMillis(10), Duration.ofSeconds(5));
+    AdaptiveFetcher fetcher =
+        new AdaptiveFetcher(
+            request ->
+                CompletableFuture.completedFuture(
+                    new FetchResponse(
+                        request.getUri(),
+                        200,
+                        Map.of(),
+                        new InputStream() {
+                          @Override
+                          public int read() throws IOException {
+                            try {
+                              Thread.sleep(20);
+                            } catch (InterruptedException e) {
+                              throw new IOException(e);
+                            }
+                            return -1;
+                          }
+                        })),
+            tracker,
+            0.1,
+            true,
+            false,
+            0,
+            null);
+
+    for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+      try (FetchResponse response = fetcher.fetch(new FetchRequest(PAGE)).get()) {
+        response.getBody().readAllBytes();
+      }
+    }
+
+    assertTrue(tracker.percentile(PAGE, 50) >= TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  void backoffNanos_growsWithEachAttemptUpToACap() {
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(100), AdaptiveFetcher.backoffNanos(0, 1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(200), AdaptiveFetcher.backoffNanos(1, 1));
+    assertEquals(TimeUnit.SECONDS.toNanos(5), AdaptiveFetcher.backoffNanos(30, 1));
+    assertEquals(0, AdaptiveFetcher.backoffNanos(3, 0));
+  }
+
+  @Test
+  void isRetryable_onlyForFailuresGatewayErrorsAndSlowDowns() {
+    assertTrue(AdaptiveFetcher.isRetryable(null, new IOException("reset")));
+    assertFalse(AdaptiveFetcher.isRetryable(null, new IllegalArgumentException()));
+    assertTrue(AdaptiveFetcher.isRetryable(response(PAGE, 504), null));
+    assertTrue(AdaptiveFetcher.isRetryable(response(PAGE, 429), null));
+    assertFalse(AdaptiveFetcher.isRetryable(response(PAGE, 404), null));
+  }
+
+  private static AdaptiveFetcher fetcher(
+      Function<FetchRequest, CompletableFuture<FetchResponse>> delegate,
+      double retryBudgetRatio,
+      boolean hedge,
+      int maxRetries) {
+    return new AdaptiveFetcher(
+        delegate::apply,
+        new LatencyTracker(3, Duration.ofMillis(10), Duration.ofSeconds(5)),
+        retryBudgetRatio,
+        false,
+        hedge,
+        maxRetries,
+        null);
+  }
+
+  private static FetchResponse response(URI uri, int status) {
+    return new FetchResponse(uri, status, Map.of(), InputStream.nullInputStream());
+  }
+}
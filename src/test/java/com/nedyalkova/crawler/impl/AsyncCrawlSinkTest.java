@@ -0,0 +1,128 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncCrawlSinkTest {
+
+  private static CrawlRecord record(String url) {
+    return new CrawlRecord(url, 200, 0, 0, 0, 0, 0, List.of(URI.create(url + "/child")));
+  }
+
+  @Test
+  void close_whenRecordsAccepted_allOfThemAreWrittenInOrder(@TempDir Path dir)
+      throws IOException, InterruptedException {
+    Path file = dir.resolve("out.txt");
+    AsyncCrawlSink sink = AsyncCrawlSink.toFile(file, OutputFormat.URLS, false, 8);
+    for (int i = 0; i < 1000; i++) {
+      sink.accept(record("https://webcrawler.com/" + i));
+    }
+    sink.close();
+
+    List<String> lines = Files.readAllLines(file);
+    assertEquals(1000, lines.size());
+    assertEquals("https://webcrawler.com/0", lines.get(0));
+    assertEquals("https://webcrawler.com/999", lines.get(999));
+  }
+
+  @Test
+  void toFile_whenGzip_thenOutputIsCompressed(@TempDir Path dir)
+      throws IOException, InterruptedException {
+    Path file = dir.resolve("out.ndjson.gz");
+    AsyncCrawlSink sink = AsyncCrawlSink.toFile(file, OutputFormat.NDJSON, true, 8);
+    sink.accept(record("https://webcrawler.com/a"));
+    sink.close();
+
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      assertTrue(json.startsWith("{\"url\":\"https://webcrawler.com/a\""), json);
+    }
+  }
+
+  @Test
+  void accept_whenWriterFallsBehind_thenCallerWaits() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> written = new ArrayList<>();
+    RecordWriter slowWriter =
+        new RecordWriter() {
+          @Override
+          public void write(CrawlRecord record) throws IOException {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            written.add(record.getUrl());
+          }
+
+          @Override
+          public void flush() {}
+
+          @Override
+          public void close() {}
+        };
+    AsyncCrawlSink sink = new AsyncCrawlSink(slowWriter, 2);
+
+    CountDownLatch producerDone = new CountDownLatch(1);
+    Thread producer =
+        new Thread(
+            () -> {
+              try {
+                for (int i = 0; i < 10; i++) {
+                  sink.accept(record("https://webcrawler.com/" + i));
+                }
+                producerDone.countDown();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    producer.start();
+
+    assertTrue(!producerDone.await(200, TimeUnit.MILLISECONDS), "buffer grew past its capacity");
+    assertTrue(sink.getBackpressureWaits() > 0);
+    release.countDown();
+    assertTrue(producerDone.await(5, TimeUnit.SECONDS));
+    sink.close();
+    assertEquals(10, written.size());
+  }
+
+  @Test
+  void close_whenWriteFailed_thenFailureIsReportedAndCrawlIsNotBlocked() throws Exception {
+    RecordWriter failing =
+        new RecordWriter() {
+          @Override
+          public void write(CrawlRecord record) throws IOException {
+            throw new IOException("disk full");
+          }
+
+          @Override
+          public void flush() {}
+
+          @Override
+          public void close() {}
+        };
+    AsyncCrawlSink sink = new AsyncCrawlSink(failing, 1);
+    for (int i = 0; i < 20; i++) {
+      sink.accept(record("https://webcrawler.com/" + i));
+    }
+
+    IOException e = assertThrows(IOException.class, sink::close);
+    assertEquals("disk full", e.getMessage());
+  }
+}
@@ -0,0 +1,42 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomSeenSetTest {
+
+  @Test
+  void add_whenFingerprintAddedTwice_thenSecondAddIsFalse() {
+    BloomSeenSet seen = new BloomSeenSet(1_000, 0.01);
+    assertTrue(seen.add(12345L));
+    assertFalse(seen.add(12345L));
+    assertTrue(seen.contains(12345L));
+  }
+
+  @Test
+  void contains_whenFilledToExpectedSize_thenFalsePositivesStayNearTheTarget() {
+    BloomSeenSet seen = new BloomSeenSet(10_000, 0.01);
+    SplittableRandom random = new SplittableRandom(11);
+    for (int i = 0; i < 10_000; i++) {
+      seen.add(random.nextLong());
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (seen.contains(random.nextLong())) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+  }
+
+  @Test
+  void createBloomSeenSet_whenRateOutOfRange_thenException() {
+    assertThrows(IllegalArgumentException.class, () -> new BloomSeenSet(10, 0));
+    assertThrows(IllegalArgumentException.class, () -> new BloomSeenSet(10, 1));
+  }
+}
@@ -0,0 +1,144 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterCoordinatorTest {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  private ClusterCoordinator coordinator;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    coordinator =
+        new ClusterCoordinator(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Duration.ofSeconds(5));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    coordinator.close();
+  }
+
+  @Test
+  void onHeartbeat_whenNodesJoin_thenTheEpochMovesAndTheViewListsThem() {
+    ClusterView first = coordinator.onHeartbeat(busy("a"), 0);
+    ClusterView second = coordinator.onHeartbeat(busy("b"), 0);
+    ClusterView repeated = coordinator.onHeartbeat(busy("a"), SECOND);
+
+    assertEquals(List.of("a"), first.getNodeIds());
+    assertEquals(List.of("a", "b"), second.getNodeIds());
+    assertTrue(second.getEpoch() > first.getEpoch());
+    assertEquals(second.getEpoch(), repeated.getEpoch());
+  }
+
+  @Test
+  void onHeartbeat_whenANodeStopsReporting_thenItIsDropped() {
+    coordinator.onHeartbeat(busy("a"), 0);
+    coordinator.onHeartbeat(busy("b"), 0);
+
+    ClusterView view = coordinator.onHeartbeat(busy("a"), 6 * SECOND);
+
+    assertEquals(List.of("a"), view.getNodeIds());
+  }
+
+  @Test
+  void onLeave_whenANodeLeaves_thenItIsNoLongerAMember() {
+    coordinator.onHeartbeat(busy("a"), 0);
+    coordinator.onHeartbeat(busy("b"), 0);
+
+    coordinator.onLeave("b");
+
+    assertEquals(List.of("a"), coordinator.currentView().getNodeIds());
+  }
+
+  @Test
+  void onHeartbeat_whenAllIdleAndEveryBatchArrived_thenFinishedOnceEveryoneConfirmed() {
+    coordinator.onHeartbeat(busy("b"), 0);
+    assertFalse(coordinator.onHeartbeat(idle("a", 3, 2), 0).isFinished());
+    assertFalse(coordinator.onHeartbeat(idle("b", 2, 3), 0).isFinished());
+    assertTrue(coordinator.onHeartbeat(idle("a", 3, 2), SECOND).isFinished());
+    assertTrue(coordinator.onHeartbeat(idle("b", 2, 3), SECOND).isFinished());
+  }
+
+  @Test
+  void onHeartbeat_whenABatchIsStillInTransit_thenNotFinished() {
+    coordinator.onHeartbeat(idle("a", 4, 2), 0);
+    assertFalse(coordinator.onHeartbeat(idle("b", 2, 3), 0).isFinished());
+    assertFalse(coordinator.onHeartbeat(idle("a", 4, 2), 0).isFinished());
+  }
+
+  @Test
+  void onHeartbeat_whenANodeIsBusy_thenNotFinished() {
+    coordinator.onHeartbeat(idle("a", 0, 0), 0);
+    assertFalse(coordinator.onHeartbeat(busy("b"), 0).isFinished());
+  }
+
+  @Test
+  void onHeartbeat_whenLinksMovedBetweenConfirmations_thenConfirmationStartsOver() {
+    coordinator.onHeartbeat(idle("a", 3, 2), 0);
+    coordinator.onHeartbeat(idle("b", 2, 3), 0);
+    // both moved more links since and are idle again; a's earlier confirmation no longer counts
+    assertFalse(coordinator.onHeartbeat(idle("b", 5, 4), 0).isFinished());
+    assertFalse(coordinator.onHeartbeat(idle("a", 4, 5), 0).isFinished());
+    assertTrue(coordinator.onHeartbeat(idle("b", 5, 4), 0).isFinished());
+  }
+
+  @Test
+  void heartbeatAndView_whenWrittenAndRead_thenTheyRoundTrip() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    idle("a", 7, 9).writeTo(new DataOutputStream(bytes));
+    Heartbeat heartbeat =
+        Heartbeat.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals("a", heartbeat.getNodeId());
+    assertTrue(heartbeat.isIdle());
+    assertEquals(7, heartbeat.sentTo("b"));
+    assertEquals(9, heartbeat.receivedFrom("b"));
+    assertEquals(0, heartbeat.sentTo("c"));
+
+    ClusterView view = coordinator.onHeartbeat(heartbeat, 0);
+    bytes.reset();
+    view.writeTo(new DataOutputStream(bytes));
+    ClusterView read =
+        ClusterView.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(view.getEpoch(), read.getEpoch());
+    assertEquals(view.getMembers().get("a").getPort(), read.getMembers().get("a").getPort());
+  }
+
+  private static Heartbeat busy(String nodeId) {
+    return new Heartbeat(nodeId, address(nodeId), false, Map.of(), Map.of());
+  }
+
+  // a node in a two node cluster of "a" and "b"
+  private static Heartbeat idle(String nodeId, long sentToOther, long receivedFromOther) {
+    String other = nodeId.equals("a") ? "b" : "a";
+    return new Heartbeat(
+        nodeId,
+        address(nodeId),
+        true,
+        Map.of(other, sentToOther),
+        Map.of(other, receivedFromOther));
+  }
+
+  private static InetSocketAddress address(String nodeId) {
+    return InetSocketAddress.createUnresolved("localhost", 9000 + nodeId.charAt(0));
+  }
+}
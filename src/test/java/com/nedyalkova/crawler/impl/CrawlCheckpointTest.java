@@ -0,0 +1,74 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlCheckpointTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void load_whenNothingSaved_thenNull() throws IOException {
+    assertNull(CrawlCheckpoint.load(dir, 100));
+  }
+
+  @Test
+  void load_whenSaved_thenSeenSetAndInFlightAreRestored() throws IOException {
+    LongHashSeenSet seen = new LongHashSeenSet(100);
+    seen.add(1L);
+    seen.add(2L);
+    DiskBackedFrontier.Position position = new DiskBackedFrontier.Position(1, 20, 3, 40, 7);
+    List<FrontierEntry> inFlight =
+        List.of(new FrontierEntry(URI.create("https://webcrawler.com/a"), 3, 0.25, 1234L));
+    new CrawlCheckpoint(position, inFlight, seen).save(dir);
+
+    CrawlCheckpoint loaded = CrawlCheckpoint.load(dir, 100);
+    assertEquals(1, loaded.getInFlight().size());
+    FrontierEntry entry = loaded.getInFlight().get(0);
+    assertEquals(URI.create("https://webcrawler.com/a"), entry.getUri());
+    assertEquals(3, entry.getDepth());
+    assertEquals(0.25, entry.getImportance());
+    assertEquals(1234L, entry.getLastModified());
+    assertEquals(7, loaded.getFrontierPosition().getSize());
+    assertInstanceOf(LongHashSeenSet.class, loaded.getSeen());
+    assertEquals(2, loaded.getSeen().size());
+    assertTrue(loaded.getSeen().contains(1L));
+    assertFalse(loaded.getSeen().contains(3L));
+  }
+
+  @Test
+  void load_whenAnInFlightUrlIsLongerThan64KiB_thenItIsRestored() throws IOException {
+    URI longUrl = URI.create("https://webcrawler.com/" + "x".repeat(70_000));
+    new CrawlCheckpoint(
+            new DiskBackedFrontier.Position(0, 0, 0, 0, 0),
+            List.of(new FrontierEntry(longUrl, 1, 0.5)),
+            new LongHashSeenSet(100))
+        .save(dir);
+
+    assertEquals(longUrl, CrawlCheckpoint.load(dir, 100).getInFlight().get(0).getUri());
+  }
+
+  @Test
+  void load_whenBloomSeenSetSaved_thenItIsRestored() throws IOException {
+    BloomSeenSet seen = new BloomSeenSet(100, 0.01);
+    seen.add(42L);
+    new CrawlCheckpoint(new DiskBackedFrontier.Position(0, 0, 0, 0, 0), List.of(), seen)
+        .save(dir);
+
+    SeenSet loaded = CrawlCheckpoint.load(dir, 100).getSeen();
+    assertInstanceOf(BloomSeenSet.class, loaded);
+    assertTrue(loaded.contains(42L));
+    assertFalse(loaded.add(42L));
+  }
+}
@@ -0,0 +1,55 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlMetricsTest {
+
+  @Test
+  void snapshot_includesCountersGaugesAndLatencies() {
+    AtomicLong depth = new AtomicLong(7);
+    CrawlMetrics metrics = new CrawlMetrics(depth::get, () -> 11);
+    metrics.record(CrawlMetrics.Outcome.FETCHED);
+    metrics.record(CrawlMetrics.Outcome.FETCHED);
+    metrics.record(CrawlMetrics.Outcome.NON_200);
+    metrics.addBytesDownloaded(2048);
+    metrics.recordLatency(CrawlMetrics.Stage.FETCH, 3_000_000);
+
+    assertEquals(2, metrics.getPagesFetched());
+    assertEquals(1, metrics.getNon200Responses());
+    assertEquals(3.0, metrics.getFetchP99Millis(), 0.03);
+    depth.set(3);
+    String snapshot = metrics.getSnapshot();
+    assertTrue(snapshot.contains("fetched=2"), snapshot);
+    assertTrue(snapshot.contains("frontier=3"), snapshot);
+    assertTrue(snapshot.contains("seen=11"), snapshot);
+    assertTrue(snapshot.contains("bytes=2048"), snapshot);
+    assertTrue(snapshot.contains("fetch p50/p99/max="), snapshot);
+  }
+
+  @Test
+  void registerMBean_exposesAttributesUntilUnregistered() throws Exception {
+    CrawlMetrics metrics = new CrawlMetrics(() -> 0, () -> 5);
+    metrics.record(CrawlMetrics.Outcome.DUPLICATE);
+    metrics.registerMBean("webcrawler.com");
+    ObjectName name = metrics.getObjectName();
+    assertNotNull(name);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertEquals(1L, server.getAttribute(name, "DuplicateLinks"));
+      assertEquals(5L, server.getAttribute(name, "SeenUrls"));
+    } finally {
+      metrics.unregisterMBean();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+}
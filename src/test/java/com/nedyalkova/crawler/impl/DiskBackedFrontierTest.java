@@ -0,0 +1,99 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiskBackedFrontierTest {
+
+  private static final long SMALL_SEGMENT = DiskBackedFrontier.MAX_RECORD_BYTES + 1024;
+
+  @TempDir Path dir;
+
+  @Test
+  void poll_whenUrlsSpanSeveralSegments_thenTheyComeBackInOrder() throws IOException {
+    try (DiskBackedFrontier frontier = new DiskBackedFrontier(dir, SMALL_SEGMENT, 16)) {
+      for (int i = 0; i < 5_000; i++) {
+        frontier.add(URI.create("https://webcrawler.com/page" + i));
+      }
+      assertEquals(5_000, frontier.size());
+      assertTrue(segmentCount() > 1);
+      for (int i = 0; i < 5_000; i++) {
+        assertEquals(URI.create("https://webcrawler.com/page" + i), frontier.poll());
+      }
+      assertNull(frontier.poll());
+      assertTrue(frontier.isEmpty());
+    }
+  }
+
+  @Test
+  void poll_whenAddsAndPollsInterleave_thenOrderIsKept() throws IOException {
+    try (DiskBackedFrontier frontier = new DiskBackedFrontier(dir, SMALL_SEGMENT, 4)) {
+      frontier.add(URI.create("https://webcrawler.com/a"));
+      assertEquals(URI.create("https://webcrawler.com/a"), frontier.peek());
+      frontier.add(URI.create("https://webcrawler.com/b"));
+      assertEquals(URI.create("https://webcrawler.com/a"), frontier.poll());
+      frontier.add(URI.create("https://webcrawler.com/c"));
+      assertEquals(URI.create("https://webcrawler.com/b"), frontier.poll());
+      assertEquals(URI.create("https://webcrawler.com/c"), frontier.poll());
+      assertNull(frontier.poll());
+    }
+  }
+
+  @Test
+  void pollEntry_whenAddedWithADepth_thenTheDepthComesBack() throws IOException {
+    try (DiskBackedFrontier frontier = new DiskBackedFrontier(dir, SMALL_SEGMENT, 16)) {
+      for (int i = 0; i < 2_000; i++) {
+        frontier.add(new FrontierEntry(URI.create("https://webcrawler.com/page" + i), i % 40, 1));
+      }
+      frontier.add(URI.create("https://webcrawler.com/plain"));
+      for (int i = 0; i < 2_000; i++) {
+        FrontierEntry entry = frontier.pollEntry();
+        assertEquals(URI.create("https://webcrawler.com/page" + i), entry.getUri());
+        assertEquals(i % 40, entry.getDepth());
+      }
+      assertEquals(0, frontier.pollEntry().getDepth());
+    }
+  }
+
+  @Test
+  void resume_whenReopenedAtSyncedPosition_thenOnlyUnpolledUrlsRemain() throws IOException {
+    DiskBackedFrontier.Position position;
+    try (DiskBackedFrontier frontier = new DiskBackedFrontier(dir, SMALL_SEGMENT, 16)) {
+      for (int i = 0; i < 3_000; i++) {
+        frontier.add(URI.create("https://webcrawler.com/page" + i));
+      }
+      for (int i = 0; i < 1_000; i++) {
+        frontier.poll();
+      }
+      position = frontier.sync();
+      frontier.release(position);
+      // neither of these is part of the checkpoint
+      frontier.poll();
+      frontier.add(URI.create("https://webcrawler.com/after-checkpoint"));
+    }
+
+    try (DiskBackedFrontier resumed = new DiskBackedFrontier(dir, SMALL_SEGMENT, 16, position)) {
+      assertEquals(2_000, resumed.size());
+      for (int i = 1_000; i < 3_000; i++) {
+        assertEquals(URI.create("https://webcrawler.com/page" + i), resumed.poll());
+      }
+      assertNull(resumed.poll());
+    }
+  }
+
+  private long segmentCount() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.count();
+    }
+  }
+}
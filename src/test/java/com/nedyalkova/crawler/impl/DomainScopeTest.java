@@ -0,0 +1,53 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DomainScopeTest {
+
+  @Test
+  void allows_whenWwwPolicy_acceptsTheHostAndItsWwwVariantOnly() {
+    DomainScope scope = new DomainScope(SubdomainPolicy.WWW).allow("www.webcrawler.com");
+
+    assertTrue(scope.allows("webcrawler.com"));
+    assertTrue(scope.allows("WWW.WebCrawler.com"));
+    assertFalse(scope.allows("blog.webcrawler.com"));
+    assertFalse(scope.allows("webcrawler.com.evil.org"));
+    assertFalse(scope.allows(null));
+  }
+
+  @Test
+  void allows_whenExactPolicy_acceptsOnlyTheHost() {
+    DomainScope scope = new DomainScope(SubdomainPolicy.EXACT).allow("webcrawler.com");
+
+    assertTrue(scope.allows("webcrawler.com"));
+    assertFalse(scope.allows("www.webcrawler.com"));
+  }
+
+  @Test
+  void allows_whenAllSubdomains_acceptsAnyDepthButNotLookalikes() {
+    DomainScope scope =
+        new DomainScope(SubdomainPolicy.EXACT).allow("*.webcrawler.com").allow("other.org");
+
+    assertTrue(scope.allows("webcrawler.com"));
+    assertTrue(scope.allows("a.b.webcrawler.com"));
+    assertFalse(scope.allows("notwebcrawler.com"));
+    assertFalse(scope.allows("www.other.org"));
+    assertEquals(2, scope.size());
+  }
+
+  @Test
+  void allow_whenADomainIsAllowedTwice_theWiderPolicyWins() {
+    DomainScope scope =
+        new DomainScope(SubdomainPolicy.EXACT)
+            .allow("webcrawler.com", SubdomainPolicy.ALL)
+            .allow("webcrawler.com", SubdomainPolicy.EXACT);
+
+    assertTrue(scope.allows("shop.webcrawler.com"));
+    assertThrows(IllegalArgumentException.class, () -> scope.allow(" "));
+  }
+}
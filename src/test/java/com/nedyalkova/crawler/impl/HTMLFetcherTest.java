@@ -4,12 +4,25 @@ import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedStatic;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -87,4 +100,211 @@ class HTMLFetcherTest {
       assertNull(htmlFetcher.fetchHTML("someBadUrl"));
     }
   }
+
+  @Test
+  void fetchLinks_whenValidPage_linksAreStreamedFromTheBody() {
+    byte[] body = "<a href='/page1'>1</a>".getBytes(StandardCharsets.UTF_8);
+    PageFetcher pageFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    URI.create("https://test-web-crawler.com/"),
+                    200,
+                    Map.of("Content-Type", List.of("text/html; charset=UTF-8")),
+                    new ByteArrayInputStream(body)));
+
+    Set<URI> links =
+        new HTMLFetcher(pageFetcher)
+            .fetchLinks("https://test-web-crawler.com", new LinkExtractor());
+    assertEquals(Set.of(URI.create("https://test-web-crawler.com/page1")), links);
+  }
+
+  @Test
+  void fetchLinks_whenReturnStatusNot200_returnsEmptySet() {
+    PageFetcher pageFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    request.getUri(),
+                    404,
+                    Map.of(),
+                    new ByteArrayInputStream("<a href='/x'>x</a>".getBytes())));
+
+    assertTrue(
+        new HTMLFetcher(pageFetcher)
+            .fetchLinks("https://test-site.com/404", new LinkExtractor())
+            .isEmpty());
+  }
+
+  @Test
+  void fetchLinks_whenIOException_returnsEmptySet() {
+    PageFetcher pageFetcher =
+        request -> CompletableFuture.failedFuture(new IOException("Network error"));
+
+    assertTrue(
+        new HTMLFetcher(pageFetcher)
+            .fetchLinks("https://test-site.com", new LinkExtractor())
+            .isEmpty());
+  }
+
+  @Test
+  void fetchLinks_whenPageNotModified_cachedLinksAreReplayed(@TempDir Path cacheDir)
+      throws IOException {
+    List<FetchRequest> requests = new ArrayList<>();
+    PageFetcher pageFetcher =
+        request -> {
+          requests.add(request);
+          boolean revalidating = "\"v1\"".equals(request.getHeaders().get("If-None-Match"));
+          return CompletableFuture.completedFuture(
+              new FetchResponse(
+                  request.getUri(),
+                  revalidating ? 304 : 200,
+                  Map.of("ETag", List.of("\"v1\"")),
+                  new ByteArrayInputStream(
+                      revalidating ? new byte[0] : "<a href='/page1'>1</a>".getBytes())));
+        };
+
+    try (HTMLFetcher fetcher = new HTMLFetcher(pageFetcher, new ValidatorCache(cacheDir))) {
+      Set<URI> first = fetcher.fetchLinks("https://test-web-crawler.com", new LinkExtractor());
+      Set<URI> second = fetcher.fetchLinks("https://test-web-crawler.com", new LinkExtractor());
+
+      assertEquals(Set.of(URI.create("https://test-web-crawler.com/page1")), first);
+      assertEquals(first, second);
+      assertNull(requests.get(0).getHeaders().get("If-None-Match"));
+      assertEquals("\"v1\"", requests.get(1).getHeaders().get("If-None-Match"));
+    }
+  }
+
+  @Test
+  void fetchPage_whenALinkIsLongerThan64KiB_thenItIsCachedWithTheOthers(@TempDir Path cacheDir)
+      throws IOException {
+    String longHref = "/search?q=" + "x".repeat(70_000);
+    PageFetcher pageFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    request.getUri(),
+                    200,
+                    Map.of(),
+                    new ByteArrayInputStream(
+                        ("<a href='/a'>a</a><a href='" + longHref + "'>long</a>").getBytes())));
+
+    try (HTMLFetcher fetcher = new HTMLFetcher(pageFetcher, new ValidatorCache(cacheDir))) {
+      PageResult result = fetcher.fetchPage("https://test-site.com", new LinkExtractor());
+
+      assertEquals(200, result.getStatusCode());
+      assertEquals(2, result.getLinks().size());
+      assertTrue(result.getLinks().contains(URI.create("https://test-site.com/a")));
+    }
+    try (ValidatorCache cache = new ValidatorCache(cacheDir)) {
+      assertEquals(2, cache.get("https://test-site.com").getLinks().size());
+    }
+  }
+
+  @Test
+  void fetchPage_whenTheCacheCannotBeWritten_thenTheLinksAreStillReturned(@TempDir Path cacheDir)
+      throws IOException {
+    PageFetcher pageFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    request.getUri(),
+                    200,
+                    Map.of(),
+                    new ByteArrayInputStream("<a href='/a'>a</a>".getBytes())));
+    ValidatorCache closed = new ValidatorCache(cacheDir);
+    closed.close();
+
+    HTMLFetcher fetcher = new HTMLFetcher(pageFetcher, closed);
+
+    PageResult result = fetcher.fetchPage("https://test-site.com", new LinkExtractor());
+    assertEquals(200, result.getStatusCode());
+    assertEquals(Set.of(URI.create("https://test-site.com/a")), result.getLinks());
+  }
+
+  @Test
+  void fetchPage_whenResponseIsNotHtml_thenBodyIsNotRead() {
+    InputStream body =
+        new InputStream() {
+          @Override
+          public int read() {
+            throw new AssertionError("the body should not be read");
+          }
+        };
+    PageFetcher pageFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    request.getUri(), 200, Map.of("Content-Type", List.of("image/png")), body));
+
+    PageResult result =
+        new HTMLFetcher(pageFetcher).fetchPage("https://test-site.com/logo", new LinkExtractor());
+    assertEquals(200, result.getStatusCode());
+    assertEquals("image/png", result.getSkippedContentType());
+    assertTrue(result.getLinks().isEmpty());
+  }
+
+  @Test
+  void fetchPage_whenBodyIsLargerThanTheLimit_thenOnlyItsStartIsRead() {
+    String page = "<a href='/first'>1</a>" + " ".repeat(100) + "<a href='/second'>2</a>";
+    PageFetcher pageFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    request.getUri(),
+                    200,
+                    Map.of("Content-Type", List.of("text/html")),
+                    new ByteArrayInputStream(page.getBytes(StandardCharsets.UTF_8))));
+
+    PageResult result =
+        new HTMLFetcher(pageFetcher, null, 64, false)
+            .fetchPage("https://test-site.com", new LinkExtractor());
+    assertEquals(Set.of(URI.create("https://test-site.com/first")), result.getLinks());
+    assertEquals(64, result.getBodyBytes());
+    assertTrue(result.isTruncated());
+
+    PageResult whole =
+        new HTMLFetcher(pageFetcher, null, page.length(), false)
+            .fetchPage("https://test-site.com", new LinkExtractor());
+    assertEquals(2, whole.getLinks().size());
+    assertFalse(whole.isTruncated());
+  }
+
+  @Test
+  void fetchPage_whenHeadNonHtmlIsOn_thenOnlyHtmlLookingOrHtmlUrlsAreDownloaded() {
+    List<String> requests = new ArrayList<>();
+    PageFetcher pageFetcher =
+        request -> {
+          String path = request.getUri().getPath();
+          requests.add(request.getMethod() + " " + path);
+          String type = path.endsWith(".pdf") ? "application/pdf" : "text/html";
+          return CompletableFuture.completedFuture(
+              new FetchResponse(
+                  request.getUri(),
+                  200,
+                  Map.of("Content-Type", List.of(type)),
+                  new ByteArrayInputStream("<a href='/x'>x</a>".getBytes())));
+        };
+    HTMLFetcher fetcher = new HTMLFetcher(pageFetcher, null, 1024, true);
+
+    PageResult pdf = fetcher.fetchPage("https://test-site.com/report.pdf", new LinkExtractor());
+    PageResult disguised =
+        fetcher.fetchPage("https://test-site.com/index.json", new LinkExtractor());
+    fetcher.fetchPage("https://test-site.com/about", new LinkExtractor());
+
+    assertEquals("application/pdf", pdf.getSkippedContentType());
+    assertEquals(Set.of(URI.create("https://test-site.com/x")), disguised.getLinks());
+    assertEquals(
+        List.of("HEAD /report.pdf", "HEAD /index.json", "GET /index.json", "GET /about"),
+        requests);
+  }
+
+  @Test
+  void isHtml_acceptsHtmlAndMissingContentTypesOnly() {
+    assertTrue(HTMLFetcher.isHtml(null));
+    assertTrue(HTMLFetcher.isHtml("Text/HTML; charset=utf-8"));
+    assertTrue(HTMLFetcher.isHtml("application/xhtml+xml"));
+    assertFalse(HTMLFetcher.isHtml("application/pdf"));
+    assertFalse(HTMLFetcher.isHtml("text/plain"));
+  }
 }
@@ -0,0 +1,55 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+  private static final int KEYS = 100_000;
+
+  @Test
+  void ownerOf_whenNoNodes_thenNull() {
+    assertNull(new HashRing(List.of()).ownerOf(42L));
+  }
+
+  @Test
+  void ownerOf_whenSeveralNodes_thenShardsAreRoughlyEven() {
+    HashRing ring = new HashRing(List.of("a", "b", "c", "d"));
+    Map<String, Integer> shards = new HashMap<>();
+    SplittableRandom random = new SplittableRandom(3);
+    for (int i = 0; i < KEYS; i++) {
+      shards.merge(ring.ownerOf(random.nextLong()), 1, Integer::sum);
+    }
+
+    assertEquals(4, shards.size());
+    for (int shard : shards.values()) {
+      assertTrue(Math.abs(shard - KEYS / 4) < KEYS / 4 / 4, "shard of " + shard);
+    }
+  }
+
+  @Test
+  void ownerOf_whenANodeLeaves_thenOnlyItsKeysMove() {
+    HashRing before = new HashRing(List.of("a", "b", "c", "d"));
+    HashRing after = new HashRing(List.of("a", "b", "d"));
+    SplittableRandom random = new SplittableRandom(5);
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      long fingerprint = random.nextLong();
+      String owner = before.ownerOf(fingerprint);
+      if (!owner.equals(after.ownerOf(fingerprint))) {
+        assertEquals("c", owner);
+        moved++;
+      }
+    }
+
+    assertTrue(moved > KEYS / 8 && moved < KEYS / 3, "moved " + moved);
+  }
+}
@@ -0,0 +1,139 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostQueueFrontierTest {
+
+  @Test
+  void pollEntry_takesTheHostsInTurn() {
+    HostQueueFrontier frontier = new HostQueueFrontier(10, host -> 0, host -> 1);
+    add(frontier, "https://a.com/1", "https://a.com/2", "https://a.com/3", "https://b.com/1");
+    add(frontier, "https://c.com/1", "https://b.com/2");
+
+    assertEquals(
+        List.of(
+            "https://a.com/1",
+            "https://b.com/1",
+            "https://c.com/1",
+            "https://a.com/2",
+            "https://b.com/2",
+            "https://a.com/3"),
+        drain(frontier));
+    assertEquals(0, frontier.size());
+  }
+
+  @Test
+  void pollEntry_whenHostsAreWeighted_theyGetThatManyUrlsATurn() {
+    HostQueueFrontier frontier =
+        new HostQueueFrontier(10, host -> 0, host -> host.equals("a.com") ? 2 : 1);
+    add(frontier, "https://a.com/1", "https://a.com/2", "https://a.com/3", "https://b.com/1");
+    add(frontier, "https://b.com/2");
+
+    assertEquals(
+        List.of(
+            "https://a.com/1",
+            "https://a.com/2",
+            "https://b.com/1",
+            "https://a.com/3",
+            "https://b.com/2"),
+        drain(frontier));
+  }
+
+  @Test
+  void pollEntry_whenAHostIsBusy_itIsSkippedUntilAUrlIsDone() {
+    HostQueueFrontier frontier = new HostQueueFrontier(1, host -> 0, host -> 1);
+    add(frontier, "https://a.com/1", "https://a.com/2", "https://b.com/1");
+
+    assertEquals("https://a.com/1", frontier.poll().toString());
+    assertEquals("https://b.com/1", frontier.poll().toString());
+    // a.com still has a url queued, but one in flight already
+    assertNull(frontier.poll());
+    assertEquals(1, frontier.size());
+    assertEquals(Long.MAX_VALUE, frontier.nanosUntilReady());
+
+    frontier.done(URI.create("https://a.com/1"));
+
+    assertEquals(0, frontier.nanosUntilReady());
+    assertEquals("https://a.com/2", frontier.poll().toString());
+    frontier.done(URI.create("https://a.com/2"));
+    frontier.done(URI.create("https://b.com/1"));
+    assertEquals(0, frontier.hostCount());
+  }
+
+  @Test
+  void pollEntry_whenAHostHasToWait_theOthersGoFirst() {
+    Map<String, Long> waits = new HashMap<>(Map.of("slow.com", 60_000_000_000L));
+    HostQueueFrontier frontier =
+        new HostQueueFrontier(10, host -> waits.getOrDefault(host, 0L), host -> 1);
+    add(frontier, "https://slow.com/1", "https://fast.com/1", "https://fast.com/2");
+
+    assertEquals(List.of("https://fast.com/1", "https://fast.com/2"), drain(frontier));
+    assertEquals(1, frontier.size());
+    long wait = frontier.nanosUntilReady();
+    assertTrue(wait > 50_000_000_000L && wait <= 60_000_000_000L);
+    assertEquals("https://slow.com/1", frontier.peek().toString());
+  }
+
+  @Test
+  void pollEntry_whenBackedByADiskFrontier_aWaitingHostDoesNotHoldUpTheOthers(@TempDir Path dir)
+      throws IOException {
+    HostQueueFrontier frontier =
+        new HostQueueFrontier(
+            new DiskBackedFrontier(dir, 1 << 20, 16),
+            10,
+            10,
+            host -> host.equals("slow.com") ? 60_000_000_000L : 0,
+            host -> 1);
+    add(frontier, "https://slow.com/1", "https://slow.com/2", "https://fast.com/1");
+
+    assertEquals(List.of("https://fast.com/1"), drain(frontier));
+    assertEquals(2, frontier.size());
+    assertEquals(
+        List.of("https://slow.com/1", "https://slow.com/2"),
+        frontier.buffered().stream().map(entry -> entry.getUri().toString()).toList());
+    frontier.close();
+  }
+
+  @Test
+  void pollEntry_whenBackedByAPriorityFrontier_onlyAWindowIsPulledInScoreOrder() {
+    PriorityFrontier scored =
+        new PriorityFrontier((uri, depth, inLinks, importance) -> -depth);
+    HostQueueFrontier frontier = new HostQueueFrontier(scored, 2, 10, host -> 0, host -> 1);
+    frontier.add(new FrontierEntry(URI.create("https://a.com/deep"), 3, 0));
+    frontier.add(new FrontierEntry(URI.create("https://b.com/top"), 0, 0));
+    frontier.add(new FrontierEntry(URI.create("https://c.com/mid"), 1, 0));
+
+    assertEquals("https://b.com/top", frontier.poll().toString());
+    assertEquals(1, scored.size());
+    assertEquals(2, frontier.size());
+    assertEquals(List.of("https://c.com/mid", "https://a.com/deep"), drain(frontier));
+  }
+
+  private static void add(HostQueueFrontier frontier, String... urls) {
+    for (String url : urls) {
+      frontier.add(URI.create(url));
+    }
+  }
+
+  private static List<String> drain(HostQueueFrontier frontier) {
+    List<String> polled = new ArrayList<>();
+    URI next;
+    while ((next = frontier.poll()) != null) {
+      polled.add(next.toString());
+    }
+    return polled;
+  }
+}
@@ -0,0 +1,79 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostRateControllerTest {
+
+  private static final long MS = 1_000_000L;
+
+  @Test
+  void reserve_whenCalledBackToBack_thenSlotsAreSpacedByTheRate() {
+    HostRateController controller = new HostRateController(10, 1, 100, 1);
+    assertEquals(0, controller.reserve(0));
+    assertEquals(100 * MS, controller.reserve(0));
+    assertEquals(200 * MS, controller.reserve(0));
+  }
+
+  @Test
+  void tryReserve_onlyTakesASlotThatHasCome() {
+    HostRateController controller = new HostRateController(10, 1, 100, 1);
+    assertTrue(controller.tryReserve(0));
+    assertFalse(controller.tryReserve(50 * MS));
+    assertTrue(controller.tryReserve(100 * MS));
+    assertEquals(100 * MS, controller.reserve(100 * MS));
+  }
+
+  @Test
+  void onResponse_whenResponsesAreFast_thenRateIncreases() {
+    HostRateController controller = new HostRateController(2, 1, 100, 1);
+    for (int i = 0; i < 10; i++) {
+      controller.onResponse(200, 50 * MS, null, i * 1000 * MS);
+    }
+    assertTrue(controller.getRate() > 2);
+  }
+
+  @Test
+  void onResponse_whenTooManyRequests_thenRateIsHalvedOncePerCooldown() {
+    HostRateController controller = new HostRateController(8, 1, 100, 1);
+    controller.onResponse(429, 10 * MS, null, 0);
+    assertEquals(4, controller.getRate());
+    // still answering requests that were sent at the old rate
+    controller.onResponse(429, 10 * MS, null, 10 * MS);
+    assertEquals(4, controller.getRate());
+    controller.onResponse(503, 10 * MS, null, 1000 * MS);
+    assertEquals(2, controller.getRate());
+  }
+
+  @Test
+  void onResponse_whenLatencySpikes_thenRateDecreases() {
+    HostRateController controller = new HostRateController(4, 1, 4, 1);
+    for (int i = 0; i < 5; i++) {
+      controller.onResponse(200, 20 * MS, null, i * MS);
+    }
+    controller.onResponse(200, 500 * MS, null, 10 * MS);
+    assertEquals(2, controller.getRate());
+  }
+
+  @Test
+  void onResponse_whenRetryAfterGiven_thenNextSlotIsPushedBack() {
+    HostRateController controller = new HostRateController(10, 1, 100, 1);
+    controller.reserve(0);
+    controller.onResponse(503, MS, Duration.ofSeconds(5), 0);
+    assertEquals(5000 * MS, controller.reserve(0));
+  }
+
+  @Test
+  void limitTo_whenCrawlDelayGiven_thenRateIsCapped() {
+    HostRateController controller = new HostRateController(10, 0.1, 100, 1);
+    controller.limitTo(Duration.ofSeconds(2));
+    assertEquals(0.5, controller.getRate());
+    controller.onResponse(200, MS, null, 0);
+    assertEquals(0.5, controller.getRate());
+  }
+}
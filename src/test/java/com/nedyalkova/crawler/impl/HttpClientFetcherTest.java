@@ -0,0 +1,149 @@
+package com.nedyalkova.crawler.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpClientFetcherTest {
+
+  private static final String PAGE = "<a href='/page1'>1</a>";
+
+  private HttpServer server;
+  private final ExecutorService handlers = Executors.newCachedThreadPool();
+  private final HttpClientFetcher fetcher = new HttpClientFetcher();
+  private volatile String lastMethod;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/gzip",
+        exchange -> {
+          ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+          try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(PAGE.getBytes(StandardCharsets.UTF_8));
+          }
+          exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+          exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+          exchange.sendResponseHeaders(200, compressed.size());
+          try (OutputStream body = exchange.getResponseBody()) {
+            compressed.writeTo(body);
+          }
+        });
+    server.createContext(
+        "/echo-agent",
+        exchange -> {
+          byte[] agent =
+              exchange.getRequestHeaders().getFirst("User-Agent").getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, agent.length);
+          try (OutputStream body = exchange.getResponseBody()) {
+            body.write(agent);
+          }
+        });
+    server.createContext(
+        "/missing",
+        exchange -> {
+          exchange.sendResponseHeaders(404, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/report.pdf",
+        exchange -> {
+          lastMethod = exchange.getRequestMethod();
+          exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+          exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/trickle",
+        exchange -> {
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream body = exchange.getResponseBody()) {
+            for (int i = 0; i < 100; i++) {
+              body.write(' ');
+              body.flush();
+              Thread.sleep(100);
+            }
+          } catch (InterruptedException | IOException e) {
+            // the client gave up
+          }
+        });
+    server.setExecutor(handlers);
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+    handlers.shutdownNow();
+  }
+
+  @Test
+  void fetch_whenGzipResponse_thenBodyIsDecompressed() throws Exception {
+    try (FetchResponse response = fetcher.fetch(new FetchRequest(uri("/gzip"))).get()) {
+      assertEquals(200, response.getStatusCode());
+      assertEquals(StandardCharsets.UTF_8, response.charset());
+      assertEquals(PAGE, new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  void fetch_whenRequestSent_thenCrawlerUserAgentIsUsed() throws Exception {
+    try (FetchResponse response = fetcher.fetch(new FetchRequest(uri("/echo-agent"))).get()) {
+      assertEquals(
+          HttpClientFetcher.USER_AGENT,
+          new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  void fetch_whenNotFound_thenStatusIsReported() throws Exception {
+    try (FetchResponse response = fetcher.fetch(new FetchRequest(uri("/missing"))).get()) {
+      assertEquals(404, response.getStatusCode());
+    }
+  }
+
+  @Test
+  void fetch_whenHeadRequested_thenOnlyHeadersComeBack() throws Exception {
+    FetchRequest request = new FetchRequest(uri("/report.pdf")).method("HEAD");
+    try (FetchResponse response = fetcher.fetch(request).get()) {
+      assertEquals("HEAD", lastMethod);
+      assertEquals(200, response.getStatusCode());
+      assertEquals("application/pdf", response.header("Content-Type"));
+      assertEquals(0, response.getBody().readAllBytes().length);
+    }
+  }
+
+  @Test
+  void fetch_whenTheBodyTrickles_readingItTimesOut() throws Exception {
+    FetchRequest request = new FetchRequest(uri("/trickle")).timeout(Duration.ofMillis(500));
+    long start = System.nanoTime();
+    try (FetchResponse response = fetcher.fetch(request).get()) {
+      assertThrows(HttpTimeoutException.class, () -> response.getBody().readAllBytes());
+    }
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+  }
+}
@@ -0,0 +1,45 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+  @Test
+  void bucketOf_everyValueFallsInABucketThatCoversIt() {
+    for (long value : new long[] {0, 1, 255, 256, 257, 1_000, 123_456_789, (1L << 40) - 1}) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      long highest = LatencyHistogram.highestValueIn(bucket);
+      assertTrue(highest >= value);
+      assertTrue(highest - value <= Math.max(1, value / 100), "bucket too wide for " + value);
+    }
+  }
+
+  @Test
+  void valueAtPercentile_whenUniformValues_thenWithinOnePercent() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1_000L);
+    }
+
+    assertEquals(10_000, histogram.getCount());
+    assertEquals(5_000_000, histogram.valueAtPercentile(50), 50_000);
+    assertEquals(9_900_000, histogram.valueAtPercentile(99), 99_000);
+    assertEquals(10_000_000, histogram.getMax(), 100_000);
+    assertEquals(5_000_500, histogram.getMean(), 1);
+  }
+
+  @Test
+  void record_whenOutOfRange_thenClamped() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.valueAtPercentile(99));
+
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+
+    assertEquals(0, histogram.valueAtPercentile(50));
+    assertEquals((1L << 40) - 1, histogram.getMax());
+  }
+}
@@ -0,0 +1,60 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyTrackerTest {
+
+  private static final long MS = 1_000_000;
+
+  @Test
+  void timeoutFor_whenTooFewSamples_isTheMaximum() {
+    LatencyTracker tracker = new LatencyTracker(3, Duration.ofMillis(50), Duration.ofSeconds(5));
+    URI uri = URI.create("https://webcrawler.com/a");
+    for (int i = 0; i < LatencyTracker.MIN_SAMPLES - 1; i++) {
+      tracker.record(uri, 10 * MS);
+    }
+
+    assertEquals(Duration.ofSeconds(5), tracker.timeoutFor(uri));
+    assertEquals(0, tracker.percentile(uri, 99));
+  }
+
+  @Test
+  void timeoutFor_isTheP99TimesTheFactorWithinTheBounds() {
+    LatencyTracker tracker = new LatencyTracker(3, Duration.ofMillis(50), Duration.ofSeconds(5));
+    URI fast = URI.create("https://webcrawler.com/fast/page");
+    URI slow = URI.create("https://webcrawler.com/slow/page");
+    for (int i = 1; i <= 100; i++) {
+      tracker.record(fast, i * MS);
+      tracker.record(slow, 4000 * MS);
+    }
+
+    // only the last 64 samples count, so p99 of /fast is 100ms
+    assertEquals(Duration.ofMillis(300), tracker.timeoutFor(fast));
+    assertEquals(Duration.ofSeconds(5), tracker.timeoutFor(slow));
+    assertEquals(97 * MS, tracker.percentile(fast, 95));
+  }
+
+  @Test
+  void percentile_whenThePathPrefixIsNew_fallsBackToTheHost() {
+    LatencyTracker tracker = new LatencyTracker(2, Duration.ofMillis(50), Duration.ofSeconds(5));
+    for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+      tracker.record(URI.create("https://webcrawler.com/a/" + i), 10 * MS);
+    }
+
+    assertEquals(10 * MS, tracker.percentile(URI.create("https://webcrawler.com/b"), 50));
+    assertEquals(Duration.ofMillis(50), tracker.timeoutFor(URI.create("https://webcrawler.com")));
+    assertEquals(0, tracker.percentile(URI.create("https://other.com/a/1"), 50));
+  }
+
+  @Test
+  void prefixKey_isTheHostAndFirstPathSegment() {
+    assertEquals("a.com/x", LatencyTracker.prefixKey(URI.create("https://a.com/x/y?q=1")));
+    assertEquals("a.com/x", LatencyTracker.prefixKey(URI.create("https://a.com/x")));
+    assertEquals("a.com/", LatencyTracker.prefixKey(URI.create("https://a.com")));
+  }
+}
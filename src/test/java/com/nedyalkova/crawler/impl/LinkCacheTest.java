@@ -0,0 +1,85 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LinkCacheTest {
+
+  private static final LinkCache.Base PAGE =
+      new LinkCache.Base("https://webcrawler.com/docs/guide/intro.html?lang=en#top");
+
+  @Test
+  void contextOf_isOnlyThePartOfThePageUrlTheHrefResolvesAgainst() {
+    assertEquals("", LinkCache.contextOf(PAGE, "https://other.com/x"));
+    assertEquals("", LinkCache.contextOf(PAGE, "mailto:someone@webcrawler.com"));
+    assertEquals("https:", LinkCache.contextOf(PAGE, "//cdn.webcrawler.com/x"));
+    assertEquals("", LinkCache.contextOf(PAGE, "http:relative"));
+    assertEquals("https://webcrawler.com/docs/guide/", LinkCache.contextOf(PAGE, "https:foo"));
+    assertEquals("https://webcrawler.com", LinkCache.contextOf(PAGE, "https:/bar"));
+    assertEquals("https://webcrawler.com", LinkCache.contextOf(PAGE, "/about"));
+    assertEquals("https://webcrawler.com/docs/guide/", LinkCache.contextOf(PAGE, "next.html"));
+    assertEquals("https://webcrawler.com/docs/guide/", LinkCache.contextOf(PAGE, "../api"));
+    assertEquals(
+        "https://webcrawler.com/docs/guide/intro.html?lang=en", LinkCache.contextOf(PAGE, "?p=2"));
+    assertEquals(
+        "https://webcrawler.com/docs/guide/intro.html?lang=en", LinkCache.contextOf(PAGE, ""));
+  }
+
+  @Test
+  void contextOf_whenThePageHasNoPath_theDirectoryIsTheRoot() {
+    LinkCache.Base base = new LinkCache.Base("https://webcrawler.com?a=/b/c");
+    assertEquals("https://webcrawler.com/", LinkCache.contextOf(base, "x"));
+    assertEquals("https://webcrawler.com", LinkCache.contextOf(base, "/x"));
+  }
+
+  @Test
+  void get_returnsWhatWasPutAndCountsHitsAndMisses() {
+    LinkCache cache = new LinkCache(1024);
+    URI about = URI.create("https://webcrawler.com/about");
+
+    assertNull(cache.get("https://webcrawler.com", "/about"));
+    LinkCache.Entry entry =
+        cache.put("https://webcrawler.com", "/about", new LinkCache.Entry(about, 1L));
+    cache.put("", "javascript:void(0)", null);
+
+    assertSame(entry, cache.get("https://webcrawler.com", "/about"));
+    assertNull(cache.get("", "javascript:void(0)").getUri());
+    assertNull(cache.get("https://other.com", "/about"));
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(0.5, cache.getHitRate());
+  }
+
+  @Test
+  void put_whenFull_theLeastRecentlyUsedEntriesGo() {
+    LinkCache cache = new LinkCache(16);
+    for (int i = 0; i < 1000; i++) {
+      URI uri = URI.create("https://webcrawler.com/" + i);
+      cache.put("", uri.toString(), new LinkCache.Entry(uri, i));
+    }
+
+    assertTrue(cache.size() <= 16);
+    assertEquals(1000 - cache.size(), cache.getEvictions());
+    assertThrows(IllegalArgumentException.class, () -> new LinkCache(8));
+  }
+
+  @Test
+  void entry_remembersTheDecisionAboutItsUrl() {
+    LinkCache.Entry entry =
+        new LinkCache(16).put("", "/a", new LinkCache.Entry(URI.create("https://a.com/a"), 1L));
+    assertFalse(entry.isSeen());
+    assertFalse(entry.isOutOfScope());
+
+    entry.markSeen();
+
+    assertTrue(entry.isSeen());
+  }
+}
@@ -2,7 +2,10 @@ package com.nedyalkova.crawler.impl;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.net.URI;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -85,4 +88,156 @@ class LinkExtractorTest {
     assertTrue(links.contains(URI.create("https://webcrawler.com/page1")));
     assertTrue(links.contains(URI.create("https://webcrawler.com/page2")));
   }
+
+  @Test
+  void extractLinks_whenLinksInsideCommentsOrScripts_thenTheyAreSkipped() {
+    String html =
+        "<!-- <a href='/commented'>x</a> -->"
+            + "<script>var s = \"<a href='/scripted'>\";</script>"
+            + "<a href='/page1'>1</a>";
+    Set<URI> links = linkExtractor.extractLinks(html, "https://webcrawler.com");
+    assertEquals(1, links.size());
+    assertTrue(links.contains(URI.create("https://webcrawler.com/page1")));
+  }
+
+  @Test
+  void extractLinks_whenBaseHrefPresent_thenRelativeLinksUseIt() {
+    String html = "<head><base href='https://webcrawler.com/docs/'></head><a href='intro'>i</a>";
+    Set<URI> links = linkExtractor.extractLinks(html, "https://webcrawler.com");
+    assertEquals(1, links.size());
+    assertTrue(links.contains(URI.create("https://webcrawler.com/docs/intro")));
+  }
+
+  @Test
+  void extractLinks_whenUnquotedOrEscapedAttributes_thenTheyAreDecoded() {
+    String html = "<A class=nav HREF=/page1>1</A><a href=\"/page2?a=1&amp;b=2\">2</a>";
+    Set<URI> links = linkExtractor.extractLinks(html, "https://webcrawler.com");
+    assertEquals(2, links.size());
+    assertTrue(links.contains(URI.create("https://webcrawler.com/page1")));
+    assertTrue(links.contains(URI.create("https://webcrawler.com/page2?a=1&b=2")));
+  }
+
+  @Test
+  void extractLinks_whenReadingFromStream_thenLinksAreReturned() throws IOException {
+    String html = "<p>text</p><a href='/page1'>1</a><area href='/ignored'>";
+    Set<URI> links =
+        linkExtractor.extractLinks(new StringReader(html), "https://webcrawler.com");
+    assertEquals(1, links.size());
+    assertTrue(links.contains(URI.create("https://webcrawler.com/page1")));
+  }
+
+  @Test
+  void extract_whenPageIsANearDuplicate_thenItsLinksAreNotExtracted() throws IOException {
+    LinkExtractor extractor = new LinkExtractor(new NearDuplicateIndex(3));
+    String firstPage = "<p>" + NearDuplicateIndexTest.catalogue(1) + "</p><a href='/a'>next</a>";
+    String secondPage = "<p>" + NearDuplicateIndexTest.catalogue(2) + "</p><a href='/b'>next</a>";
+
+    LinkExtractor.Extraction first =
+        extractor.extract(new StringReader(firstPage), "https://webcrawler.com/shop?page=1");
+    LinkExtractor.Extraction second =
+        extractor.extract(new StringReader(secondPage), "https://webcrawler.com/shop?page=2");
+
+    assertEquals(Set.of(URI.create("https://webcrawler.com/a")), first.getLinks());
+    assertEquals(null, first.getDuplicateOf());
+    assertTrue(second.getLinks().isEmpty());
+    assertEquals("https://webcrawler.com/shop?page=1", second.getDuplicateOf());
+  }
+
+  @Test
+  void extract_whenCheckingForDuplicates_thenLinksResolveAgainstTheBaseTheySawFirst()
+      throws IOException {
+    LinkExtractor extractor = new LinkExtractor(new NearDuplicateIndex(3));
+    String html = "<a href='a'>a</a><base href='https://other.com/dir/'><a href='b'>b</a>";
+
+    Set<URI> links =
+        extractor.extract(new StringReader(html), "https://webcrawler.com/x/").getLinks();
+
+    assertEquals(
+        Set.of(URI.create("https://webcrawler.com/x/a"), URI.create("https://other.com/dir/b")),
+        links);
+  }
+
+  @Test
+  void extract_eachLinkCarriesTheFingerprintOfItsCanonicalUrl() throws IOException {
+    String html = "<a href='/a?b=2&a=1'>a</a><a href='HTTPS://Other.com/c'>c</a>";
+
+    for (LinkExtractor extractor :
+        List.of(new LinkExtractor(), new LinkExtractor(null, null, new LinkCache(1024)))) {
+      LinkCache.Links links =
+          (LinkCache.Links)
+              extractor.extract(new StringReader(html), "https://webcrawler.com/").getLinks();
+
+      assertEquals(2, links.size());
+      for (URI link : links) {
+        assertEquals(URLUtils.fingerprint(link.toString()), links.entryOf(link).getFingerprint());
+      }
+    }
+  }
+
+  @Test
+  void extractLinks_whenQueryRulesSet_linksDifferingOnlyInDroppedOrOrderedParametersAreOne() {
+    LinkExtractor extractor = new LinkExtractor(null, QueryRules.defaults());
+    String html =
+        "<a href='/p?id=1&sid=aa'>a</a><a href='/p?sid=bb&id=1'>b</a>"
+            + "<a href='/s?q=x&page=2&utm_source=mail'>c</a><a href='/s?page=2&q=x'>d</a>";
+    Set<URI> links = extractor.extractLinks(html, "https://webcrawler.com");
+    assertEquals(
+        Set.of(
+            URI.create("https://webcrawler.com/p?id=1"),
+            URI.create("https://webcrawler.com/s?page=2&q=x")),
+        links);
+  }
+
+  @Test
+  void extractLinks_whenCached_linksAreTheSameAsWithoutTheCache() {
+    LinkCache cache = new LinkCache(1024);
+    LinkExtractor cached = new LinkExtractor(null, null, cache);
+    String html =
+        "<a href='/about'>a</a><a href='next.html'>n</a><a href='../up'>u</a>"
+            + "<a href='?page=2'>q</a><a href='#top'>t</a><a href='//cdn.webcrawler.com/x'>c</a>"
+            + "<a href='https://other.com/'>o</a><a href='mailto:me@webcrawler.com'>m</a>"
+            + "<a href='javascript:void(0)'>j</a>";
+    String[] pages = {
+      "https://webcrawler.com/docs/a.html",
+      "https://webcrawler.com/docs/b.html?x=1",
+      "https://webcrawler.com/blog/",
+      "https://webcrawler.com",
+      "http://webcrawler.com/docs/a.html"
+    };
+
+    for (int round = 0; round < 2; round++) {
+      for (String page : pages) {
+        assertEquals(linkExtractor.extractLinks(html, page), cached.extractLinks(html, page), page);
+      }
+    }
+    assertTrue(cache.getHitRate() >= 0.5);
+  }
+
+  @Test
+  void extractLinks_whenCachedAndThePageHasABase_hrefsResolveAgainstTheBase() {
+    LinkExtractor cached = new LinkExtractor(null, null, new LinkCache(1024));
+    String html = "<a href='a'>1</a><base href='https://other.com/dir/'><a href='a'>2</a>";
+
+    assertEquals(
+        linkExtractor.extractLinks(html, "https://webcrawler.com/x/"),
+        cached.extractLinks(html, "https://webcrawler.com/x/"));
+    assertEquals(
+        linkExtractor.extractLinks(html, "https://webcrawler.com/x/"),
+        new LinkExtractor(new NearDuplicateIndex(3), null, new LinkCache(1024))
+            .extractLinks(html, "https://webcrawler.com/x/"));
+  }
+
+  @Test
+  void extractLinks_whenCachedAndAnHrefHasTheSchemeButNoHost_itResolvesAgainstEachPage() {
+    LinkExtractor cached = new LinkExtractor(null, null, new LinkCache(1024));
+    String html = "<a href='https:foo'>f</a><a href='https:/bar'>b</a><a href='HTTPS:baz'>z</a>";
+
+    for (String page : new String[] {"https://a.com/dir/page", "https://b.org/other/page"}) {
+      assertEquals(linkExtractor.extractLinks(html, page), cached.extractLinks(html, page), page);
+    }
+    assertTrue(
+        cached
+            .extractLinks(html, "https://b.org/other/page")
+            .contains(URI.create("https://b.org/other/foo")));
+  }
 }
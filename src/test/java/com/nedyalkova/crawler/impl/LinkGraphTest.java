@@ -0,0 +1,108 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LinkGraphTest {
+
+  @Test
+  void compact_keepsEachPagesLinksInOrderAcrossCompactions() {
+    LinkGraph graph = new LinkGraph();
+    graph.addPage("https://a.com", 200, links("https://a.com/x", "https://a.com/y"));
+    graph.compact();
+    graph.addPage("https://a.com/x", 200, links("https://a.com", "https://a.com/y"));
+    graph.addPage("https://a.com/y", 404, List.of());
+
+    assertEquals(3, graph.nodeCount());
+    assertEquals(4, graph.edgeCount());
+    assertArrayEquals(new int[] {1, 2}, graph.outLinks(0));
+    assertArrayEquals(new int[] {0, 2}, graph.outLinks(1));
+    assertArrayEquals(new int[0], graph.outLinks(2));
+    assertArrayEquals(new int[] {1, 1, 2}, graph.inLinkCounts());
+    assertEquals(404, graph.statusOf(2));
+  }
+
+  @Test
+  void addPage_whenManyEdges_compactsAsItGoes() {
+    LinkGraph graph = new LinkGraph();
+    List<URI> links = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      links.add(URI.create("https://a.com/" + i));
+    }
+    for (int page = 0; page < 2_000; page++) {
+      graph.addPage("https://a.com/page" + page, 200, links);
+    }
+
+    assertEquals(200_000, graph.edgeCount());
+    int[] inLinks = graph.inLinkCounts();
+    int id = graph.getUrls().find("https://a.com/42");
+    assertEquals(2_000, inLinks[id]);
+    assertEquals(100, graph.outLinks(graph.getUrls().find("https://a.com/page1999")).length);
+  }
+
+  @Test
+  void exports_writeTheEdgesTheRowsAndTheInLinkCounts() throws IOException {
+    LinkGraph graph = new LinkGraph();
+    graph.addPage("https://a.com", 200, links("https://a.com/x", "https://a.com/gone"));
+    graph.addPage("https://a.com/x", 200, links("https://a.com/gone"));
+    graph.addPage("https://a.com/gone", 404, List.of());
+
+    ByteArrayOutputStream edges = new ByteArrayOutputStream();
+    graph.writeEdgeList(edges);
+    ByteArrayOutputStream inLinks = new ByteArrayOutputStream();
+    graph.writeInLinkCounts(inLinks);
+    ByteArrayOutputStream csr = new ByteArrayOutputStream();
+    graph.writeCsr(csr);
+    LinkGraph read =
+        LinkGraph.readCsr(new DataInputStream(new ByteArrayInputStream(csr.toByteArray())));
+
+    assertEquals(
+        "https://a.com\thttps://a.com/x\n"
+            + "https://a.com\thttps://a.com/gone\n"
+            + "https://a.com/x\thttps://a.com/gone\n",
+        edges.toString(StandardCharsets.UTF_8));
+    assertEquals(
+        "https://a.com/gone\t404\t2\n" + "https://a.com/x\t200\t1\n" + "https://a.com\t200\t0\n",
+        inLinks.toString(StandardCharsets.UTF_8));
+    assertEquals(3, read.nodeCount());
+    assertEquals("https://a.com/gone", read.getUrls().urlOf(2));
+    assertEquals(404, read.statusOf(2));
+    assertArrayEquals(new int[] {1, 2}, read.outLinks(0));
+    assertArrayEquals(graph.inLinkCounts(), read.inLinkCounts());
+  }
+
+  @Test
+  void readCsr_whenAUrlIsLongerThan64KiB_thenItIsReadBack() throws IOException {
+    String longUrl = "https://a.com/?q=" + "\u00e9".repeat(40_000);
+    LinkGraph graph = new LinkGraph();
+    graph.addPage("https://a.com", 200, links(longUrl));
+
+    ByteArrayOutputStream csr = new ByteArrayOutputStream();
+    graph.writeCsr(csr);
+    LinkGraph read =
+        LinkGraph.readCsr(new DataInputStream(new ByteArrayInputStream(csr.toByteArray())));
+
+    assertEquals(2, read.nodeCount());
+    assertEquals(longUrl, read.getUrls().urlOf(1));
+    assertArrayEquals(new int[] {1}, read.outLinks(0));
+  }
+
+  private static List<URI> links(String... urls) {
+    List<URI> links = new ArrayList<>();
+    for (String url : urls) {
+      links.add(URI.create(url));
+    }
+    return links;
+  }
+}
@@ -0,0 +1,47 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSeenSetTest {
+
+  @Test
+  void add_whenFingerprintIsNew_thenTrueAndOnlyOnce() {
+    LongHashSeenSet seen = new LongHashSeenSet(10);
+    assertTrue(seen.add(42L));
+    assertFalse(seen.add(42L));
+    assertTrue(seen.contains(42L));
+    assertFalse(seen.contains(43L));
+    assertEquals(1, seen.size());
+  }
+
+  @Test
+  void add_whenZeroFingerprint_thenItIsStoredLikeAnyOther() {
+    LongHashSeenSet seen = new LongHashSeenSet(10);
+    assertFalse(seen.contains(0L));
+    assertTrue(seen.add(0L));
+    assertFalse(seen.add(0L));
+    assertTrue(seen.contains(0L));
+  }
+
+  @Test
+  void add_whenManyMoreThanExpected_thenTheSetGrows() {
+    LongHashSeenSet seen = new LongHashSeenSet(16);
+    SplittableRandom random = new SplittableRandom(7);
+    long[] values = new long[50_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextLong();
+      assertTrue(seen.add(values[i]));
+    }
+    for (long value : values) {
+      assertTrue(seen.contains(value));
+      assertFalse(seen.add(value));
+    }
+    assertEquals(values.length, seen.size());
+  }
+}
@@ -0,0 +1,92 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearDuplicateIndexTest {
+
+
+  @Test
+  void findOrAdd_whenWithinTheDistanceInAnyBlock_thenTheFirstPageIsReturned() {
+    NearDuplicateIndex index = new NearDuplicateIndex(3);
+    long hash = 0x0123_4567_89ab_cdefL;
+    assertNull(index.findOrAdd(hash, "https://webcrawler.com/a"));
+
+    // three bits flipped, one in each of three different blocks
+    long near = hash ^ (1L | 1L << 20 | 1L << 40);
+    assertEquals("https://webcrawler.com/a", index.findOrAdd(near, "https://webcrawler.com/b"));
+    // one bit in every block is too far
+    long far = hash ^ (1L | 1L << 20 | 1L << 40 | 1L << 60);
+    assertNull(index.findOrAdd(far, "https://webcrawler.com/c"));
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  void findOrAdd_whenManyDistinctPages_thenTheIndexGrowsAndFindsThemAll() {
+    NearDuplicateIndex index = new NearDuplicateIndex(2);
+    SplittableRandom random = new SplittableRandom(11);
+    long[] hashes = new long[5_000];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = random.nextLong();
+      assertNull(index.findOrAdd(hashes[i], "page" + i));
+    }
+    for (int i = 0; i < hashes.length; i++) {
+      assertEquals("page" + i, index.findOrAdd(hashes[i] ^ 1L << 63, "again"));
+    }
+    assertEquals(5_000, index.size());
+  }
+
+  @Test
+  void create_whenDistanceOutOfRange_thenException() {
+    assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(4));
+  }
+
+  @Test
+  void simHash_whenTextDiffersInAWord_thenTheHashesAreClose() {
+    long original = simHash(catalogue(1));
+    long variant = simHash(catalogue(2));
+    long other = simHash(timetable());
+
+    assertTrue(SimHash.distance(original, variant) <= 3, "distance to variant");
+    assertTrue(SimHash.distance(original, other) > 10, "distance to unrelated text");
+  }
+
+  @Test
+  void simHash_whenTooFewWords_thenNotEnoughFeatures() {
+    SimHash hash = new SimHash();
+    "Page not found".chars().forEach(c -> hash.accept((char) c));
+    assertFalse(hash.hasEnoughFeatures());
+  }
+
+  // a listing page, the same for every page number apart from the number itself
+  static String catalogue(int page) {
+    StringBuilder text = new StringBuilder("Summer collection, page " + page + " of 30. ");
+    for (int item = 1; item <= 60; item++) {
+      text.append("Item " + item + " is a linen shirt in size " + item % 5);
+      text.append(" and costs " + (20 + item) + " pounds. ");
+    }
+    return text.toString();
+  }
+
+  private static String timetable() {
+    StringBuilder text = new StringBuilder("Library opening hours. ");
+    for (int room = 1; room <= 60; room++) {
+      text.append("Reading room " + room + " opens at " + room % 12 + " on weekdays only. ");
+    }
+    return text.toString();
+  }
+
+  private static long simHash(String text) {
+    SimHash hash = new SimHash();
+    text.chars().forEach(c -> hash.accept((char) c));
+    assertTrue(hash.hasEnoughFeatures());
+    return hash.value();
+  }
+}
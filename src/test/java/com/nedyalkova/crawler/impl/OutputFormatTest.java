@@ -0,0 +1,164 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputFormatTest {
+
+  private static final CrawlRecord PAGE =
+      new CrawlRecord(
+          "https://webcrawler.com/a,\"b\"",
+          200,
+          1_700_000_000_000L,
+          12_345_000,
+          2_000_000,
+          500_000,
+          4096,
+          List.of(URI.create("https://webcrawler.com/x"), URI.create("https://webcrawler.com/y")));
+
+  private static byte[] write(OutputFormat format, CrawlRecord... records) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (RecordWriter writer = format.newWriter(bytes)) {
+      for (CrawlRecord record : records) {
+        writer.write(record);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  @Test
+  void ndjson_whenPageWritten_thenOneEscapedObjectPerLine() throws IOException {
+    String json = new String(write(OutputFormat.NDJSON, PAGE), StandardCharsets.UTF_8);
+
+    assertEquals(
+        "{\"url\":\"https://webcrawler.com/a,\\\"b\\\"\",\"status\":200,\"time\":1700000000000,"
+            + "\"fetchMicros\":12345,\"parseMicros\":2000,\"extractMicros\":500,\"bytes\":4096,"
+            + "\"links\":[\"https://webcrawler.com/x\",\"https://webcrawler.com/y\"]}\n",
+        json);
+  }
+
+  @Test
+  void csv_whenPageWritten_thenHeaderAndQuotedFields() throws IOException {
+    String csv = new String(write(OutputFormat.CSV, PAGE), StandardCharsets.UTF_8);
+
+    assertEquals(
+        CsvRecordWriter.HEADER
+            + "\n\"https://webcrawler.com/a,\"\"b\"\"\",200,1700000000000,12345,2000,500,4096,,2,"
+            + "https://webcrawler.com/x https://webcrawler.com/y\n",
+        csv);
+  }
+
+  @Test
+  void ndjsonAndCsv_whenPageIsANearDuplicate_thenTheOriginalIsRecorded() throws IOException {
+    CrawlRecord duplicate =
+        new CrawlRecord(
+            "https://webcrawler.com/b?sort=asc",
+            200,
+            0,
+            0,
+            0,
+            0,
+            10,
+            List.of(),
+            "https://webcrawler.com/b");
+
+    String json = new String(write(OutputFormat.NDJSON, duplicate), StandardCharsets.UTF_8);
+    String csv = new String(write(OutputFormat.CSV, duplicate), StandardCharsets.UTF_8);
+
+    assertTrue(json.contains(",\"bytes\":10,\"duplicateOf\":\"https://webcrawler.com/b\","));
+    assertTrue(csv.endsWith(",10,https://webcrawler.com/b,0,\n"));
+  }
+
+  @Test
+  void edges_whenPagesShareUrls_thenEachUrlIsWrittenOnce() throws IOException {
+    CrawlRecord x =
+        new CrawlRecord(
+            "https://webcrawler.com/x",
+            404,
+            0,
+            0,
+            0,
+            0,
+            0,
+            List.of(URI.create("https://webcrawler.com/y")));
+    DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(write(OutputFormat.EDGES, PAGE, x)));
+
+    assertEquals(EdgeListRecordWriter.MAGIC, in.readInt());
+    assertEquals(EdgeListRecordWriter.VERSION, in.readByte());
+    List<String> urls = new ArrayList<>();
+    List<List<Integer>> pages = new ArrayList<>();
+    int type;
+    while ((type = in.read()) != -1) {
+      if (type == EdgeListRecordWriter.URL) {
+        urls.add(DataStrings.read(in));
+      } else {
+        List<Integer> page = new ArrayList<>();
+        page.add(readVarint(in));
+        page.add(readVarint(in) - 1);
+        int links = readVarint(in);
+        for (int i = 0; i < links; i++) {
+          page.add(readVarint(in));
+        }
+        pages.add(page);
+      }
+    }
+
+    assertEquals(
+        List.of(PAGE.getUrl(), "https://webcrawler.com/x", "https://webcrawler.com/y"), urls);
+    assertEquals(List.of(List.of(0, 200, 1, 2), List.of(1, 404, 2)), pages);
+  }
+
+  @Test
+  void edges_whenALinkIsLongerThan64KiB_thenItIsWrittenWithTheRest() throws IOException {
+    String longUrl = "https://webcrawler.com/" + "x".repeat(70_000);
+    CrawlRecord page =
+        new CrawlRecord("https://webcrawler.com", 200, 0, 0, 0, 0, 0, List.of(URI.create(longUrl)));
+    DataInputStream in =
+        new DataInputStream(new ByteArrayInputStream(write(OutputFormat.EDGES, page, PAGE)));
+
+    in.readInt();
+    in.readByte();
+    assertEquals(EdgeListRecordWriter.URL, in.readByte());
+    assertEquals("https://webcrawler.com", DataStrings.read(in));
+    assertEquals(EdgeListRecordWriter.URL, in.readByte());
+    assertEquals(longUrl, DataStrings.read(in));
+    assertEquals(EdgeListRecordWriter.PAGE, in.readByte());
+    // page 0, status 200, one link, to url 1
+    assertEquals(0, readVarint(in));
+    assertEquals(201, readVarint(in));
+    assertEquals(1, readVarint(in));
+    assertEquals(1, readVarint(in));
+    assertEquals(EdgeListRecordWriter.URL, in.readByte());
+    assertEquals(PAGE.getUrl(), DataStrings.read(in));
+  }
+
+  @Test
+  void urls_whenPagesWritten_thenOneUrlPerLine() throws IOException {
+    assertEquals(
+        PAGE.getUrl() + "\n", new String(write(OutputFormat.URLS, PAGE), StandardCharsets.UTF_8));
+  }
+
+  private static int readVarint(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
@@ -0,0 +1,130 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityFrontierTest {
+
+  @Test
+  void poll_whenScoredByDepth_thenShallowestFirstAndTiesInArrivalOrder() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.DEPTH);
+    frontier.add(entry("/deep", 3, 0));
+    frontier.add(entry("/a", 1, 0));
+    frontier.add(entry("/mid", 2, 0));
+    frontier.add(entry("/b", 1, 0));
+
+    assertEquals(uri("/a"), frontier.peek());
+    assertEquals(uri("/a"), frontier.poll());
+    assertEquals(uri("/b"), frontier.poll());
+    FrontierEntry mid = frontier.pollEntry();
+    assertEquals(uri("/mid"), mid.getUri());
+    assertEquals(2, mid.getDepth());
+    assertEquals(uri("/deep"), frontier.poll());
+    assertNull(frontier.poll());
+    assertTrue(frontier.isEmpty());
+  }
+
+  @Test
+  void addInLink_whenScoredByInLinks_thenTheMostLinkedUrlMovesUp() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.IN_LINKS);
+    frontier.add(entry("/a", 1, 0));
+    frontier.add(entry("/b", 1, 0));
+    frontier.add(entry("/c", 1, 0));
+    frontier.addInLink(uri("/c"), 0);
+    frontier.addInLink(uri("/c"), 0);
+    frontier.addInLink(uri("/b"), 0);
+
+    assertTrue(frontier.countsInLinks());
+    assertFalse(new InMemoryFrontier().countsInLinks());
+    assertEquals(3, frontier.size());
+    assertEquals(uri("/c"), frontier.poll());
+    assertEquals(uri("/b"), frontier.poll());
+    assertEquals(uri("/a"), frontier.poll());
+    assertNull(frontier.poll());
+  }
+
+  @Test
+  void addInLink_whenScoredByOpic_thenImportanceAddsUp() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.OPIC);
+    frontier.add(entry("/a", 1, 0.5));
+    frontier.add(entry("/b", 1, 0.3));
+    frontier.addInLink(uri("/b"), 0.3);
+
+    FrontierEntry first = frontier.pollEntry();
+    assertEquals(uri("/b"), first.getUri());
+    assertEquals(0.6, first.getImportance(), 1e-9);
+    assertEquals(uri("/a"), frontier.poll());
+  }
+
+  @Test
+  void addInLink_whenTheUrlWasAlreadyPolled_thenItIsNotQueuedAgain() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.IN_LINKS);
+    frontier.add(entry("/a", 1, 0));
+    frontier.poll();
+
+    frontier.addInLink(uri("/a"), 1);
+
+    assertTrue(frontier.isEmpty());
+    assertNull(frontier.poll());
+  }
+
+  @Test
+  void poll_whenScoredByPath_thenPaginationAndQueriesComeLast() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.PATH);
+    frontier.add(entry("/blog/page/7", 1, 0));
+    frontier.add(entry("/search?q=x&sort=asc&page=2", 1, 0));
+    frontier.add(entry("/about", 1, 0));
+
+    assertEquals(uri("/about"), frontier.poll());
+    assertEquals(uri("/blog/page/7"), frontier.poll());
+    assertEquals(uri("/search?q=x&sort=asc&page=2"), frontier.poll());
+  }
+
+  @Test
+  void addInLink_whenRescoredManyTimes_thenStaleEntriesDoNotLeak() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.IN_LINKS);
+    for (int i = 0; i < 100; i++) {
+      frontier.add(entry("/p" + i, 1, 0));
+    }
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 100; i++) {
+        frontier.addInLink(uri("/p" + i), 0);
+      }
+    }
+
+    assertEquals(100, frontier.size());
+    int polled = 0;
+    while (frontier.poll() != null) {
+      polled++;
+    }
+    assertEquals(100, polled);
+  }
+
+  @Test
+  void poll_whenScoredByRecency_thenTheLatestLastmodFirstAndUnknownLast() {
+    PriorityFrontier frontier = new PriorityFrontier(ScoringMode.RECENT);
+    frontier.add(entry("/unknown", 1, 0));
+    frontier.add(new FrontierEntry(uri("/old"), 1, 0, 1_000));
+    frontier.add(new FrontierEntry(uri("/new"), 1, 0, 2_000));
+
+    FrontierEntry newest = frontier.pollEntry();
+    assertEquals(uri("/new"), newest.getUri());
+    assertEquals(2_000, newest.getLastModified());
+    assertEquals(uri("/old"), frontier.poll());
+    assertEquals(uri("/unknown"), frontier.poll());
+  }
+
+  private static FrontierEntry entry(String path, int depth, double importance) {
+    return new FrontierEntry(uri(path), depth, importance);
+  }
+
+  private static URI uri(String path) {
+    return URI.create("https://webcrawler.com" + path);
+  }
+}
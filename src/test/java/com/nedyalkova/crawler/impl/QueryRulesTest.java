@@ -0,0 +1,74 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QueryRulesTest {
+
+  private static String apply(QueryRules rules, String url) {
+    return rules.apply(UrlCanonicalizer.canonicalize(url)).getKey();
+  }
+
+  @Test
+  void apply_whenParametersAreDropped_removesThemIgnoringCase() {
+    QueryRules rules = new QueryRules().dropParameter("sid").dropParameter("utm_*");
+    assertEquals(
+        "https://webcrawler.com/p?id=3",
+        apply(rules, "https://webcrawler.com/p?SID=ab12&id=3&utm_source=x&utm_medium"));
+    assertEquals("https://webcrawler.com/p", apply(rules, "https://webcrawler.com/p?sid=ab12"));
+  }
+
+  @Test
+  void apply_whenThePathIsEmpty_stillDropsParametersAndGivesItASlash() {
+    QueryRules rules = new QueryRules().dropParameter("sid");
+    assertEquals("https://a.com/", apply(rules, "https://a.com?sid=1"));
+    assertEquals("https://a.com/?id=2", apply(rules, "https://a.com?id=2&sid=1"));
+    assertEquals("https://a.com/", apply(rules, "https://a.com"));
+    assertEquals("https://a.com/", apply(rules, "https://a.com/"));
+  }
+
+  @Test
+  void apply_whenTheQueryHasASlash_itIsNotTakenForThePath() {
+    QueryRules rules = new QueryRules().dropParameter("sid");
+    assertEquals("https://a.com/?next=/p/q", apply(rules, "https://a.com?next=/p/q&sid=1"));
+    assertEquals(
+        "https://a.com/p;v=2?next=/a;b",
+        apply(rules, "https://a.com/p;v=2?next=/a;b&sid=1"));
+  }
+
+  @Test
+  void apply_whenSessionIdIsAPathParameter_removesIt() {
+    QueryRules rules = QueryRules.defaults();
+    assertEquals(
+        "https://webcrawler.com/shop/item;v=2?id=3",
+        apply(rules, "https://webcrawler.com/shop/item;jsessionid=0AF3;v=2?id=3"));
+  }
+
+  @Test
+  void apply_whenSorting_keepsTheOrderOfRepeatedNames() {
+    QueryRules rules = new QueryRules().sortParameters(true);
+    assertEquals(
+        "https://webcrawler.com/s?a=2&b=1&tag=y&tag=x",
+        apply(rules, "https://webcrawler.com/s?tag=y&b=1&tag=x&a=2"));
+  }
+
+  @Test
+  void apply_whenNothingChanges_returnsTheSameUrlWithItsFingerprint() {
+    CanonicalUrl url = UrlCanonicalizer.canonicalize("https://webcrawler.com/s?a=1&b=2");
+    assertSame(url, QueryRules.defaults().apply(url));
+
+    CanonicalUrl rewritten =
+        QueryRules.defaults()
+            .apply(UrlCanonicalizer.canonicalize("https://webcrawler.com/s?b=2&a=1"));
+    assertEquals(url, rewritten);
+    assertEquals(URLUtils.fingerprint(rewritten.getKey()), rewritten.getHash());
+  }
+
+  @Test
+  void dropParameter_whenNameIsMissing_thenRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new QueryRules().dropParameter("*"));
+  }
+}
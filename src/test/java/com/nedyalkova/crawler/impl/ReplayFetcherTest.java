@@ -0,0 +1,134 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayFetcherTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void fetch_returnsWhatWasRecordedAcrossFiles() throws Exception {
+    // a tiny file size puts every response in a file of its own
+    record(new WarcWriter(dir, "test", 1), "/a", "/b", "/c");
+
+    try (Stream<Path> files = Files.list(dir)) {
+      assertEquals(3, files.count());
+    }
+    try (ReplayFetcher replay = new ReplayFetcher(dir)) {
+      assertEquals(3, replay.size());
+      for (String path : List.of("/a", "/b", "/c")) {
+        try (FetchResponse response = get(replay, "http://webcrawler.com" + path)) {
+          assertEquals(200, response.getStatusCode());
+          assertEquals("text/html; charset=UTF-8", response.header("Content-Type"));
+          assertEquals(page(path), body(response));
+        }
+      }
+    }
+  }
+
+  @Test
+  void fetch_whenTheRequestWasRedirected_answersForBothUrls() throws Exception {
+    record(new WarcWriter(dir, "test", 1 << 20), "/moved");
+
+    try (ReplayFetcher replay = new ReplayFetcher(dir)) {
+      try (FetchResponse response = get(replay, "http://webcrawler.com/moved")) {
+        assertEquals(URI.create("http://webcrawler.com/moved/index"), response.getUri());
+        assertEquals(page("/moved"), body(response));
+      }
+      try (FetchResponse response = get(replay, "http://webcrawler.com/moved/index")) {
+        assertEquals(page("/moved"), body(response));
+      }
+    }
+  }
+
+  @Test
+  void fetch_whenTheUrlWasNotRecorded_answersNotFound() throws Exception {
+    record(new WarcWriter(dir, "test", 1 << 20), "/a");
+
+    try (ReplayFetcher replay = new ReplayFetcher(dir);
+        FetchResponse response = get(replay, "http://webcrawler.com/other")) {
+      assertEquals(404, response.getStatusCode());
+      assertEquals("", body(response));
+    }
+  }
+
+  @Test
+  void fetch_whenABodyWasNotReadToTheEnd_replaysWhatWasRead() throws Exception {
+    WarcRecordingFetcher recording =
+        new WarcRecordingFetcher(stubFetcher(), new WarcWriter(dir, "test", 1 << 20), 4);
+    try (FetchResponse response = get(recording, "http://webcrawler.com/a")) {
+      assertEquals(6, response.getBody().read(new byte[6]));
+    }
+    recording.close();
+
+    try (ReplayFetcher replay = new ReplayFetcher(dir);
+        FetchResponse response = get(replay, "http://webcrawler.com/a")) {
+      assertEquals(page("/a").substring(0, 6), body(response));
+    }
+    try (Stream<Path> files = Files.list(dir)) {
+      Path file = files.findFirst().orElseThrow();
+      try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+        String warc = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(warc.contains("WARC-Truncated: unspecified"));
+      }
+    }
+  }
+
+  private void record(WarcWriter writer, String... paths) throws Exception {
+    WarcRecordingFetcher recording = new WarcRecordingFetcher(stubFetcher(), writer, 1);
+    for (String path : paths) {
+      try (FetchResponse response = get(recording, "http://webcrawler.com" + path)) {
+        body(response);
+      }
+    }
+    recording.close();
+    assertEquals(paths.length, recording.getRecorded());
+  }
+
+  // /moved redirects to /moved/index, every other path answers with a page naming it
+  private static PageFetcher stubFetcher() {
+    return request -> {
+      URI uri = request.getUri();
+      URI served = uri.getPath().equals("/moved") ? uri.resolve("/moved/index") : uri;
+      return CompletableFuture.completedFuture(
+          new FetchResponse(
+              served,
+              200,
+              Map.of(
+                  "Content-Type", List.of("text/html; charset=UTF-8"),
+                  "Content-Encoding", List.of("gzip")),
+              new ByteArrayInputStream(page(uri.getPath()).getBytes(StandardCharsets.UTF_8))));
+    };
+  }
+
+  private static String page(String path) {
+    return "<html><body><a href=\"" + path + "/next\">next</a></body></html>";
+  }
+
+  private static FetchResponse get(PageFetcher fetcher, String url)
+      throws ExecutionException, InterruptedException {
+    return fetcher.fetch(new FetchRequest(URI.create(url))).get();
+  }
+
+  private static String body(FetchResponse response) throws IOException {
+    return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,89 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsCacheTest {
+
+  private static final URI PAGE = URI.create("https://webcrawler.com/page");
+
+  @Test
+  void get_whenRobotsTxtIsMissing_everythingIsAllowedUntilItExpires() {
+    AtomicInteger fetches = new AtomicInteger();
+    RobotsCache cache = new RobotsCache(respond(fetches, 404), Duration.ofHours(1), Duration.ZERO);
+
+    assertSame(RobotsTxt.ALLOW_ALL, cache.get(PAGE));
+    assertSame(RobotsTxt.ALLOW_ALL, cache.get(PAGE));
+    assertEquals(1, fetches.get());
+  }
+
+  @Test
+  void get_whenTheHostErrors_nothingIsAllowedAndItIsAskedAgainSoon() throws Exception {
+    AtomicInteger fetches = new AtomicInteger();
+    RobotsCache cache =
+        new RobotsCache(respond(fetches, 503), Duration.ofHours(1), Duration.ofMillis(50));
+
+    assertFalse(cache.get(PAGE).isAllowed("/page"));
+    assertFalse(cache.get(PAGE).isAllowed("/page"));
+    assertEquals(1, fetches.get());
+    Thread.sleep(100);
+    cache.get(PAGE);
+    assertEquals(2, fetches.get());
+  }
+
+  @Test
+  void get_whenTheFetchFails_nothingIsAllowed() {
+    RobotsCache cache =
+        new RobotsCache(
+            request -> CompletableFuture.failedFuture(new IOException("connection reset")));
+
+    assertSame(RobotsTxt.DISALLOW_ALL, cache.get(PAGE));
+  }
+
+  @Test
+  void get_whenInterrupted_theResultIsNotKept() {
+    AtomicInteger fetches = new AtomicInteger();
+    RobotsCache cache =
+        new RobotsCache(
+            request ->
+                fetches.incrementAndGet() == 1
+                    ? new CompletableFuture<>()
+                    : CompletableFuture.completedFuture(
+                        response(request.getUri(), 200, "User-agent: *\nDisallow: /private\n")),
+            Duration.ofHours(1),
+            Duration.ofHours(1));
+
+    Thread.currentThread().interrupt();
+    assertFalse(cache.get(PAGE).isAllowed("/page"));
+    assertTrue(Thread.interrupted());
+
+    assertTrue(cache.get(PAGE).isAllowed("/page"));
+    assertEquals(2, fetches.get());
+  }
+
+  private static PageFetcher respond(AtomicInteger fetches, int status) {
+    return request -> {
+      fetches.incrementAndGet();
+      return CompletableFuture.completedFuture(response(request.getUri(), status, ""));
+    };
+  }
+
+  private static FetchResponse response(URI uri, int status, String body) {
+    InputStream content = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    return new FetchResponse(uri, status, Map.of(), content);
+  }
+}
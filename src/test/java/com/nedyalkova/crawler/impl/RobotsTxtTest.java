@@ -0,0 +1,76 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsTxtTest {
+
+  @Test
+  void isAllowed_whenNoRules_thenEverythingIsAllowed() {
+    assertTrue(RobotsTxt.ALLOW_ALL.isAllowed("/anything"));
+    assertTrue(RobotsTxt.parse("", "SimpleWebCrawler").isAllowed("/"));
+  }
+
+  @Test
+  void isAllowed_whenOwnGroupExists_thenWildcardGroupIsIgnored() {
+    String content =
+        "User-agent: *\n"
+            + "Disallow: /\n"
+            + "\n"
+            + "User-agent: SimpleWebCrawler\n"
+            + "Disallow: /private\n";
+    RobotsTxt robots = RobotsTxt.parse(content, "SimpleWebCrawler");
+    assertTrue(robots.isAllowed("/public"));
+    assertFalse(robots.isAllowed("/private/page"));
+  }
+
+  @Test
+  void isAllowed_whenAllowAndDisallowOverlap_thenLongestMatchWins() {
+    String content = "User-agent: *\nDisallow: /shop\nAllow: /shop/items\n";
+    RobotsTxt robots = RobotsTxt.parse(content, "SimpleWebCrawler");
+    assertFalse(robots.isAllowed("/shop/cart"));
+    assertTrue(robots.isAllowed("/shop/items/1"));
+  }
+
+  @Test
+  @Timeout(5)
+  void isAllowed_whenManyWildcardsAndALongPath_thenItAnswersQuickly() {
+    String content = "User-agent: *\nDisallow: /*a*a*a*a*a*a*b$\nDisallow: /*x*y*z\n";
+    RobotsTxt robots = RobotsTxt.parse(content, "SimpleWebCrawler");
+    String path = "/" + "a".repeat(5_000);
+    assertTrue(robots.isAllowed(path));
+    assertFalse(robots.isAllowed(path + "b"));
+    assertFalse(robots.isAllowed("/" + "x".repeat(5_000) + "y" + "z".repeat(10) + "tail"));
+  }
+
+  @Test
+  void isAllowed_whenWildcardsUsed_thenTheyMatch() {
+    String content = "User-agent: *\nDisallow: /*?sessionid=\nDisallow: /*.pdf$\n";
+    RobotsTxt robots = RobotsTxt.parse(content, "SimpleWebCrawler");
+    assertFalse(robots.isAllowed("/page?sessionid=1"));
+    assertFalse(robots.isAllowed("/docs/file.pdf"));
+    assertTrue(robots.isAllowed("/docs/file.pdf?download=1"));
+    assertTrue(robots.isAllowed("/page?id=1"));
+  }
+
+  @Test
+  void parse_whenCrawlDelayAndSitemapsPresent_thenTheyAreExposed() {
+    String content =
+        "# comment\n"
+            + "User-agent: *\n"
+            + "Crawl-delay: 1.5\n"
+            + "Sitemap: https://webcrawler.com/sitemap.xml\n";
+    RobotsTxt robots = RobotsTxt.parse(content, "SimpleWebCrawler");
+    assertEquals(Duration.ofMillis(1500), robots.getCrawlDelay());
+    assertEquals(List.of("https://webcrawler.com/sitemap.xml"), robots.getSitemaps());
+    assertNull(RobotsTxt.ALLOW_ALL.getCrawlDelay());
+  }
+}
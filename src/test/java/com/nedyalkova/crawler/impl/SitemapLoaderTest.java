@@ -0,0 +1,140 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SitemapLoaderTest {
+
+  @Test
+  void load_whenIndexesNestAndLoop_eachSitemapIsReadOnce() throws InterruptedException {
+    Map<String, String> site =
+        Map.of(
+            "/sitemap.xml", index("/sitemap.xml", "/nested.xml", "/pages.xml"),
+            "/nested.xml", index("/sitemap.xml", "/pages.xml", "/more.xml"),
+            "/pages.xml", urlset("/a", "/b"),
+            "/more.xml", urlset("/c"));
+    List<String> fetched = new ArrayList<>();
+    List<String> urls = new ArrayList<>();
+
+    long loaded =
+        new SitemapLoader(siteFetcher(site, fetched), unpaced())
+            .load(
+                List.of(URI.create("https://webcrawler.com/sitemap.xml")),
+                (loc, lastModified) -> urls.add(loc));
+
+    assertEquals(3, loaded);
+    assertEquals(
+        List.of(
+            "https://webcrawler.com/a", "https://webcrawler.com/b", "https://webcrawler.com/c"),
+        urls);
+    assertEquals(List.of("/sitemap.xml", "/nested.xml", "/pages.xml", "/more.xml"), fetched);
+  }
+
+  @Test
+  void load_whenSitemapsAreMissingOrLimited_theRestIsStillRead() throws InterruptedException {
+    Map<String, String> site =
+        Map.of(
+            "/sitemap.xml", index("/one.xml", "/two.xml", "/three.xml"),
+            "/one.xml", urlset("/a"),
+            "/two.xml", urlset("/b"),
+            "/three.xml", urlset("/c"));
+    List<String> fetched = new ArrayList<>();
+
+    long loaded =
+        new SitemapLoader(siteFetcher(site, fetched), unpaced(), 3)
+            .load(
+                List.of(
+                    URI.create("https://webcrawler.com/gone.xml"),
+                    URI.create("https://webcrawler.com/sitemap.xml")),
+                (loc, lastModified) -> {});
+
+    assertEquals(1, loaded);
+    assertEquals(List.of("/gone.xml", "/sitemap.xml", "/one.xml"), fetched);
+  }
+
+  @Test
+  void load_whenRobotsTxtDisallowsASitemap_itIsNotFetched() throws InterruptedException {
+    Map<String, String> site =
+        Map.of(
+            "/robots.txt", "User-agent: *\nDisallow: /private/",
+            "/sitemap.xml", index("/private/hidden.xml", "/pages.xml"),
+            "/private/hidden.xml", urlset("/hidden"),
+            "/pages.xml", urlset("/a"));
+    List<String> fetched = new ArrayList<>();
+    PageFetcher pageFetcher = siteFetcher(site, fetched);
+    PolitenessScheduler politeness =
+        new PolitenessScheduler(
+            new CrawlerConfig().initialHostRate(1000).maxHostRate(1000),
+            new RobotsCache(pageFetcher));
+
+    long loaded =
+        new SitemapLoader(pageFetcher, politeness)
+            .load(List.of(URI.create("https://webcrawler.com/sitemap.xml")), (loc, time) -> {});
+
+    assertEquals(1, loaded);
+    assertEquals(List.of("/robots.txt", "/sitemap.xml", "/pages.xml"), fetched);
+    assertTrue(politeness.currentRate("webcrawler.com") > 0);
+  }
+
+  @Test
+  void locationsFor_includesRobotsSitemapsAndTheDefault() {
+    RobotsTxt robots =
+        RobotsTxt.parse(
+            "Sitemap: https://webcrawler.com/news.xml\nSitemap: /relative.xml.gz", "Crawler");
+
+    assertEquals(
+        Set.of(
+            URI.create("https://webcrawler.com/news.xml"),
+            URI.create("https://webcrawler.com/relative.xml.gz"),
+            URI.create("https://webcrawler.com/sitemap.xml")),
+        Set.copyOf(
+            SitemapLoader.locationsFor(URI.create("https://webcrawler.com"), robots)));
+  }
+
+  private static PolitenessScheduler unpaced() {
+    return new PolitenessScheduler(
+        new CrawlerConfig().initialHostRate(1000).maxHostRate(1000), null);
+  }
+
+  static PageFetcher siteFetcher(Map<String, String> site, List<String> fetched) {
+    return request -> {
+      String path = request.getUri().getPath();
+      fetched.add(path);
+      String body = site.get(path);
+      return CompletableFuture.completedFuture(
+          new FetchResponse(
+              request.getUri(),
+              body == null ? 404 : 200,
+              Map.of(),
+              new ByteArrayInputStream(
+                  (body == null ? "" : body).getBytes(StandardCharsets.UTF_8))));
+    };
+  }
+
+  static String urlset(String... paths) {
+    StringBuilder xml = new StringBuilder("<urlset>");
+    for (String path : paths) {
+      xml.append("<url><loc>https://webcrawler.com").append(path).append("</loc></url>");
+    }
+    return xml.append("</urlset>").toString();
+  }
+
+  private static String index(String... paths) {
+    StringBuilder xml = new StringBuilder("<sitemapindex>");
+    for (String path : paths) {
+      xml.append("<sitemap><loc>https://webcrawler.com").append(path).append("</loc></sitemap>");
+    }
+    return xml.append("</sitemapindex>").toString();
+  }
+}
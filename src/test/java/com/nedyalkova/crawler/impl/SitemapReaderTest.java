@@ -0,0 +1,172 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SitemapReaderTest {
+
+  static final String URLSET =
+      "<?xml version='1.0' encoding='UTF-8'?>"
+          + "<urlset xmlns='http://www.sitemaps.org/schemas/sitemap/0.9'>"
+          + "<url><loc> https://webcrawler.com/a </loc><lastmod>2024-05-01</lastmod>"
+          + "<priority>0.8</priority></url>"
+          + "<url><loc>https://webcrawler.com/b</loc></url>"
+          + "<url><loc>https://webcrawler.com/c</loc>"
+          + "<lastmod>2024-05-02T10:30:00+02:00</lastmod></url>"
+          + "</urlset>";
+
+  @Test
+  void read_whenUrlset_reportsEveryUrlWithItsLastmod() throws IOException {
+    List<String> urls = read(URLSET.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(
+        List.of(
+            "https://webcrawler.com/a@" + Instant.parse("2024-05-01T00:00:00Z").toEpochMilli(),
+            "https://webcrawler.com/b@0",
+            "https://webcrawler.com/c@" + Instant.parse("2024-05-02T08:30:00Z").toEpochMilli()),
+        urls);
+  }
+
+  @Test
+  void read_whenSitemapIndex_reportsTheChildSitemaps() throws IOException {
+    String index =
+        "<sitemapindex xmlns='http://www.sitemaps.org/schemas/sitemap/0.9'>"
+            + "<sitemap><loc>https://webcrawler.com/s1.xml.gz</loc>"
+            + "<lastmod>2024-01-01</lastmod></sitemap>"
+            + "<sitemap><loc>https://webcrawler.com/s2.xml</loc></sitemap>"
+            + "</sitemapindex>";
+
+    assertEquals(
+        List.of(
+            "sitemap https://webcrawler.com/s1.xml.gz", "sitemap https://webcrawler.com/s2.xml"),
+        read(index.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void read_whenGzipped_isDecompressed() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(URLSET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertEquals(3, read(compressed.toByteArray()).size());
+  }
+
+  @Test
+  void read_whenExternalEntityIsDeclared_itIsNotResolved() {
+    String hostile =
+        "<?xml version='1.0'?><!DOCTYPE urlset [<!ENTITY x SYSTEM 'file:///etc/passwd'>]>"
+            + "<urlset><url><loc>&x;</loc></url></urlset>";
+
+    assertThrows(IOException.class, () -> read(hostile.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void read_whenUrlHasImages_reportsThePageAndNotTheImages() throws IOException {
+    String images =
+        "<urlset xmlns='http://www.sitemaps.org/schemas/sitemap/0.9'"
+            + " xmlns:image='http://www.google.com/schemas/sitemap-image/1.1'>"
+            + "<url><loc>https://webcrawler.com/a</loc>"
+            + "<image:image><image:loc>https://cdn.webcrawler.com/a.jpg</image:loc></image:image>"
+            + "</url>"
+            + "<url><image:image><image:loc>https://cdn.webcrawler.com/b.jpg</image:loc>"
+            + "</image:image><loc>https://webcrawler.com/b</loc><lastmod>2024</lastmod></url>"
+            + "</urlset>";
+
+    assertEquals(
+        List.of(
+            "https://webcrawler.com/a@0",
+            "https://webcrawler.com/b@" + Instant.parse("2024-01-01T00:00:00Z").toEpochMilli()),
+        read(images.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void read_whenOverTheEntryLimit_theFirstEntriesAreReportedBeforeTheError() {
+    List<String> reported = new ArrayList<>();
+    SitemapReader reader =
+        new SitemapReader(
+            new ByteArrayInputStream(URLSET.getBytes(StandardCharsets.UTF_8)),
+            (loc, lastModified) -> reported.add(loc),
+            SitemapReader.MAX_BYTES,
+            2);
+
+    assertThrows(IOException.class, reader::read);
+    assertEquals(List.of("https://webcrawler.com/a", "https://webcrawler.com/b"), reported);
+  }
+
+  @Test
+  void read_whenGzipUnpacksPastTheByteLimit_itStopsThere() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      String head = "<urlset><url><loc>https://webcrawler.com/a</loc></url>";
+      gzip.write(head.getBytes(StandardCharsets.UTF_8));
+      byte[] padding = new byte[1 << 20];
+      Arrays.fill(padding, (byte) ' ');
+      for (int i = 0; i < 8; i++) {
+        gzip.write(padding);
+      }
+      gzip.write("</urlset>".getBytes(StandardCharsets.UTF_8));
+    }
+    List<String> reported = new ArrayList<>();
+    SitemapReader reader =
+        new SitemapReader(
+            new ByteArrayInputStream(compressed.toByteArray()),
+            (loc, lastModified) -> reported.add(loc),
+            1 << 20,
+            SitemapReader.MAX_ENTRIES);
+
+    IOException e = assertThrows(IOException.class, reader::read);
+    assertTrue(e.getMessage().contains("larger than"));
+    assertEquals(List.of("https://webcrawler.com/a"), reported);
+  }
+
+  @Test
+  void parseLastModified_acceptsEveryW3cPrecisionAndIgnoresTheRest() {
+    assertEquals(
+        Instant.parse("2024-01-01T00:00:00Z").toEpochMilli(),
+        SitemapReader.parseLastModified("2024"));
+    assertEquals(
+        Instant.parse("2024-03-01T00:00:00Z").toEpochMilli(),
+        SitemapReader.parseLastModified("2024-03"));
+    assertEquals(
+        Instant.parse("2024-03-05T12:00:00.500Z").toEpochMilli(),
+        SitemapReader.parseLastModified("2024-03-05T12:00:00.5Z"));
+    assertEquals(
+        Instant.parse("2024-03-05T12:00:00Z").toEpochMilli(),
+        SitemapReader.parseLastModified("2024-03-05T12:00Z"));
+    assertEquals(0, SitemapReader.parseLastModified("yesterday"));
+  }
+
+  private static List<String> read(byte[] sitemap) throws IOException {
+    List<String> reported = new ArrayList<>();
+    new SitemapReader(
+            new ByteArrayInputStream(sitemap),
+            new SitemapReader.Listener() {
+              @Override
+              public void onUrl(String loc, long lastModified) {
+                reported.add(loc + "@" + lastModified);
+              }
+
+              @Override
+              public void onSitemap(String loc) {
+                reported.add("sitemap " + loc);
+              }
+            })
+        .read();
+    assertTrue(reported.stream().noneMatch(String::isBlank));
+    return reported;
+  }
+}
@@ -0,0 +1,287 @@
+package com.nedyalkova.crawler.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// a site served from the loopback interface whose pages are generated from their number and the
+// seed, so it can have millions of pages without keeping any of them. Page i is /p/i and links
+// to page i + 1 first, so every page can be reached from /p/0, then to fanOut - 1 others; a
+// local link stays within linkWindow pages of i, any other goes anywhere on the site.
+//   /copy/i      the same page as /p/i under another url
+//   /calendar/i  a trap that only links to /calendar/i+1
+// Pages that fail answer 500 every time. Latencies are log-normal with the given median and p99
+public class SyntheticSite implements AutoCloseable {
+
+  static final String PAGE = "/p/";
+  static final String COPY = "/copy/";
+  static final String CALENDAR = "/calendar/";
+  // the z score of the 99th percentile of a standard normal distribution
+  private static final double Z_99 = 2.326;
+  private static final String[] WORDS = {
+    "crawler", "frontier", "harbour", "lantern", "meadow", "orchid", "pepper", "quartz",
+    "ribbon", "saddle", "timber", "velvet", "walnut", "yonder", "zephyr", "anchor",
+    "beacon", "cobalt", "dagger", "ember", "falcon", "garnet", "hollow", "ivory",
+    "jasper", "kettle", "lumber", "marble", "nectar", "oyster", "pillar", "quiver"
+  };
+
+  private int pages = 1000;
+  private int fanOut = 10;
+  private double locality = 0.8;
+  private int linkWindow = 100;
+  private double duplicateRate;
+  private double trapRate;
+  private double errorRate;
+  private long medianLatencyMicros;
+  private long p99LatencyMicros;
+  private int threads = 8;
+  private long seed = 42;
+
+  private HttpServer server;
+  private ExecutorService handlers;
+  private ScheduledExecutorService delays;
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+
+  public SyntheticSite pages(int pages) {
+    if (pages < 1) {
+      throw new IllegalArgumentException("pages must be at least 1");
+    }
+    this.pages = pages;
+    return this;
+  }
+
+  // links on each page, the first of them to the next page
+  public SyntheticSite fanOut(int fanOut) {
+    if (fanOut < 1) {
+      throw new IllegalArgumentException("fanOut must be at least 1");
+    }
+    this.fanOut = fanOut;
+    return this;
+  }
+
+  // the share of links that stay within linkWindow pages of the page they are on
+  public SyntheticSite locality(double locality, int linkWindow) {
+    if (locality < 0 || locality > 1 || linkWindow < 1) {
+      throw new IllegalArgumentException("locality must be within [0, 1] and linkWindow positive");
+    }
+    this.locality = locality;
+    this.linkWindow = linkWindow;
+    return this;
+  }
+
+  // the share of links that point at a /copy/ of their page
+  public SyntheticSite duplicateRate(double duplicateRate) {
+    this.duplicateRate = checkRate(duplicateRate, "duplicateRate");
+    return this;
+  }
+
+  // the share of pages that link into the calendar trap
+  public SyntheticSite trapRate(double trapRate) {
+    this.trapRate = checkRate(trapRate, "trapRate");
+    return this;
+  }
+
+  // the share of pages that answer 500
+  public SyntheticSite errorRate(double errorRate) {
+    this.errorRate = checkRate(errorRate, "errorRate");
+    return this;
+  }
+
+  public SyntheticSite latency(long medianMicros, long p99Micros) {
+    if (medianMicros < 0 || p99Micros < medianMicros) {
+      throw new IllegalArgumentException("latency must have 0 <= median <= p99");
+    }
+    this.medianLatencyMicros = medianMicros;
+    this.p99LatencyMicros = p99Micros;
+    return this;
+  }
+
+  public SyntheticSite threads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    this.threads = threads;
+    return this;
+  }
+
+  public SyntheticSite seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public synchronized SyntheticSite start() throws IOException {
+    if (server != null) {
+      return this;
+    }
+    handlers = Executors.newFixedThreadPool(threads);
+    delays = Executors.newSingleThreadScheduledExecutor();
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+    server.setExecutor(handlers);
+    server.createContext("/", this::handle);
+    server.start();
+    return this;
+  }
+
+  public String url(String path) {
+    return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+        + path;
+  }
+
+  public int getPages() {
+    return pages;
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  // the pages that answer 500, which a full crawl from /p/0 cannot fetch
+  public int failingPages() {
+    int failing = 0;
+    for (int i = 0; i < pages; i++) {
+      if (fails(i)) {
+        failing++;
+      }
+    }
+    return failing;
+  }
+
+  public boolean fails(int page) {
+    return errorRate > 0 && random(page).nextDouble() < errorRate;
+  }
+
+  // the html of /p/i and /copy/i, the same for the same seed
+  public String page(int page) {
+    SplittableRandom random = random(page);
+    // drawn first so it matches fails()
+    random.nextDouble();
+    StringBuilder html = new StringBuilder(256 + fanOut * 32);
+    html.append("<html><head><title>Page ").append(page).append("</title></head><body><p>");
+    for (int i = 0; i < 40; i++) {
+      html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    html.append(page).append("</p>\n");
+    link(html, PAGE, (page + 1) % pages);
+    for (int i = 1; i < fanOut; i++) {
+      int target;
+      if (random.nextDouble() < locality) {
+        target = Math.floorMod(page + random.nextInt(-linkWindow, linkWindow + 1), pages);
+      } else {
+        target = random.nextInt(pages);
+      }
+      link(html, random.nextDouble() < duplicateRate ? COPY : PAGE, target);
+    }
+    if (random.nextDouble() < trapRate) {
+      link(html, CALENDAR, page);
+    }
+    return html.append("</body></html>").toString();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (server == null) {
+      return;
+    }
+    server.stop(0);
+    delays.shutdownNow();
+    handlers.shutdownNow();
+    server = null;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.increment();
+    String path = exchange.getRequestURI().getPath();
+    int status = 200;
+    String body = "";
+    try {
+      if (path.startsWith(PAGE) || path.startsWith(COPY)) {
+        int page = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+        if (page < 0 || page >= pages) {
+          status = 404;
+        } else if (fails(page)) {
+          status = 500;
+        } else {
+          body = page(page);
+        }
+      } else if (path.startsWith(CALENDAR)) {
+        long day = Long.parseLong(path.substring(CALENDAR.length()));
+        body = "<html><body><a href=\"" + CALENDAR + (day + 1) + "\">next day</a></body></html>";
+      } else {
+        status = 404;
+      }
+    } catch (NumberFormatException e) {
+      status = 404;
+    }
+    if (status >= 500) {
+      errors.increment();
+    }
+    long delay = latencyMicros();
+    int code = status;
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    if (delay == 0) {
+      respond(exchange, code, bytes);
+    } else {
+      // the handler thread is let go, so a slow response does not hold it
+      delays.schedule(() -> respond(exchange, code, bytes), delay, TimeUnit.MICROSECONDS);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body) {
+    try (exchange) {
+      exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+      exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+      if (body.length > 0) {
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    } catch (IOException e) {
+      // the crawler gave up on the request
+    }
+  }
+
+  private long latencyMicros() {
+    if (p99LatencyMicros == 0) {
+      return 0;
+    }
+    if (medianLatencyMicros == 0 || p99LatencyMicros == medianLatencyMicros) {
+      return medianLatencyMicros;
+    }
+    double sigma = Math.log((double) p99LatencyMicros / medianLatencyMicros) / Z_99;
+    double gaussian = ThreadLocalRandom.current().nextGaussian();
+    return (long) (medianLatencyMicros * Math.exp(sigma * gaussian));
+  }
+
+  private SplittableRandom random(int page) {
+    return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + page);
+  }
+
+  private static void link(StringBuilder html, String prefix, int target) {
+    html.append("<a href=\"").append(prefix).append(target).append("\">")
+        .append(target).append("</a>\n");
+  }
+
+  private static double checkRate(double rate, String name) {
+    if (rate < 0 || rate > 1) {
+      throw new IllegalArgumentException(name + " must be within [0, 1]");
+    }
+    return rate;
+  }
+}
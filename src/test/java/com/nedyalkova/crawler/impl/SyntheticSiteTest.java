@@ -0,0 +1,98 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyntheticSiteTest {
+
+  @Test
+  void page_isTheSameForTheSameSeed() {
+    SyntheticSite site = new SyntheticSite().pages(1_000_000).fanOut(20);
+
+    assertEquals(site.page(123_456), new SyntheticSite().pages(1_000_000).fanOut(20).page(123_456));
+    assertNotEquals(site.page(123_456), new SyntheticSite().pages(1_000_000).seed(7).page(123_456));
+    assertTrue(site.page(999_999).contains("href=\"/p/0\""));
+  }
+
+  @Test
+  void page_whenLinksAreLocal_theyStayWithinTheWindow() {
+    SyntheticSite site = new SyntheticSite().pages(10_000).fanOut(50).locality(1, 5);
+    String html = site.page(5_000);
+
+    for (int target = 0; target < 10_000; target++) {
+      boolean near = Math.abs(target - 5_000) <= 5 || target == 5_001;
+      if (!near) {
+        assertFalse(html.contains("\"/p/" + target + "\""), "links to " + target);
+      }
+    }
+  }
+
+  @Test
+  void page_whenEveryLinkIsACopyOrTrap_theyAreGenerated() {
+    SyntheticSite site = new SyntheticSite().fanOut(5).duplicateRate(1).trapRate(1);
+    String html = site.page(3);
+
+    assertTrue(html.contains("href=\"/p/4\""));
+    assertTrue(html.contains("href=\"/copy/"));
+    assertTrue(html.contains("href=\"/calendar/3\""));
+  }
+
+  @Test
+  void serve_answersPagesCopiesTrapsAndErrors() throws Exception {
+    try (SyntheticSite site = new SyntheticSite().pages(100).errorRate(0.5).start();
+        HttpClientFetcher fetcher = new HttpClientFetcher()) {
+      int ok = 0;
+      int failing = 0;
+      for (int page = 0; page < 100; page++) {
+        if (site.fails(page)) {
+          failing++;
+          continue;
+        }
+        ok = page;
+      }
+      assertEquals(site.failingPages(), failing);
+      assertTrue(failing > 20 && failing < 80);
+
+      assertEquals(site.page(ok), fetch(fetcher, site.url("/p/" + ok)));
+      assertEquals(site.page(ok), fetch(fetcher, site.url("/copy/" + ok)));
+      assertTrue(fetch(fetcher, site.url("/calendar/9")).contains("/calendar/10"));
+      int bad = 0;
+      while (!site.fails(bad)) {
+        bad++;
+      }
+      assertEquals(500, status(fetcher, site.url("/p/" + bad)));
+      assertEquals(404, status(fetcher, site.url("/p/100")));
+      assertEquals(1, site.getErrors());
+    }
+  }
+
+  @Test
+  void serve_whenLatencyIsSet_responsesAreDelayed() throws Exception {
+    try (SyntheticSite site = new SyntheticSite().latency(50_000, 50_000).start();
+        HttpClientFetcher fetcher = new HttpClientFetcher()) {
+      long start = System.nanoTime();
+      status(fetcher, site.url("/p/1"));
+
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+  }
+
+  private static String fetch(PageFetcher fetcher, String url) throws Exception {
+    try (FetchResponse response = fetcher.fetch(new FetchRequest(URI.create(url))).get()) {
+      return new String(response.getBody().readAllBytes());
+    }
+  }
+
+  private static int status(PageFetcher fetcher, String url) throws Exception {
+    try (FetchResponse response = fetcher.fetch(new FetchRequest(URI.create(url))).get()) {
+      return response.getStatusCode();
+    }
+  }
+}
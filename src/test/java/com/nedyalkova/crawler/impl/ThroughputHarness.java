@@ -0,0 +1,155 @@
+package com.nedyalkova.crawler.impl;
+
+import com.nedyalkova.crawler.exception.UrlInvalidException;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+// crawls a SyntheticSite end to end over real sockets and reports what it cost. Run it with
+//   mvn test-compile exec:java@throughput -Dthroughput.args="--pages=1000000 --latency-ms=5,50"
+// and give --min-pages-per-sec to fail the run below a floor
+public class ThroughputHarness {
+
+  public record Report(
+      long pages,
+      long errors,
+      double seconds,
+      double fetchP50Millis,
+      double fetchP99Millis,
+      long peakHeapBytes,
+      long gcMillis) {
+
+    public double pagesPerSecond() {
+      return seconds == 0 ? 0 : pages / seconds;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "%d pages (%d errors) in %.1fs: %.0f pages/s, fetch p50 %.1fms p99 %.1fms, "
+              + "peak heap %d MiB, gc %d ms",
+          pages,
+          errors,
+          seconds,
+          pagesPerSecond(),
+          fetchP50Millis,
+          fetchP99Millis,
+          peakHeapBytes >> 20,
+          gcMillis);
+    }
+  }
+
+  // crawls the started site from /p/0; the config should not slow the crawler down on purpose,
+  // see configFor()
+  public static Report run(SyntheticSite site, CrawlerConfig config)
+      throws URISyntaxException, UrlInvalidException {
+    WebCrawler crawler = new WebCrawler(site.url(SyntheticSite.PAGE + 0), config);
+    System.gc();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+    long gcBefore = gcMillis();
+    long start = System.nanoTime();
+    crawler.crawl();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long peakHeap = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+    }
+    CrawlMetrics metrics = crawler.getMetrics();
+    return new Report(
+        metrics.getPagesFetched(),
+        metrics.getNon200Responses() + metrics.getIoErrors(),
+        seconds,
+        metrics.getFetchP50Millis(),
+        metrics.getFetchP99Millis(),
+        peakHeap,
+        gcMillis() - gcBefore);
+  }
+
+  // no robots.txt and no host rate limit, since the site is ours
+  public static CrawlerConfig configFor(int concurrency) {
+    return new CrawlerConfig()
+        .maxConcurrency(concurrency)
+        .maxConcurrencyPerHost(concurrency)
+        .respectRobotsTxt(false)
+        .initialHostRate(1e9)
+        .maxHostRate(1e9);
+  }
+
+  public static void main(String[] args) throws Exception, UrlInvalidException {
+    SyntheticSite site = new SyntheticSite();
+    int concurrency = 64;
+    long maxPages = Long.MAX_VALUE;
+    double minPagesPerSecond = 0;
+    boolean traps = false;
+    for (String arg : args) {
+      String[] option = arg.replaceFirst("^--", "").split("=", 2);
+      String value = option.length > 1 ? option[1] : "";
+      switch (option[0]) {
+        case "pages" -> site.pages(Integer.parseInt(value));
+        case "fan-out" -> site.fanOut(Integer.parseInt(value));
+        case "locality" -> {
+          String[] parts = value.split(",");
+          site.locality(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]));
+        }
+        case "duplicates" -> site.duplicateRate(Double.parseDouble(value));
+        case "traps" -> {
+          site.trapRate(Double.parseDouble(value));
+          traps = true;
+        }
+        case "errors" -> site.errorRate(Double.parseDouble(value));
+        case "latency-ms" -> {
+          String[] parts = value.split(",");
+          site.latency(
+              (long) (Double.parseDouble(parts[0]) * 1000),
+              (long) (Double.parseDouble(parts[1]) * 1000));
+        }
+        case "server-threads" -> site.threads(Integer.parseInt(value));
+        case "seed" -> site.seed(Long.parseLong(value));
+        case "concurrency" -> concurrency = Integer.parseInt(value);
+        case "max-pages" -> maxPages = Long.parseLong(value);
+        case "min-pages-per-sec" -> minPagesPerSecond = Double.parseDouble(value);
+        default -> throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+    // /p/i is one pattern, so the trap detector has to let the whole site through
+    CrawlerConfig config =
+        configFor(concurrency)
+            .maxPages(maxPages)
+            .expectedUrls(site.getPages())
+            .detectTraps(traps)
+            .maxUrlsPerPattern(site.getPages() + 1);
+    Report report;
+    try (site) {
+      site.start();
+      report = run(site, config);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to start the synthetic site", e);
+    }
+    System.out.println(report);
+    if (report.pagesPerSecond() < minPagesPerSecond) {
+      System.err.printf(
+          Locale.ROOT, "Below the floor of %.0f pages/s%n", minPagesPerSecond);
+      System.exit(1);
+    }
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+}
@@ -0,0 +1,39 @@
+package com.nedyalkova.crawler.impl;
+
+import com.nedyalkova.crawler.exception.UrlInvalidException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThroughputHarnessTest {
+
+  @Test
+  void run_crawlsEveryPageThatDoesNotFail() throws Exception, UrlInvalidException {
+    try (SyntheticSite site =
+        new SyntheticSite().pages(2_000).fanOut(8).errorRate(0.01).latency(200, 2_000).start()) {
+      ThroughputHarness.Report report =
+          ThroughputHarness.run(site, ThroughputHarness.configFor(16));
+
+      assertEquals(site.getPages() - site.failingPages(), report.pages());
+      assertTrue(report.errors() > 0);
+      assertTrue(report.pagesPerSecond() > 0);
+      assertTrue(report.fetchP99Millis() >= report.fetchP50Millis());
+      assertTrue(report.peakHeapBytes() > 0);
+    }
+  }
+
+  @Test
+  void run_whenTheSiteHasTraps_theCrawlStillEnds() throws Exception, UrlInvalidException {
+    try (SyntheticSite site = new SyntheticSite().pages(500).trapRate(0.05).start()) {
+      // /p/i is a pattern of its own too, so the limit has to leave room for the whole site
+      CrawlerConfig config =
+          ThroughputHarness.configFor(8).detectTraps(true).maxUrlsPerPattern(1_000);
+
+      ThroughputHarness.Report report = ThroughputHarness.run(site, config);
+
+      assertTrue(report.pages() >= 500);
+      assertTrue(report.pages() <= 500 + 1_000);
+    }
+  }
+}
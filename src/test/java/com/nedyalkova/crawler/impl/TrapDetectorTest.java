@@ -0,0 +1,54 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TrapDetectorTest {
+
+  @Test
+  void check_whenAPathKeepsRepeatingASegment_thenItIsATrap() {
+    TrapDetector traps = new TrapDetector(2, 1000, 100);
+    assertNull(traps.check(URI.create("https://webcrawler.com/a/b/a/b")));
+    assertEquals(
+        TrapDetector.Trap.REPEATED_SEGMENT,
+        traps.check(URI.create("https://webcrawler.com/a/b/a/b/a")));
+  }
+
+  @Test
+  void check_whenAPatternHasTooManyUrls_thenFurtherOnesAreTraps() {
+    TrapDetector traps = new TrapDetector(2, 24, 100);
+    for (int month = 1; month <= 12; month++) {
+      assertNull(traps.check(URI.create("https://webcrawler.com/calendar/2024/" + month)));
+      assertNull(traps.check(URI.create("https://webcrawler.com/calendar/2025/" + month)));
+    }
+    assertEquals(
+        TrapDetector.Trap.PATTERN_LIMIT,
+        traps.check(URI.create("https://webcrawler.com/calendar/2026/1")));
+    // other shapes on the same host are not affected
+    assertNull(traps.check(URI.create("https://webcrawler.com/calendar/2026")));
+    assertNull(traps.check(URI.create("https://webcrawler.com/about")));
+  }
+
+  @Test
+  void check_whenAParameterTakesTooManyValues_onlyNewValuesAreTraps() {
+    TrapDetector traps = new TrapDetector(2, 1000, 3);
+    assertNull(traps.check(URI.create("https://webcrawler.com/list?page=1&session=a")));
+    assertNull(traps.check(URI.create("https://webcrawler.com/list?page=2&session=b")));
+    assertNull(traps.check(URI.create("https://webcrawler.com/list?page=3&session=c")));
+    assertEquals(
+        TrapDetector.Trap.PARAMETER_VALUES,
+        traps.check(URI.create("https://webcrawler.com/list?page=1&session=d")));
+    assertNull(traps.check(URI.create("https://webcrawler.com/list?session=a&page=2")));
+  }
+
+  @Test
+  void patternOf_foldsNumberedSegmentsAndDropsParameterValues() {
+    assertEquals(
+        "webcrawler.com/news/*/story?id&ref&",
+        TrapDetector.patternOf("webcrawler.com", "/news/2024-05-01/story", "ref=home&id=7"));
+  }
+}
@@ -8,6 +8,7 @@ import java.net.URISyntaxException;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -76,4 +77,51 @@ class URLUtilsTest {
     assertThrows(UrlInvalidException.class, () -> urlUtils.validateScheme("file"));
     assertThrows(UrlInvalidException.class, () -> urlUtils.validateScheme(null));
   }
+
+  @Test
+  void fingerprint_whenSameUrl_thenSameValue() {
+    long first = urlUtils.fingerprint(URI.create("https://simple-crawler.com/page"));
+    assertEquals(first, urlUtils.fingerprint(URI.create("https://simple-crawler.com/page")));
+    assertNotEquals(first, urlUtils.fingerprint(URI.create("https://simple-crawler.com/page2")));
+  }
+
+  @Test
+  void resolve_whenRelativeHref_thenResolvedAgainstBase() {
+    String base = "https://simple-crawler.com/dir/page.html?x=1";
+    assertEquals("https://simple-crawler.com/dir/other.html", URLUtils.resolve(base, "other.html"));
+    assertEquals("https://simple-crawler.com/root", URLUtils.resolve(base, "/root"));
+    assertEquals("https://cdn.simple-crawler.com/a",
+        URLUtils.resolve(base, "//cdn.simple-crawler.com/a"));
+    assertEquals("https://other.com/b", URLUtils.resolve(base, "https://other.com/b"));
+  }
+
+  @Test
+  void resolve_whenQueryOnlyHref_thenBasePathKept() {
+    assertEquals("https://simple-crawler.com/dir/page.html?q=2",
+        URLUtils.resolve("https://simple-crawler.com/dir/page.html?x=1", "?q=2"));
+  }
+
+  @Test
+  void resolve_whenDotSegmentsAboveRoot_thenDropped() {
+    assertEquals("https://simple-crawler.com/a",
+        URLUtils.resolve("https://simple-crawler.com/dir/page.html", "../../a"));
+  }
+
+  @Test
+  void resolve_whenControlCharsInHref_thenStripped() {
+    assertEquals("https://simple-crawler.com/dir/a",
+        URLUtils.resolve("https://simple-crawler.com/dir/", "\n/dir/\ta"));
+  }
+
+  @Test
+  void resolve_whenBaseMalformed_thenAbsoluteHrefKept() {
+    assertEquals("https://simple-crawler.com/a",
+        URLUtils.resolve("", "https://simple-crawler.com/a"));
+    assertNull(URLUtils.resolve("", "/a"));
+  }
+
+  @Test
+  void resolve_whenUnknownScheme_thenNull() {
+    assertNull(URLUtils.resolve("https://simple-crawler.com/", "javascript:void(0)"));
+  }
 }
@@ -0,0 +1,85 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlCanonicalizerTest {
+
+  private static String key(String raw) {
+    CanonicalUrl canonical = UrlCanonicalizer.canonicalize(raw);
+    return canonical == null ? null : canonical.getKey();
+  }
+
+  @Test
+  void canonicalize_whenUrlProvided_lowerCasesSchemeAndHostOnly() {
+    assertEquals("https://web-crawler.com/Path/To", key("  HTTPS://Web-Crawler.COM/Path/To#Top "));
+  }
+
+  @Test
+  void canonicalize_whenDotSegments_removesThem() {
+    assertEquals("https://webcrawler.com/a/c", key("https://webcrawler.com/a/b/../c/./"));
+    assertEquals("https://webcrawler.com/", key("https://webcrawler.com/a/.."));
+    assertEquals("https://webcrawler.com/x", key("https://webcrawler.com/../../x"));
+    assertEquals("https://webcrawler.com/a", key("https://webcrawler.com/a/."));
+  }
+
+  @Test
+  void canonicalize_whenPortsGiven_dropsOnlyDefaultOnes() {
+    assertEquals("http://webcrawler.com/p", key("http://webcrawler.com:80/p"));
+    assertEquals("https://webcrawler.com/p", key("https://webcrawler.com:443/p"));
+    assertEquals("http://webcrawler.com:443/p", key("http://webcrawler.com:443/p"));
+    assertEquals("https://webcrawler.com/p", key("https://webcrawler.com:/p"));
+    assertNull(key("https://webcrawler.com:http/p"));
+  }
+
+  @Test
+  void canonicalize_whenQueryPresent_keepsItButDropsTheFragment() {
+    assertEquals(
+        "https://webcrawler.com/search?q=a%26b&page=2",
+        key("https://webcrawler.com/search/?q=a%26b&page=2#results"));
+    assertEquals("https://webcrawler.com?x", key("https://webcrawler.com?x"));
+  }
+
+  @Test
+  void canonicalize_whenCharactersNeedEscaping_percentEncodesThem() {
+    assertEquals(
+        "https://webcrawler.com/a%20b/caf%C3%A9?q=%7Cx%7C",
+        key("https://webcrawler.com/a b/café?q=|x|"));
+    assertEquals("https://webcrawler.com/%2Fpage/100%25", key("https://webcrawler.com/%2fpage/100%"));
+    assertEquals("https://webcrawler.com/tilde~", key("https://webcrawler.com/tilde%7E"));
+  }
+
+  @Test
+  void canonicalize_whenUserInfoOrIpHost_keepsThem() {
+    assertEquals("ftp://user:pw@10.0.0.1:21/f", key("FTP://user:pw@10.0.0.1:21/f"));
+    assertEquals("http://[::1]:8080/", key("http://[::1]:8080/"));
+  }
+
+  @Test
+  void canonicalize_whenNotAbsoluteOrHostInvalid_returnsNull() {
+    assertNull(key("/relative/path"));
+    assertNull(key("www.webcrawler.com"));
+    assertNull(key("mailto:team@webcrawler.com"));
+    assertNull(key("https://"));
+    assertNull(key("https://under_score.com/"));
+    assertNull(key("https://-leading.com/"));
+    assertNull(key("https://webcrawler.123/"));
+  }
+
+  @Test
+  void canonicalize_keyParsesAndHashMatchesFingerprint() {
+    CanonicalUrl canonical = UrlCanonicalizer.canonicalize("https://WebCrawler.com/a b/?q=1#f");
+    URI uri = canonical.toUri();
+    assertEquals("webcrawler.com", uri.getHost());
+    assertEquals(new URLUtils().fingerprint(uri), canonical.getHash());
+    assertEquals("https", canonical.getScheme());
+    assertTrue(canonical.isHttp());
+    assertFalse(UrlCanonicalizer.canonicalize("ftp://webcrawler.com/").isHttp());
+  }
+}
@@ -0,0 +1,41 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UrlDictionaryTest {
+
+  @Test
+  void intern_givesDenseIdsAndTheSameIdForTheSameUrl() {
+    UrlDictionary urls = new UrlDictionary();
+
+    assertEquals(0, urls.intern("https://webcrawler.com"));
+    assertEquals(1, urls.intern("https://webcrawler.com/ü"));
+    assertEquals(0, urls.intern("https://webcrawler.com"));
+    assertEquals(2, urls.size());
+    assertEquals("https://webcrawler.com/ü", urls.urlOf(1));
+    assertEquals(-1, urls.find("https://webcrawler.com/other"));
+    assertThrows(IndexOutOfBoundsException.class, () -> urls.urlOf(2));
+  }
+
+  @Test
+  void intern_whenManyUrls_keepsThemAllAcrossResizesAndChunks() {
+    UrlDictionary urls = new UrlDictionary();
+    String padding = "x".repeat(200);
+    for (int i = 0; i < 20_000; i++) {
+      assertEquals(i, urls.intern("https://webcrawler.com/" + i + "/" + padding));
+    }
+    String longUrl = "https://webcrawler.com/" + "y".repeat(2 << 20);
+    int longId = urls.intern(longUrl);
+
+    assertEquals(20_001, urls.size());
+    for (int i = 0; i < 20_000; i += 997) {
+      assertEquals(i, urls.find("https://webcrawler.com/" + i + "/" + padding));
+      assertEquals("https://webcrawler.com/" + i + "/" + padding, urls.urlOf(i));
+    }
+    assertEquals(longUrl, urls.urlOf(longId));
+    assertEquals(longId + 1, urls.intern("https://webcrawler.com/after"));
+  }
+}
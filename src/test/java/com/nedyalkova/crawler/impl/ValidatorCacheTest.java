@@ -0,0 +1,74 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidatorCacheTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void get_whenUrlUnknown_thenNull() throws IOException {
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      assertNull(cache.get("https://webcrawler.com"));
+    }
+  }
+
+  @Test
+  void get_whenReopened_thenEntriesAreStillThere() throws IOException {
+    List<URI> links = List.of(URI.create("https://webcrawler.com/a"));
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      cache.put(
+          "https://webcrawler.com",
+          new ValidatorCache.Entry("\"v1\"", "Mon, 01 Jan 2024 00:00:00 GMT", 99L, links));
+    }
+
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      ValidatorCache.Entry entry = cache.get("https://webcrawler.com");
+      assertEquals("\"v1\"", entry.getEtag());
+      assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", entry.getLastModified());
+      assertEquals(99L, entry.getContentHash());
+      assertEquals(links, entry.getLinks());
+    }
+  }
+
+  @Test
+  void get_whenALinkIsLongerThan64KiB_thenItIsReadBack() throws IOException {
+    List<URI> links = List.of(URI.create("https://webcrawler.com/?q=" + "x".repeat(70_000)));
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      cache.put("https://webcrawler.com", new ValidatorCache.Entry(null, null, 1L, links));
+    }
+
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      assertEquals(links, cache.get("https://webcrawler.com").getLinks());
+    }
+  }
+
+  @Test
+  void put_whenUrlStoredRepeatedly_thenLatestWinsAndFileIsCompacted() throws IOException {
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      for (int i = 0; i < 10; i++) {
+        ValidatorCache.Entry entry = new ValidatorCache.Entry("\"v" + i + "\"", null, i, List.of());
+        cache.put("https://webcrawler.com", entry);
+      }
+    }
+    long compactedSize = Files.size(dir.resolve(ValidatorCache.FILE_NAME));
+
+    try (ValidatorCache cache = new ValidatorCache(dir)) {
+      assertEquals(1, cache.size());
+      assertEquals("\"v9\"", cache.get("https://webcrawler.com").getEtag());
+      assertNull(cache.get("https://webcrawler.com").getLastModified());
+    }
+    assertTrue(compactedSize < 100);
+  }
+}
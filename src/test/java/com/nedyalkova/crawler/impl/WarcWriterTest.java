@@ -0,0 +1,92 @@
+package com.nedyalkova.crawler.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WarcWriterTest {
+
+  @TempDir Path dir;
+
+  @Test
+  void writeResponse_recordsTheDecodedBodyWithoutTransferHeaders() throws IOException {
+    byte[] body = "<html>hello</html>".getBytes(StandardCharsets.UTF_8);
+    try (WarcWriter writer = new WarcWriter(dir, "test", 1 << 20)) {
+      writer.writeResponse(
+          URI.create("http://webcrawler.com/old"),
+          URI.create("http://webcrawler.com/new"),
+          200,
+          Map.of(
+              "Content-Type", List.of("text/html"),
+              "Content-Encoding", List.of("gzip"),
+              "Content-Length", List.of("7")),
+          body,
+          body.length,
+          false,
+          Instant.parse("2024-03-01T10:15:30.123Z"));
+    }
+
+    String warc = read(warcFiles().get(0));
+
+    assertTrue(warc.startsWith("WARC/1.1\r\n"));
+    assertTrue(warc.contains("WARC-Type: warcinfo\r\n"));
+    assertTrue(warc.contains("WARC-Type: response\r\n"));
+    assertTrue(warc.contains("WARC-Date: 2024-03-01T10:15:30Z\r\n"));
+    assertTrue(warc.contains("WARC-Target-URI: http://webcrawler.com/new\r\n"));
+    assertTrue(warc.contains("X-Requested-URI: http://webcrawler.com/old\r\n"));
+    assertTrue(
+        warc.contains(
+            "HTTP/1.1 200\r\nContent-Type: text/html\r\nContent-Length: 18\r\n\r\n"
+                + "<html>hello</html>\r\n\r\n"));
+    assertFalse(warc.contains("gzip"));
+    assertFalse(warc.contains("WARC-Truncated"));
+  }
+
+  @Test
+  void writeResponse_whenAFileIsFull_startsTheNextOne() throws IOException {
+    byte[] body = new byte[2048];
+    try (WarcWriter writer = new WarcWriter(dir, "test", 100)) {
+      for (int i = 0; i < 3; i++) {
+        URI uri = URI.create("http://webcrawler.com/" + i);
+        writer.writeResponse(uri, uri, 200, Map.of(), body, body.length, i == 2, Instant.now());
+      }
+    }
+
+    List<Path> files = warcFiles();
+
+    assertEquals(3, files.size());
+    assertTrue(files.get(0).getFileName().toString().matches("test-\\d{14}-00000\\.warc\\.gz"));
+    for (Path file : files) {
+      assertTrue(read(file).contains("WARC-Type: warcinfo\r\n"));
+    }
+    assertTrue(read(files.get(2)).contains("WARC-Truncated: unspecified\r\n"));
+  }
+
+  private List<Path> warcFiles() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.sorted().toList();
+    }
+  }
+
+  // gzip streams read every member of a file one after another
+  private static String read(Path file) throws IOException {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -2,14 +2,46 @@ package com.nedyalkova.crawler.impl;
 
 import com.nedyalkova.crawler.exception.UrlInvalidException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class WebCrawlerTest {
 
@@ -23,6 +55,23 @@ class WebCrawlerTest {
     assertThrows(URISyntaxException.class, () -> new WebCrawler("invalidUrl"));
   }
 
+  @Test
+  void createCrawler_whenSomeSeedsAreInvalid_thenTheyAreSkipped()
+      throws URISyntaxException, UrlInvalidException {
+    CrawlerConfig config =
+        new CrawlerConfig().seeds(List.of("invalid url", "ftp://files.com", "https://bing.com"));
+    WebCrawler crawler = new WebCrawler("invalidUrl", config);
+
+    assertEquals(1, crawler.getQueue().size());
+    assertEquals("https://bing.com", crawler.getQueue().peek().toString());
+  }
+
+  @Test
+  void createCrawler_whenNoSeedHasASupportedScheme_thenException() {
+    CrawlerConfig config = new CrawlerConfig().seeds(List.of("mailto://someone@mail.com"));
+    assertThrows(UrlInvalidException.class, () -> new WebCrawler("ftp://files.com", config));
+  }
+
   @Test
   void createCrawler_whenUrlValid_itIsAddedToTheQueue()
       throws URISyntaxException, UrlInvalidException {
@@ -34,10 +83,694 @@ class WebCrawlerTest {
   }
 
   @Test
-  void isSameDomainAsSeed_whenDifferentFirstPart_thenFalse()
+  void createCrawler_whenQueryRulesSet_theSeedFollowsThem()
+      throws URISyntaxException, UrlInvalidException {
+    WebCrawler webCrawler =
+        new WebCrawler(
+            "https://google.com?sid=1",
+            new CrawlerConfig().queryRules(new QueryRules().dropParameter("sid")));
+    assertEquals("https://google.com/", webCrawler.getQueue().peek().toString());
+  }
+
+  @Test
+  void isInScope_whenDifferentFirstPart_thenFalse()
       throws UrlInvalidException, URISyntaxException {
     WebCrawler crawler = new WebCrawler("https://google.com");
-    assertFalse(crawler.isSameDomainAsSeed(new URI("abc.google.com")));
-    assertFalse(crawler.isSameDomainAsSeed(new URI("facebook.com")));
+    assertFalse(crawler.isInScope(new URI("abc.google.com")));
+    assertFalse(crawler.isInScope(new URI("facebook.com")));
+    assertFalse(crawler.isInScope(new URI("https://abc.google.com")));
+    assertTrue(crawler.isInScope(new URI("https://www.google.com")));
+  }
+
+  @Test
+  void isInScope_whenSeveralSeedsAndDomainRules_eachOfThemIsCrawled()
+      throws UrlInvalidException, URISyntaxException {
+    CrawlerConfig config =
+        new CrawlerConfig()
+            .seeds(List.of("https://facebook.com"))
+            .subdomainPolicy(SubdomainPolicy.EXACT)
+            .allowDomain("*.example.org");
+    WebCrawler crawler = new WebCrawler("https://google.com", config);
+
+    assertEquals(2, crawler.getQueue().size());
+    assertTrue(crawler.isInScope(new URI("https://facebook.com/about")));
+    assertFalse(crawler.isInScope(new URI("https://www.google.com")));
+    assertTrue(crawler.isInScope(new URI("https://docs.api.example.org")));
+  }
+
+  @Test
+  void crawl_whenPagesLinkToEachOther_eachPageIsFetchedOnce()
+      throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher =
+        stubFetcher(url -> "<a href='/a'>a</a><a href='/b'>b</a><a href='/c'>c</a>");
+
+    WebCrawler crawler =
+        new WebCrawler("https://webcrawler.com", new CrawlerConfig().maxConcurrency(4), fetcher);
+    crawler.crawl();
+
+    assertTrue(crawler.getQueue().isEmpty());
+    assertEquals(4, crawler.counter.get());
+    verify(fetcher, times(1)).fetchPage(eq("https://webcrawler.com/a"), any());
+    verify(fetcher, times(1)).fetchPage(eq("https://webcrawler.com/b"), any());
+    verify(fetcher, times(1)).fetchPage(eq("https://webcrawler.com/c"), any());
+  }
+
+  @Test
+  void crawl_whenPerHostLimitSet_itIsNeverExceeded()
+      throws URISyntaxException, UrlInvalidException {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    HTMLFetcher fetcher =
+        stubFetcher(
+            url -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              sleep(20);
+              running.decrementAndGet();
+              return url.endsWith(".com")
+                  ? "<a href='/1'></a><a href='/2'></a><a href='/3'></a><a href='/4'></a>"
+                  : "";
+            });
+
+    CrawlerConfig config = new CrawlerConfig().maxConcurrency(8).maxConcurrencyPerHost(2);
+    WebCrawler crawler = new WebCrawler("https://webcrawler.com", config, fetcher);
+    crawler.crawl();
+
+    assertEquals(5, crawler.counter.get());
+    assertTrue(maxRunning.get() <= 2);
+  }
+
+  @Test
+  void crawl_whenLinksAreCached_theOutcomesAreTheSameAsWithout()
+      throws URISyntaxException, UrlInvalidException {
+    Function<String, String> site =
+        url ->
+            "<a href='/a'>a</a><a href='/b'>b</a><a href='/c'>c</a>"
+                + "<a href='https://other.com/'>o</a><a href='mailto:x@webcrawler.com'>m</a>";
+    WebCrawler uncached =
+        new WebCrawler(
+            "https://webcrawler.com", new CrawlerConfig().linkCacheEntries(0), stubFetcher(site));
+    WebCrawler cached =
+        new WebCrawler("https://webcrawler.com", new CrawlerConfig(), stubFetcher(site));
+    uncached.crawl();
+    cached.crawl();
+
+    for (CrawlMetrics.Outcome outcome : CrawlMetrics.Outcome.values()) {
+      assertEquals(
+          uncached.getMetrics().count(outcome), cached.getMetrics().count(outcome), outcome.name());
+    }
+    assertEquals(4, cached.getMetrics().getInvalidLinks());
+    assertEquals(0, uncached.getMetrics().getLinkCacheHitRate());
+    assertTrue(cached.getMetrics().getLinkCacheHitRate() > 0.5);
+  }
+
+  @Test
+  void crawl_whenFinished_metricsCountEachOutcome() throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher =
+        stubFetcher(
+            url -> "<a href='/a'>a</a><a href='/b'>b</a><a href='https://other.com/'>o</a>");
+    WebCrawler crawler = new WebCrawler("https://webcrawler.com", new CrawlerConfig(), fetcher);
+    crawler.crawl();
+
+    CrawlMetrics metrics = crawler.getMetrics();
+    assertEquals(3, metrics.getPagesFetched());
+    assertEquals(4, metrics.getDuplicateLinks());
+    assertEquals(3, metrics.getInvalidLinks());
+    assertEquals(0, metrics.getIoErrors());
+    assertEquals(0, metrics.getFrontierDepth());
+    assertEquals(3, metrics.getSeenUrls());
+    assertEquals(3, metrics.latency(CrawlMetrics.Stage.ENQUEUE).getCount());
+  }
+
+  @Test
+  void crawl_whenOutputSinkSet_itGetsARecordPerPageAndIsClosed()
+      throws URISyntaxException, UrlInvalidException {
+    List<CrawlRecord> records = new CopyOnWriteArrayList<>();
+    AtomicInteger closed = new AtomicInteger();
+    CrawlSink sink =
+        new CrawlSink() {
+          @Override
+          public void accept(CrawlRecord record) {
+            records.add(record);
+          }
+
+          @Override
+          public void close() {
+            closed.incrementAndGet();
+          }
+        };
+    HTMLFetcher fetcher = stubFetcher(url -> url.endsWith(".com") ? "<a href='/a'>a</a>" : "");
+    CrawlerConfig config = new CrawlerConfig().outputSink(sink);
+    new WebCrawler("https://webcrawler.com", config, fetcher).crawl();
+
+    assertEquals(2, records.size());
+    assertEquals(1, closed.get());
+    CrawlRecord seed =
+        records.stream().filter(r -> r.getUrl().equals("https://webcrawler.com")).findFirst().get();
+    assertEquals(List.of(URI.create("https://webcrawler.com/a")), seed.getLinks());
+  }
+
+  @Test
+  void crawl_whenBloomSeenSet_eachLinkIsQueuedOnce()
+      throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher = stubFetcher(url -> "<a href='/a'>a</a><a href='/b'>b</a>");
+    CrawlerConfig config = new CrawlerConfig().seenSetMode(SeenSetMode.BLOOM);
+    WebCrawler crawler = new WebCrawler("https://webcrawler.com", config, fetcher);
+    crawler.crawl();
+
+    assertEquals(3, crawler.counter.get());
+    assertEquals(3, crawler.getSeenCount());
+  }
+
+  @Test
+  void crawl_whenResumedFromCheckpoint_thenItContinuesFromTheSavedFrontier(@TempDir Path stateDir)
+      throws URISyntaxException, UrlInvalidException {
+    CrawlerConfig config = new CrawlerConfig().stateDir(stateDir);
+    HTMLFetcher unused = stubFetcher(url -> "");
+    new WebCrawler("https://webcrawler.com", config, unused).checkpoint();
+
+    HTMLFetcher fetcher = stubFetcher(url -> "<a href='/a'>a</a><a href='/b'>b</a>");
+    WebCrawler resumed = new WebCrawler("https://webcrawler.com", config, fetcher);
+    assertEquals(1, resumed.getQueue().size());
+    resumed.crawl();
+
+    assertEquals(3, resumed.counter.get());
+    verify(unused, never()).fetchPage(anyString(), any());
+  }
+
+  @Test
+  void crawl_whenResumedWithAUrlInFlight_thenItKeepsItsDepth(@TempDir Path stateDir)
+      throws URISyntaxException, UrlInvalidException, IOException {
+    CrawlerConfig config = new CrawlerConfig().stateDir(stateDir).maxDepth(1);
+    new WebCrawler("https://webcrawler.com", config, stubFetcher(url -> "")).checkpoint();
+    CrawlCheckpoint saved = CrawlCheckpoint.load(stateDir, config.getExpectedUrls());
+    FrontierEntry deep = new FrontierEntry(new URI("https://webcrawler.com/deep"), 1, 0.5);
+    new CrawlCheckpoint(saved.getFrontierPosition(), List.of(deep), saved.getSeen())
+        .save(stateDir);
+
+    HTMLFetcher fetcher =
+        stubFetcher(url -> url.endsWith("/deep") ? "<a href='/deeper'>deeper</a>" : "");
+    WebCrawler resumed = new WebCrawler("https://webcrawler.com", config, fetcher);
+    resumed.crawl();
+
+    verify(fetcher).fetchPage(eq("https://webcrawler.com/deep"), any());
+    verify(fetcher, never()).fetchPage(eq("https://webcrawler.com/deeper"), any());
+  }
+
+  @Test
+  void crawl_whenResumingAFinishedCrawl_thenNothingIsFetchedAgain(@TempDir Path stateDir)
+      throws URISyntaxException, UrlInvalidException {
+    CrawlerConfig config = new CrawlerConfig().stateDir(stateDir);
+    HTMLFetcher fetcher = stubFetcher(url -> "<a href='/a'>a</a>");
+    new WebCrawler("https://webcrawler.com", config, fetcher).crawl();
+
+    HTMLFetcher second = stubFetcher(url -> "<a href='/a'>a</a>");
+    WebCrawler resumed = new WebCrawler("https://webcrawler.com", config, second);
+    resumed.crawl();
+
+    assertEquals(0, resumed.counter.get());
+    assertEquals(2, resumed.getSeenCount());
+    verify(second, never()).fetchPage(anyString(), any());
+  }
+
+  @Test
+  void crawl_whenRobotsTxtDisallowsAPath_itIsNotFetched()
+      throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher = stubFetcher(url -> "<a href='/private/a'>a</a><a href='/b'>b</a>");
+    PageFetcher robotsFetcher =
+        request ->
+            CompletableFuture.completedFuture(
+                new FetchResponse(
+                    request.getUri(),
+                    200,
+                    Map.of(),
+                    new ByteArrayInputStream("User-agent: *\nDisallow: /private".getBytes())));
+    CrawlerConfig config = new CrawlerConfig().initialHostRate(100).maxHostRate(100);
+    PolitenessScheduler politeness =
+        new PolitenessScheduler(config, new RobotsCache(robotsFetcher));
+    WebCrawler crawler = new WebCrawler("https://webcrawler.com", config, fetcher, politeness);
+    crawler.crawl();
+
+    assertEquals(2, crawler.counter.get());
+    verify(fetcher, never()).fetchPage(eq("https://webcrawler.com/private/a"), any());
+    assertEquals(100.0, crawler.getHostRates().get("webcrawler.com"));
+  }
+
+  @Test
+  void crawl_whenSitemapsLoaded_urlsNotLinkedFromTheSeedAreCrawledToo()
+      throws URISyntaxException, UrlInvalidException {
+    List<String> fetched = new CopyOnWriteArrayList<>();
+    Map<String, String> site =
+        Map.of(
+            "/robots.txt", "Sitemap: https://webcrawler.com/listed.xml",
+            "/listed.xml", SitemapLoaderTest.urlset("/a", "/b", "/elsewhere?x=1"),
+            "/sitemap.xml", SitemapLoaderTest.urlset("/b", "/c"),
+            "", "<a href='/a'>a</a>");
+    PageFetcher pageFetcher = SitemapLoaderTest.siteFetcher(site, fetched);
+    CrawlerConfig config = new CrawlerConfig().loadSitemaps(true).initialHostRate(100);
+    PolitenessScheduler politeness =
+        new PolitenessScheduler(config, new RobotsCache(pageFetcher));
+    WebCrawler crawler =
+        new WebCrawler(
+            "https://webcrawler.com", config, new HTMLFetcher(pageFetcher), politeness);
+    crawler.crawl();
+
+    assertEquals(5, crawler.counter.get());
+    assertTrue(fetched.containsAll(List.of("/a", "/b", "/c", "/elsewhere")));
+    assertEquals(0, crawler.getMetrics().count(CrawlMetrics.Outcome.INVALID));
+  }
+
+  @Test
+  void crawl_whenASitemapIsSlow_theSeedIsCrawledMeanwhile()
+      throws URISyntaxException, UrlInvalidException {
+    List<String> fetched = new CopyOnWriteArrayList<>();
+    Map<String, String> site =
+        Map.of("/sitemap.xml", SitemapLoaderTest.urlset("/b"), "", "<a href='/a'>a</a>");
+    PageFetcher siteFetcher = SitemapLoaderTest.siteFetcher(site, fetched);
+    CountDownLatch seedFetched = new CountDownLatch(1);
+    // the sitemap only arrives once the seed has been fetched, which it could not be if the
+    // crawl waited for the sitemaps first
+    PageFetcher pageFetcher =
+        request -> {
+          if (request.getUri().getPath().equals("/sitemap.xml")) {
+            return CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    seedFetched.await();
+                    return siteFetcher.fetch(request).get();
+                  } catch (Exception e) {
+                    throw new CompletionException(e);
+                  }
+                });
+          }
+          seedFetched.countDown();
+          return siteFetcher.fetch(request);
+        };
+    CrawlerConfig config = new CrawlerConfig().loadSitemaps(true).initialHostRate(100);
+    WebCrawler crawler =
+        new WebCrawler("https://webcrawler.com", config, new HTMLFetcher(pageFetcher));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10), crawler::crawl);
+
+    assertEquals(3, crawler.counter.get());
+    assertTrue(fetched.containsAll(List.of("/a", "/b")));
+  }
+
+  @Test
+  void crawl_whenReplayedFromItsWarcFiles_findsTheSamePagesWithoutTheSite(@TempDir Path warcDir)
+      throws URISyntaxException, UrlInvalidException {
+    List<String> fetched = new CopyOnWriteArrayList<>();
+    Map<String, String> site =
+        Map.of(
+            "", "<a href='/a'>a</a><a href='/b'>b</a>",
+            "/a", "<a href='/c'>c</a>",
+            "/b", "<a href='/a'>a</a><a href='/missing'>missing</a>",
+            "/c", "<p>the end</p>");
+    List<CrawlRecord> recorded = new CopyOnWriteArrayList<>();
+    WebCrawler recording =
+        new WebCrawler(
+            "https://webcrawler.com",
+            new CrawlerConfig()
+                .pageFetcher(SitemapLoaderTest.siteFetcher(site, fetched))
+                .warcDir(warcDir)
+                .initialHostRate(100)
+                .outputSink(collectingSink(recorded)));
+    recording.crawl();
+
+    List<CrawlRecord> replayed = new CopyOnWriteArrayList<>();
+    WebCrawler replay =
+        new WebCrawler(
+            "https://webcrawler.com",
+            new CrawlerConfig().replayWarc(warcDir).outputSink(collectingSink(replayed)));
+    long start = System.nanoTime();
+    replay.crawl();
+    long replayNanos = System.nanoTime() - start;
+
+    assertEquals(5, recording.counter.get());
+    assertEquals(recording.counter.get(), replay.counter.get());
+    assertEquals(statusByUrl(recorded), statusByUrl(replayed));
+    // five pages at the default 2 requests per second would take two seconds
+    assertTrue(replay.getHostRates().isEmpty());
+    assertTrue(replayNanos < TimeUnit.SECONDS.toNanos(2));
+  }
+
+  @Test
+  void crawl_whenOneHostIsSlow_theOtherHostsAreNotHeldUp()
+      throws URISyntaxException, UrlInvalidException {
+    // each seed links to ten pages of its own host; slow.com answers after 100ms
+    HTMLFetcher fetcher = mock(HTMLFetcher.class);
+    List<String> fastFinished = new CopyOnWriteArrayList<>();
+    AtomicInteger slowFinished = new AtomicInteger();
+    when(fetcher.fetchPage(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              String url = invocation.getArgument(0);
+              LinkExtractor linkExtractor = invocation.getArgument(1);
+              URI uri = URI.create(url);
+              StringBuilder page = new StringBuilder();
+              if (uri.getPath().isEmpty()) {
+                for (int i = 0; i < 10; i++) {
+                  page.append("<a href='/p").append(i).append("'>p</a>");
+                }
+              }
+              if (uri.getHost().equals("slow.com")) {
+                sleep(100);
+                slowFinished.incrementAndGet();
+              } else if (slowFinished.get() < 3) {
+                fastFinished.add(url);
+              }
+              return new PageResult(
+                  url, 200, linkExtractor.extractLinks(page.toString(), url), 0, false, null);
+            });
+    CrawlerConfig config =
+        new CrawlerConfig()
+            .seeds(List.of("https://fast.com"))
+            .maxConcurrency(4)
+            .maxConcurrencyPerHost(1)
+            .initialHostRate(1000)
+            .maxHostRate(1000);
+    WebCrawler crawler = new WebCrawler("https://slow.com", config, fetcher);
+    crawler.crawl();
+
+    assertEquals(22, crawler.counter.get());
+    // one worker keeps slow.com busy while the others get through fast.com
+    assertEquals(11, fastFinished.size());
+    assertEquals(0, ((HostQueueFrontier) crawler.getQueue()).hostCount());
+  }
+
+  @Test
+  void crawl_whenGraphDirSet_theLinkGraphIsWrittenThere(@TempDir Path graphDir)
+      throws URISyntaxException, UrlInvalidException, IOException {
+    HTMLFetcher fetcher =
+        stubFetcher(url -> "<a href='/a'>a</a><a href='https://elsewhere.com'>out</a>");
+
+    WebCrawler crawler =
+        new WebCrawler("https://webcrawler.com", new CrawlerConfig().graphDir(graphDir), fetcher);
+    crawler.crawl();
+
+    LinkGraph graph = crawler.getLinkGraph();
+    int a = graph.getUrls().find("https://webcrawler.com/a");
+    assertEquals(3, graph.nodeCount());
+    assertEquals(4, graph.edgeCount());
+    assertEquals(2, graph.inLinkCounts()[a]);
+    assertEquals(200, graph.statusOf(a));
+    assertEquals(4, Files.readAllLines(graphDir.resolve("edges.tsv")).size());
+    assertEquals(
+        "https://webcrawler.com/a\t200\t2",
+        Files.readAllLines(graphDir.resolve("inlinks.tsv")).get(0));
+    assertTrue(Files.size(graphDir.resolve("graph.csr")) > 0);
+  }
+
+  @Test
+  void crawl_whenInterrupted_everythingIsStillFlushed(@TempDir Path graphDir)
+      throws Exception, UrlInvalidException {
+    CountDownLatch slowPageStarted = new CountDownLatch(1);
+    HTMLFetcher fetcher =
+        stubFetcher(
+            url -> {
+              if (url.endsWith("/slow")) {
+                slowPageStarted.countDown();
+                sleep(TimeUnit.MINUTES.toMillis(1));
+              }
+              return "<a href='/slow'>slow</a>";
+            });
+    WebCrawler crawler =
+        new WebCrawler("https://webcrawler.com", new CrawlerConfig().graphDir(graphDir), fetcher);
+    AtomicBoolean stillInterrupted = new AtomicBoolean();
+    Thread crawl =
+        new Thread(
+            () -> {
+              crawler.crawl();
+              stillInterrupted.set(Thread.currentThread().isInterrupted());
+            });
+
+    crawl.start();
+    assertTrue(slowPageStarted.await(5, TimeUnit.SECONDS));
+    crawl.interrupt();
+    crawl.join(TimeUnit.SECONDS.toMillis(5));
+
+    assertFalse(crawl.isAlive());
+    assertTrue(stillInterrupted.get());
+    verify(fetcher).close();
+    assertTrue(Files.size(graphDir.resolve("graph.csr")) > 0);
+  }
+
+  @Test
+  void crawl_whenMaxDepthSet_linksBeyondItAreNotFollowed()
+      throws URISyntaxException, UrlInvalidException {
+    // a chain: the seed links to /1, /1 to /2 and so on
+    HTMLFetcher fetcher = stubFetcher(url -> "<a href='/" + (chainIndex(url) + 1) + "'>next</a>");
+
+    WebCrawler crawler =
+        new WebCrawler("https://webcrawler.com", new CrawlerConfig().maxDepth(3), fetcher);
+    crawler.crawl();
+
+    assertEquals(4, crawler.counter.get());
+    verify(fetcher, times(1)).fetchPage(eq("https://webcrawler.com/3"), any());
+    verify(fetcher, never()).fetchPage(eq("https://webcrawler.com/4"), any());
+    assertEquals(1, crawler.getMetrics().count(CrawlMetrics.Outcome.TOO_DEEP));
+  }
+
+  @Test
+  void crawl_whenMaxPagesSet_itStopsAfterThatManyPages()
+      throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher = stubFetcher(url -> "<a href='/" + (chainIndex(url) + 1) + "'>next</a>");
+
+    WebCrawler crawler =
+        new WebCrawler(
+            "https://webcrawler.com", new CrawlerConfig().maxConcurrency(4).maxPages(10), fetcher);
+    crawler.crawl();
+
+    assertEquals(10, crawler.counter.get());
+    assertEquals(1, crawler.getQueue().size());
+  }
+
+  @Test
+  void crawl_whenMaxDurationPasses_itStopsWithoutWaitingForTheFrontier()
+      throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher =
+        stubFetcher(
+            url -> {
+              sleep(20);
+              return "<a href='/" + (chainIndex(url) + 1) + "'>next</a>";
+            });
+
+    WebCrawler crawler =
+        new WebCrawler(
+            "https://webcrawler.com",
+            new CrawlerConfig().maxDuration(Duration.ofMillis(300)).initialHostRate(100),
+            fetcher);
+    long start = System.nanoTime();
+    crawler.crawl();
+
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    assertTrue(crawler.counter.get() > 1);
+    assertFalse(crawler.getQueue().isEmpty());
+  }
+
+  @Test
+  void crawl_whenScoredByOpic_everyPageIsStillFetchedOnce()
+      throws URISyntaxException, UrlInvalidException {
+    HTMLFetcher fetcher =
+        stubFetcher(url -> "<a href='/a'>a</a><a href='/b'>b</a><a href='/c'>c</a>");
+
+    WebCrawler crawler =
+        new WebCrawler(
+            "https://webcrawler.com",
+            new CrawlerConfig().maxConcurrency(4).urlScorer(ScoringMode.OPIC),
+            fetcher);
+    crawler.crawl();
+
+    assertTrue(((HostQueueFrontier) crawler.getQueue()).getBacking() instanceof PriorityFrontier);
+    assertEquals(4, crawler.counter.get());
+    verify(fetcher, times(1)).fetchPage(eq("https://webcrawler.com/a"), any());
+  }
+
+  @Test
+  void createCrawler_whenUrlScorerAndStateDir_thenException(@TempDir Path stateDir) {
+    CrawlerConfig config = new CrawlerConfig().urlScorer(ScoringMode.DEPTH).stateDir(stateDir);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new WebCrawler("https://webcrawler.com", config, stubFetcher(url -> "")));
+  }
+
+  @Test
+  void crawl_whenPagesAreNearDuplicates_theirLinksAreNotFollowed()
+      throws URISyntaxException, UrlInvalidException {
+    List<CrawlRecord> records = new CopyOnWriteArrayList<>();
+    // endless pagination over the same listing
+    HTMLFetcher fetcher =
+        stubFetcher(
+            url -> {
+              int page = url.contains("page=") ? Integer.parseInt(url.split("page=")[1]) : 0;
+              return NearDuplicateIndexTest.catalogue(page)
+                  + "<a href='/shop?page=" + (page + 1) + "'>next</a>";
+            });
+    CrawlerConfig config =
+        new CrawlerConfig().nearDuplicateDistance(3).outputSink(collectingSink(records));
+    WebCrawler crawler = new WebCrawler("https://webcrawler.com", config, fetcher);
+    crawler.crawl();
+
+    assertEquals(2, crawler.counter.get());
+    assertEquals(1, crawler.getMetrics().count(CrawlMetrics.Outcome.NEAR_DUPLICATE));
+    CrawlRecord duplicate =
+        records.stream().filter(record -> record.getDuplicateOf() != null).findFirst().get();
+    assertEquals("https://webcrawler.com/shop?page=1", duplicate.getUrl());
+    assertEquals("https://webcrawler.com", duplicate.getDuplicateOf());
+  }
+
+  @Test
+  void crawl_whenTrapDetectionOn_anEndlessCalendarIsCutOff()
+      throws URISyntaxException, UrlInvalidException {
+    // every month links to the next one, forever
+    HTMLFetcher fetcher =
+        stubFetcher(
+            url -> {
+              int month = url.contains("/calendar/") ? chainIndex(url.replace("/calendar", "")) : 0;
+              return "<a href='/calendar/" + (month + 1) + "'>next</a>";
+            });
+    CrawlerConfig config = new CrawlerConfig().detectTraps(true).maxUrlsPerPattern(12);
+    WebCrawler crawler = new WebCrawler("https://webcrawler.com", config, fetcher);
+    crawler.crawl();
+
+    assertEquals(13, crawler.counter.get());
+    assertEquals(1, crawler.getMetrics().count(CrawlMetrics.Outcome.TRAP));
+  }
+
+  @Test
+  void crawl_whenTwoNodesShareACoordinator_eachPageIsFetchedOnceAcrossThem()
+      throws Exception, UrlInvalidException {
+    int pages = 300;
+    // every page links to a few others, so most links cross from one shard to the other
+    Function<String, String> site =
+        url -> {
+          int page = url.contains("/p") ? pageNumber(url) : 0;
+          StringBuilder html = new StringBuilder();
+          for (int step : new int[] {1, 7, 31}) {
+            html.append("<a href='/p").append((page * 13 + step) % pages).append("'>x</a>");
+          }
+          return html.toString();
+        };
+    Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+    try (ClusterCoordinator coordinator =
+        new ClusterCoordinator(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Duration.ofSeconds(5))) {
+      WebCrawler first = clusterNode("a", coordinator, countingFetcher(site, fetches));
+      WebCrawler second = clusterNode("b", coordinator, countingFetcher(site, fetches));
+
+      CompletableFuture<Void> crawls =
+          CompletableFuture.allOf(
+              CompletableFuture.runAsync(first::crawl), CompletableFuture.runAsync(second::crawl));
+      crawls.get(30, TimeUnit.SECONDS);
+
+      assertEquals(pages + 1, fetches.size());
+      fetches.forEach((url, count) -> assertEquals(1, count.get(), url));
+      assertTrue(first.counter.get() > 0);
+      assertTrue(second.counter.get() > 0);
+      assertEquals(pages + 1, first.counter.get() + second.counter.get());
+    }
+  }
+
+  @Test
+  void crawl_whenLinksLongerThan64KiBCrossShards_thenTheClusterStillFinishes()
+      throws Exception, UrlInvalidException {
+    String longPath = "/" + "x".repeat(70_000);
+    Function<String, String> site =
+        url -> {
+          if (url.contains(longPath)) {
+            return "";
+          }
+          StringBuilder html = new StringBuilder();
+          for (int i = 0; i < 10; i++) {
+            html.append("<a href='/l").append(i).append(longPath).append("'>x</a>");
+          }
+          return html.toString();
+        };
+    Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+    try (ClusterCoordinator coordinator =
+        new ClusterCoordinator(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Duration.ofSeconds(5))) {
+      WebCrawler first = clusterNode("a", coordinator, countingFetcher(site, fetches));
+      WebCrawler second = clusterNode("b", coordinator, countingFetcher(site, fetches));
+
+      CompletableFuture<Void> crawls =
+          CompletableFuture.allOf(
+              CompletableFuture.runAsync(first::crawl), CompletableFuture.runAsync(second::crawl));
+      crawls.get(30, TimeUnit.SECONDS);
+
+      assertEquals(11, fetches.size());
+      fetches.forEach((url, count) -> assertEquals(1, count.get(), url));
+    }
+  }
+
+  private static WebCrawler clusterNode(
+      String nodeId, ClusterCoordinator coordinator, HTMLFetcher fetcher)
+      throws URISyntaxException, UrlInvalidException {
+    CrawlerConfig config =
+        new CrawlerConfig()
+            .maxConcurrency(4)
+            .coordinator(coordinator.getAddress())
+            .nodeId(nodeId)
+            .clusterSize(2)
+            .heartbeatInterval(Duration.ofMillis(20));
+    return new WebCrawler("https://webcrawler.com", config, fetcher);
+  }
+
+  private static HTMLFetcher countingFetcher(
+      Function<String, String> pages, Map<String, AtomicInteger> fetches) {
+    return stubFetcher(
+        url -> {
+          fetches.computeIfAbsent(url, key -> new AtomicInteger()).incrementAndGet();
+          return pages.apply(url);
+        });
+  }
+
+  private static int chainIndex(String url) {
+    String path = URI.create(url).getPath();
+    return path.isEmpty() ? 0 : Integer.parseInt(path.substring(1));
+  }
+
+  private static int pageNumber(String url) {
+    return Integer.parseInt(url.substring(url.lastIndexOf("/p") + 2));
+  }
+
+  private static Map<String, Integer> statusByUrl(List<CrawlRecord> records) {
+    return records.stream()
+        .collect(Collectors.toMap(CrawlRecord::getUrl, CrawlRecord::getStatusCode));
+  }
+
+  private static CrawlSink collectingSink(List<CrawlRecord> records) {
+    return new CrawlSink() {
+      @Override
+      public void accept(CrawlRecord record) {
+        records.add(record);
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
+  private static HTMLFetcher stubFetcher(Function<String, String> pages) {
+    HTMLFetcher fetcher = mock(HTMLFetcher.class);
+    when(fetcher.fetchPage(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              String url = invocation.getArgument(0);
+              LinkExtractor linkExtractor = invocation.getArgument(1);
+              LinkExtractor.Extraction extraction =
+                  linkExtractor.extract(new StringReader(pages.apply(url)), url);
+              return new PageResult(
+                  url, 200, extraction.getLinks(), 0, false, null, 0, 0, 0,
+                  extraction.getDuplicateOf());
+            });
+    return fetcher;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
   }
 }